@@ -0,0 +1,53 @@
+package benchmarks;
+
+import facades.UserFacade;
+import java.sql.SQLException;
+import java.util.Properties;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+import utils.ConnectionPool;
+import utils.EMF_Creator.DbSelector;
+import utils.SeedData;
+
+/**
+ * An in-memory H2 database in MySQL mode, with the tables of the entities and
+ * the generated data of {@link SeedData}, so the facade can be measured
+ * without a MySQL server.
+ *
+ * @author Frederik Braagaard
+ */
+public final class BenchmarkDatabase {
+
+    private static final String URL = "jdbc:h2:mem:benchmark;MODE=MySQL;DB_CLOSE_DELAY=-1";
+
+    private BenchmarkDatabase() {
+    }
+
+    /**
+     * Creates and fills the database and returns the facade using it. The
+     * facade is a singleton, so this is done once per JVM, which JMH forks
+     * for every set of parameters.
+     */
+    public static UserFacade open(int users, int friends, int posts) throws SQLException {
+        ConnectionPool.configure(DbSelector.TEST, "org.h2.Driver", URL, "sa", "");
+        UserFacade.serverStatus = false;
+
+        Properties props = new Properties();
+        props.setProperty("javax.persistence.jdbc.driver", "org.h2.Driver");
+        props.setProperty("javax.persistence.jdbc.url", URL);
+        props.setProperty("javax.persistence.jdbc.user", "sa");
+        props.setProperty("javax.persistence.jdbc.password", "");
+        props.setProperty("javax.persistence.schema-generation.database.action", "drop-and-create");
+        props.setProperty("eclipselink.logging.level", "WARNING");
+        EntityManagerFactory emf = Persistence.createEntityManagerFactory("pu", props);
+        //The tables are created when the first EntityManager is.
+        emf.createEntityManager().close();
+
+        SeedData.seed(DbSelector.TEST, users, friends, posts);
+        return UserFacade.getUserFacade(emf);
+    }
+
+    public static void close() throws SQLException {
+        ConnectionPool.close();
+    }
+}
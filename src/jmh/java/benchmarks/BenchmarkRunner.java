@@ -0,0 +1,40 @@
+package benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.ProfilerConfig;
+
+/**
+ * Runs the benchmarks with the usual JMH command line options, adding the gc
+ * profiler for the allocation rate and writing the results to
+ * target/jmh-result.json unless told otherwise. Without a benchmark name
+ * every benchmark runs, with its own settings unless -i, -wi and so on are
+ * given.
+ *
+ * @author Frederik Braagaard
+ */
+public class BenchmarkRunner {
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions cli = new CommandLineOptions(args);
+        ChainedOptionsBuilder options = new OptionsBuilder().parent(cli);
+        boolean gc = false;
+        for (ProfilerConfig profiler : cli.getProfilers()) {
+            gc |= profiler.getKlass().equals("gc") || profiler.getKlass().equals(GCProfiler.class.getName());
+        }
+        if (!gc) {
+            options.addProfiler(GCProfiler.class);
+        }
+        if (!cli.getResultFormat().hasValue()) {
+            options.resultFormat(ResultFormatType.JSON);
+        }
+        if (!cli.getResult().hasValue()) {
+            options.result("target/jmh-result.json");
+        }
+        new Runner(options.build()).run();
+    }
+}
@@ -0,0 +1,122 @@
+package benchmarks;
+
+import dtos.user.FriendsDTO;
+import dtos.user.UserDTO;
+import entities.User;
+import facades.UserFacade;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import utils.SeedData;
+
+/**
+ * The facade calls behind login, the feed, the friend list, search, posting
+ * and accepting a friend request, each for a random user of a
+ * {@link BenchmarkDatabase}. Throughput and the latency distribution are
+ * measured, and {@link BenchmarkRunner} adds the allocation rate.
+ * <p>
+ * getVeryfiedUser includes the BCrypt check of the password, which is most
+ * of its time.
+ * </p>
+ *
+ * @author Frederik Braagaard
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class UserFacadeBenchmark {
+
+    @Param("1000")
+    public int users;
+    @Param("50")
+    public int friends;
+    @Param("20")
+    public int posts;
+
+    private UserFacade facade;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        facade = BenchmarkDatabase.open(users, friends, posts);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        BenchmarkDatabase.close();
+    }
+
+    private int randomUser() {
+        return ThreadLocalRandom.current().nextInt(users) + 1;
+    }
+
+    /**
+     * A pending friend request from a user who is not yet a friend, made
+     * before each call and undone after it.
+     */
+    @State(Scope.Thread)
+    public static class PendingRequest {
+
+        int receiver;
+        int requester;
+
+        @Setup(Level.Invocation)
+        public void makeRequest(UserFacadeBenchmark benchmark) throws Exception {
+            int neighbours = benchmark.friends / 2;
+            receiver = benchmark.randomUser();
+            int offset = neighbours + 1 + ThreadLocalRandom.current().nextInt(benchmark.users - 2 * neighbours - 1);
+            requester = (receiver - 1 + offset) % benchmark.users + 1;
+            benchmark.facade.addFriendRequest(receiver, requester);
+        }
+
+        @TearDown(Level.Invocation)
+        public void removeFriendship(UserFacadeBenchmark benchmark) throws Exception {
+            benchmark.facade.removeFriend(receiver, requester);
+        }
+    }
+
+    @Benchmark
+    public User getVeryfiedUser() throws Exception {
+        return facade.getVeryfiedUser("user" + randomUser(), SeedData.PASSWORD);
+    }
+
+    @Benchmark
+    public List<UserDTO> friendPosts() throws Exception {
+        return facade.friendPosts(randomUser());
+    }
+
+    @Benchmark
+    public List<FriendsDTO> viewFriends() throws Exception {
+        return facade.viewFriends(randomUser());
+    }
+
+    @Benchmark
+    public List<UserDTO> friendSearch() throws Exception {
+        return facade.friendSearch("User " + randomUser());
+    }
+
+    @Benchmark
+    public boolean createPost() {
+        return facade.createPost(randomUser(), "A post written by the benchmark");
+    }
+
+    @Benchmark
+    public User acceptFriendRequest(PendingRequest request) throws Exception {
+        return facade.acceptFriendRequest(request.receiver, request.requester);
+    }
+}
@@ -0,0 +1,99 @@
+package binary;
+
+import com.google.gson.reflect.TypeToken;
+import dtos.user.UserDTO;
+import dtos.user.UserPostsDTO;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import json.JsonSupport;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Encodes a friends feed as compact JSON and as {@link BinaryFormat}. Each
+ * benchmark returns the number of bytes written, and the sizes of both are
+ * printed once per fork for comparison.
+ *
+ * @author Frederik Braagaard
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BinaryFormatBenchmark {
+
+    private static final Type TYPE = new TypeToken<List<UserDTO>>() {
+    }.getType();
+
+    @Param({"200"})
+    public int users;
+
+    @Param({"20"})
+    public int postsPerUser;
+
+    private List<UserDTO> feed;
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream(1 << 20);
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        feed = feed(users, postsPerUser);
+        int jsonSize = json();
+        int binarySize = binary();
+        System.out.printf("json %d bytes, binary %d bytes (%.1f%%)%n", jsonSize, binarySize, 100.0 * binarySize / jsonSize);
+    }
+
+    @Benchmark
+    public int json() throws IOException {
+        out.reset();
+        Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+        JsonSupport.COMPACT.toJson(feed, TYPE, writer);
+        writer.flush();
+        return out.size();
+    }
+
+    @Benchmark
+    public int binary() throws IOException {
+        out.reset();
+        BinaryFormat.writeUsers(feed, out);
+        return out.size();
+    }
+
+    private static List<UserDTO> feed(int count, int postsPerUser) {
+        List<UserDTO> users = new ArrayList<>();
+        long date = 1577836800000L;
+        for (int i = 0; i < count; i++) {
+            UserDTO user = new UserDTO();
+            user.setUserID(1000 + i);
+            user.setFullName("Friend number " + i);
+            user.setProfilePicture("profile-" + i + ".png");
+            for (int j = 0; j < postsPerUser; j++) {
+                UserPostsDTO post = new UserPostsDTO();
+                post.setMessage("Post " + j + " from friend " + i + ", written on a phone somewhere");
+                post.setPostDate(new Date(date += 37000));
+                user.addToPostList(post);
+            }
+            users.add(user);
+        }
+        return users;
+    }
+}
@@ -0,0 +1,118 @@
+package security;
+
+import java.net.URI;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.security.RolesAllowed;
+import javax.ws.rs.GET;
+import javax.ws.rs.HeaderParam;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import org.glassfish.jersey.internal.MapPropertiesDelegate;
+import org.glassfish.jersey.server.ApplicationHandler;
+import org.glassfish.jersey.server.ContainerRequest;
+import org.glassfish.jersey.server.ContainerResponse;
+import org.glassfish.jersey.server.ResourceConfig;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Requests through Jersey in memory, without a network or a server, to
+ * measure what authentication adds to a whole request. With filters "none"
+ * only the resource is deployed, with "jwt" the JWTAuthenticationFilter and
+ * RolesAllowedFilter run too.
+ * <ul>
+ * <li>open: a resource without security annotations, which the filters only
+ * look at.</li>
+ * <li>headerToken: verifies the x-access-token header itself, the way the
+ * post, friend and admin resources do.</li>
+ * <li>rolesAllowed: a @RolesAllowed resource, verified by the filters.</li>
+ * </ul>
+ *
+ * @author Frederik Braagaard
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AuthFilterBenchmark {
+
+    private static final URI BASE_URI = URI.create("http://localhost/api/");
+
+    @Param({"none", "jwt"})
+    public String filters;
+
+    private ApplicationHandler handler;
+    private String token;
+
+    @Path("bench")
+    public static class BenchResource {
+
+        @GET
+        @Path("open")
+        @Produces(MediaType.TEXT_PLAIN)
+        public String open() {
+            return "ok";
+        }
+
+        @GET
+        @Path("header")
+        @Produces(MediaType.TEXT_PLAIN)
+        public String headerToken(@HeaderParam("x-access-token") String token) throws Exception {
+            return String.valueOf(new JWTAuthenticationFilter().getUserPrincipalFromTokenIfValid(token).getNameID());
+        }
+
+        @GET
+        @Path("user")
+        @RolesAllowed("user")
+        @Produces(MediaType.TEXT_PLAIN)
+        public String rolesAllowed() {
+            return "ok";
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        ResourceConfig resources = new ResourceConfig(BenchResource.class);
+        if ("jwt".equals(filters)) {
+            resources.register(JWTAuthenticationFilter.class);
+            resources.register(RolesAllowedFilter.class);
+        }
+        handler = new ApplicationHandler(resources);
+        token = JwtBenchmark.token(0);
+    }
+
+    private int get(String path) throws Exception {
+        ContainerRequest request = new ContainerRequest(BASE_URI, BASE_URI.resolve(path), "GET", null, new MapPropertiesDelegate());
+        request.header("x-access-token", token);
+        ContainerResponse response = handler.apply(request).get();
+        return response.getStatus();
+    }
+
+    @Benchmark
+    public int open() throws Exception {
+        return get("bench/open");
+    }
+
+    @Benchmark
+    public int headerToken() throws Exception {
+        return get("bench/header");
+    }
+
+    @Benchmark
+    public int rolesAllowed() throws Exception {
+        return get("bench/user");
+    }
+}
@@ -0,0 +1,128 @@
+package security;
+
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.JWSVerifier;
+import com.nimbusds.jose.crypto.MACSigner;
+import com.nimbusds.jose.crypto.MACVerifier;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import entities.Role;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The token work done on every request, in isolation: issuing a token with
+ * {@link TokenIssuer} as the login does, verifying it as
+ * {@link JWTAuthenticationFilter#getUserPrincipalFromTokenIfValid} does with
+ * a new MACVerifier per call, verifying with one cached verifier for
+ * comparison, and the role check of {@link UserPrincipal#isUserInRole}.
+ * <p>
+ * The padding parameter adds a claim of that many characters to the token
+ * verified, to show how the cost grows with the size of the token.
+ * </p>
+ *
+ * @author Frederik Braagaard
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JwtBenchmark {
+
+    private final Role role = new Role("user");
+    private final UserPrincipal principal = new UserPrincipal("user1", 1, "user");
+    private final JWTAuthenticationFilter filter = new JWTAuthenticationFilter();
+    private JWSVerifier cachedVerifier;
+
+    /**
+     * The token verified, only used by the benchmarks its size matters to.
+     */
+    @State(Scope.Benchmark)
+    public static class Token {
+
+        @Param({"0", "1024", "4096"})
+        public int padding;
+
+        String value;
+
+        @Setup(Level.Trial)
+        public void setUp() throws Exception {
+            value = token(padding);
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        cachedVerifier = new MACVerifier(SharedSecret.getSharedKey());
+    }
+
+    /**
+     * A token with the claims createToken writes, plus the padding.
+     */
+    static String token(int padding) throws Exception {
+        Date now = new Date();
+        JWTClaimsSet.Builder claims = new JWTClaimsSet.Builder()
+                .subject("user1")
+                .claim("username", "user1")
+                .claim("role", "user")
+                .claim("usernameID", 1)
+                .claim("issuer", "semesterstartcode-dat3")
+                .issueTime(now)
+                .expirationTime(new Date(now.getTime() + LoginEndpoint.TOKEN_EXPIRE_TIME));
+        if (padding > 0) {
+            char[] value = new char[padding];
+            Arrays.fill(value, 'x');
+            claims.claim("padding", new String(value));
+        }
+        SignedJWT jwt = new SignedJWT(new JWSHeader(JWSAlgorithm.HS256), claims.build());
+        jwt.sign(new MACSigner(SharedSecret.getSharedKey()));
+        return jwt.serialize();
+    }
+
+    @Benchmark
+    public String createToken() throws Exception {
+        return TokenIssuer.createToken("user1", 1, role);
+    }
+
+    @Benchmark
+    public UserPrincipal verifyColdVerifier(Token token) throws Exception {
+        return filter.getUserPrincipalFromTokenIfValid(token.value);
+    }
+
+    @Benchmark
+    public UserPrincipal verifyCachedVerifier(Token token) throws Exception {
+        SignedJWT jwt = SignedJWT.parse(token.value);
+        if (!jwt.verify(cachedVerifier)) {
+            throw new IllegalStateException("Token not valid");
+        }
+        JWTClaimsSet claims = jwt.getJWTClaimsSet();
+        return new UserPrincipal(claims.getClaim("username").toString(),
+                Integer.parseInt(claims.getClaim("usernameID").toString()), claims.getClaim("role").toString());
+    }
+
+    @Benchmark
+    public SignedJWT parseOnly(Token token) throws Exception {
+        return SignedJWT.parse(token.value);
+    }
+
+    @Benchmark
+    public boolean isUserInRole() {
+        return principal.isUserInRole("user");
+    }
+}
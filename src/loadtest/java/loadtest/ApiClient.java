@@ -0,0 +1,117 @@
+package loadtest;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A small blocking HTTP client for the API. Connections are kept alive by the
+ * JDK, which keeps up to http.maxConnections of them per server, and every
+ * response body is read to the end so its connection can be used again.
+ *
+ * @author Frederik Braagaard
+ */
+final class ApiClient {
+
+    /**
+     * The status of a failed connection or a timeout.
+     */
+    static final int NO_RESPONSE = -1;
+    private static final int TIMEOUT_MILLIS = 30000;
+
+    private final String baseUri;
+
+    ApiClient(String baseUri) {
+        this.baseUri = baseUri;
+    }
+
+    /**
+     * A response with its status and body.
+     */
+    static final class Response {
+
+        final int status;
+        final String body;
+
+        Response(int status, String body) {
+            this.status = status;
+            this.body = body;
+        }
+
+        boolean isOk() {
+            return status >= 200 && status < 300;
+        }
+    }
+
+    Response get(String path, String token) {
+        return send("GET", path, token, null, null);
+    }
+
+    Response postJson(String path, String token, JsonObject body) {
+        return send("POST", path, token, "application/json", body.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    Response send(String method, String path, String token, String contentType, byte[] body) {
+        HttpURLConnection connection = null;
+        try {
+            connection = (HttpURLConnection) new URL(baseUri + path).openConnection();
+            connection.setRequestMethod(method);
+            connection.setConnectTimeout(TIMEOUT_MILLIS);
+            connection.setReadTimeout(TIMEOUT_MILLIS);
+            connection.setRequestProperty("Accept", "application/json");
+            if (token != null) {
+                connection.setRequestProperty("x-access-token", token);
+            }
+            if (body != null) {
+                connection.setDoOutput(true);
+                connection.setRequestProperty("Content-Type", contentType);
+                connection.setFixedLengthStreamingMode(body.length);
+                try (OutputStream out = connection.getOutputStream()) {
+                    out.write(body);
+                }
+            }
+            int status = connection.getResponseCode();
+            InputStream in = status >= 400 ? connection.getErrorStream() : connection.getInputStream();
+            return new Response(status, in == null ? "" : readAll(in));
+        } catch (IOException ex) {
+            if (connection != null) {
+                connection.disconnect();
+            }
+            return new Response(NO_RESPONSE, ex.toString());
+        }
+    }
+
+    /**
+     * Logs a user in.
+     *
+     * @return the token, or null if the login failed
+     */
+    String login(String username, String password) {
+        JsonObject body = new JsonObject();
+        body.addProperty("username", username);
+        body.addProperty("password", password);
+        Response response = postJson("login", null, body);
+        if (!response.isOk()) {
+            return null;
+        }
+        return new JsonParser().parse(response.body).getAsJsonObject().get("token").getAsString();
+    }
+
+    private static String readAll(InputStream in) throws IOException {
+        try (InputStream stream = in) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = stream.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return new String(out.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package loadtest;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.PrintStream;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+/**
+ * The latencies, errors and statuses of one endpoint during one load step.
+ * <p>
+ * Two latencies are kept for every request. The response time is measured
+ * from the moment the request should have been sent according to the
+ * arrival schedule, so time spent waiting for a free client thread or
+ * connection counts as well. This corrects for coordinated omission: a
+ * stalled server cannot hide its stall by holding back the requests that
+ * would have measured it. The service time is measured from the moment the
+ * request was actually sent, and the gap between the two shows how far the
+ * client fell behind.
+ * </p>
+ *
+ * @author Frederik Braagaard
+ */
+final class EndpointStats {
+
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+
+    private final String endpoint;
+    private final Recorder responseTimes = new Recorder(3);
+    private final Recorder serviceTimes = new Recorder(3);
+    private final LongAdder errors = new LongAdder();
+    private final Map<Integer, LongAdder> statuses = new TreeMap<>();
+
+    private Histogram responseHistogram;
+    private Histogram serviceHistogram;
+
+    EndpointStats(String endpoint) {
+        this.endpoint = endpoint;
+    }
+
+    String getEndpoint() {
+        return endpoint;
+    }
+
+    /**
+     * Records a finished request.
+     *
+     * @param intendedNanos when the schedule said to send it
+     * @param startNanos when it was sent
+     * @param endNanos when the response had been read
+     * @param status the HTTP status, or {@link ApiClient#NO_RESPONSE}
+     * @param ok whether the status is an answer the endpoint should give
+     */
+    void record(long intendedNanos, long startNanos, long endNanos, int status, boolean ok) {
+        responseTimes.recordValue(TimeUnit.NANOSECONDS.toMicros(endNanos - intendedNanos));
+        serviceTimes.recordValue(TimeUnit.NANOSECONDS.toMicros(endNanos - startNanos));
+        if (!ok) {
+            errors.increment();
+            synchronized (statuses) {
+                statuses.computeIfAbsent(status, s -> new LongAdder()).increment();
+            }
+        }
+    }
+
+    /**
+     * Takes the histograms recorded so far. Called once, after the step.
+     */
+    void finish() {
+        responseHistogram = responseTimes.getIntervalHistogram();
+        serviceHistogram = serviceTimes.getIntervalHistogram();
+    }
+
+    long getCount() {
+        return responseHistogram.getTotalCount();
+    }
+
+    long getErrors() {
+        return errors.sum();
+    }
+
+    Histogram getResponseHistogram() {
+        return responseHistogram;
+    }
+
+    Histogram getServiceHistogram() {
+        return serviceHistogram;
+    }
+
+    static void printHeader(PrintStream out) {
+        out.printf("%-16s %8s %9s %7s  %9s %9s %9s %9s %9s  %9s %9s  %s%n",
+                "endpoint", "requests", "req/s", "errors",
+                "p50", "p90", "p99", "p99.9", "max", "svc p50", "svc p99", "failed statuses");
+    }
+
+    /**
+     * Prints one line with the response time percentiles in milliseconds,
+     * followed by the service time median and p99.
+     */
+    void print(PrintStream out, double seconds) {
+        print(out, endpoint, responseHistogram, serviceHistogram, getErrors(), seconds, failedStatuses());
+    }
+
+    static void print(PrintStream out, String name, Histogram response, Histogram service, long errors, double seconds, String failed) {
+        long count = response.getTotalCount();
+        out.printf("%-16s %8d %9.1f %6.2f%%  ", name, count, count / seconds, count == 0 ? 0.0 : 100.0 * errors / count);
+        for (double percentile : PERCENTILES) {
+            out.printf("%9s ", millis(response.getValueAtPercentile(percentile)));
+        }
+        out.printf("%9s  %9s %9s  %s%n", millis(response.getMaxValue()),
+                millis(service.getValueAtPercentile(50)), millis(service.getValueAtPercentile(99)), failed);
+    }
+
+    /**
+     * Writes the full response time distribution in the .hgrm format, which
+     * the HdrHistogram plotter reads, in milliseconds.
+     */
+    void writeDistribution(File file) throws FileNotFoundException {
+        try (PrintStream out = new PrintStream(file)) {
+            responseHistogram.outputPercentileDistribution(out, 1000.0);
+        }
+    }
+
+    private String failedStatuses() {
+        StringBuilder failed = new StringBuilder();
+        synchronized (statuses) {
+            for (Map.Entry<Integer, LongAdder> entry : statuses.entrySet()) {
+                failed.append(entry.getKey() == ApiClient.NO_RESPONSE ? "none" : entry.getKey().toString())
+                        .append('x').append(entry.getValue().sum()).append(' ');
+            }
+        }
+        return failed.toString().trim();
+    }
+
+    private static String millis(long micros) {
+        return String.format("%.2fms", micros / 1000.0);
+    }
+}
@@ -0,0 +1,272 @@
+package loadtest;
+
+import errorhandling.GenericExceptionMapper;
+import facades.UserFacade;
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.persistence.EntityManagerFactory;
+import mongodb.MongoConnection;
+import mongodb.MongoFailedLogin;
+import org.HdrHistogram.Histogram;
+import org.glassfish.grizzly.http.server.HttpServer;
+import org.glassfish.jersey.server.ResourceConfig;
+import rest.ApplicationConfig;
+import server.GrizzlyLauncher;
+import utils.EMF_Creator;
+import utils.EMF_Creator.DbSelector;
+import utils.SeedData;
+
+/**
+ * Load test of the whole API. Starts the application on the embedded Grizzly
+ * server, backed by an in-memory H2 database in MySQL mode filled by
+ * {@link SeedData} and with the Mongo logging switched off, and sends it the
+ * {@link Workload} mix at one or more fixed arrival rates.
+ * <p>
+ * The load is open: requests are sent on a schedule with exponentially
+ * distributed gaps (or evenly spaced with arrivals=uniform), whether or not
+ * the earlier ones have been answered. Each rate is first run for the warm-up
+ * period, which is not reported, and then for the duration. The report gives
+ * the requests, throughput, error rate and response time percentiles of every
+ * endpoint, see {@link EndpointStats} for how the response time is measured.
+ * Stepping the rate up shows where the server saturates: the throughput stops
+ * following the rate and the response times take off.
+ * </p>
+ * The options are given as name=value, for instance
+ * {@code rate=100,200,400 duration=60}. See {@link #DEFAULTS} for the names.
+ *
+ * @author Frederik Braagaard
+ */
+public class LoadTest {
+
+    private static final String DB_URL = "jdbc:h2:mem:loadtest;MODE=MySQL;DB_CLOSE_DELAY=-1";
+    private static final File OUTPUT = new File("target/loadtest");
+    private static final Map<String, String> DEFAULTS = new LinkedHashMap<>();
+    //Held here, the logging keeps only weak references to its loggers.
+    private static final Logger EXCEPTION_LOG = Logger.getLogger(GenericExceptionMapper.class.getName());
+
+    static {
+        DEFAULTS.put("rate", "50,100,200");     //requests per second, one step per rate
+        DEFAULTS.put("duration", "30");         //seconds measured per step
+        DEFAULTS.put("warmup", "10");           //seconds run before each step, not reported
+        DEFAULTS.put("arrivals", "poisson");    //poisson or uniform
+        DEFAULTS.put("mix", Workload.DEFAULT_MIX);
+        DEFAULTS.put("users", "2000");          //generated users
+        DEFAULTS.put("friends", "20");          //friends of each generated user
+        DEFAULTS.put("posts", "10");            //posts of each generated user
+        DEFAULTS.put("sessions", "100");        //users logged in before the test
+        DEFAULTS.put("threads", "256");         //client threads, the most requests in flight
+        DEFAULTS.put("port", "7790");
+        DEFAULTS.put("hgrm", "false");          //write the distributions to target/loadtest
+    }
+
+    private final Map<String, String> options;
+    private final Workload workload;
+    private final ExecutorService clients;
+
+    private LoadTest(Map<String, String> options, Workload workload) {
+        this.options = options;
+        this.workload = workload;
+        AtomicInteger count = new AtomicInteger();
+        clients = Executors.newFixedThreadPool(intOption(options, "threads"), runnable -> {
+            Thread thread = new Thread(runnable, "loadtest-client-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parseOptions(args);
+        //The JDK keeps only 5 idle connections per server unless told otherwise.
+        System.setProperty("http.maxConnections", options.get("threads"));
+        //A POST that timed out must not be sent again behind the test's back.
+        System.setProperty("sun.net.http.retryPost", "false");
+        //The mapper logs every error response with its stack trace, the report counts them instead.
+        EXCEPTION_LOG.setLevel(Level.OFF);
+
+        int users = intOption(options, "users");
+        startDatabase(users, intOption(options, "friends"), intOption(options, "posts"));
+        URI baseUri = URI.create("http://localhost:" + intOption(options, "port") + "/api/");
+        HttpServer server = GrizzlyLauncher.createServer(baseUri, ResourceConfig.forApplication(new ApplicationConfig()));
+        server.start();
+        try {
+            ApiClient client = new ApiClient(baseUri.toString());
+            List<Workload.Session> sessions = login(client, intOption(options, "sessions"), users, intOption(options, "threads"));
+            LoadTest test = new LoadTest(options, new Workload(client, sessions, users, options.get("mix")));
+            for (String rate : options.get("rate").split(",")) {
+                test.step(Double.parseDouble(rate));
+            }
+        } finally {
+            server.shutdownNow();
+        }
+        System.exit(0);
+    }
+
+    static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new LinkedHashMap<>(DEFAULTS);
+        for (String arg : args) {
+            int equals = arg.indexOf('=');
+            if (equals < 0 || !DEFAULTS.containsKey(arg.substring(0, equals))) {
+                throw new IllegalArgumentException("Unknown option '" + arg + "', the options are " + DEFAULTS.keySet());
+            }
+            options.put(arg.substring(0, equals), arg.substring(equals + 1));
+        }
+        return options;
+    }
+
+    private static int intOption(Map<String, String> options, String name) {
+        return Integer.parseInt(options.get(name));
+    }
+
+    /**
+     * Points the factories and pools of the API at a new H2 database, creates
+     * the tables and fills them. Must run before the resources are loaded,
+     * as they create their factories when they are.
+     */
+    private static void startDatabase(int users, int friends, int posts) throws SQLException {
+        System.setProperty("DB_URL", DB_URL);
+        System.setProperty("DB_DRIVER", "org.h2.Driver");
+        System.setProperty("USER", "sa");
+        System.setProperty("PW", "");
+        MongoConnection.loggingStatus = false;
+        MongoFailedLogin.loggingStatus = false;
+        UserFacade.serverStatus = true;
+
+        EntityManagerFactory emf = EMF_Creator.createEntityManagerFactory(DbSelector.DEV, EMF_Creator.Strategy.DROP_AND_CREATE);
+        //The tables are created when the first EntityManager is.
+        emf.createEntityManager().close();
+        SeedData.seed(DbSelector.DEV, users, friends, posts);
+        UserFacade.getUserFacade(emf);
+        //Registration stores the pictures here, see src/loadtest/resources/picture.properties.
+        new File(OUTPUT, "pictures").mkdirs();
+    }
+
+    /**
+     * Logs in the first users side by side, each login costing a bcrypt
+     * check.
+     */
+    private static List<Workload.Session> login(ApiClient client, int sessions, int users, int threads) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(sessions, threads));
+        try {
+            List<Future<String>> tokens = new ArrayList<>();
+            for (int id = 1; id <= Math.min(sessions, users); id++) {
+                String username = "user" + id;
+                tokens.add(executor.submit(() -> client.login(username, SeedData.PASSWORD)));
+            }
+            List<Workload.Session> result = new ArrayList<>();
+            for (int i = 0; i < tokens.size(); i++) {
+                String token = tokens.get(i).get();
+                if (token == null) {
+                    throw new IllegalStateException("user" + (i + 1) + " could not log in");
+                }
+                result.add(new Workload.Session(i + 1, token));
+            }
+            System.out.println("Logged in " + result.size() + " users");
+            return Collections.unmodifiableList(result);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Runs the warm-up and then the measured period at one rate, and prints
+     * the report of the measured period.
+     */
+    private void step(double rate) throws IOException, InterruptedException {
+        System.out.printf("%nRate %.0f req/s: %s s warm-up, %s s measured%n", rate, options.get("warmup"), options.get("duration"));
+        run(rate, intOption(options, "warmup"), new LinkedHashMap<>());
+
+        Map<String, EndpointStats> stats = new LinkedHashMap<>();
+        for (String endpoint : Workload.ENDPOINTS) {
+            stats.put(endpoint, new EndpointStats(endpoint));
+        }
+        int duration = intOption(options, "duration");
+        int late = run(rate, duration, stats);
+        report(rate, duration, stats, late);
+    }
+
+    /**
+     * Sends requests at the given rate for the given time and waits for their
+     * answers.
+     *
+     * @param stats where to record them, or empty to throw them away
+     * @return the requests still unanswered when the wait gave up
+     */
+    private int run(double rate, int seconds, Map<String, EndpointStats> stats) throws InterruptedException {
+        boolean poisson = !"uniform".equals(options.get("arrivals"));
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        AtomicInteger inFlight = new AtomicInteger();
+        long start = System.nanoTime();
+        long end = start + TimeUnit.SECONDS.toNanos(seconds);
+        long next = start;
+        while (next < end) {
+            long wait = next - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            long intended = next;
+            String operation = workload.next(random);
+            inFlight.incrementAndGet();
+            clients.execute(() -> {
+                try {
+                    long started = System.nanoTime();
+                    Workload.Result result = workload.run(operation);
+                    EndpointStats endpoint = stats.get(result.endpoint);
+                    if (endpoint != null) {
+                        endpoint.record(intended, started, System.nanoTime(), result.status, result.ok);
+                    }
+                } finally {
+                    inFlight.decrementAndGet();
+                }
+            });
+            double gap = poisson ? -Math.log(1 - random.nextDouble()) / rate : 1 / rate;
+            next += (long) (gap * TimeUnit.SECONDS.toNanos(1));
+        }
+        //Every request has a 30 second timeout, so they are all done well within a minute.
+        long giveUp = System.nanoTime() + TimeUnit.MINUTES.toNanos(1);
+        while (inFlight.get() > 0 && System.nanoTime() < giveUp) {
+            Thread.sleep(10);
+        }
+        return inFlight.get();
+    }
+
+    private void report(double rate, int seconds, Map<String, EndpointStats> stats, int late) throws IOException {
+        Histogram allResponses = new Histogram(3);
+        Histogram allServices = new Histogram(3);
+        long errors = 0;
+        EndpointStats.printHeader(System.out);
+        for (EndpointStats endpoint : stats.values()) {
+            endpoint.finish();
+            if (endpoint.getCount() == 0) {
+                continue;
+            }
+            endpoint.print(System.out, seconds);
+            allResponses.add(endpoint.getResponseHistogram());
+            allServices.add(endpoint.getServiceHistogram());
+            errors += endpoint.getErrors();
+            if (Boolean.parseBoolean(options.get("hgrm"))) {
+                OUTPUT.mkdirs();
+                endpoint.writeDistribution(new File(OUTPUT, String.format("%.0f-%s.hgrm", rate, endpoint.getEndpoint())));
+            }
+        }
+        EndpointStats.print(System.out, "all", allResponses, allServices, errors, seconds, "");
+        if (late > 0) {
+            System.out.println(late + " requests were still unanswered after the step and are not counted");
+        }
+    }
+}
@@ -0,0 +1,267 @@
+package loadtest;
+
+import com.google.gson.JsonObject;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import utils.SeedData;
+
+/**
+ * The mix of requests a load step sends, picked at random by weight.
+ * <p>
+ * Reads and posts are made by the users logged in before the test, each
+ * holding a token. A login logs in any generated user with the password, so
+ * it pays for the bcrypt check, and a registration creates a new user with a
+ * small picture. Friend operations walk pairs of users that are not friends
+ * through a request, its acceptance and the removal of the friendship, so
+ * the friend graph stays about the size it was seeded with.
+ * </p>
+ *
+ * @author Frederik Braagaard
+ */
+final class Workload {
+
+    static final String REGISTER = "register";
+    static final String LOGIN = "login";
+    static final String FEED = "feed";
+    static final String HOME = "home";
+    static final String POST = "post";
+    static final String SEARCH = "search";
+    static final String REQUESTS = "requests";
+    static final String FRIEND = "friend";
+    static final String FRIEND_ADD = "friend-add";
+    static final String FRIEND_ACCEPT = "friend-accept";
+    static final String FRIEND_REMOVE = "friend-remove";
+
+    /**
+     * Every endpoint in the report, in the order it is printed.
+     */
+    static final List<String> ENDPOINTS = Collections.unmodifiableList(Arrays.asList(
+            REGISTER, LOGIN, FEED, HOME, POST, SEARCH, REQUESTS, FRIEND_ADD, FRIEND_ACCEPT, FRIEND_REMOVE));
+
+    /**
+     * A mix weighted towards reads, like the app's own use.
+     */
+    static final String DEFAULT_MIX = "feed:35,home:20,post:12,search:8,requests:5,friend:12,login:6,register:2";
+
+    //The smallest PNG header, the API only looks at the content type.
+    private static final byte[] PICTURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n'};
+    private static final String BOUNDARY = "loadtestboundary";
+
+    /**
+     * A logged in user.
+     */
+    static final class Session {
+
+        final int userID;
+        final String token;
+
+        Session(int userID, String token) {
+            this.userID = userID;
+            this.token = token;
+        }
+    }
+
+    /**
+     * Two users on their way through a friendship. The pair is owned by
+     * the request in flight, so it is never used by two requests at once.
+     */
+    private static final class FriendPair {
+
+        final Session receiver;
+        final int requesterID;
+        String next = FRIEND_ADD;
+
+        FriendPair(Session receiver, int requesterID) {
+            this.receiver = receiver;
+            this.requesterID = requesterID;
+        }
+    }
+
+    /**
+     * The outcome of a request.
+     */
+    static final class Result {
+
+        final String endpoint;
+        final int status;
+        final boolean ok;
+
+        Result(String endpoint, ApiClient.Response response, boolean ok) {
+            this.endpoint = endpoint;
+            this.status = response.status;
+            this.ok = ok;
+        }
+    }
+
+    private final ApiClient client;
+    private final List<Session> sessions;
+    private final int users;
+    private final String[] operations;
+    private final int[] cumulativeWeights;
+    private final Queue<FriendPair> pairs = new ConcurrentLinkedQueue<>();
+    private final AtomicLong registrations = new AtomicLong();
+
+    /**
+     * @param client the client of the server under test
+     * @param sessions the logged in users
+     * @param users the number of generated users
+     * @param mix the operations and their weights, like {@link #DEFAULT_MIX}
+     */
+    Workload(ApiClient client, List<Session> sessions, int users, String mix) {
+        this.client = client;
+        this.sessions = sessions;
+        this.users = users;
+        Map<String, Integer> weights = parseMix(mix);
+        operations = weights.keySet().toArray(new String[0]);
+        cumulativeWeights = new int[operations.length];
+        int total = 0;
+        for (int i = 0; i < operations.length; i++) {
+            total += weights.get(operations[i]);
+            cumulativeWeights[i] = total;
+        }
+    }
+
+    static Map<String, Integer> parseMix(String mix) {
+        List<String> known = new ArrayList<>(Arrays.asList(REGISTER, LOGIN, FEED, HOME, POST, SEARCH, REQUESTS, FRIEND));
+        Map<String, Integer> weights = new LinkedHashMap<>();
+        for (String part : mix.split(",")) {
+            String[] entry = part.trim().split(":");
+            if (entry.length != 2 || !known.contains(entry[0])) {
+                throw new IllegalArgumentException("Unknown mix entry '" + part + "', use a list of name:weight with names from " + known);
+            }
+            int weight = Integer.parseInt(entry[1]);
+            if (weight > 0) {
+                weights.put(entry[0], weight);
+            }
+        }
+        if (weights.isEmpty()) {
+            throw new IllegalArgumentException("The mix has no operations");
+        }
+        return weights;
+    }
+
+    /**
+     * Picks the next operation by weight.
+     */
+    String next(ThreadLocalRandom random) {
+        int pick = random.nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+        for (int i = 0; i < cumulativeWeights.length; i++) {
+            if (pick < cumulativeWeights[i]) {
+                return operations[i];
+            }
+        }
+        return operations[operations.length - 1];
+    }
+
+    /**
+     * Sends one request of the given operation and waits for the answer.
+     */
+    Result run(String operation) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Session session = sessions.get(random.nextInt(sessions.size()));
+        ApiClient.Response response;
+        JsonObject body = new JsonObject();
+        switch (operation) {
+            case REGISTER:
+                response = register();
+                return new Result(REGISTER, response, response.isOk());
+            case LOGIN:
+                String username = "user" + (1 + random.nextInt(users));
+                body.addProperty("username", username);
+                body.addProperty("password", SeedData.PASSWORD);
+                response = client.postJson("login", null, body);
+                return new Result(LOGIN, response, response.isOk());
+            case FEED:
+                response = client.get("post/friends", session.token);
+                return new Result(FEED, response, response.isOk());
+            case HOME:
+                response = client.get("home", session.token);
+                return new Result(HOME, response, response.isOk());
+            case POST:
+                body.addProperty("post", "Load test post " + random.nextInt(1000000));
+                response = client.postJson("post/create", session.token, body);
+                return new Result(POST, response, response.isOk());
+            case SEARCH:
+                body.addProperty("search_name", "User " + (1 + random.nextInt(users)));
+                response = client.postJson("friend/search", session.token, body);
+                return new Result(SEARCH, response, response.isOk());
+            case REQUESTS:
+                response = client.get("friend/requests", session.token);
+                //Having no friend requests is answered with 404.
+                return new Result(REQUESTS, response, response.isOk() || response.status == 404);
+            case FRIEND:
+                return friend(session, random);
+            default:
+                throw new IllegalArgumentException(operation);
+        }
+    }
+
+    /**
+     * Moves a pair one step on, starting a new pair when none is waiting.
+     */
+    private Result friend(Session session, ThreadLocalRandom random) {
+        FriendPair pair = pairs.poll();
+        if (pair == null) {
+            //Users half the ring apart are never friends in the generated data.
+            int requester = (session.userID - 1 + users / 2 + random.nextInt(Math.max(1, users / 4))) % users + 1;
+            pair = new FriendPair(session, requester);
+        }
+        JsonObject body = new JsonObject();
+        ApiClient.Response response;
+        String endpoint = pair.next;
+        switch (endpoint) {
+            case FRIEND_ADD:
+                body.addProperty("request_username", pair.requesterID);
+                response = client.postJson("friend/add", pair.receiver.token, body);
+                pair.next = FRIEND_ACCEPT;
+                break;
+            case FRIEND_ACCEPT:
+                body.addProperty("request_userid", pair.requesterID);
+                response = client.postJson("friend/accept", pair.receiver.token, body);
+                pair.next = FRIEND_REMOVE;
+                break;
+            default:
+                body.addProperty("request_userid", pair.requesterID);
+                response = client.postJson("friend/remove", pair.receiver.token, body);
+                pair.next = null;
+                break;
+        }
+        if (response.isOk() && pair.next != null) {
+            pairs.offer(pair);
+        }
+        return new Result(endpoint, response, response.isOk());
+    }
+
+    private ApiClient.Response register() {
+        String username = "load" + registrations.incrementAndGet();
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        field(body, "fullname", "Load Test " + username);
+        field(body, "username", username);
+        field(body, "password", "Loadtest2020");
+        field(body, "secret", "loadtest");
+        write(body, "--" + BOUNDARY + "\r\nContent-Disposition: form-data; name=\"file\"; filename=\"picture.png\"\r\n"
+                + "Content-Type: image/png\r\n\r\n");
+        body.write(PICTURE, 0, PICTURE.length);
+        write(body, "\r\n--" + BOUNDARY + "--\r\n");
+        return client.send("POST", "register/user", null, "multipart/form-data; boundary=" + BOUNDARY, body.toByteArray());
+    }
+
+    private static void field(ByteArrayOutputStream body, String name, String value) {
+        write(body, "--" + BOUNDARY + "\r\nContent-Disposition: form-data; name=\"" + name + "\"\r\n\r\n" + value + "\r\n");
+    }
+
+    private static void write(ByteArrayOutputStream body, String text) {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        body.write(bytes, 0, bytes.length);
+    }
+}
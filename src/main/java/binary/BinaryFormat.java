@@ -0,0 +1,218 @@
+package binary;
+
+import dtos.user.FriendsDTO;
+import dtos.user.UserDTO;
+import dtos.user.UserPostsDTO;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * A compact length-prefixed encoding of the DTO lists sent to feed clients,
+ * as an alternative to JSON:
+ * <pre>
+ * byte   magic     'F'
+ * byte   version   1
+ * byte   kind      1 = UserDTO, 2 = UserPostsDTO, 3 = FriendsDTO
+ * varint count
+ * count records:
+ *   UserDTO      varint userID, string fullName, string profilePicture,
+ *                varint post count, that many UserPostsDTO records
+ *   UserPostsDTO string message, date postDate
+ *   FriendsDTO   varint friendID, string fullName, string picture
+ * </pre>
+ * A varint is an unsigned LEB128 number, seven bits per byte. A string is a
+ * varint of its UTF-8 length plus one followed by the bytes, and a date is a
+ * varint of its zigzag encoded epoch milliseconds plus one. In both a 0 means
+ * null.
+ *
+ * @author Frederik Braagaard
+ */
+public final class BinaryFormat {
+
+    public static final String MEDIA_TYPE = "application/vnd.sem4.feed+binary";
+    /**
+     * For @Produces, so JSON stays the default when a client accepts both.
+     */
+    public static final String MEDIA_TYPE_QS = MEDIA_TYPE + ";qs=0.5";
+
+    static final int MAGIC = 'F';
+    static final int VERSION = 1;
+    static final int USERS = 1;
+    static final int POSTS = 2;
+    static final int FRIENDS = 3;
+
+    private BinaryFormat() {
+    }
+
+    public static void writeUsers(List<UserDTO> users, OutputStream out) throws IOException {
+        writeHeader(out, USERS, users.size());
+        for (UserDTO user : users) {
+            writeVarLong(out, user.getUserID() & 0xFFFFFFFFL);
+            writeString(out, user.getFullName());
+            writeString(out, user.getProfilePicture());
+            List<UserPostsDTO> posts = user.getPosts();
+            writeVarLong(out, posts == null ? 0 : posts.size());
+            if (posts != null) {
+                for (UserPostsDTO post : posts) {
+                    writePost(out, post);
+                }
+            }
+        }
+    }
+
+    public static void writePosts(List<UserPostsDTO> posts, OutputStream out) throws IOException {
+        writeHeader(out, POSTS, posts.size());
+        for (UserPostsDTO post : posts) {
+            writePost(out, post);
+        }
+    }
+
+    public static void writeFriends(List<FriendsDTO> friends, OutputStream out) throws IOException {
+        writeHeader(out, FRIENDS, friends.size());
+        for (FriendsDTO friend : friends) {
+            writeVarLong(out, friend.getFriendID() & 0xFFFFFFFFL);
+            writeString(out, friend.getFullName());
+            writeString(out, friend.getPicture());
+        }
+    }
+
+    public static List<UserDTO> readUsers(InputStream in) throws IOException {
+        int count = readHeader(in, USERS);
+        List<UserDTO> users = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            UserDTO user = new UserDTO();
+            user.setUserID((int) readVarLong(in));
+            user.setFullName(readString(in));
+            user.setProfilePicture(readString(in));
+            long posts = readVarLong(in);
+            for (long j = 0; j < posts; j++) {
+                user.addToPostList(readPost(in));
+            }
+            users.add(user);
+        }
+        return users;
+    }
+
+    public static List<UserPostsDTO> readPosts(InputStream in) throws IOException {
+        int count = readHeader(in, POSTS);
+        List<UserPostsDTO> posts = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            posts.add(readPost(in));
+        }
+        return posts;
+    }
+
+    public static List<FriendsDTO> readFriends(InputStream in) throws IOException {
+        int count = readHeader(in, FRIENDS);
+        List<FriendsDTO> friends = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            FriendsDTO friend = new FriendsDTO();
+            friend.setFriendID((int) readVarLong(in));
+            friend.setFullName(readString(in));
+            friend.setPicture(readString(in));
+            friends.add(friend);
+        }
+        return friends;
+    }
+
+    private static void writePost(OutputStream out, UserPostsDTO post) throws IOException {
+        writeString(out, post.getMessage());
+        Date date = post.getPostDate();
+        if (date == null) {
+            out.write(0);
+        } else {
+            long millis = date.getTime();
+            writeVarLong(out, ((millis << 1) ^ (millis >> 63)) + 1);
+        }
+    }
+
+    private static UserPostsDTO readPost(InputStream in) throws IOException {
+        UserPostsDTO post = new UserPostsDTO();
+        post.setMessage(readString(in));
+        long date = readVarLong(in);
+        if (date != 0) {
+            long zigzag = date - 1;
+            post.setPostDate(new Date((zigzag >>> 1) ^ -(zigzag & 1)));
+        }
+        return post;
+    }
+
+    private static void writeHeader(OutputStream out, int kind, int count) throws IOException {
+        out.write(MAGIC);
+        out.write(VERSION);
+        out.write(kind);
+        writeVarLong(out, count);
+    }
+
+    private static int readHeader(InputStream in, int kind) throws IOException {
+        if (readByte(in) != MAGIC || readByte(in) != VERSION) {
+            throw new IOException("Not a binary feed message");
+        }
+        int found = readByte(in);
+        if (found != kind) {
+            throw new IOException("Expected records of kind " + kind + " but found " + found);
+        }
+        return (int) readVarLong(in);
+    }
+
+    private static void writeString(OutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.write(0);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarLong(out, bytes.length + 1L);
+        out.write(bytes);
+    }
+
+    private static String readString(InputStream in) throws IOException {
+        long length = readVarLong(in);
+        if (length == 0) {
+            return null;
+        }
+        byte[] bytes = new byte[(int) (length - 1)];
+        int read = 0;
+        while (read < bytes.length) {
+            int n = in.read(bytes, read, bytes.length - read);
+            if (n < 0) {
+                throw new EOFException();
+            }
+            read += n;
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    static void writeVarLong(OutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    static long readVarLong(InputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = readByte(in);
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Varint is too long");
+    }
+
+    private static int readByte(InputStream in) throws IOException {
+        int b = in.read();
+        if (b < 0) {
+            throw new EOFException();
+        }
+        return b;
+    }
+}
@@ -0,0 +1,72 @@
+package binary;
+
+import dtos.user.FriendsDTO;
+import dtos.user.UserDTO;
+import dtos.user.UserPostsDTO;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.List;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.ext.MessageBodyWriter;
+import javax.ws.rs.ext.Provider;
+
+/**
+ * Writes lists of UserDTO, UserPostsDTO and FriendsDTO in the
+ * {@link BinaryFormat} for clients that ask for it in their Accept header.
+ *
+ * @author Frederik Braagaard
+ */
+@Provider
+@Produces(BinaryFormat.MEDIA_TYPE)
+public class BinaryMessageBodyWriter implements MessageBodyWriter<List<?>> {
+
+    private static final MediaType BINARY = MediaType.valueOf(BinaryFormat.MEDIA_TYPE);
+
+    @Override
+    public boolean isWriteable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+        return List.class.isAssignableFrom(type) && mediaType != null && BINARY.isCompatible(mediaType)
+                && !mediaType.isWildcardType() && elementType(genericType) != null;
+    }
+
+    @Override
+    public long getSize(List<?> value, Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+        return -1;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void writeTo(List<?> value, Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType,
+            MultivaluedMap<String, Object> httpHeaders, OutputStream entityStream) throws IOException {
+        OutputStream out = new BufferedOutputStream(entityStream, 8192);
+        Class<?> element = elementType(genericType);
+        if (element == UserDTO.class) {
+            BinaryFormat.writeUsers((List<UserDTO>) value, out);
+        } else if (element == UserPostsDTO.class) {
+            BinaryFormat.writePosts((List<UserPostsDTO>) value, out);
+        } else {
+            BinaryFormat.writeFriends((List<FriendsDTO>) value, out);
+        }
+        out.flush();
+    }
+
+    private static Class<?> elementType(Type genericType) {
+        if (!(genericType instanceof ParameterizedType)) {
+            return null;
+        }
+        Type[] arguments = ((ParameterizedType) genericType).getActualTypeArguments();
+        if (arguments.length != 1) {
+            return null;
+        }
+        Type element = arguments[0];
+        if (element == UserDTO.class || element == UserPostsDTO.class || element == FriendsDTO.class) {
+            return (Class<?>) element;
+        }
+        return null;
+    }
+}
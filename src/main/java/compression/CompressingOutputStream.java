@@ -0,0 +1,183 @@
+package compression;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Holds back the first {@code threshold} bytes of a response. Responses that
+ * end before that are written as they are; larger ones are compressed from
+ * the start, after {@code beforeCompressing} has had the chance to set the
+ * Content-Encoding header.
+ *
+ * @author Frederik Braagaard
+ */
+final class CompressingOutputStream extends OutputStream {
+
+    static final String GZIP = "gzip";
+    static final String DEFLATE = "deflate";
+
+    private final OutputStream target;
+    private final String encoding;
+    private final DeflaterPool pool;
+    private final Runnable beforeCompressing;
+    private byte[] buffer;
+    private int buffered;
+    private CountingOutputStream counter;
+    private Deflater deflater;
+    private DeflaterOutputStream compressed;
+    private long bytesIn;
+    private boolean finished;
+
+    CompressingOutputStream(OutputStream target, String encoding, DeflaterPool pool, int threshold, Runnable beforeCompressing) {
+        this.target = target;
+        this.encoding = encoding;
+        this.pool = pool;
+        this.buffer = new byte[Math.max(threshold, 1)];
+        this.beforeCompressing = beforeCompressing;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length) throws IOException {
+        if (compressed == null) {
+            if (buffered + length < buffer.length) {
+                System.arraycopy(bytes, offset, buffer, buffered, length);
+                buffered += length;
+                return;
+            }
+            startCompressing();
+        }
+        compressed.write(bytes, offset, length);
+        bytesIn += length;
+    }
+
+    /**
+     * Flushing is ignored while the response is still below the threshold,
+     * as the decision to compress cannot be taken back once bytes are sent.
+     */
+    @Override
+    public void flush() throws IOException {
+        if (compressed != null) {
+            compressed.flush();
+        }
+    }
+
+    /**
+     * Writes whatever is still held back and the compression trailer. The
+     * target stream is left open.
+     */
+    void finish() throws IOException {
+        if (finished) {
+            return;
+        }
+        finished = true;
+        if (compressed == null) {
+            target.write(buffer, 0, buffered);
+            buffer = null;
+            CompressionStats.belowThreshold();
+            return;
+        }
+        try {
+            compressed.finish();
+            CompressionStats.compressed(bytesIn, counter.count);
+        } finally {
+            pool.release(deflater);
+        }
+    }
+
+    /**
+     * Gives the deflater back when writing the response failed half way.
+     */
+    void abandon() {
+        if (!finished) {
+            finished = true;
+            if (deflater != null) {
+                pool.release(deflater);
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        finish();
+    }
+
+    private void startCompressing() throws IOException {
+        beforeCompressing.run();
+        counter = new CountingOutputStream(target);
+        deflater = pool.borrow();
+        compressed = GZIP.equals(encoding) ? new GzipStream(counter, deflater) : new DeflaterOutputStream(counter, deflater, 8192);
+        compressed.write(buffer, 0, buffered);
+        bytesIn = buffered;
+        buffer = null;
+    }
+
+    private static final class CountingOutputStream extends OutputStream {
+
+        private final OutputStream target;
+        private long count;
+
+        CountingOutputStream(OutputStream target) {
+            this.target = target;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            target.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            target.write(bytes, offset, length);
+            count += length;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            target.flush();
+        }
+    }
+
+    /**
+     * GZIPOutputStream cannot be given a deflater, so the gzip header and
+     * trailer are written here around a raw deflate stream.
+     */
+    private static final class GzipStream extends DeflaterOutputStream {
+
+        private static final byte[] HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, 0};
+        private final CRC32 crc = new CRC32();
+
+        GzipStream(OutputStream out, Deflater deflater) throws IOException {
+            super(out, deflater, 8192);
+            out.write(HEADER);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            super.write(bytes, offset, length);
+            crc.update(bytes, offset, length);
+        }
+
+        @Override
+        public void finish() throws IOException {
+            super.finish();
+            writeInt((int) crc.getValue());
+            writeInt((int) def.getBytesRead());
+        }
+
+        private void writeInt(int value) throws IOException {
+            out.write(value & 0xff);
+            out.write((value >> 8) & 0xff);
+            out.write((value >> 16) & 0xff);
+            out.write((value >> 24) & 0xff);
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package compression;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Locale;
+import javax.annotation.Priority;
+import javax.ws.rs.Priorities;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.ext.Provider;
+import javax.ws.rs.ext.WriterInterceptor;
+import javax.ws.rs.ext.WriterInterceptorContext;
+import utils.Settings;
+
+/**
+ * Compresses text and JSON responses with gzip or deflate, whichever the
+ * client prefers in its Accept-Encoding header. Responses smaller than
+ * {@code compression.min.bytes} are sent uncompressed, since the gzip
+ * overhead would make them larger rather than smaller.
+ *
+ * @author Frederik Braagaard
+ */
+@Provider
+@Priority(Priorities.ENTITY_CODER)
+public class CompressionInterceptor implements WriterInterceptor {
+
+    private static final boolean ENABLED = Settings.getBooleanValue("compression.enabled", true);
+    private static final int THRESHOLD = Settings.getIntValue("compression.min.bytes", 1024);
+    private static final int LEVEL = Settings.getIntValue("compression.level", 6);
+    private static final int POOL_SIZE = Runtime.getRuntime().availableProcessors() * 4;
+    private static final DeflaterPool GZIP_POOL = new DeflaterPool(LEVEL, true, POOL_SIZE);
+    private static final DeflaterPool DEFLATE_POOL = new DeflaterPool(LEVEL, false, POOL_SIZE);
+
+    @Context
+    private HttpHeaders requestHeaders;
+
+    @Override
+    public void aroundWriteTo(WriterInterceptorContext context) throws IOException {
+        MultivaluedMap<String, Object> headers = context.getHeaders();
+        if (!ENABLED || !isCompressible(context.getMediaType()) || headers.containsKey(HttpHeaders.CONTENT_ENCODING)) {
+            context.proceed();
+            return;
+        }
+        headers.add(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        String encoding = negotiate(requestHeaders == null ? null : requestHeaders.getHeaderString(HttpHeaders.ACCEPT_ENCODING));
+        if (encoding == null) {
+            context.proceed();
+            return;
+        }
+
+        OutputStream original = context.getOutputStream();
+        CompressingOutputStream compressing = new CompressingOutputStream(original, encoding,
+                CompressingOutputStream.GZIP.equals(encoding) ? GZIP_POOL : DEFLATE_POOL, THRESHOLD, () -> {
+                    headers.putSingle(HttpHeaders.CONTENT_ENCODING, encoding);
+                    headers.remove(HttpHeaders.CONTENT_LENGTH);
+                });
+        context.setOutputStream(compressing);
+        try {
+            context.proceed();
+            compressing.finish();
+        } catch (IOException | RuntimeException ex) {
+            compressing.abandon();
+            throw ex;
+        } finally {
+            context.setOutputStream(original);
+        }
+    }
+
+    /**
+     * Picks gzip or deflate from an Accept-Encoding header, preferring gzip
+     * when both are equally acceptable.
+     *
+     * @return the content coding to use, or null to send the response as is
+     */
+    static String negotiate(String acceptEncoding) {
+        if (acceptEncoding == null || acceptEncoding.isEmpty()) {
+            return null;
+        }
+        double gzip = -1, deflate = -1, any = -1;
+        for (String part : acceptEncoding.split(",")) {
+            String[] params = part.split(";");
+            String coding = params[0].trim().toLowerCase(Locale.ROOT);
+            double quality = 1;
+            for (int i = 1; i < params.length; i++) {
+                String param = params[i].trim();
+                if (param.startsWith("q=")) {
+                    try {
+                        quality = Double.parseDouble(param.substring(2).trim());
+                    } catch (NumberFormatException ex) {
+                        quality = 0;
+                    }
+                }
+            }
+            if (coding.equals("gzip") || coding.equals("x-gzip")) {
+                gzip = quality;
+            } else if (coding.equals("deflate")) {
+                deflate = quality;
+            } else if (coding.equals("*")) {
+                any = quality;
+            }
+        }
+        if (gzip < 0) {
+            gzip = any;
+        }
+        if (deflate < 0) {
+            deflate = any;
+        }
+        if (gzip > 0 && gzip >= deflate) {
+            return CompressingOutputStream.GZIP;
+        }
+        return deflate > 0 ? CompressingOutputStream.DEFLATE : null;
+    }
+
+    static boolean isCompressible(MediaType mediaType) {
+        if (mediaType == null) {
+            return false;
+        }
+        String type = mediaType.getType().toLowerCase(Locale.ROOT);
+        String subtype = mediaType.getSubtype().toLowerCase(Locale.ROOT);
+        if (subtype.equals("event-stream")) {
+            //Server-sent events are flushed one at a time and must not be held back.
+            return false;
+        }
+        return type.equals("text") || subtype.equals("json") || subtype.endsWith("+json")
+                || subtype.equals("xml") || subtype.endsWith("+xml") || subtype.equals("javascript");
+    }
+}
@@ -0,0 +1,67 @@
+package compression;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters for the responses seen by the {@link CompressionInterceptor}.
+ *
+ * @author Frederik Braagaard
+ */
+public final class CompressionStats {
+
+    private static final LongAdder COMPRESSED = new LongAdder();
+    private static final LongAdder BELOW_THRESHOLD = new LongAdder();
+    private static final LongAdder BYTES_IN = new LongAdder();
+    private static final LongAdder BYTES_OUT = new LongAdder();
+
+    private CompressionStats() {
+    }
+
+    static void compressed(long bytesIn, long bytesOut) {
+        COMPRESSED.increment();
+        BYTES_IN.add(bytesIn);
+        BYTES_OUT.add(bytesOut);
+    }
+
+    static void belowThreshold() {
+        BELOW_THRESHOLD.increment();
+    }
+
+    /**
+     * Number of responses that were compressed.
+     */
+    public static long getCompressedResponses() {
+        return COMPRESSED.sum();
+    }
+
+    /**
+     * Number of responses that could have been compressed, but were smaller
+     * than the threshold.
+     */
+    public static long getResponsesBelowThreshold() {
+        return BELOW_THRESHOLD.sum();
+    }
+
+    /**
+     * Bytes of the compressed responses before compression.
+     */
+    public static long getBytesIn() {
+        return BYTES_IN.sum();
+    }
+
+    /**
+     * Bytes of the compressed responses after compression.
+     */
+    public static long getBytesOut() {
+        return BYTES_OUT.sum();
+    }
+
+    /**
+     * Compressed size over uncompressed size of all compressed responses, or
+     * 1 if nothing has been compressed yet.
+     */
+    public static double getRatio() {
+        long in = BYTES_IN.sum();
+        return in == 0 ? 1 : (double) BYTES_OUT.sum() / in;
+    }
+}
@@ -0,0 +1,47 @@
+package compression;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.Deflater;
+
+/**
+ * A bounded pool of {@link Deflater}s. A deflater holds a sizeable native
+ * buffer that is only freed by {@link Deflater#end()} or finalization, so
+ * reusing them keeps that cost off every response.
+ *
+ * @author Frederik Braagaard
+ */
+final class DeflaterPool {
+
+    private final int level;
+    private final boolean nowrap;
+    private final BlockingQueue<Deflater> idle;
+
+    /**
+     * @param level compression level, 1 to 9
+     * @param nowrap true for raw deflate data as used by gzip, false for the
+     * zlib format of the "deflate" content coding
+     * @param size the most idle deflaters kept
+     */
+    DeflaterPool(int level, boolean nowrap, int size) {
+        this.level = level;
+        this.nowrap = nowrap;
+        this.idle = new ArrayBlockingQueue<>(size);
+    }
+
+    Deflater borrow() {
+        Deflater deflater = idle.poll();
+        return deflater != null ? deflater : new Deflater(level, nowrap);
+    }
+
+    void release(Deflater deflater) {
+        deflater.reset();
+        if (!idle.offer(deflater)) {
+            deflater.end();
+        }
+    }
+
+    int idle() {
+        return idle.size();
+    }
+}
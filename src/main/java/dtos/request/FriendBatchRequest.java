@@ -0,0 +1,59 @@
+package dtos.request;
+
+import com.google.gson.annotations.SerializedName;
+import java.util.List;
+import json.JsonRequest;
+
+/**
+ * Body of /friend/batch, a list of friend operations carried out together.
+ *
+ * @author Frederik Braagaard
+ */
+@JsonRequest(maxBytes = 16384)
+public class FriendBatchRequest {
+
+    public static final String ACCEPT = "accept";
+    public static final String DECLINE = "decline";
+    public static final String REMOVE = "remove";
+
+    private List<Operation> operations;
+
+    public FriendBatchRequest() {
+    }
+
+    public FriendBatchRequest(List<Operation> operations) {
+        this.operations = operations;
+    }
+
+    public List<Operation> getOperations() {
+        return operations;
+    }
+
+    /**
+     * Accepting or declining the friend request of another user, or removing
+     * them as a friend.
+     */
+    @JsonRequest
+    public static class Operation {
+
+        private String op;
+        @SerializedName("request_userid")
+        private int requestUserID;
+
+        public Operation() {
+        }
+
+        public Operation(String op, int requestUserID) {
+            this.op = op;
+            this.requestUserID = requestUserID;
+        }
+
+        public String getOp() {
+            return op;
+        }
+
+        public int getRequestUserID() {
+            return requestUserID;
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package dtos.request;
+
+import com.google.gson.annotations.SerializedName;
+import json.JsonRequest;
+
+/**
+ * Body of a new friend request, naming the user who made it.
+ *
+ * @author Frederik Braagaard
+ */
+@JsonRequest(maxBytes = 256)
+public class FriendRequestRequest {
+
+    @SerializedName("request_username")
+    private int requestUsernameID;
+
+    public FriendRequestRequest() {
+    }
+
+    public int getRequestUsernameID() {
+        return requestUsernameID;
+    }
+
+}
@@ -0,0 +1,27 @@
+package dtos.request;
+
+import json.JsonRequest;
+
+/**
+ * Body of the user and admin login requests.
+ *
+ * @author Frederik Braagaard
+ */
+@JsonRequest(maxBytes = 1024)
+public class LoginRequest {
+
+    private String username;
+    private String password;
+
+    public LoginRequest() {
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public String getPassword() {
+        return password;
+    }
+
+}
@@ -0,0 +1,32 @@
+package dtos.request;
+
+import json.JsonRequest;
+
+/**
+ * Body of the password reset request.
+ *
+ * @author Frederik Braagaard
+ */
+@JsonRequest(maxBytes = 1024)
+public class PasswordResetRequest {
+
+    private String username;
+    private String secret;
+    private String newpassword;
+
+    public PasswordResetRequest() {
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public String getSecret() {
+        return secret;
+    }
+
+    public String getNewPassword() {
+        return newpassword;
+    }
+
+}
@@ -0,0 +1,22 @@
+package dtos.request;
+
+import json.JsonRequest;
+
+/**
+ * Body of a new post.
+ *
+ * @author Frederik Braagaard
+ */
+@JsonRequest(maxBytes = 16 * 1024)
+public class PostRequest {
+
+    private String post;
+
+    public PostRequest() {
+    }
+
+    public String getPost() {
+        return post;
+    }
+
+}
@@ -0,0 +1,24 @@
+package dtos.request;
+
+import com.google.gson.annotations.SerializedName;
+import json.JsonRequest;
+
+/**
+ * Body of a user search.
+ *
+ * @author Frederik Braagaard
+ */
+@JsonRequest(maxBytes = 1024)
+public class SearchRequest {
+
+    @SerializedName("search_name")
+    private String searchName;
+
+    public SearchRequest() {
+    }
+
+    public String getSearchName() {
+        return searchName;
+    }
+
+}
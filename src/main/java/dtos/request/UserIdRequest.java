@@ -0,0 +1,25 @@
+package dtos.request;
+
+import com.google.gson.annotations.SerializedName;
+import json.JsonRequest;
+
+/**
+ * Body of the requests that act on another user, e.g. accepting their
+ * friend request or removing them as a friend.
+ *
+ * @author Frederik Braagaard
+ */
+@JsonRequest(maxBytes = 256)
+public class UserIdRequest {
+
+    @SerializedName("request_userid")
+    private int requestUserID;
+
+    public UserIdRequest() {
+    }
+
+    public int getRequestUserID() {
+        return requestUserID;
+    }
+
+}
@@ -0,0 +1,80 @@
+package dtos.user;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The outcome of a /friend/batch call, one result per operation in the order
+ * they were sent.
+ *
+ * @author Frederik Braagaard
+ */
+public class BatchResultDTO {
+
+    private int succeeded;
+    private int failed;
+    private List<ItemResult> results = new ArrayList();
+
+    public BatchResultDTO() {
+    }
+
+    public void addResult(String op, int requestUserID, boolean success, String message) {
+        results.add(new ItemResult(op, requestUserID, success, message));
+        if (success) {
+            succeeded++;
+        } else {
+            failed++;
+        }
+    }
+
+    public int getSucceeded() {
+        return succeeded;
+    }
+
+    public int getFailed() {
+        return failed;
+    }
+
+    public List<ItemResult> getResults() {
+        return results;
+    }
+
+    public static class ItemResult {
+
+        private String op;
+        private int requestUserID;
+        private boolean success;
+        private String message;
+
+        public ItemResult() {
+        }
+
+        public ItemResult(String op, int requestUserID, boolean success, String message) {
+            this.op = op;
+            this.requestUserID = requestUserID;
+            this.success = success;
+            this.message = message;
+        }
+
+        public String getOp() {
+            return op;
+        }
+
+        public int getRequestUserID() {
+            return requestUserID;
+        }
+
+        public boolean isSuccess() {
+            return success;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "BatchResultDTO{" + "succeeded=" + succeeded + ", failed=" + failed + ", results=" + results.size() + '}';
+    }
+}
@@ -0,0 +1,61 @@
+package dtos.user;
+
+/**
+ *
+ * @author Frederik Braagaard
+ */
+public class FriendSuggestionDTO {
+
+    int friendID;
+    String fullName;
+    String picture;
+    int mutualFriends;
+
+    public FriendSuggestionDTO(int friendID, String fullName, String picture, int mutualFriends) {
+        this.friendID = friendID;
+        this.fullName = fullName;
+        this.picture = picture;
+        this.mutualFriends = mutualFriends;
+    }
+
+    public FriendSuggestionDTO() {
+    }
+
+    public int getFriendID() {
+        return friendID;
+    }
+
+    public void setFriendID(int friendID) {
+        this.friendID = friendID;
+    }
+
+    public String getFullName() {
+        return fullName;
+    }
+
+    public void setFullName(String fullName) {
+        this.fullName = fullName;
+    }
+
+    public String getPicture() {
+        return picture;
+    }
+
+    public void setPicture(String picture) {
+        this.picture = picture;
+    }
+
+    public int getMutualFriends() {
+        return mutualFriends;
+    }
+
+    public void setMutualFriends(int mutualFriends) {
+        this.mutualFriends = mutualFriends;
+    }
+
+    @Override
+    public String toString() {
+        return "FriendSuggestionDTO{" + "friendID=" + friendID + ", fullName=" + fullName + ", picture=" + picture + ", mutualFriends=" + mutualFriends + '}';
+    }
+
+}
@@ -0,0 +1,60 @@
+package dtos.user;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Everything the home screen shows, loaded in one request. Sections the
+ * client left out of {@code ?fields=} are null and not sent.
+ *
+ * @author Frederik Braagaard
+ */
+public class HomeDTO {
+
+    public static final String PROFILE = "profile";
+    public static final String FEED = "feed";
+    public static final String FRIENDS = "friends";
+    public static final String REQUESTS = "requests";
+    public static final Set<String> ALL_FIELDS = Collections.unmodifiableSet(
+            new LinkedHashSet<>(Arrays.asList(PROFILE, FEED, FRIENDS, REQUESTS)));
+
+    FriendsDTO profile;
+    List<UserDTO> feed;
+    List<FriendsDTO> friends;
+    List<FriendsDTO> friendRequests;
+
+    public HomeDTO(FriendsDTO profile, List<UserDTO> feed, List<FriendsDTO> friends, List<FriendsDTO> friendRequests) {
+        this.profile = profile;
+        this.feed = feed;
+        this.friends = friends;
+        this.friendRequests = friendRequests;
+    }
+
+    public HomeDTO() {
+    }
+
+    public FriendsDTO getProfile() {
+        return profile;
+    }
+
+    public List<UserDTO> getFeed() {
+        return feed;
+    }
+
+    public List<FriendsDTO> getFriends() {
+        return friends;
+    }
+
+    public List<FriendsDTO> getFriendRequests() {
+        return friendRequests;
+    }
+
+    @Override
+    public String toString() {
+        return "HomeDTO{" + "profile=" + profile + ", feed=" + feed + ", friends=" + friends + ", friendRequests=" + friendRequests + '}';
+    }
+
+}
@@ -0,0 +1,41 @@
+package dtos.user;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ *
+ * @author Frederik Braagaard
+ */
+public class MutualFriendsDTO {
+
+    int count;
+    List<FriendsDTO> mutualFriends = new ArrayList();
+
+    public MutualFriendsDTO(List<FriendsDTO> mutualFriends) {
+        this.count = mutualFriends.size();
+        this.mutualFriends = mutualFriends;
+    }
+
+    public MutualFriendsDTO() {
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public List<FriendsDTO> getMutualFriends() {
+        return mutualFriends;
+    }
+
+    public void setMutualFriends(List<FriendsDTO> mutualFriends) {
+        this.count = mutualFriends.size();
+        this.mutualFriends = mutualFriends;
+    }
+
+    @Override
+    public String toString() {
+        return "MutualFriendsDTO{" + "count=" + count + ", mutualFriends=" + mutualFriends + '}';
+    }
+
+}
@@ -1,31 +1,40 @@
 package entities;
 
 import java.io.Serializable;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Objects;
 import javax.persistence.Column;
 import javax.persistence.Entity;
-import javax.persistence.GeneratedValue;
-import javax.persistence.GenerationType;
 import javax.persistence.Id;
-import javax.persistence.ManyToMany;
+import javax.persistence.IdClass;
+import javax.persistence.Index;
+import javax.persistence.JoinColumn;
+import javax.persistence.ManyToOne;
 import javax.persistence.NamedQuery;
 import javax.persistence.Table;
 
 /**
+ * One direction of a friendship, stored as a row of the user_friends edge
+ * table. The primary key (user_id, friend_id) makes every edge unique and
+ * lets a user's friends be read with a single index range, and the reverse
+ * index (friend_id, user_id) finds the users that have someone as a friend.
+ * A friendship is kept as two rows, one for each user.
  *
  * @author Frederik Braagaard
  */
 @Entity
+@IdClass(Friends.FriendsId.class)
 @NamedQuery(name = "Friends.deleteAllRows", query = "DELETE from Friends")
-@Table(name = "friends")
+@Table(name = "user_friends", indexes = {
+    @Index(name = "user_friends_reverse", columnList = "friend_id, user_id")})
 public class Friends implements Serializable {
 
     private static final long serialVersionUID = 1L;
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
-    private Long id;
-    @Column(name = "user_friend")
+    @ManyToOne
+    @JoinColumn(name = "user_id", referencedColumnName = "user_id")
+    private User owner;
+    @Id
+    @Column(name = "friend_id")
     private int friendUsernameID;
 
     public Friends() {
@@ -35,12 +44,17 @@ public class Friends implements Serializable {
         this.friendUsernameID = friendUsernameID;
     }
 
-    public Long getId() {
-        return id;
+    public Friends(User owner, int friendUsernameID) {
+        this.owner = owner;
+        this.friendUsernameID = friendUsernameID;
     }
 
-    public void setId(Long id) {
-        this.id = id;
+    public User getOwner() {
+        return owner;
+    }
+
+    public void setOwner(User owner) {
+        this.owner = owner;
     }
 
     public int getFriendUsernameID() {
@@ -53,9 +67,42 @@ public class Friends implements Serializable {
 
     @Override
     public String toString() {
-        return "Friends{" + "id=" + id + ", friendUsernameID=" + friendUsernameID + '}';
+        return "Friends{" + "owner=" + (owner == null ? null : owner.getId()) + ", friendUsernameID=" + friendUsernameID + '}';
     }
 
-    
+    /**
+     * Primary key of a friendship row.
+     */
+    public static class FriendsId implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+        private int owner;
+        private int friendUsernameID;
+
+        public FriendsId() {
+        }
+
+        public FriendsId(int owner, int friendUsernameID) {
+            this.owner = owner;
+            this.friendUsernameID = friendUsernameID;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof FriendsId)) {
+                return false;
+            }
+            FriendsId other = (FriendsId) o;
+            return owner == other.owner && friendUsernameID == other.friendUsernameID;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(owner, friendUsernameID);
+        }
+    }
 
 }
@@ -3,6 +3,7 @@ package entities;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
+import jfr.PasswordVerificationEvent;
 import javax.persistence.Basic;
 import javax.persistence.CascadeType;
 import javax.persistence.Column;
@@ -15,6 +16,7 @@ import javax.persistence.JoinTable;
 import javax.persistence.ManyToMany;
 import javax.persistence.ManyToOne;
 import javax.persistence.NamedQuery;
+import javax.persistence.OneToMany;
 import javax.persistence.Table;
 import javax.validation.constraints.NotNull;
 import javax.validation.constraints.Size;
@@ -57,13 +59,13 @@ public class User implements Serializable {
 //    @JoinTable(name = "user_friends", joinColumns = {
 //        @JoinColumn(name = "user_id", referencedColumnName = "user_id")}, inverseJoinColumns = {
 //        @JoinColumn(name = "user_friend", referencedColumnName = "user_friend")})
-    @ManyToMany(cascade = {CascadeType.PERSIST})
+    @OneToMany(mappedBy = "owner", cascade = {CascadeType.PERSIST}, orphanRemoval = true)
     private List<Friends> friendList = new ArrayList();
 //    @JoinTable(name = "user_posts", joinColumns = {
 //        @JoinColumn(name = "user_id", referencedColumnName = "user_id")}, inverseJoinColumns = {
 //        @JoinColumn(name = "user_post", referencedColumnName = "user_post"),
 //        @JoinColumn(name = "post_date", referencedColumnName = "post_date")})
-    @ManyToMany(cascade = {CascadeType.PERSIST})
+    @OneToMany(mappedBy = "owner", cascade = {CascadeType.PERSIST})
     private List<UserPosts> userPosts = new ArrayList();
 //    @JoinTable(name = "user_friend_requests", joinColumns = {
 //        @JoinColumn(name = "user_id", referencedColumnName = "user_id")}, inverseJoinColumns = {
@@ -106,6 +108,7 @@ public class User implements Serializable {
     }
 
     public void addUserPost(UserPosts userPost) {
+        userPost.setOwner(this);
         this.userPosts.add(userPost);
     }
 
@@ -114,6 +117,7 @@ public class User implements Serializable {
     }
 
     public void addToFriendList(Friends user) {
+        user.setOwner(this);
         this.friendList.add(user);
     }
 
@@ -122,7 +126,12 @@ public class User implements Serializable {
     }
 
     public boolean verifyPassword(String pw) {
-        return BCrypt.checkpw(pw, this.userPass);
+        PasswordVerificationEvent event = new PasswordVerificationEvent();
+        event.begin();
+        boolean verified = BCrypt.checkpw(pw, this.userPass);
+        event.setVerified(verified);
+        event.commit();
+        return verified;
     }
 
     public boolean verifySecretAnswer(String secretAnswer) {
@@ -6,18 +6,27 @@ import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
+import javax.persistence.FetchType;
 import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.JoinColumn;
+import javax.persistence.ManyToOne;
 import javax.persistence.NamedQuery;
 import javax.persistence.Table;
 import javax.persistence.Temporal;
 
 /**
+ * A post written by a user. The owner is a foreign key on the posts table,
+ * and the (user_id, post_date, ID) index lets a user's posts be read in date
+ * order with a single index range scan. Existing databases are migrated with
+ * {@link utils.PostOwnerMigration}.
  *
  * @author Frederik Braagaard
  */
 @Entity
 @NamedQuery(name = "UserPosts.deleteAllRows", query = "DELETE from UserPosts")
-@Table(name = "posts")
+@Table(name = "posts", indexes = {
+    @Index(name = "posts_owner_date", columnList = "user_id, post_date, ID")})
 public class UserPosts implements Serializable {
 
     private static final long serialVersionUID = 1L;
@@ -29,6 +38,9 @@ public class UserPosts implements Serializable {
     @Column(name = "post_date")
     @Temporal(javax.persistence.TemporalType.TIMESTAMP)
     private Date postDate;
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "user_id", referencedColumnName = "user_id")
+    private User owner;
 
     public UserPosts(String message) {
         this.message = message;
@@ -54,6 +66,14 @@ public class UserPosts implements Serializable {
         this.postDate = postDate;
     }
 
+    public User getOwner() {
+        return owner;
+    }
+
+    public void setOwner(User owner) {
+        this.owner = owner;
+    }
+
     public Long getId() {
         return id;
     }
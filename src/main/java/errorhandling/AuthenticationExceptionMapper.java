@@ -1,7 +1,5 @@
 package errorhandling;
 
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.servlet.ServletContext;
@@ -15,7 +13,6 @@ import javax.ws.rs.ext.Provider;
 @Provider
 public class AuthenticationExceptionMapper implements ExceptionMapper<AuthenticationException> {
 
-    private static final Gson gson = new GsonBuilder().setPrettyPrinting().create();
     @Context
     ServletContext context;
 
@@ -23,7 +20,7 @@ public class AuthenticationExceptionMapper implements ExceptionMapper<Authentica
     public Response toResponse(AuthenticationException ex) {
         Logger.getLogger(GenericExceptionMapper.class.getName()).log(Level.SEVERE, null, ex);
         ExceptionDTO err = new ExceptionDTO(403, ex.getMessage());
-        return Response.status(403).entity(gson.toJson(err)).type(MediaType.APPLICATION_JSON).build();
+        return Response.status(403).entity(err).type(MediaType.APPLICATION_JSON).build();
               
     }
 
@@ -0,0 +1,40 @@
+package events;
+
+/**
+ * Something that happened to a user, with the DTO the client is sent.
+ *
+ * @author Frederik Braagaard
+ */
+public class Event {
+
+    private final long id;
+    private final EventType type;
+    private final Object data;
+
+    public Event(long id, EventType type, Object data) {
+        this.id = id;
+        this.type = type;
+        this.data = data;
+    }
+
+    /**
+     * Increases with every event published, so a client can tell from the
+     * ids whether it has missed any.
+     */
+    public long getId() {
+        return id;
+    }
+
+    public EventType getType() {
+        return type;
+    }
+
+    public Object getData() {
+        return data;
+    }
+
+    @Override
+    public String toString() {
+        return "Event{" + "id=" + id + ", type=" + type + ", data=" + data + '}';
+    }
+}
@@ -0,0 +1,326 @@
+package events;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import utils.Settings;
+
+/**
+ * Passes events from the facade to the users subscribed to them, within this
+ * server.
+ * <p>
+ * Publishing never waits for a subscriber. Every subscription has its own
+ * queue of events.buffer.size events, which a small pool of dispatch threads
+ * hands to its listener in order. A subscriber that falls so far behind that
+ * its queue is full is evicted and its listener closed, so one slow client
+ * cannot hold back the others or fill the memory. The dispatch threads never
+ * wait for a send either: the next event is handed over when the listener's
+ * send completes, and a send still not done after events.send.timeout.seconds,
+ * e.g. to a client whose connection has stalled, evicts the subscriber as
+ * well. A user may have at most
+ * events.max.subscriptions.per.user subscriptions, the oldest is closed when
+ * another one is made.
+ * </p>
+ *
+ * @author Frederik Braagaard
+ */
+public class EventBus {
+
+    private static final Logger LOG = Logger.getLogger(EventBus.class.getName());
+    private static EventBus instance;
+
+    private final Map<Integer, Set<Subscription>> subscriptions = new ConcurrentHashMap<>();
+    private final AtomicLong nextID = new AtomicLong();
+    private final AtomicInteger subscriptionCount = new AtomicInteger();
+    private final ExecutorService dispatcher;
+    //Sends the heartbeats and ends the sends that take too long.
+    private final ScheduledExecutorService timer;
+    private final int bufferSize;
+    private final int maxPerUser;
+    private final long sendTimeoutMillis;
+
+    /**
+     * Receives the events of one subscription, one at a time and in the
+     * order they were published.
+     */
+    public interface Listener {
+
+        /**
+         * Sends an event. The next one is handed over once the returned stage
+         * completes. Throwing, or failing the stage, closes the subscription,
+         * which is how a listener reports that its client has gone away.
+         */
+        CompletionStage<?> onEvent(Event event) throws Exception;
+
+        /**
+         * Called once when the subscription ends for any reason.
+         *
+         * @param evicted true if the subscriber could not keep up or was
+         * replaced by a newer subscription
+         */
+        void onClose(boolean evicted);
+    }
+
+    /**
+     * Creates a bus with its own dispatch threads.
+     *
+     * @param bufferSize the events a subscriber may be behind before it is
+     * evicted
+     * @param maxPerUser the subscriptions a user may have at once
+     * @param heartbeatSeconds how often a heartbeat is sent, 0 for never
+     * @param sendTimeoutMillis how long a send may take before the
+     * subscriber is evicted
+     */
+    EventBus(int dispatchThreads, int bufferSize, int maxPerUser, int heartbeatSeconds, long sendTimeoutMillis) {
+        this.bufferSize = bufferSize;
+        this.maxPerUser = maxPerUser;
+        this.sendTimeoutMillis = sendTimeoutMillis;
+        dispatcher = Executors.newFixedThreadPool(dispatchThreads, threadFactory("event-dispatch-"));
+        timer = Executors.newSingleThreadScheduledExecutor(threadFactory("event-timer-"));
+        if (heartbeatSeconds > 0) {
+            timer.scheduleAtFixedRate(this::sendHeartbeat, heartbeatSeconds, heartbeatSeconds, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     *
+     * @return the bus of this server, configured from config.properties.
+     */
+    public static synchronized EventBus getEventBus() {
+        if (instance == null) {
+            instance = new EventBus(Settings.getIntValue("events.dispatch.threads", 4),
+                    Settings.getIntValue("events.buffer.size", 64),
+                    Settings.getIntValue("events.max.subscriptions.per.user", 5),
+                    Settings.getIntValue("events.heartbeat.seconds", 25),
+                    TimeUnit.SECONDS.toMillis(Settings.getIntValue("events.send.timeout.seconds", 10)));
+        }
+        return instance;
+    }
+
+    /**
+     * Starts sending the events published to a user to the listener.
+     */
+    public Subscription subscribe(int userID, Listener listener) {
+        Subscription subscription = new Subscription(userID, listener, bufferSize);
+        //Added inside compute, so remove() can't drop the set from the map in between and orphan it.
+        Set<Subscription> userSubscriptions = subscriptions.compute(userID, (id, set) -> {
+            if (set == null) {
+                set = new CopyOnWriteArraySet<>();
+            }
+            set.add(subscription);
+            return set;
+        });
+        subscriptionCount.incrementAndGet();
+        //The set keeps the order they were added in, so the first one is the oldest.
+        while (userSubscriptions.size() > maxPerUser) {
+            userSubscriptions.iterator().next().close(true);
+        }
+        return subscription;
+    }
+
+    /**
+     * Publishes an event to every subscription of the given users.
+     */
+    public void publish(Collection<Integer> userIDs, EventType type, Object data) {
+        if (subscriptionCount.get() == 0) {
+            return;
+        }
+        Event event = new Event(nextID.incrementAndGet(), type, data);
+        for (Integer userID : userIDs) {
+            Set<Subscription> userSubscriptions = subscriptions.get(userID);
+            if (userSubscriptions != null) {
+                for (Subscription subscription : userSubscriptions) {
+                    subscription.offer(event);
+                }
+            }
+        }
+    }
+
+    /**
+     * Publishes an event to every subscription of one user.
+     */
+    public void publish(int userID, EventType type, Object data) {
+        if (subscriptionCount.get() > 0) {
+            publish(Collections.singleton(userID), type, data);
+        }
+    }
+
+    /**
+     * Lets the facade skip looking up who to send an event to when nobody is
+     * listening.
+     */
+    public boolean hasSubscribers() {
+        return subscriptionCount.get() > 0;
+    }
+
+    public int getSubscriptionCount() {
+        return subscriptionCount.get();
+    }
+
+    private void sendHeartbeat() {
+        Event event = new Event(nextID.get(), EventType.HEARTBEAT, null);
+        for (Set<Subscription> userSubscriptions : subscriptions.values()) {
+            for (Subscription subscription : userSubscriptions) {
+                subscription.offer(event);
+            }
+        }
+    }
+
+    private void remove(Subscription subscription) {
+        Set<Subscription> userSubscriptions = subscriptions.get(subscription.userID);
+        if (userSubscriptions != null && userSubscriptions.remove(subscription)) {
+            subscriptionCount.decrementAndGet();
+            subscriptions.computeIfPresent(subscription.userID, (id, set) -> set.isEmpty() ? null : set);
+        }
+    }
+
+    /**
+     * One subscriber's queue of events. Only one dispatch thread drains it at
+     * a time, so the listener sees the events in order.
+     */
+    public final class Subscription {
+
+        private final int userID;
+        private final Listener listener;
+        private final BlockingQueue<Event> queue;
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        private Subscription(int userID, Listener listener, int bufferSize) {
+            this.userID = userID;
+            this.listener = listener;
+            this.queue = new ArrayBlockingQueue<>(bufferSize);
+        }
+
+        public int getUserID() {
+            return userID;
+        }
+
+        public boolean isClosed() {
+            return closed.get();
+        }
+
+        /**
+         * Ends the subscription, e.g. when the client disconnects.
+         */
+        public void close() {
+            close(false);
+        }
+
+        private void offer(Event event) {
+            if (closed.get()) {
+                return;
+            }
+            if (!queue.offer(event)) {
+                LOG.log(Level.INFO, "Evicting a subscriber of user {0}, it is {1} events behind",
+                        new Object[]{userID, queue.size()});
+                close(true);
+                return;
+            }
+            schedule();
+        }
+
+        private void schedule() {
+            if (scheduled.compareAndSet(false, true)) {
+                try {
+                    dispatcher.execute(this::drain);
+                } catch (RuntimeException ex) {
+                    scheduled.set(false);
+                    close(true);
+                }
+            }
+        }
+
+        private void drain() {
+            Event event;
+            while (!closed.get() && (event = queue.poll()) != null) {
+                CompletableFuture<?> sent;
+                try {
+                    sent = listener.onEvent(event).toCompletableFuture();
+                } catch (Exception ex) {
+                    close(false);
+                    break;
+                }
+                if (!sent.isDone()) {
+                    //Carried on once the send is done, the dispatch thread serves the others meanwhile.
+                    ScheduledFuture<?> timeout = timer.schedule(() -> {
+                        if (!sent.isDone()) {
+                            LOG.log(Level.INFO, "Evicting a subscriber of user {0}, a send took longer than {1} ms",
+                                    new Object[]{userID, sendTimeoutMillis});
+                            close(true);
+                        }
+                    }, sendTimeoutMillis, TimeUnit.MILLISECONDS);
+                    sent.whenComplete((value, error) -> {
+                        timeout.cancel(false);
+                        if (error != null) {
+                            close(false);
+                        } else {
+                            resume();
+                        }
+                    });
+                    return;
+                }
+                if (sent.isCompletedExceptionally()) {
+                    close(false);
+                }
+            }
+            scheduled.set(false);
+            //An event offered after the loop ended but before the flag was cleared.
+            if (!closed.get() && !queue.isEmpty()) {
+                schedule();
+            }
+        }
+
+        /**
+         * Drains again after a send that completed later, still holding the
+         * scheduled flag.
+         */
+        private void resume() {
+            try {
+                dispatcher.execute(this::drain);
+            } catch (RuntimeException ex) {
+                scheduled.set(false);
+                close(true);
+            }
+        }
+
+        private void close(boolean evicted) {
+            if (closed.compareAndSet(false, true)) {
+                remove(this);
+                queue.clear();
+                try {
+                    listener.onClose(evicted);
+                } catch (RuntimeException ex) {
+                    LOG.log(Level.WARNING, "Closing a subscriber failed", ex);
+                }
+            }
+        }
+    }
+
+    private static ThreadFactory threadFactory(String prefix) {
+        AtomicInteger count = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,29 @@
+package events;
+
+/**
+ * The kinds of events a user can subscribe to. The name is the SSE event
+ * name the client listens for.
+ *
+ * @author Frederik Braagaard
+ */
+public enum EventType {
+
+    POST("post"),
+    FRIEND_REQUEST("friend-request"),
+    FRIEND_ACCEPTED("friend-accepted"),
+    /**
+     * Sent to every subscriber now and then, so connections that have gone
+     * away are noticed and proxies do not close idle ones.
+     */
+    HEARTBEAT("heartbeat");
+
+    private final String eventName;
+
+    EventType(String eventName) {
+        this.eventName = eventName;
+    }
+
+    public String getEventName() {
+        return eventName;
+    }
+}
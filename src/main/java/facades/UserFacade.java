@@ -1,6 +1,10 @@
 package facades;
 
+import dtos.request.FriendBatchRequest;
+import dtos.user.BatchResultDTO;
+import dtos.user.FriendSuggestionDTO;
 import dtos.user.FriendsDTO;
+import dtos.user.MutualFriendsDTO;
 import dtos.user.UserDTO;
 import dtos.user.UserPostsDTO;
 import entities.FriendRequest;
@@ -15,15 +19,33 @@ import errorhandling.AuthenticationException;
 import errorhandling.NoFriendRequestsException;
 import errorhandling.NoFriendsException;
 import errorhandling.NotFoundException;
+import events.EventBus;
+import events.EventType;
+import graph.FriendGraph;
+import graph.FriendGraphStore;
+import java.io.IOException;
+import java.nio.file.Paths;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import tracing.Span;
+import tracing.Tracer;
+import utils.ConnectionPool;
 import utils.EMF_Creator;
 import utils.EMF_Creator.DbSelector;
+import utils.Settings;
 
 /**
  *
@@ -39,24 +61,39 @@ public class UserFacade {
      * @author Frederik Braagaard
      */
     public static Boolean serverStatus = true;
-    private static Connection connection;
+    private static volatile FriendGraph friendGraph;
+    //Held while the graph is read from the database, so not a monitor that would pin a virtual thread.
+    private static final ReentrantLock FRIEND_GRAPH_LOCK = new ReentrantLock();
+    //Guards pendingFriendChanges and the moment the loaded graph is published.
+    private static final ReentrantLock FRIEND_CHANGES_LOCK = new ReentrantLock();
+    //The friendships changed while the graph is loading, null when no load is running.
+    private static List<int[]> pendingFriendChanges;
+    public static final int MAX_FRIEND_DISTANCE = 3;
 
     private UserFacade() {
     }
 
     /**
+     * Borrows a connection from the pool of the current database. Close it
+     * when done, which hands it back to the pool.
      *
      * @author Frederik Braagaard
      */
-    public static Connection createConnection() throws SQLException, ClassNotFoundException {
-        DbSelector connectionStatus;
+    public static Connection createConnection() throws SQLException {
+        return ConnectionPool.getConnection(getDbSelector());
+    }
+
+    /**
+     * The database the facade runs its queries on.
+     *
+     * @author Frederik Braagaard
+     */
+    public static DbSelector getDbSelector() {
         if (serverStatus == true) {
-            connectionStatus = EMF_Creator.DbSelector.DEV;
+            return EMF_Creator.DbSelector.DEV;
         } else {
-            connectionStatus = EMF_Creator.DbSelector.TEST;
+            return EMF_Creator.DbSelector.TEST;
         }
-        connection = EMF_Creator.getConnection(connectionStatus, EMF_Creator.Strategy.CREATE);
-        return connection;
     }
 
     /**
@@ -68,10 +105,184 @@ public class UserFacade {
         if (instance == null) {
             emf = _emf;
             instance = new UserFacade();
+            if (snapshotDirectory() != null) {
+                //Every friendship changed from now on has to reach the change log.
+                try {
+                    instance.getFriendGraph();
+                } catch (Exception ex) {
+                    Logger.getLogger(UserFacade.class.getName()).log(Level.SEVERE, "Friend graph could not be opened at start", ex);
+                }
+            }
         }
         return instance;
     }
 
+    /**
+     * Returns the in-memory friend graph, loading it from the user_friends
+     * table the first time it is needed.
+     *
+     * @author Frederik Braagaard
+     */
+    public FriendGraph getFriendGraph() throws SQLException, ClassNotFoundException {
+        FriendGraph graph = friendGraph;
+        if (graph == null) {
+            FRIEND_GRAPH_LOCK.lock();
+            try {
+                graph = friendGraph;
+                if (graph == null) {
+                    graph = publishFriendGraph(openFriendGraph());
+                }
+            } finally {
+                FRIEND_GRAPH_LOCK.unlock();
+            }
+        }
+        return graph;
+    }
+
+    /**
+     * Starts recording the friendships changed from now on, since the load
+     * may read the friends table before or after they are committed.
+     */
+    private FriendGraph openFriendGraph() throws SQLException, ClassNotFoundException {
+        FRIEND_CHANGES_LOCK.lock();
+        try {
+            pendingFriendChanges = new ArrayList<>();
+        } finally {
+            FRIEND_CHANGES_LOCK.unlock();
+        }
+        try {
+            return openFriendGraphStore();
+        } catch (SQLException | ClassNotFoundException | RuntimeException ex) {
+            FRIEND_CHANGES_LOCK.lock();
+            try {
+                pendingFriendChanges = null;
+            } finally {
+                FRIEND_CHANGES_LOCK.unlock();
+            }
+            throw ex;
+        }
+    }
+
+    /**
+     * Replays the changes recorded during the load, in the order they were
+     * made, and only then makes the graph visible. Adding or removing a
+     * friendship the load already saw changes nothing.
+     */
+    private static FriendGraph publishFriendGraph(FriendGraph graph) {
+        FRIEND_CHANGES_LOCK.lock();
+        try {
+            for (int[] change : pendingFriendChanges) {
+                applyFriendshipChange(graph, change[0], change[1], change[2] == 1);
+            }
+            pendingFriendChanges = null;
+            friendGraph = graph;
+        } finally {
+            FRIEND_CHANGES_LOCK.unlock();
+        }
+        return graph;
+    }
+
+    /**
+     * Brings the friend graph up to date with a friendship committed to the
+     * database. Nothing is kept when the graph hasn't been loaded yet, as the
+     * load will read it from the table.
+     */
+    private static void friendshipChanged(int user, int friend, boolean added) {
+        FriendGraph graph = friendGraph;
+        if (graph == null) {
+            FRIEND_CHANGES_LOCK.lock();
+            try {
+                graph = friendGraph;
+                if (graph == null) {
+                    if (pendingFriendChanges != null) {
+                        pendingFriendChanges.add(new int[]{user, friend, added ? 1 : 0});
+                    } else {
+                        discardFriendGraphSnapshot();
+                    }
+                    return;
+                }
+            } finally {
+                FRIEND_CHANGES_LOCK.unlock();
+            }
+        }
+        applyFriendshipChange(graph, user, friend, added);
+    }
+
+    private static String snapshotDirectory() {
+        String directory = Settings.getPropertyValue("graph.snapshot.dir");
+        return directory == null || directory.isEmpty() ? null : directory;
+    }
+
+    /**
+     * The snapshot misses a friendship changed outside its change log, so the
+     * next open has to read the friends table instead.
+     */
+    private static void discardFriendGraphSnapshot() {
+        String directory = snapshotDirectory();
+        if (directory != null) {
+            try {
+                FriendGraphStore.discard(Paths.get(directory));
+            } catch (IOException ex) {
+                Logger.getLogger(UserFacade.class.getName()).log(Level.SEVERE, "Friend graph snapshot could not be discarded", ex);
+            }
+        }
+    }
+
+    private static void applyFriendshipChange(FriendGraph graph, int user, int friend, boolean added) {
+        if (added) {
+            graph.addFriendship(user, friend);
+        } else {
+            graph.removeFriendship(user, friend);
+        }
+    }
+
+    /**
+     * Maps the friend graph snapshot when "graph.snapshot.dir" is set, so a
+     * restart doesn't have to read the whole friends table. Falls back to
+     * reading the table when the snapshot can't be used.
+     */
+    private FriendGraph openFriendGraphStore() throws SQLException, ClassNotFoundException {
+        String directory = snapshotDirectory();
+        if (directory == null) {
+            return loadFriendGraph();
+        }
+        String interval = Settings.getPropertyValue("graph.snapshot.interval.minutes");
+        try {
+            FriendGraphStore store = FriendGraphStore.open(Paths.get(directory),
+                    interval == null || interval.isEmpty() ? 0 : Long.parseLong(interval), this::loadFriendGraph);
+            return store.getGraph();
+        } catch (SQLException | ClassNotFoundException ex) {
+            throw ex;
+        } catch (Exception ex) {
+            Logger.getLogger(UserFacade.class.getName()).log(Level.SEVERE, "Friend graph snapshot could not be used", ex);
+            //Without the store nothing is logged, so the snapshot would be out of date at the next start.
+            discardFriendGraphSnapshot();
+            return loadFriendGraph();
+        }
+    }
+
+    private FriendGraph loadFriendGraph() throws SQLException, ClassNotFoundException {
+        String query = "SELECT user_id, friend_id FROM user_friends";
+        int[] users = new int[1024];
+        int[] friends = new int[1024];
+        int rows = 0;
+        try (Connection connection = createConnection();
+                PreparedStatement ps = connection.prepareStatement(query)) {
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    if (rows == users.length) {
+                        users = Arrays.copyOf(users, rows * 2);
+                        friends = Arrays.copyOf(friends, rows * 2);
+                    }
+                    users[rows] = rs.getInt(1);
+                    friends[rows] = rs.getInt(2);
+                    rows++;
+                }
+            }
+        }
+        return FriendGraph.build(users, friends, rows);
+    }
+
     /**
      * This method is used to check if a user with the given password exists in
      * the DB.
@@ -87,20 +298,21 @@ public class UserFacade {
         User user = new User();
         String query = "SELECT * FROM users WHERE user_name = ?";
         try {
-            PreparedStatement ps = createConnection().prepareStatement(query);
-            ps.setString(1, username);
-            ResultSet rs = ps.executeQuery();
-            while (rs.next()) {
-                user.setId(rs.getInt("user_id"));
+            try (Connection connection = createConnection();
+                    PreparedStatement ps = connection.prepareStatement(query)) {
+                ps.setString(1, username);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        user.setId(rs.getInt("user_id"));
+                    }
+                }
             }
-            rs.close();
-            ps.close();
 
-            user = em.find(User.class, user.getId());
+            user = findUser(em, user.getId());
             if (!user.getRole().getRoleName().equals("user")) {
                 throw new AuthenticationException("Admins cannot login here");
             }
-            if (user == null || !user.verifyPassword(password)) {
+            if (user == null || !verifyPassword(user, password)) {
                 throw new AuthenticationException("Invalid user name or password");
             }
         } catch (NullPointerException ex) {
@@ -120,20 +332,21 @@ public class UserFacade {
         User user = new User();
         String query = "SELECT * FROM users WHERE user_name = ?";
         try {
-            PreparedStatement ps = createConnection().prepareStatement(query);
-            ps.setString(1, username);
-            ResultSet rs = ps.executeQuery();
-            while (rs.next()) {
-                user.setId(rs.getInt("user_id"));
+            try (Connection connection = createConnection();
+                    PreparedStatement ps = connection.prepareStatement(query)) {
+                ps.setString(1, username);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        user.setId(rs.getInt("user_id"));
+                    }
+                }
             }
-            rs.close();
-            ps.close();
 
-            user = em.find(User.class, user.getId());
+            user = findUser(em, user.getId());
             if (!user.getRole().getRoleName().equals("admin") || user.getRole().getRoleName().isEmpty()) {
                 throw new AuthenticationException("Users cannot login here");
             }
-            if (user == null || !user.verifyPassword(password)) {
+            if (user == null || !verifyPassword(user, password)) {
                 throw new AuthenticationException("Invalid user name or password");
             }
         } catch (NullPointerException ex) {
@@ -144,6 +357,19 @@ public class UserFacade {
         return user;
     }
 
+    private static User findUser(EntityManager em, int usernameID) {
+        try (Span span = Tracer.start("jpa", "UserFacade.findUser")) {
+            return em.find(User.class, usernameID);
+        }
+    }
+
+    //BCrypt is most of the time a login takes, so it gets a span of its own.
+    private static boolean verifyPassword(User user, String password) {
+        try (Span span = Tracer.start("bcrypt", "User.verifyPassword")) {
+            return user.verifyPassword(password);
+        }
+    }
+
     /**
      *
      * @author Frederik Braagaard
@@ -153,14 +379,15 @@ public class UserFacade {
         User user = new User();
         String query = "SELECT * FROM users WHERE user_name = ?";
         try {
-            PreparedStatement ps = createConnection().prepareStatement(query);
-            ps.setString(1, username);
-            ResultSet rs = ps.executeQuery();
-            while (rs.next()) {
-                user.setId(rs.getInt("user_id"));
+            try (Connection connection = createConnection();
+                    PreparedStatement ps = connection.prepareStatement(query)) {
+                ps.setString(1, username);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        user.setId(rs.getInt("user_id"));
+                    }
+                }
             }
-            rs.close();
-            ps.close();
 
             if (user.getId() == 0) {
                 throw new AuthenticationException("Invalid user name");
@@ -198,15 +425,16 @@ public class UserFacade {
         userregister.addRole(userRole);
         String query = "SELECT user_name FROM users WHERE user_name = ?";
         try {
-            PreparedStatement ps = createConnection().prepareStatement(query);
-            ps.setString(1, userName);
-            ResultSet rs = ps.executeQuery();
-            while (rs.next()) {
-                UserDTO dto = new UserDTO();
-                checker.setUserName(rs.getString("user_name"));
-            }
-            rs.close();
-            ps.close();
+            try (Connection connection = createConnection();
+                    PreparedStatement ps = connection.prepareStatement(query)) {
+                ps.setString(1, userName);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        UserDTO dto = new UserDTO();
+                        checker.setUserName(rs.getString("user_name"));
+                    }
+                }
+            }
             if (checker.getUserName() != null) {
                 throw new AlreadyExistsException("User name already exists");
             }
@@ -280,9 +508,19 @@ public class UserFacade {
             if (user == null) {
                 return false;
             }
-            user.addUserPost(post);
-            em.persist(user);
+            post.setOwner(user);
+            em.persist(post);
             em.getTransaction().commit();
+            EventBus events = EventBus.getEventBus();
+            if (events.hasSubscribers()) {
+                UserDTO author = new UserDTO(user);
+                author.addToPostList(new UserPostsDTO(post));
+                List<Integer> friendIDs = new ArrayList();
+                for (Friends friend : user.getFriendList()) {
+                    friendIDs.add(friend.getFriendUsernameID());
+                }
+                events.publish(friendIDs, EventType.POST, author);
+            }
         } finally {
             em.close();
         }
@@ -295,14 +533,15 @@ public class UserFacade {
      */
     public List<UserPosts> getPosts(int usernameID) throws NotFoundException {
         EntityManager em = emf.createEntityManager();
-        User user;
-        List<UserPosts> post = new ArrayList();
+        List<UserPosts> post;
         try {
-            em.getTransaction().begin();
-            user = em.find(User.class, usernameID);
-            post = user.getUserPosts();
-        } catch (NullPointerException ex) {
-            throw new NotFoundException("User name could not be found");
+            post = em.createQuery("SELECT p FROM UserPosts p WHERE p.owner.id = :owner "
+                    + "ORDER BY p.postDate DESC, p.id DESC", UserPosts.class)
+                    .setParameter("owner", usernameID)
+                    .getResultList();
+            if (post.isEmpty() && em.find(User.class, usernameID) == null) {
+                throw new NotFoundException("User name could not be found");
+            }
         } finally {
             em.close();
         }
@@ -327,6 +566,7 @@ public class UserFacade {
             user.addFriendRequest(friendReq);
             em.persist(user);
             em.getTransaction().commit();
+            EventBus.getEventBus().publish(user.getId(), EventType.FRIEND_REQUEST, new FriendsDTO(requester));
         } catch (NullPointerException ex) {
             throw new NotFoundException("Something unexpected went wrong, user name doesn't seem to exist");
         } finally {
@@ -354,19 +594,24 @@ public class UserFacade {
             if (validation == false) {
                 throw new AuthenticationException("Something unexpected went wrong, this could have been a try to circumvent the security.");
             }
-            //Making the friend connection
-            Friends friendRequester = new Friends(requester.getId());
-            Friends friendReceiver = new Friends(user.getId());
-            //Adding to each others friend list.
-            user.addToFriendList(friendRequester);
-            requester.addToFriendList(friendReceiver);
             //Removing friend reuqest
             user.deleteSpecificFriendRequest(requester.getId());
-            //Persisting
             em.getTransaction().begin();
-            em.persist(user);
-            em.persist(requester);
+            //Making the friend connection, one edge row for each of them.
+            //The primary key lookup skips edges that already exist.
+            if (em.find(Friends.class, new Friends.FriendsId(user.getId(), requester.getId())) == null) {
+                Friends friendRequester = new Friends(requester.getId());
+                user.addToFriendList(friendRequester);
+                em.persist(friendRequester);
+            }
+            if (em.find(Friends.class, new Friends.FriendsId(requester.getId(), user.getId())) == null) {
+                Friends friendReceiver = new Friends(user.getId());
+                requester.addToFriendList(friendReceiver);
+                em.persist(friendReceiver);
+            }
             em.getTransaction().commit();
+            friendshipChanged(user.getId(), requester.getId(), true);
+            EventBus.getEventBus().publish(requester.getId(), EventType.FRIEND_ACCEPTED, new FriendsDTO(user));
         } catch (NullPointerException ex) {
             throw new NotFoundException("Something unexpected went wrong, user name doesn't seem to exist");
         } finally {
@@ -389,12 +634,20 @@ public class UserFacade {
             if (user == null || requester == null) {
                 throw new NotFoundException("Something unexpected went wrong, user name doesn't seem to exist");
             }
-            Boolean userBol = user.removeFriend(requester.getId());
-            Boolean requestBol = requester.removeFriend(user.getId());
-            if (!userBol == false && !requestBol == false) {
-                em.persist(user);
-                em.persist(requester);
+            //Deleting both edge rows by primary key.
+            Friends userEdge = em.find(Friends.class, new Friends.FriendsId(user.getId(), requester.getId()));
+            Friends requesterEdge = em.find(Friends.class, new Friends.FriendsId(requester.getId(), user.getId()));
+            if (userEdge != null || requesterEdge != null) {
+                if (userEdge != null) {
+                    user.getFriendList().remove(userEdge);
+                    em.remove(userEdge);
+                }
+                if (requesterEdge != null) {
+                    requester.getFriendList().remove(requesterEdge);
+                    em.remove(requesterEdge);
+                }
                 em.getTransaction().commit();
+                friendshipChanged(user.getId(), requester.getId(), false);
             }
         } catch (NullPointerException ex) {
             throw new NotFoundException("Something unexpected went wrong, user name doesn't seem to exist");
@@ -432,6 +685,121 @@ public class UserFacade {
         return user;
     }
 
+    /**
+     * Carries out a list of accept, decline and remove operations in one
+     * transaction. The users named are loaded with one query and their
+     * friend rows with another, and the changes are written as JDBC batches
+     * on commit. An operation that cannot be done, e.g. accepting a request
+     * that does not exist, fails on its own without undoing the others.
+     *
+     * @author Frederik Braagaard
+     */
+    public BatchResultDTO friendBatch(int usernameID, List<FriendBatchRequest.Operation> operations) throws NotFoundException {
+        BatchResultDTO result = new BatchResultDTO();
+        if (operations.isEmpty()) {
+            return result;
+        }
+        EntityManager em = emf.createEntityManager();
+        List<User> accepted = new ArrayList();
+        //The friends added (1) and removed (0), in the order of the operations.
+        List<int[]> friendshipChanges = new ArrayList();
+        User user;
+        try {
+            em.getTransaction().begin();
+            user = em.find(User.class, usernameID);
+            if (user == null) {
+                throw new NotFoundException("User name could not be found");
+            }
+            Set<Integer> ids = new HashSet();
+            for (FriendBatchRequest.Operation operation : operations) {
+                ids.add(operation.getRequestUserID());
+            }
+            Map<Integer, User> others = new HashMap();
+            for (User other : em.createQuery("SELECT u FROM User u WHERE u.id IN :ids", User.class)
+                    .setParameter("ids", new ArrayList(ids))
+                    .getResultList()) {
+                others.put(other.getId(), other);
+            }
+            //Both edge rows between the user and everyone named.
+            Map<Friends.FriendsId, Friends> edges = new HashMap();
+            for (Friends edge : em.createQuery("SELECT f FROM Friends f WHERE (f.owner.id = :user AND f.friendUsernameID IN :ids) "
+                    + "OR (f.owner.id IN :ids AND f.friendUsernameID = :user)", Friends.class)
+                    .setParameter("user", usernameID)
+                    .setParameter("ids", new ArrayList(ids))
+                    .getResultList()) {
+                edges.put(new Friends.FriendsId(edge.getOwner().getId(), edge.getFriendUsernameID()), edge);
+            }
+
+            for (FriendBatchRequest.Operation operation : operations) {
+                String op = operation.getOp();
+                int otherID = operation.getRequestUserID();
+                User other = others.get(otherID);
+                if (other == null || otherID == usernameID) {
+                    result.addResult(op, otherID, false, "User name could not be found");
+                } else if (FriendBatchRequest.ACCEPT.equals(op)) {
+                    if (user.deleteSpecificFriendRequest(otherID)) {
+                        addFriendEdge(em, edges, user, otherID);
+                        addFriendEdge(em, edges, other, usernameID);
+                        accepted.add(other);
+                        friendshipChanges.add(new int[]{otherID, 1});
+                        result.addResult(op, otherID, true, "Friend request has been accepted");
+                    } else {
+                        result.addResult(op, otherID, false, "No friend request found.");
+                    }
+                } else if (FriendBatchRequest.DECLINE.equals(op)) {
+                    if (user.deleteSpecificFriendRequest(otherID)) {
+                        result.addResult(op, otherID, true, "Friend Request has been removed");
+                    } else {
+                        result.addResult(op, otherID, false, "No friend request found.");
+                    }
+                } else if (FriendBatchRequest.REMOVE.equals(op)) {
+                    Friends userEdge = edges.remove(new Friends.FriendsId(usernameID, otherID));
+                    Friends otherEdge = edges.remove(new Friends.FriendsId(otherID, usernameID));
+                    if (userEdge != null || otherEdge != null) {
+                        if (userEdge != null) {
+                            user.getFriendList().remove(userEdge);
+                            em.remove(userEdge);
+                        }
+                        if (otherEdge != null) {
+                            other.getFriendList().remove(otherEdge);
+                            em.remove(otherEdge);
+                        }
+                        friendshipChanges.add(new int[]{otherID, 0});
+                        result.addResult(op, otherID, true, "Friend has been removed");
+                    } else {
+                        result.addResult(op, otherID, false, "The requested friend could not be found");
+                    }
+                } else {
+                    result.addResult(op, otherID, false, "Unknown operation");
+                }
+            }
+            em.getTransaction().commit();
+        } finally {
+            if (em.getTransaction().isActive()) {
+                em.getTransaction().rollback();
+            }
+            em.close();
+        }
+
+        for (int[] change : friendshipChanges) {
+            friendshipChanged(usernameID, change[0], change[1] == 1);
+        }
+        for (User other : accepted) {
+            EventBus.getEventBus().publish(other.getId(), EventType.FRIEND_ACCEPTED, new FriendsDTO(user));
+        }
+        return result;
+    }
+
+    private static void addFriendEdge(EntityManager em, Map<Friends.FriendsId, Friends> edges, User owner, int friendID) {
+        Friends.FriendsId id = new Friends.FriendsId(owner.getId(), friendID);
+        if (!edges.containsKey(id)) {
+            Friends edge = new Friends(friendID);
+            owner.addToFriendList(edge);
+            em.persist(edge);
+            edges.put(id, edge);
+        }
+    }
+
     /**
      *
      * @author Frederik Braagaard
@@ -440,22 +808,24 @@ public class UserFacade {
         List<UserDTO> userDTOList = new ArrayList();
         String query = "SELECT users.user_id, full_name, profile_picture, user_roles.role_name, user_roles.user_id FROM users\n"
                 + "JOIN user_roles on user_roles.user_id = users.user_id\n"
-                + "WHERE user_roles.role_name != \"admin\"\n"
+                + "WHERE user_roles.role_name <> ?\n"
                 + "AND full_name LIKE ?";
         try {
-            PreparedStatement ps = createConnection().prepareStatement(query);
-            ps.setString(1, "%" + name + "%");
-
-            ResultSet rs = ps.executeQuery();
-            while (rs.next()) {
-                UserDTO dto = new UserDTO();
-                dto.setFullName(rs.getString("full_name"));
-                dto.setProfilePicture(rs.getString("profile_picture"));
-                dto.setUserID(rs.getInt("user_id"));
-                userDTOList.add(dto);
-            }
-            rs.close();
-            ps.close();
+            try (Connection connection = createConnection();
+                    PreparedStatement ps = connection.prepareStatement(query)) {
+                ps.setString(1, "admin");
+                ps.setString(2, "%" + name + "%");
+
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        UserDTO dto = new UserDTO();
+                        dto.setFullName(rs.getString("full_name"));
+                        dto.setProfilePicture(rs.getString("profile_picture"));
+                        dto.setUserID(rs.getInt("user_id"));
+                        userDTOList.add(dto);
+                    }
+                }
+            }
             if (userDTOList.isEmpty()) {
                 throw new NotFoundException("No results by this name was found");
             }
@@ -471,70 +841,263 @@ public class UserFacade {
      */
     public List<UserDTO> friendPosts(int userRequesterID) throws NotFoundException, NoFriendsException {
         EntityManager em = emf.createEntityManager();
-        User user, userFriend;
-        List<UserDTO> friendPosts = new ArrayList();
         try {
-            em.getTransaction().begin();
-            user = em.find(User.class, userRequesterID);
-            if (user.getFriendList().isEmpty()) {
-                throw new NoFriendsException("This user currently has no friends in their friendlist.");
-            }
-            for (Friends friend : user.getFriendList()) {
-                userFriend = em.find(User.class, friend.getFriendUsernameID());
-                UserDTO userDTO = new UserDTO(userFriend);
-                for (UserPosts post : userFriend.getUserPosts()) {
-                    UserPostsDTO postDTO = new UserPostsDTO(post);
-                    userDTO.addToPostList(postDTO);
-                }
-                friendPosts.add(userDTO);
-            }
+            return postsOf(em, findFriends(em, userRequesterID));
         } catch (NullPointerException ex) {
             throw new NotFoundException("Something unexpected went wrong, user name doesn't seem to exist");
         } finally {
             em.close();
         }
+    }
+
+    /**
+     * The friends with their posts, newest first.
+     */
+    private List<UserDTO> postsOf(EntityManager em, List<User> userFriends) {
+        List<UserDTO> friendPosts = new ArrayList();
+        if (userFriends.isEmpty()) {
+            return friendPosts;
+        }
+        Map<Integer, UserDTO> byOwner = new HashMap();
+        for (User userFriend : userFriends) {
+            UserDTO userDTO = new UserDTO(userFriend);
+            byOwner.put(userFriend.getId(), userDTO);
+            friendPosts.add(userDTO);
+        }
+        //A single query, read as one posts_owner_date range per friend.
+        List<UserPosts> posts = em.createQuery("SELECT p FROM UserPosts p WHERE p.owner.id IN :owners "
+                + "ORDER BY p.postDate DESC, p.id DESC", UserPosts.class)
+                .setParameter("owners", new ArrayList(byOwner.keySet()))
+                .getResultList();
+        for (UserPosts post : posts) {
+            byOwner.get(post.getOwner().getId()).addToPostList(new UserPostsDTO(post));
+        }
         return friendPosts;
     }
 
-    public List<FriendsDTO> viewFriends(int usernameID) throws NotFoundException, NoFriendsException {
-        EntityManager em = emf.createEntityManager();
-        User user, userFriend;
+    /**
+     * Suggests people the user may know, ranked by the number of mutual
+     * friends. The ranking comes from the in-memory friend graph, so only the
+     * names and pictures of the suggested users are read from the database.
+     *
+     * @author Frederik Braagaard
+     */
+    public List<FriendSuggestionDTO> suggestFriends(int usernameID) throws NotFoundException, SQLException, ClassNotFoundException {
+        List<FriendGraph.Suggestion> suggestions = getFriendGraph().suggestions(usernameID);
+        int[] ids = new int[suggestions.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = suggestions.get(i).getUserID();
+        }
+        Map<Integer, FriendsDTO> found = findUsersByID(ids);
+
+        List<FriendSuggestionDTO> result = new ArrayList();
+        for (FriendGraph.Suggestion suggestion : suggestions) {
+            FriendsDTO dto = found.get(suggestion.getUserID());
+            if (dto != null) {
+                result.add(new FriendSuggestionDTO(dto.getFriendID(), dto.getFullName(), dto.getPicture(), suggestion.getMutualFriends()));
+            }
+        }
+        if (result.isEmpty()) {
+            throw new NotFoundException("No friend suggestions could be found");
+        }
+        return result;
+    }
+
+    /**
+     * Finds the friends two users have in common, using the in-memory friend
+     * graph.
+     *
+     * @author Frederik Braagaard
+     */
+    public MutualFriendsDTO mutualFriends(int usernameID, int otherUsernameID) throws SQLException, ClassNotFoundException {
+        int[] mutual = getFriendGraph().mutualFriends(usernameID, otherUsernameID);
+        Map<Integer, FriendsDTO> found = findUsersByID(mutual);
         List<FriendsDTO> friends = new ArrayList();
-        try {
-            em.getTransaction().begin();
-            user = em.find(User.class, usernameID);
-            if (user.getFriendList().isEmpty()) {
-                throw new NoFriendsException("This user currently has no friends in their friendlist.");
+        for (int id : mutual) {
+            FriendsDTO dto = found.get(id);
+            if (dto != null) {
+                friends.add(dto);
             }
-            for (Friends friend : user.getFriendList()) {
-                userFriend = em.find(User.class, friend.getFriendUsernameID());
-                FriendsDTO friendFromList = new FriendsDTO(userFriend);
-                friends.add(friendFromList);
+        }
+        return new MutualFriendsDTO(friends);
+    }
+
+    /**
+     * Finds how many hops apart two users are in the friend graph.
+     *
+     * @return the number of hops, at most MAX_FRIEND_DISTANCE
+     * @throws NotFoundException if the other user is unknown or further apart
+     * than MAX_FRIEND_DISTANCE
+     * @author Frederik Braagaard
+     */
+    public int friendDistance(int usernameID, int otherUsernameID) throws NotFoundException, SQLException, ClassNotFoundException {
+        FriendGraph graph = getFriendGraph();
+        //A user with no friends, which includes every unknown id, can't be reached.
+        if (otherUsernameID < 0 || (otherUsernameID != usernameID && graph.degree(otherUsernameID) == 0)) {
+            throw new NotFoundException("User name could not be found");
+        }
+        int distance = graph.distance(usernameID, otherUsernameID, MAX_FRIEND_DISTANCE);
+        if (distance < 0) {
+            throw new NotFoundException("These users are not connected within " + MAX_FRIEND_DISTANCE + " hops");
+        }
+        return distance;
+    }
+
+    /**
+     * Reads the name and picture of the given users in one query. Admins are
+     * left out.
+     */
+    private Map<Integer, FriendsDTO> findUsersByID(int[] ids) throws SQLException, ClassNotFoundException {
+        Map<Integer, FriendsDTO> found = new HashMap<>();
+        if (ids.length == 0) {
+            return found;
+        }
+        StringBuilder query = new StringBuilder("SELECT users.user_id, full_name, profile_picture FROM users\n"
+                + "JOIN user_roles on user_roles.user_id = users.user_id\n"
+                + "WHERE user_roles.role_name != 'admin'\n"
+                + "AND users.user_id IN (");
+        for (int i = 0; i < ids.length; i++) {
+            query.append(i == 0 ? "?" : ", ?");
+        }
+        query.append(")");
+
+        try (Connection connection = createConnection();
+                PreparedStatement ps = connection.prepareStatement(query.toString())) {
+            for (int i = 0; i < ids.length; i++) {
+                ps.setInt(i + 1, ids[i]);
             }
-        } catch (NullPointerException ex) {
-            throw new NotFoundException("Something unexpected went wrong, user name doesn't seem to exist");
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    FriendsDTO dto = new FriendsDTO();
+                    dto.setFriendID(rs.getInt("user_id"));
+                    dto.setFullName(rs.getString("full_name"));
+                    dto.setPicture(rs.getString("profile_picture"));
+                    found.put(dto.getFriendID(), dto);
+                }
+            }
+        }
+        return found;
+    }
+
+    /**
+     * The name and picture of a user, for the top of the home screen.
+     *
+     * @author Frederik Braagaard
+     */
+    public FriendsDTO viewProfile(int usernameID) throws NotFoundException {
+        EntityManager em = emf.createEntityManager();
+        try {
+            User user = em.find(User.class, usernameID);
+            if (user == null) {
+                throw new NotFoundException("User name could not be found");
+            }
+            return new FriendsDTO(user);
+        } finally {
+            em.close();
+        }
+    }
+
+    public List<FriendsDTO> viewFriends(int usernameID) throws NotFoundException, NoFriendsException {
+        EntityManager em = emf.createEntityManager();
+        try {
+            return toFriendsDTOs(findFriends(em, usernameID));
+        } finally {
+            em.close();
+        }
+    }
+
+    /**
+     * The posts of the user's friends for the home screen, where
+     * {@link #viewProfile} has already found the user, so it isn't looked
+     * up again. No friends gives an empty list.
+     */
+    List<UserDTO> homeFeed(int usernameID) {
+        EntityManager em = emf.createEntityManager();
+        try {
+            return postsOf(em, queryFriends(em, usernameID));
+        } finally {
+            em.close();
+        }
+    }
+
+    /**
+     * The user's friends for the home screen, like {@link #homeFeed}.
+     */
+    List<FriendsDTO> homeFriends(int usernameID) {
+        EntityManager em = emf.createEntityManager();
+        try {
+            return toFriendsDTOs(queryFriends(em, usernameID));
+        } finally {
+            em.close();
+        }
+    }
+
+    /**
+     * The users who sent the user a friend request, for the home screen like
+     * {@link #homeFeed}. Read through the request table instead of the user.
+     */
+    List<FriendsDTO> homeFriendRequests(int usernameID) {
+        EntityManager em = emf.createEntityManager();
+        try {
+            List<Integer> ids = em.createQuery("SELECT r.requestUsernameID FROM User u JOIN u.friendRequests r "
+                    + "WHERE u.id = :user", Integer.class)
+                    .setParameter("user", usernameID)
+                    .getResultList();
+            return requestersOf(em, ids);
         } finally {
             em.close();
         }
+    }
+
+    private static List<FriendsDTO> toFriendsDTOs(List<User> users) {
+        List<FriendsDTO> friends = new ArrayList();
+        for (User userFriend : users) {
+            FriendsDTO friendFromList = new FriendsDTO(userFriend);
+            friends.add(friendFromList);
+        }
+        return friends;
+    }
+
+    /**
+     * Reads a user's friends through the user_friends primary key, with the
+     * users and their roles in the same query.
+     */
+    private List<User> findFriends(EntityManager em, int usernameID) throws NotFoundException, NoFriendsException {
+        List<User> friends = queryFriends(em, usernameID);
+        if (friends.isEmpty()) {
+            if (em.find(User.class, usernameID) == null) {
+                throw new NotFoundException("Something unexpected went wrong, user name doesn't seem to exist");
+            }
+            throw new NoFriendsException("This user currently has no friends in their friendlist.");
+        }
         return friends;
     }
 
+    private static List<User> queryFriends(EntityManager em, int usernameID) {
+        //The role is loaded eagerly, so without the fetch it would be one query per friend.
+        return em.createQuery("SELECT u FROM User u LEFT JOIN FETCH u.role "
+                + "WHERE u.id IN (SELECT f.friendUsernameID FROM Friends f WHERE f.owner.id = :user)", User.class)
+                .setParameter("user", usernameID)
+                .getResultList();
+    }
+
     public List<UserDTO> adminGetUsers() throws SQLException, ClassNotFoundException {
         List<UserDTO> userDTOList = new ArrayList();
         String query = "SELECT full_name, profile_picture, user_id FROM users";
         try {
-            PreparedStatement ps = createConnection().prepareStatement(query);
-
-            ResultSet rs = ps.executeQuery();
-            while (rs.next()) {
-                UserDTO dto = new UserDTO();
-                dto.setFullName(rs.getString("full_name"));
-                dto.setProfilePicture(rs.getString("profile_picture"));
-                dto.setUserID(rs.getInt("user_id"));
-                userDTOList.add(dto);
-            }
-            rs.close();
-            ps.close();
+            try (Connection connection = createConnection();
+                    PreparedStatement ps = connection.prepareStatement(query)) {
+
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        UserDTO dto = new UserDTO();
+                        dto.setFullName(rs.getString("full_name"));
+                        dto.setProfilePicture(rs.getString("profile_picture"));
+                        dto.setUserID(rs.getInt("user_id"));
+                        userDTOList.add(dto);
+                    }
+                }
+            }
         } catch (NullPointerException ex) {
             throw new NullPointerException("No results by this name was found");
         }
@@ -543,23 +1106,22 @@ public class UserFacade {
 
     public List<UserPostsDTO> adminGetPosts() throws SQLException, ClassNotFoundException {
         List<UserPostsDTO> userPostDTOList = new ArrayList();
-        String query = "SELECT User_user_id, userPosts_ID, posts.ID, posts.post_date, posts.user_post, users.full_name FROM users_posts\n"
-                + "JOIN posts\n"
-                + "  ON posts.ID = userPosts_ID\n"
+        String query = "SELECT posts.user_id, posts.ID, posts.post_date, posts.user_post, users.full_name FROM posts\n"
                 + "JOIN users\n"
-                + "  ON users.user_id = User_user_id";
+                + "  ON users.user_id = posts.user_id";
         try {
-            PreparedStatement ps = createConnection().prepareStatement(query);
+            try (Connection connection = createConnection();
+                    PreparedStatement ps = connection.prepareStatement(query)) {
 
-            ResultSet rs = ps.executeQuery();
-            while (rs.next()) {
-                UserPostsDTO dto = new UserPostsDTO();
-                dto.setMessage(rs.getString("user_post"));
-                dto.setPostDate(rs.getDate("post_date"));
-                userPostDTOList.add(dto);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        UserPostsDTO dto = new UserPostsDTO();
+                        dto.setMessage(rs.getString("user_post"));
+                        dto.setPostDate(rs.getDate("post_date"));
+                        userPostDTOList.add(dto);
+                    }
+                }
             }
-            rs.close();
-            ps.close();
         } catch (NullPointerException ex) {
             throw new NullPointerException("No results by this name was found");
         }
@@ -568,24 +1130,44 @@ public class UserFacade {
 
     public List<FriendsDTO> viewFriendRequests(int usernameID) throws NotFoundException, NoFriendRequestsException {
         EntityManager em = emf.createEntityManager();
-        User user, userFriendRequest;
-        List<FriendsDTO> friendsReq = new ArrayList();
+        User user;
         try {
             em.getTransaction().begin();
             user = em.find(User.class, usernameID);
             if (user.getFriendRequests().isEmpty()) {
                 throw new NoFriendRequestsException("This user no friend requests.");
             }
+            List<Integer> ids = new ArrayList();
             for (FriendRequest friendRequest : user.getFriendRequests()) {
-                userFriendRequest = em.find(User.class, friendRequest.getRequestUsernameID());
-                FriendsDTO friendRequestList = new FriendsDTO(userFriendRequest);
-                friendsReq.add(friendRequestList);
+                ids.add(friendRequest.getRequestUsernameID());
             }
+            return requestersOf(em, ids);
         } catch (NullPointerException ex) {
             throw new NotFoundException("Something unexpected went wrong, user name doesn't seem to exist");
         } finally {
             em.close();
         }
+    }
+
+    /**
+     * The users who made the given friend requests, in the same order.
+     */
+    private static List<FriendsDTO> requestersOf(EntityManager em, List<Integer> ids) {
+        List<FriendsDTO> friendsReq = new ArrayList();
+        if (ids.isEmpty()) {
+            return friendsReq;
+        }
+        //One query for every requester, instead of an em.find each.
+        Map<Integer, User> requesters = new HashMap();
+        for (User requester : em.createQuery("SELECT u FROM User u LEFT JOIN FETCH u.role WHERE u.id IN :ids", User.class)
+                .setParameter("ids", ids)
+                .getResultList()) {
+            requesters.put(requester.getId(), requester);
+        }
+        for (int id : ids) {
+            FriendsDTO friendRequestList = new FriendsDTO(requesters.get(id));
+            friendsReq.add(friendRequestList);
+        }
         return friendsReq;
     }
 }
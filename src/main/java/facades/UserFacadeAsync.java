@@ -0,0 +1,332 @@
+package facades;
+
+import dtos.request.FriendBatchRequest;
+import dtos.user.BatchResultDTO;
+import dtos.user.FriendSuggestionDTO;
+import dtos.user.FriendsDTO;
+import dtos.user.HomeDTO;
+import dtos.user.MutualFriendsDTO;
+import dtos.user.UserDTO;
+import dtos.user.UserPostsDTO;
+import entities.User;
+import entities.UserPosts;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import jfr.FacadeCallEvent;
+import metrics.QueryBudget;
+import tracing.Span;
+import tracing.Tracer;
+import utils.Settings;
+
+/**
+ * Runs the {@link UserFacade} calls on a dedicated database executor and
+ * returns {@link CompletableFuture}s, so a resource can suspend its request
+ * instead of holding a request thread while MySQL answers, and can start
+ * independent lookups side by side.
+ * <p>
+ * The futures complete with the exception the facade threw, e.g. a
+ * {@link errorhandling.NotFoundException}, or with a {@link TimeoutException}
+ * once the call has taken longer than db.async.timeout.millis. A call still
+ * waiting in the queue when it times out is not run at all, but one already
+ * running is left to finish, as interrupting it could stop it halfway through
+ * updating the friend graph or close the channel of its change log. So a
+ * timeout, and the 503 the resources answer it with, does not mean a write
+ * was rolled back: it may still commit afterwards. When the queue is full
+ * the future fails straight away with a {@link RejectedExecutionException}.
+ * </p>
+ *
+ * @author Frederik Braagaard
+ */
+public class UserFacadeAsync {
+
+    private static UserFacadeAsync instance;
+
+    private final UserFacade facade;
+    private final ThreadPoolExecutor executor;
+    private final ScheduledExecutorService timeouts;
+    private final long defaultTimeoutMillis;
+
+    /**
+     * A facade call, which unlike a Supplier may throw the facade's checked
+     * exceptions.
+     */
+    @FunctionalInterface
+    public interface DbCall<T> {
+
+        T call() throws Exception;
+    }
+
+    /**
+     * A facade call being recorded, as a flight recorder event and as a span
+     * under the current one. Opened by {@link #traced}.
+     */
+    public static final class TracedCall implements AutoCloseable {
+
+        private final FacadeCallEvent event;
+        private final Span span;
+
+        private TracedCall(String name) {
+            event = new FacadeCallEvent(name);
+            event.begin();
+            span = Tracer.start("facade", name);
+        }
+
+        /**
+         * Marks the call as succeeded, call it last in the try block.
+         */
+        public void succeeded() {
+            event.setSucceeded(true);
+        }
+
+        @Override
+        public void close() {
+            span.close();
+            event.commit();
+        }
+    }
+
+    /**
+     * Records a facade call made on the current thread, for the endpoints
+     * that call the facade directly, and for {@link #call} on the executor.
+     * Use it with try-with-resources, so the call keeps its own checked
+     * exceptions:
+     * <pre>
+     * try (TracedCall traced = UserFacadeAsync.traced("UserFacade.getVeryfiedUser")) {
+     *     user = facade.getVeryfiedUser(username, password);
+     *     traced.succeeded();
+     * }
+     * </pre>
+     *
+     * @param name the facade method, e.g. UserFacade.getVeryfiedUser
+     */
+    public static TracedCall traced(String name) {
+        return new TracedCall(name);
+    }
+
+    /**
+     * Makes an instance with executors of its own, for tests that only need
+     * {@link #call}. The resources share the one of getUserFacadeAsync.
+     *
+     * @param facade the facade the calls are run on
+     */
+    public UserFacadeAsync(UserFacade facade) {
+        this.facade = facade;
+        int threads = Settings.getIntValue("db.async.threads", Settings.getIntValue("db.pool.max", 32));
+        executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(Settings.getIntValue("db.async.queue", 1000)), threadFactory("db-async-"));
+        executor.allowCoreThreadTimeOut(true);
+        timeouts = Executors.newSingleThreadScheduledExecutor(threadFactory("db-timeout-"));
+        defaultTimeoutMillis = Settings.getIntValue("db.async.timeout.millis", 10000);
+    }
+
+    /**
+     *
+     * @param facade the facade the calls are run on
+     * @return the instance of this facade.
+     */
+    public static UserFacadeAsync getUserFacadeAsync(UserFacade facade) {
+        if (instance == null) {
+            instance = new UserFacadeAsync(facade);
+        }
+        return instance;
+    }
+
+    /**
+     * Runs a call on the database executor with the default timeout.
+     */
+    public <T> CompletableFuture<T> call(DbCall<T> call) {
+        return call(call, defaultTimeoutMillis);
+    }
+
+    /**
+     * Runs a call on the database executor.
+     *
+     * @param call the work to do, usually one or more facade calls
+     * @param timeoutMillis the future fails with a TimeoutException after
+     * this long
+     * @return the result of the call
+     */
+    public <T> CompletableFuture<T> call(DbCall<T> call, long timeoutMillis) {
+        return call("UserFacadeAsync.call", call, timeoutMillis);
+    }
+
+    private <T> CompletableFuture<T> call(String name, DbCall<T> call) {
+        return call(name, call, defaultTimeoutMillis);
+    }
+
+    /**
+     * Runs a call on the database executor, traced as a span with the given
+     * name under the span of the request that made it.
+     */
+    private <T> CompletableFuture<T> call(String name, DbCall<T> call, long timeoutMillis) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        //The statements of the call count towards the budget of the request that made it.
+        QueryBudget budget = QueryBudget.current();
+        Span parent = Tracer.current();
+        Future<?> task;
+        try {
+            task = executor.submit(() -> {
+                QueryBudget previous = QueryBudget.attach(budget);
+                Span previousSpan = Tracer.attach(parent);
+                try {
+                    T value;
+                    //Ended before the result is handed on, which may already send the response.
+                    try (TracedCall traced = traced(name)) {
+                        value = call.call();
+                        traced.succeeded();
+                    }
+                    result.complete(value);
+                } catch (Exception | Error ex) {
+                    result.completeExceptionally(ex);
+                } finally {
+                    Tracer.attach(previousSpan);
+                    QueryBudget.attach(previous);
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            result.completeExceptionally(ex);
+            return result;
+        }
+        ScheduledFuture<?> timeout = timeouts.schedule(() -> {
+            if (result.completeExceptionally(new TimeoutException("Database call took longer than " + timeoutMillis + " ms"))) {
+                //Only drops the call if it hasn't started, a running one is not interrupted.
+                task.cancel(false);
+            }
+        }, timeoutMillis, TimeUnit.MILLISECONDS);
+        result.whenComplete((value, error) -> timeout.cancel(false));
+        return result;
+    }
+
+    public CompletableFuture<Boolean> createPost(int usernameID, String userPost) {
+        return call("UserFacade.createPost", () -> facade.createPost(usernameID, userPost));
+    }
+
+    public CompletableFuture<List<UserPosts>> getPosts(int usernameID) {
+        return call("UserFacade.getPosts", () -> facade.getPosts(usernameID));
+    }
+
+    public CompletableFuture<List<UserDTO>> friendPosts(int userRequesterID) {
+        return call("UserFacade.friendPosts", () -> facade.friendPosts(userRequesterID));
+    }
+
+    public CompletableFuture<User> addFriendRequest(int requestReceiverUsernameID, int requestMadeByUsernameID) {
+        return call("UserFacade.addFriendRequest", () -> facade.addFriendRequest(requestReceiverUsernameID, requestMadeByUsernameID));
+    }
+
+    public CompletableFuture<User> acceptFriendRequest(int usernameID, int request_usernameID) {
+        return call("UserFacade.acceptFriendRequest", () -> facade.acceptFriendRequest(usernameID, request_usernameID));
+    }
+
+    public CompletableFuture<User> removeFriend(int userRequesterID, int userFriendID) {
+        return call("UserFacade.removeFriend", () -> facade.removeFriend(userRequesterID, userFriendID));
+    }
+
+    public CompletableFuture<User> removeFriendRequest(int userRequesterID, int userMadeRequestID) {
+        return call("UserFacade.removeFriendRequest", () -> facade.removeFriendRequest(userRequesterID, userMadeRequestID));
+    }
+
+    public CompletableFuture<BatchResultDTO> friendBatch(int usernameID, List<FriendBatchRequest.Operation> operations) {
+        return call("UserFacade.friendBatch", () -> facade.friendBatch(usernameID, operations));
+    }
+
+    public CompletableFuture<List<UserDTO>> friendSearch(String name) {
+        return call("UserFacade.friendSearch", () -> facade.friendSearch(name));
+    }
+
+    public CompletableFuture<List<FriendSuggestionDTO>> suggestFriends(int usernameID) {
+        return call("UserFacade.suggestFriends", () -> facade.suggestFriends(usernameID));
+    }
+
+    public CompletableFuture<MutualFriendsDTO> mutualFriends(int usernameID, int otherUsernameID) {
+        return call("UserFacade.mutualFriends", () -> facade.mutualFriends(usernameID, otherUsernameID));
+    }
+
+    public CompletableFuture<Integer> friendDistance(int usernameID, int otherUsernameID) {
+        return call("UserFacade.friendDistance", () -> facade.friendDistance(usernameID, otherUsernameID));
+    }
+
+    public CompletableFuture<List<FriendsDTO>> viewFriends(int usernameID) {
+        return call("UserFacade.viewFriends", () -> facade.viewFriends(usernameID));
+    }
+
+    public CompletableFuture<List<FriendsDTO>> viewFriendRequests(int usernameID) {
+        return call("UserFacade.viewFriendRequests", () -> facade.viewFriendRequests(usernameID));
+    }
+
+    public CompletableFuture<List<UserDTO>> adminGetUsers() {
+        return call("UserFacade.adminGetUsers", () -> facade.adminGetUsers());
+    }
+
+    public CompletableFuture<List<UserPostsDTO>> adminGetPosts() {
+        return call("UserFacade.adminGetPosts", () -> facade.adminGetPosts());
+    }
+
+    /**
+     * Loads the sections of the home screen. The user is looked up and
+     * checked once, then the sections are loaded side by side by id, each on
+     * its own pooled connection. When both the feed and the friends are asked
+     * for, the friends are taken from the feed, which already lists every
+     * friend, instead of being queried twice. Having no friends or friend
+     * requests gives an empty section rather than an error.
+     *
+     * @param usernameID the user whose home screen it is
+     * @param fields the sections to load, see {@link HomeDTO#ALL_FIELDS}
+     * @return the sections asked for, the others are null
+     */
+    public CompletableFuture<HomeDTO> home(int usernameID, Set<String> fields) {
+        CompletableFuture<FriendsDTO> user = call("UserFacade.viewProfile", () -> facade.viewProfile(usernameID));
+        CompletableFuture<FriendsDTO> profile = fields.contains(HomeDTO.PROFILE)
+                ? user
+                : user.thenApply(found -> null);
+        CompletableFuture<List<UserDTO>> feed = fields.contains(HomeDTO.FEED)
+                ? user.thenCompose(found -> call("UserFacade.homeFeed", () -> facade.homeFeed(usernameID)))
+                : CompletableFuture.completedFuture(null);
+        CompletableFuture<List<FriendsDTO>> friends;
+        if (!fields.contains(HomeDTO.FRIENDS)) {
+            friends = CompletableFuture.completedFuture(null);
+        } else if (fields.contains(HomeDTO.FEED)) {
+            friends = feed.thenApply(UserFacadeAsync::friendsOf);
+        } else {
+            friends = user.thenCompose(found -> call("UserFacade.homeFriends", () -> facade.homeFriends(usernameID)));
+        }
+        CompletableFuture<List<FriendsDTO>> requests = fields.contains(HomeDTO.REQUESTS)
+                ? user.thenCompose(found -> call("UserFacade.homeFriendRequests", () -> facade.homeFriendRequests(usernameID)))
+                : CompletableFuture.completedFuture(null);
+        return CompletableFuture.allOf(profile, feed, friends, requests)
+                .thenApply(done -> new HomeDTO(profile.join(), feed.join(), friends.join(), requests.join()));
+    }
+
+    private static List<FriendsDTO> friendsOf(List<UserDTO> feed) {
+        List<FriendsDTO> friends = new ArrayList<>(feed.size());
+        for (UserDTO user : feed) {
+            FriendsDTO friend = new FriendsDTO();
+            friend.setFriendID(user.getUserID());
+            friend.setFullName(user.getFullName());
+            friend.setPicture(user.getProfilePicture());
+            friends.add(friend);
+        }
+        return friends;
+    }
+
+    private static ThreadFactory threadFactory(String prefix) {
+        AtomicInteger count = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
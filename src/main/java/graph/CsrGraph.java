@@ -0,0 +1,156 @@
+package graph;
+
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Immutable compressed sparse row (CSR) form of the friend graph. The friend
+ * ids of the user at index i are stored sorted in {@code neighbours} from
+ * {@code offsets[i]} up to {@code offsets[i + 1]}, and {@code users} holds the
+ * sorted user ids so a row is found by binary search.
+ * <p>
+ * The three arrays are int buffers so the graph can either live on the heap
+ * or be mapped straight from a {@link FriendGraphSnapshot} file.
+ * </p>
+ *
+ * @author Frederik Braagaard
+ */
+final class CsrGraph {
+
+    static final CsrGraph EMPTY = new CsrGraph(new int[0], new int[1], new int[0]);
+
+    final IntBuffer users;
+    final IntBuffer offsets;
+    final IntBuffer neighbours;
+
+    CsrGraph(IntBuffer users, IntBuffer offsets, IntBuffer neighbours) {
+        this.users = users;
+        this.offsets = offsets;
+        this.neighbours = neighbours;
+    }
+
+    CsrGraph(int[] users, int[] offsets, int[] neighbours) {
+        this(IntBuffer.wrap(users), IntBuffer.wrap(offsets), IntBuffer.wrap(neighbours));
+    }
+
+    /**
+     * Builds the CSR arrays from directed friend rows in any order. Duplicate
+     * rows are dropped.
+     */
+    static CsrGraph fromRows(int[] users, int[] friends, int rows) {
+        long[] edges = new long[rows];
+        for (int i = 0; i < rows; i++) {
+            edges[i] = ((long) users[i] << 32) | (friends[i] & 0xFFFFFFFFL);
+        }
+        Arrays.sort(edges);
+        return fromSortedEdges(edges, rows);
+    }
+
+    /**
+     * Builds a new CSR graph on the heap from this one, with the rows of the
+     * users in {@code changed} replaced by the given sorted friend arrays.
+     */
+    CsrGraph merge(Map<Integer, int[]> changed) {
+        int[] changedUsers = new int[changed.size()];
+        int i = 0;
+        for (Integer user : changed.keySet()) {
+            changedUsers[i++] = user;
+        }
+        Arrays.sort(changedUsers);
+
+        int userCount = userCount();
+        int[] mergedUsers = new int[userCount + changedUsers.length];
+        int[] mergedOffsets = new int[mergedUsers.length + 1];
+        int size = 0;
+        for (int[] row : changed.values()) {
+            size += row.length;
+        }
+        int[] mergedNeighbours = new int[edgeCount() + size];
+
+        IntBuffer source = neighbours.duplicate();
+        int a = 0, b = 0, count = 0, edges = 0;
+        while (a < userCount || b < changedUsers.length) {
+            int user;
+            if (b == changedUsers.length || (a < userCount && users.get(a) < changedUsers[b])) {
+                user = users.get(a);
+                int from = offsets.get(a), to = offsets.get(a + 1);
+                source.position(from);
+                source.get(mergedNeighbours, edges, to - from);
+                edges += to - from;
+                a++;
+            } else {
+                user = changedUsers[b];
+                if (a < userCount && users.get(a) == user) {
+                    a++;
+                }
+                int[] row = changed.get(user);
+                System.arraycopy(row, 0, mergedNeighbours, edges, row.length);
+                edges += row.length;
+                b++;
+            }
+            if (edges == mergedOffsets[count]) {
+                //Users without any friends left are not kept as rows.
+                continue;
+            }
+            mergedUsers[count] = user;
+            mergedOffsets[++count] = edges;
+        }
+        return new CsrGraph(Arrays.copyOf(mergedUsers, count), Arrays.copyOf(mergedOffsets, count + 1),
+                Arrays.copyOf(mergedNeighbours, edges));
+    }
+
+    int indexOf(int user) {
+        return binarySearch(users, 0, users.limit(), user);
+    }
+
+    int userCount() {
+        return users.limit();
+    }
+
+    int edgeCount() {
+        return neighbours.limit();
+    }
+
+    /**
+     * Arrays.binarySearch for a range of an int buffer.
+     */
+    static int binarySearch(IntBuffer values, int from, int to, int key) {
+        int low = from;
+        int high = to - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int value = values.get(middle);
+            if (value < key) {
+                low = middle + 1;
+            } else if (value > key) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -(low + 1);
+    }
+
+    private static CsrGraph fromSortedEdges(long[] edges, int count) {
+        int[] users = new int[count];
+        int[] offsets = new int[count + 1];
+        int[] neighbours = new int[count];
+        int userCount = 0, edgeCount = 0;
+        for (int i = 0; i < count; i++) {
+            if (i > 0 && edges[i] == edges[i - 1]) {
+                continue;
+            }
+            int user = (int) (edges[i] >> 32);
+            if (userCount == 0 || users[userCount - 1] != user) {
+                users[userCount] = user;
+                offsets[userCount] = edgeCount;
+                userCount++;
+            }
+            neighbours[edgeCount++] = (int) edges[i];
+        }
+        offsets[userCount] = edgeCount;
+        return new CsrGraph(Arrays.copyOf(users, userCount), Arrays.copyOf(offsets, userCount + 1),
+                Arrays.copyOf(neighbours, edgeCount));
+    }
+}
@@ -0,0 +1,551 @@
+package graph;
+
+import java.io.IOException;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Compact in-memory copy of the friendship graph, so friend suggestions,
+ * mutual friends and degrees of separation can be answered without loading
+ * entities through JPA.
+ * <p>
+ * The bulk of the graph is kept in an immutable {@link CsrGraph}. Users whose
+ * friends changed since it was built get a sorted copy-on-write row in
+ * {@code changed}, which readers check first. Once enough rows have changed
+ * they are merged into a new CSR graph.
+ * </p>
+ * <p>
+ * When the graph is opened through a {@link FriendGraphStore}, every change
+ * is also appended to a change log so a restart can map the last snapshot and
+ * replay the log instead of reading the whole friends table.
+ * </p>
+ *
+ * @author Frederik Braagaard
+ */
+public class FriendGraph {
+
+    /** Users with more candidates than this are scored on the fork/join pool. */
+    static final int PARALLEL_THRESHOLD = 2048;
+    static final int SUGGESTION_LIMIT = 20;
+    /** Changed rows are merged into the CSR graph once there are this many. */
+    static final int MERGE_THRESHOLD = 1024;
+
+    private volatile CsrGraph base;
+    private final Map<Integer, int[]> changed = new ConcurrentHashMap<>();
+    private final Map<Integer, List<Suggestion>> suggestionCache = new ConcurrentHashMap<>();
+    private volatile long version;
+    private FriendGraphChangeLog changeLog;
+    /**
+     * Guards every change. It is a lock rather than a monitor because the
+     * change log is written while holding it, and a virtual thread blocked
+     * on I/O inside synchronized would pin its carrier thread.
+     */
+    final ReentrantLock writeLock = new ReentrantLock();
+
+    FriendGraph(CsrGraph base) {
+        this.base = base;
+    }
+
+    /**
+     * Builds a graph from a list of directed friend rows, the way they are
+     * stored in the friends join table.
+     *
+     * @param users the user id of each row
+     * @param friends the friend id of each row
+     * @param rows number of rows used in the two arrays
+     * @return the new graph
+     */
+    public static FriendGraph build(int[] users, int[] friends, int rows) {
+        return new FriendGraph(CsrGraph.fromRows(users, friends, rows));
+    }
+
+    /**
+     * @return a sorted copy of the friend ids of the user.
+     */
+    public int[] friendsOf(int user) {
+        return row(user).toArray();
+    }
+
+    public int degree(int user) {
+        Row row = row(user);
+        return row.to - row.from;
+    }
+
+    public boolean areFriends(int user, int other) {
+        Row row = row(user);
+        return row.search(other) >= 0;
+    }
+
+    /**
+     * Records a new friendship in both directions and drops every cached
+     * suggestion list it can have changed.
+     */
+    public void addFriendship(int user, int friend) {
+        writeLock.lock();
+        try {
+            applyFriendship(user, friend, true);
+            logChange(FriendGraphChangeLog.ADD, user, friend);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Removes a friendship in both directions and drops every cached
+     * suggestion list it can have changed.
+     */
+    public void removeFriendship(int user, int friend) {
+        writeLock.lock();
+        try {
+            applyFriendship(user, friend, false);
+            logChange(FriendGraphChangeLog.REMOVE, user, friend);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Changes a friendship without writing it to the change log, which is
+     * how the log itself is replayed.
+     */
+    void applyFriendship(int user, int friend, boolean add) {
+        writeLock.lock();
+        try {
+            Set<Integer> affected = affectedBy(user, friend);
+            if (add) {
+                changed.put(user, insert(row(user), friend));
+                changed.put(friend, insert(row(friend), user));
+            } else {
+                changed.put(user, delete(row(user), friend));
+                changed.put(friend, delete(row(friend), user));
+            }
+            invalidate(affected);
+            if (changed.size() >= MERGE_THRESHOLD) {
+                merge();
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    void attachChangeLog(FriendGraphChangeLog changeLog) {
+        writeLock.lock();
+        try {
+            this.changeLog = changeLog;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Merges every changed row into the CSR graph.
+     *
+     * @return the CSR graph, which now holds the whole graph
+     */
+    CsrGraph compact() {
+        writeLock.lock();
+        try {
+            if (!changed.isEmpty()) {
+                merge();
+            }
+            return base;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Swaps the CSR graph for an identical one, such as the mapped copy of a
+     * snapshot that was just written, unless it changed in the meantime.
+     */
+    void replaceBase(CsrGraph expected, CsrGraph replacement) {
+        writeLock.lock();
+        try {
+            if (base == expected) {
+                base = replacement;
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * @return the sorted ids of the friends the two users have in common.
+     */
+    public int[] mutualFriends(int user, int other) {
+        Row a = row(user);
+        Row b = row(other);
+        int[] result = new int[Math.min(a.to - a.from, b.to - b.from)];
+        int i = a.from, j = b.from, count = 0;
+        while (i < a.to && j < b.to) {
+            if (a.get(i) < b.get(j)) {
+                i++;
+            } else if (a.get(i) > b.get(j)) {
+                j++;
+            } else {
+                result[count++] = a.get(i);
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    /**
+     * Finds the number of hops between two users with a bidirectional breadth
+     * first search, always expanding the side whose frontier has the fewest
+     * edges to follow.
+     *
+     * @param user where the search starts
+     * @param other where the search ends
+     * @param maxHops the search gives up after this many hops
+     * @return the number of hops, or -1 if the users are further apart than
+     * maxHops or either id is negative
+     */
+    public int distance(int user, int other, int maxHops) {
+        if (user < 0 || other < 0) {
+            return -1;
+        }
+        if (user == other) {
+            return 0;
+        }
+        BitSet seenFromUser = new BitSet();
+        BitSet seenFromOther = new BitSet();
+        seenFromUser.set(user);
+        seenFromOther.set(other);
+        int[] userFrontier = {user};
+        int[] otherFrontier = {other};
+        for (int hops = 1; hops <= maxHops; hops++) {
+            if (userFrontier.length == 0 || otherFrontier.length == 0) {
+                return -1;
+            }
+            boolean fromUser = volume(userFrontier) <= volume(otherFrontier);
+            int[] frontier = fromUser ? userFrontier : otherFrontier;
+            BitSet seen = fromUser ? seenFromUser : seenFromOther;
+            BitSet target = fromUser ? seenFromOther : seenFromUser;
+
+            int[] next = new int[volume(frontier)];
+            int size = 0;
+            for (int current : frontier) {
+                Row row = row(current);
+                for (int i = row.from; i < row.to; i++) {
+                    int friend = row.get(i);
+                    if (target.get(friend)) {
+                        return hops;
+                    }
+                    if (!seen.get(friend)) {
+                        seen.set(friend);
+                        next[size++] = friend;
+                    }
+                }
+            }
+            if (fromUser) {
+                userFrontier = Arrays.copyOf(next, size);
+            } else {
+                otherFrontier = Arrays.copyOf(next, size);
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Ranks the friends of friends of a user by the number of friends they
+     * have in common with that user. Results are cached until a friendship
+     * touching the user or one of the user's friends changes.
+     *
+     * @param user the user to make suggestions for
+     * @return at most {@value #SUGGESTION_LIMIT} suggestions, best first
+     */
+    public List<Suggestion> suggestions(int user) {
+        List<Suggestion> cached = suggestionCache.get(user);
+        if (cached != null) {
+            return cached;
+        }
+        long before = version;
+        List<Suggestion> result = Collections.unmodifiableList(computeSuggestions(user));
+        //A friendship changed while scoring, so the result may already be stale.
+        if (before == version) {
+            suggestionCache.put(user, result);
+            //A change that came in between the check and the put would not have seen the entry to drop.
+            if (before != version) {
+                suggestionCache.remove(user, result);
+            }
+        }
+        return result;
+    }
+
+    List<Suggestion> computeSuggestions(int user) {
+        Row friends = row(user);
+        BitSet seen = new BitSet();
+        for (int i = friends.from; i < friends.to; i++) {
+            Row friendsOfFriend = row(friends.get(i));
+            for (int j = friendsOfFriend.from; j < friendsOfFriend.to; j++) {
+                seen.set(friendsOfFriend.get(j));
+            }
+        }
+        seen.clear(user);
+        for (int i = friends.from; i < friends.to; i++) {
+            seen.clear(friends.get(i));
+        }
+
+        int[] candidates = seen.stream().toArray();
+        int[] scores = new int[candidates.length];
+        ScoreTask task = new ScoreTask(friends, candidates, scores, 0, candidates.length);
+        if (candidates.length > PARALLEL_THRESHOLD) {
+            ForkJoinPool.commonPool().invoke(task);
+        } else {
+            task.compute();
+        }
+
+        List<Suggestion> ranked = new ArrayList<>(candidates.length);
+        for (int i = 0; i < candidates.length; i++) {
+            ranked.add(new Suggestion(candidates[i], scores[i]));
+        }
+        ranked.sort((a, b) -> a.mutualFriends != b.mutualFriends
+                ? Integer.compare(b.mutualFriends, a.mutualFriends)
+                : Integer.compare(a.userID, b.userID));
+        return new ArrayList<>(ranked.subList(0, Math.min(SUGGESTION_LIMIT, ranked.size())));
+    }
+
+    /**
+     * Counts the values two sorted rows have in common.
+     */
+    static int intersectionSize(Row a, Row b) {
+        int i = a.from, j = b.from, count = 0;
+        while (i < a.to && j < b.to) {
+            if (a.get(i) < b.get(j)) {
+                i++;
+            } else if (a.get(i) > b.get(j)) {
+                j++;
+            } else {
+                count++;
+                i++;
+                j++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * The users whose suggestions can change when the edge between user and
+     * friend changes: the two users themselves and everyone friends with them.
+     */
+    private Set<Integer> affectedBy(int user, int friend) {
+        Set<Integer> affected = new HashSet<>();
+        affected.add(user);
+        affected.add(friend);
+        for (int id : friendsOf(user)) {
+            affected.add(id);
+        }
+        for (int id : friendsOf(friend)) {
+            affected.add(id);
+        }
+        return affected;
+    }
+
+    /**
+     * Finds the friends of a user, preferring a changed row over the CSR
+     * graph.
+     */
+    Row row(int user) {
+        int[] values = changed.get(user);
+        if (values != null) {
+            return new Row(IntBuffer.wrap(values), 0, values.length);
+        }
+        CsrGraph graph = base;
+        int index = graph.indexOf(user);
+        if (index < 0) {
+            return Row.EMPTY;
+        }
+        return new Row(graph.neighbours, graph.offsets.get(index), graph.offsets.get(index + 1));
+    }
+
+    private int volume(int[] frontier) {
+        int volume = 0;
+        for (int user : frontier) {
+            volume += degree(user);
+        }
+        return volume;
+    }
+
+    /**
+     * Merges the changed rows into a new CSR graph. The new graph is
+     * published before the rows are dropped, so readers always find the
+     * current friends in one of the two.
+     */
+    private void merge() {
+        Map<Integer, int[]> merged = new HashMap<>(changed);
+        base = base.merge(merged);
+        for (Map.Entry<Integer, int[]> entry : merged.entrySet()) {
+            changed.remove(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * Writes a change to the log. The graph in memory is already right if
+     * this fails, and the next snapshot will contain the change again.
+     */
+    private void logChange(int operation, int user, int friend) {
+        if (changeLog == null) {
+            return;
+        }
+        try {
+            changeLog.append(operation, user, friend);
+        } catch (IOException ex) {
+            Logger.getLogger(FriendGraph.class.getName()).log(Level.SEVERE, "Could not write to the friend graph change log", ex);
+        }
+    }
+
+    private void invalidate(Set<Integer> affected) {
+        //Bumped before the entries are dropped, so suggestions() either sees it or has its put dropped.
+        version++;
+        for (Integer id : affected) {
+            suggestionCache.remove(id);
+        }
+    }
+
+    private static int[] insert(Row row, int value) {
+        int index = row.search(value);
+        if (index >= 0) {
+            return row.toArray();
+        }
+        index = -index - 1 - row.from;
+        int length = row.to - row.from;
+        int[] copy = new int[length + 1];
+        row.copyTo(row.from, copy, 0, index);
+        copy[index] = value;
+        row.copyTo(row.from + index, copy, index + 1, length - index);
+        return copy;
+    }
+
+    private static int[] delete(Row row, int value) {
+        int index = row.search(value);
+        if (index < 0) {
+            return row.toArray();
+        }
+        index -= row.from;
+        int length = row.to - row.from;
+        int[] copy = new int[length - 1];
+        row.copyTo(row.from, copy, 0, index);
+        row.copyTo(row.from + index + 1, copy, index, length - index - 1);
+        return copy;
+    }
+
+    /**
+     * Scores a range of candidates, splitting itself in halves on the
+     * fork/join pool while the range is large.
+     */
+    private class ScoreTask extends RecursiveAction {
+
+        private final Row friends;
+        private final int[] candidates;
+        private final int[] scores;
+        private final int from;
+        private final int to;
+
+        ScoreTask(Row friends, int[] candidates, int[] scores, int from, int to) {
+            this.friends = friends;
+            this.candidates = candidates;
+            this.scores = scores;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > PARALLEL_THRESHOLD) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new ScoreTask(friends, candidates, scores, from, middle),
+                        new ScoreTask(friends, candidates, scores, middle, to));
+                return;
+            }
+            for (int i = from; i < to; i++) {
+                scores[i] = intersectionSize(friends, row(candidates[i]));
+            }
+        }
+    }
+
+    /**
+     * A sorted slice of friend ids, either a whole changed row or a range of
+     * the CSR neighbour buffer.
+     */
+    static final class Row {
+
+        static final Row EMPTY = new Row(IntBuffer.allocate(0), 0, 0);
+
+        final IntBuffer values;
+        final int from;
+        final int to;
+
+        Row(IntBuffer values, int from, int to) {
+            this.values = values;
+            this.from = from;
+            this.to = to;
+        }
+
+        int get(int index) {
+            return values.get(index);
+        }
+
+        /**
+         * Binary search with the same result as Arrays.binarySearch over
+         * the range of this row.
+         */
+        int search(int key) {
+            return CsrGraph.binarySearch(values, from, to, key);
+        }
+
+        void copyTo(int index, int[] target, int targetIndex, int length) {
+            IntBuffer source = values.duplicate();
+            source.position(index);
+            source.get(target, targetIndex, length);
+        }
+
+        int[] toArray() {
+            int[] copy = new int[to - from];
+            copyTo(from, copy, 0, copy.length);
+            return copy;
+        }
+    }
+
+    /**
+     * A suggested user and the number of friends in common.
+     */
+    public static class Suggestion {
+
+        private final int userID;
+        private final int mutualFriends;
+
+        public Suggestion(int userID, int mutualFriends) {
+            this.userID = userID;
+            this.mutualFriends = mutualFriends;
+        }
+
+        public int getUserID() {
+            return userID;
+        }
+
+        public int getMutualFriends() {
+            return mutualFriends;
+        }
+
+        @Override
+        public String toString() {
+            return "Suggestion{" + "userID=" + userID + ", mutualFriends=" + mutualFriends + '}';
+        }
+    }
+}
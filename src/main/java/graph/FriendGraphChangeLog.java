@@ -0,0 +1,194 @@
+package graph;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Append-only log of the friendships added and removed since the last
+ * {@link FriendGraphSnapshot}. The file starts with the magic "FGL1" and the
+ * log epoch, followed by 12 byte little-endian records of operation, user and
+ * friend. Every time a snapshot is written the log is rotated to the next
+ * epoch, keeping only the records the snapshot does not contain.
+ *
+ * @author Frederik Braagaard
+ */
+final class FriendGraphChangeLog implements AutoCloseable {
+
+    static final int MAGIC = 0x314C4746; // "FGL1" read as a little-endian int
+    static final int ADD = 1;
+    static final int REMOVE = 2;
+    static final int HEADER_SIZE = 12;
+    static final int RECORD_SIZE = 12;
+
+    private final Path file;
+    private final ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    private FileChannel channel;
+    private long epoch;
+    private long records;
+    /** A lock rather than synchronized, as it is held during file I/O. */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private FriendGraphChangeLog(Path file) {
+        this.file = file;
+    }
+
+    /**
+     * Opens the log, creating an empty one with the given epoch if the file
+     * does not exist yet.
+     */
+    static FriendGraphChangeLog open(Path file, long epochIfMissing) throws IOException {
+        FriendGraphChangeLog log = new FriendGraphChangeLog(file);
+        if (!Files.exists(file)) {
+            writeLog(file, epochIfMissing, null, 0, 0);
+        }
+        log.openChannel();
+        return log;
+    }
+
+    long epoch() {
+        lock.lock();
+        try {
+            return epoch;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    long records() {
+        lock.lock();
+        try {
+            return records;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void append(int operation, int user, int friend) throws IOException {
+        lock.lock();
+        try {
+            record.clear();
+            record.putInt(operation).putInt(user).putInt(friend).flip();
+            long position = HEADER_SIZE + records * RECORD_SIZE;
+            while (record.hasRemaining()) {
+                position += channel.write(record, position);
+            }
+            records++;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Applies the records from {@code fromRecord} onwards to the graph.
+     */
+    void replay(long fromRecord, FriendGraph graph) throws IOException {
+        lock.lock();
+        try {
+            for (long i = fromRecord; i < records; i++) {
+                readRecord(channel, i, record);
+                int operation = record.getInt();
+                int user = record.getInt();
+                int friend = record.getInt();
+                if (operation == ADD) {
+                    graph.applyFriendship(user, friend, true);
+                } else if (operation == REMOVE) {
+                    graph.applyFriendship(user, friend, false);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Starts the next epoch, keeping the records from {@code keepFrom}
+     * onwards. The new file replaces the old one in a single move.
+     */
+    void rotate(long keepFrom) throws IOException {
+        lock.lock();
+        try {
+            writeLog(file, epoch + 1, channel, keepFrom, records);
+            channel.close();
+            openChannel();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            channel.force(false);
+            channel.close();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void openChannel() throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        if (channel.size() < HEADER_SIZE || !readFully(channel, header, 0) || header.getInt() != MAGIC) {
+            channel.close();
+            throw new IOException("Not a friend graph change log: " + file);
+        }
+        epoch = header.getLong();
+        //A record cut short by a crash is ignored and later overwritten.
+        records = (channel.size() - HEADER_SIZE) / RECORD_SIZE;
+    }
+
+    private static void writeLog(Path file, long epoch, FileChannel source, long from, long to) throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel target = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC).putLong(epoch).flip();
+            while (header.hasRemaining()) {
+                target.write(header);
+            }
+            if (source != null && to > from) {
+                long position = HEADER_SIZE + from * RECORD_SIZE;
+                long count = (to - from) * RECORD_SIZE;
+                while (count > 0) {
+                    long copied = source.transferTo(position, count, target);
+                    position += copied;
+                    count -= copied;
+                }
+            }
+            target.force(true);
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void readRecord(FileChannel channel, long index, ByteBuffer record) throws IOException {
+        record.clear();
+        if (!readFully(channel, record, HEADER_SIZE + index * RECORD_SIZE)) {
+            throw new IOException("Friend graph change log ended early");
+        }
+    }
+
+    /**
+     * Fills the buffer from the given file position and flips it.
+     *
+     * @return false if the file ended first
+     */
+    private static boolean readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                return false;
+            }
+            position += read;
+        }
+        buffer.flip();
+        return true;
+    }
+}
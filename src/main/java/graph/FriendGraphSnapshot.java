@@ -0,0 +1,130 @@
+package graph;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Binary snapshot of a {@link CsrGraph}. All values are little-endian:
+ * <pre>
+ * int  magic          "FGS1"
+ * int  format version
+ * int  user count     (n)
+ * int  edge count     (m)
+ * long log epoch      epoch of the change log the snapshot was taken from
+ * long log records    records of that log already contained in the snapshot
+ * int  users[n]
+ * int  offsets[n + 1]
+ * int  neighbours[m]
+ * </pre>
+ * Reading maps the file with {@link FileChannel#map}, so the graph is usable
+ * straight away and its arrays stay outside the Java heap. A single mapping is
+ * limited to 2 GB, which is about 500 million friend rows.
+ *
+ * @author Frederik Braagaard
+ */
+final class FriendGraphSnapshot {
+
+    static final int MAGIC = 0x31534746; // "FGS1" read as a little-endian int
+    static final int FORMAT_VERSION = 1;
+    static final int HEADER_SIZE = 32;
+    private static final int WRITE_CHUNK = 64 * 1024;
+
+    final CsrGraph graph;
+    final long logEpoch;
+    final long logRecords;
+
+    private FriendGraphSnapshot(CsrGraph graph, long logEpoch, long logRecords) {
+        this.graph = graph;
+        this.logEpoch = logEpoch;
+        this.logRecords = logRecords;
+    }
+
+    /**
+     * Writes the graph to a temporary file next to {@code file} and moves it
+     * into place once it is on disk, so a crash never leaves half a snapshot.
+     */
+    static void write(CsrGraph graph, long logEpoch, long logRecords, Path file) throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(WRITE_CHUNK).order(ByteOrder.LITTLE_ENDIAN);
+            buffer.putInt(MAGIC)
+                    .putInt(FORMAT_VERSION)
+                    .putInt(graph.userCount())
+                    .putInt(graph.edgeCount())
+                    .putLong(logEpoch)
+                    .putLong(logRecords);
+            writeInts(channel, buffer, graph.users);
+            writeInts(channel, buffer, graph.offsets);
+            writeInts(channel, buffer, graph.neighbours);
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Maps a snapshot file read-only.
+     *
+     * @throws IOException if the file is missing, truncated or not a snapshot
+     */
+    static FriendGraphSnapshot map(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_SIZE || size > Integer.MAX_VALUE) {
+                throw new IOException("Not a friend graph snapshot: " + file);
+            }
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            mapped.order(ByteOrder.LITTLE_ENDIAN);
+            if (mapped.getInt(0) != MAGIC || mapped.getInt(4) != FORMAT_VERSION) {
+                throw new IOException("Not a friend graph snapshot: " + file);
+            }
+            int users = mapped.getInt(8);
+            int edges = mapped.getInt(12);
+            long logEpoch = mapped.getLong(16);
+            long logRecords = mapped.getLong(24);
+            long expected = HEADER_SIZE + 4L * (users + users + 1 + edges);
+            if (users < 0 || edges < 0 || size != expected) {
+                throw new IOException("Friend graph snapshot is truncated: " + file);
+            }
+            int position = HEADER_SIZE;
+            IntBuffer userBuffer = ints(mapped, position, users);
+            position += 4 * users;
+            IntBuffer offsetBuffer = ints(mapped, position, users + 1);
+            position += 4 * (users + 1);
+            IntBuffer neighbourBuffer = ints(mapped, position, edges);
+            return new FriendGraphSnapshot(new CsrGraph(userBuffer, offsetBuffer, neighbourBuffer), logEpoch, logRecords);
+        }
+    }
+
+    private static IntBuffer ints(ByteBuffer mapped, int position, int count) {
+        ByteBuffer slice = mapped.duplicate();
+        slice.position(position);
+        slice.limit(position + 4 * count);
+        return slice.slice().order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+    }
+
+    private static void writeInts(FileChannel channel, ByteBuffer buffer, IntBuffer values) throws IOException {
+        for (int i = 0; i < values.limit(); i++) {
+            if (buffer.remaining() < 4) {
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                buffer.clear();
+            }
+            buffer.putInt(values.get(i));
+        }
+    }
+}
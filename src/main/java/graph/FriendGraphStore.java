@@ -0,0 +1,158 @@
+package graph;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Keeps a {@link FriendGraph} on disk as a memory-mapped
+ * {@link FriendGraphSnapshot} plus a {@link FriendGraphChangeLog}.
+ * <p>
+ * On start the last snapshot is mapped and the changes logged after it are
+ * replayed, so the friends table only has to be read when there is no usable
+ * snapshot. A new snapshot is written periodically, after which the graph
+ * switches to the mapped copy and the log is rotated.
+ * </p>
+ * <p>
+ * The log only sees the friendships changed through this server. Delete the
+ * snapshot directory to force a rebuild from the database, e.g. after editing
+ * the friends table by hand.
+ * </p>
+ *
+ * @author Frederik Braagaard
+ */
+public final class FriendGraphStore implements AutoCloseable {
+
+    static final String SNAPSHOT_FILE = "friend-graph.snapshot";
+    static final String LOG_FILE = "friend-graph.log";
+    private static final Logger LOG = Logger.getLogger(FriendGraphStore.class.getName());
+
+    private final Path snapshotFile;
+    private final FriendGraph graph;
+    private final FriendGraphChangeLog changeLog;
+    private final ScheduledExecutorService scheduler;
+
+    private FriendGraphStore(Path snapshotFile, FriendGraph graph, FriendGraphChangeLog changeLog, long intervalMinutes) {
+        this.snapshotFile = snapshotFile;
+        this.graph = graph;
+        this.changeLog = changeLog;
+        if (intervalMinutes > 0) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "friend-graph-snapshot");
+                thread.setDaemon(true);
+                return thread;
+            });
+            scheduler.scheduleWithFixedDelay(this::snapshotQuietly, intervalMinutes, intervalMinutes, TimeUnit.MINUTES);
+        } else {
+            scheduler = null;
+        }
+    }
+
+    /**
+     * Opens the graph kept in {@code directory}.
+     *
+     * @param directory where the snapshot and change log are kept
+     * @param intervalMinutes how often a new snapshot is written, 0 to only
+     * write one when the graph is rebuilt
+     * @param database loads the graph from the database when there is no
+     * usable snapshot
+     * @return the store, its graph is ready to use
+     */
+    public static FriendGraphStore open(Path directory, long intervalMinutes, Callable<FriendGraph> database) throws Exception {
+        Files.createDirectories(directory);
+        Path snapshotFile = directory.resolve(SNAPSHOT_FILE);
+        Path logFile = directory.resolve(LOG_FILE);
+
+        FriendGraphSnapshot snapshot = null;
+        if (Files.exists(snapshotFile)) {
+            try {
+                snapshot = FriendGraphSnapshot.map(snapshotFile);
+            } catch (IOException ex) {
+                LOG.log(Level.WARNING, "Friend graph snapshot could not be read, rebuilding it", ex);
+            }
+        }
+
+        if (snapshot != null) {
+            FriendGraphChangeLog changeLog = FriendGraphChangeLog.open(logFile, snapshot.logEpoch);
+            long replayFrom = -1;
+            if (changeLog.epoch() == snapshot.logEpoch) {
+                replayFrom = snapshot.logRecords;
+            } else if (changeLog.epoch() == snapshot.logEpoch + 1) {
+                //The log was rotated right after the snapshot was written.
+                replayFrom = 0;
+            }
+            if (replayFrom >= 0) {
+                FriendGraph graph = new FriendGraph(snapshot.graph);
+                changeLog.replay(replayFrom, graph);
+                graph.attachChangeLog(changeLog);
+                return new FriendGraphStore(snapshotFile, graph, changeLog, intervalMinutes);
+            }
+            LOG.warning("Friend graph change log does not belong to the snapshot, rebuilding it");
+            changeLog.close();
+        }
+
+        Files.deleteIfExists(logFile);
+        FriendGraph graph = database.call();
+        FriendGraphChangeLog changeLog = FriendGraphChangeLog.open(logFile, 0);
+        graph.attachChangeLog(changeLog);
+        FriendGraphStore store = new FriendGraphStore(snapshotFile, graph, changeLog, intervalMinutes);
+        store.snapshot();
+        return store;
+    }
+
+    /**
+     * Deletes the snapshot kept in {@code directory}, so the next open
+     * rebuilds the graph from the database. For when friendships changed
+     * while no store was open, which the change log never saw.
+     */
+    public static void discard(Path directory) throws IOException {
+        Files.deleteIfExists(directory.resolve(SNAPSHOT_FILE));
+    }
+
+    public FriendGraph getGraph() {
+        return graph;
+    }
+
+    /**
+     * Writes a new snapshot, maps it in place of the graph's CSR arrays and
+     * rotates the change log past the records it contains.
+     */
+    public void snapshot() throws IOException {
+        CsrGraph csr;
+        long epoch;
+        long records;
+        graph.writeLock.lock();
+        try {
+            csr = graph.compact();
+            epoch = changeLog.epoch();
+            records = changeLog.records();
+        } finally {
+            graph.writeLock.unlock();
+        }
+        FriendGraphSnapshot.write(csr, epoch, records, snapshotFile);
+        changeLog.rotate(records);
+        graph.replaceBase(csr, FriendGraphSnapshot.map(snapshotFile).graph);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+        changeLog.close();
+    }
+
+    private void snapshotQuietly() {
+        try {
+            snapshot();
+        } catch (IOException | RuntimeException ex) {
+            LOG.log(Level.SEVERE, "Could not write the friend graph snapshot", ex);
+        }
+    }
+}
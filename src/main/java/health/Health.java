@@ -0,0 +1,188 @@
+package health;
+
+import facades.UserFacade;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import mongodb.SharedMongoClient;
+import org.bson.Document;
+import utils.ConnectionPool;
+import utils.EMF_Creator;
+import utils.EMF_Creator.DbSelector;
+import utils.EMF_Creator.Strategy;
+import utils.Settings;
+
+/**
+ * Whether this server can take requests, for a load balancer to decide if
+ * it gets any. The probes named by health.probes run in the background every
+ * health.probe.interval.seconds, each on its own thread so a hanging one
+ * does not hold up the others, and the readiness only reads their last
+ * results:
+ * <ul>
+ * <li>jpa: the EntityManagerFactory starts, which connects EclipseLink
+ * and creates missing tables, and an EntityManager can run a query</li>
+ * <li>jdbc: the pool of UserFacade has a free connection and it works</li>
+ * <li>mongo: the shared Mongo client gets an answer to a ping</li>
+ * <li>pictures: a file can be written to the profile picture folder</li>
+ * </ul>
+ * The server is ready once every probe has passed, so it only comes into
+ * rotation after the first round has warmed up the connections, and it drops
+ * out while any probe fails, e.g. while every pooled connection is in use.
+ *
+ * @author Frederik Braagaard
+ */
+public final class Health {
+
+    private static Health instance;
+    //Made by the jpa probe once the database answers, and only used by it.
+    private static volatile EntityManagerFactory emf;
+
+    private final List<Probe> probes;
+    private final long staleMillis;
+
+    Health(List<Probe> probes, long staleMillis) {
+        this.probes = probes;
+        this.staleMillis = staleMillis;
+    }
+
+    /**
+     *
+     * @return the health of this server, its probes started the first time.
+     */
+    public static synchronized Health getHealth() {
+        if (instance == null) {
+            int interval = Settings.getIntValue("health.probe.interval.seconds", 5);
+            instance = new Health(probes(), TimeUnit.SECONDS.toMillis(Settings.getIntValue("health.probe.stale.seconds", 3 * interval)));
+            instance.start(interval);
+        }
+        return instance;
+    }
+
+    private static List<Probe> probes() {
+        String names = Settings.getPropertyValue("health.probes");
+        List<Probe> probes = new ArrayList<>();
+        for (String name : Arrays.asList((names == null ? "jpa,jdbc,mongo,pictures" : names).split(","))) {
+            switch (name.trim()) {
+                case "":
+                    break;
+                case "jpa":
+                    probes.add(new Probe("jpa", Health::checkJpa));
+                    break;
+                case "jdbc":
+                    probes.add(new Probe("jdbc", Health::checkJdbc));
+                    break;
+                case "mongo":
+                    probes.add(new Probe("mongo", Health::checkMongo));
+                    break;
+                case "pictures":
+                    probes.add(new Probe("pictures", Health::checkPictures));
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown health probe " + name);
+            }
+        }
+        return probes;
+    }
+
+    void start(int intervalSeconds) {
+        if (probes.isEmpty()) {
+            return;
+        }
+        AtomicInteger count = new AtomicInteger();
+        ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(probes.size(), runnable -> {
+            Thread thread = new Thread(runnable, "health-probe-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (Probe probe : probes) {
+            scheduler.scheduleWithFixedDelay(probe::run, 0, intervalSeconds, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * UP when every probe passed its last check, DOWN otherwise.
+     */
+    public HealthReport ready() {
+        List<Probe.Result> checks = new ArrayList<>(probes.size());
+        boolean up = true;
+        for (Probe probe : probes) {
+            Probe.Result result = probe.result(staleMillis);
+            up &= result.isUp();
+            checks.add(result);
+        }
+        return new HealthReport(up ? HealthReport.UP : HealthReport.DOWN, checks);
+    }
+
+    /**
+     * The process is running and answering, which is all a liveness check
+     * asks. It does not depend on the probes, so a database outage does not
+     * get the server restarted.
+     */
+    public static HealthReport live() {
+        return new HealthReport(HealthReport.UP, new ArrayList<>());
+    }
+
+    private static String checkJpa() {
+        if (emf == null) {
+            //Like the resources do, a failure is retried at the next check.
+            emf = EMF_Creator.createEntityManagerFactory(DbSelector.DEV, Strategy.CREATE);
+        }
+        EntityManager em = emf.createEntityManager();
+        try {
+            em.createNativeQuery("SELECT 1").getSingleResult();
+        } finally {
+            em.close();
+        }
+        return "ok";
+    }
+
+    private static String checkJdbc() throws Exception {
+        DbSelector db = UserFacade.getDbSelector();
+        //Borrowing from an exhausted pool would wait for the next connection handed back.
+        if (ConnectionPool.isExhausted(db)) {
+            throw new IllegalStateException("every pooled connection is in use");
+        }
+        try (Connection connection = ConnectionPool.getConnection(db)) {
+            if (!connection.isValid(2)) {
+                throw new IllegalStateException("connection not valid");
+            }
+        }
+        return "ok";
+    }
+
+    private static String checkMongo() throws IOException {
+        SharedMongoClient.getSharedMongoClient().getDatabase().runCommand(new Document("ping", 1));
+        return "ok";
+    }
+
+    private static String checkPictures() throws IOException {
+        Properties properties = new Properties();
+        try (InputStream inputStream = Health.class.getClassLoader().getResourceAsStream("picture.properties")) {
+            if (inputStream == null) {
+                throw new FileNotFoundException("property file 'picture.properties' not found in the classpath");
+            }
+            properties.load(inputStream);
+        }
+        String folder = properties.getProperty("picturepathdemo");
+        if (folder == null || !Files.isDirectory(Paths.get(folder))) {
+            throw new IllegalStateException("picture folder missing");
+        }
+        Path file = Files.createTempFile(Paths.get(folder), "health-", ".tmp");
+        Files.delete(file);
+        return "ok";
+    }
+}
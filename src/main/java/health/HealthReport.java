@@ -0,0 +1,34 @@
+package health;
+
+import java.util.List;
+
+/**
+ * The answer of /api/health/live and /api/health/ready.
+ *
+ * @author Frederik Braagaard
+ */
+public final class HealthReport {
+
+    public static final String UP = "UP";
+    public static final String DOWN = "DOWN";
+
+    private final String status;
+    private final List<Probe.Result> checks;
+
+    HealthReport(String status, List<Probe.Result> checks) {
+        this.status = status;
+        this.checks = checks;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public boolean isUp() {
+        return UP.equals(status);
+    }
+
+    public List<Probe.Result> getChecks() {
+        return checks;
+    }
+}
@@ -0,0 +1,113 @@
+package health;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A check of one thing the server needs, run in the background by
+ * {@link Health} so that asking for its result costs nothing. A check
+ * returns a short detail when it passes and throws when it does not. An
+ * IllegalStateException is taken to carry a message fit to show, other
+ * exceptions are only named in the result and logged in full.
+ *
+ * @author Frederik Braagaard
+ */
+public final class Probe {
+
+    private static final Logger LOG = Logger.getLogger(Probe.class.getName());
+
+    private final String name;
+    private final Callable<String> check;
+    private volatile Result last;
+
+    Probe(String name, Callable<String> check) {
+        this.name = name;
+        this.check = check;
+    }
+
+    String getName() {
+        return name;
+    }
+
+    void run() {
+        long start = System.nanoTime();
+        Result result;
+        try {
+            result = new Result(name, true, check.call(), start);
+        } catch (IllegalStateException ex) {
+            result = new Result(name, false, ex.getMessage(), start);
+        } catch (Exception ex) {
+            result = new Result(name, false, ex.getClass().getSimpleName(), start);
+            if (last == null || last.up) {
+                LOG.log(Level.WARNING, "Health probe " + name + " failed", ex);
+            }
+        }
+        last = result;
+    }
+
+    /**
+     * The last result, or a failed one if there is none yet or the last is
+     * older than staleMillis, as when the check hangs.
+     */
+    Result result(long staleMillis) {
+        Result result = last;
+        if (result == null) {
+            return new Result(name, false, "not checked yet", 0, 0);
+        }
+        long age = System.currentTimeMillis() - result.checkedAt;
+        if (age > staleMillis) {
+            return new Result(name, false, "no result for " + TimeUnit.MILLISECONDS.toSeconds(age) + " s",
+                    result.latencyMillis, result.checkedAt);
+        }
+        return result;
+    }
+
+    /**
+     * The outcome of a check.
+     */
+    public static final class Result {
+
+        private final String name;
+        private final boolean up;
+        private final String detail;
+        private final double latencyMillis;
+        private final long checkedAt;
+
+        Result(String name, boolean up, String detail, long startNanos) {
+            this(name, up, detail, (System.nanoTime() - startNanos) / 1e6, System.currentTimeMillis());
+        }
+
+        Result(String name, boolean up, String detail, double latencyMillis, long checkedAt) {
+            this.name = name;
+            this.up = up;
+            this.detail = detail;
+            this.latencyMillis = latencyMillis;
+            this.checkedAt = checkedAt;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public boolean isUp() {
+            return up;
+        }
+
+        public String getDetail() {
+            return detail;
+        }
+
+        /**
+         * How long the check took.
+         */
+        public double getLatencyMillis() {
+            return latencyMillis;
+        }
+
+        public long getCheckedAt() {
+            return checkedAt;
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A call of a UserFacade method, on the database executor or on the request
+ * thread.
+ *
+ * @author Frederik Braagaard
+ */
+@Name("sem4.FacadeCall")
+@Label("Facade Call")
+@Category({"Sem4", "Persistence"})
+@StackTrace(false)
+public final class FacadeCallEvent extends jdk.jfr.Event {
+
+    @Label("Method")
+    private final String method;
+
+    @Label("Succeeded")
+    private boolean succeeded;
+
+    public FacadeCallEvent(String method) {
+        this.method = method;
+    }
+
+    public void setSucceeded(boolean succeeded) {
+        this.succeeded = succeeded;
+    }
+}
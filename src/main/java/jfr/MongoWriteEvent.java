@@ -0,0 +1,41 @@
+package jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A write command sent to Mongo, from when the driver starts sending it
+ * until the reply has been read.
+ *
+ * @author Frederik Braagaard
+ */
+@Name("sem4.MongoWrite")
+@Label("Mongo Write")
+@Category({"Sem4", "Persistence"})
+@StackTrace(false)
+public final class MongoWriteEvent extends jdk.jfr.Event {
+
+    @Label("Command")
+    private final String command;
+
+    @Label("Collection")
+    private final String collection;
+
+    @Label("Documents")
+    private final int documents;
+
+    @Label("Failed")
+    private boolean failed;
+
+    public MongoWriteEvent(String command, String collection, int documents) {
+        this.command = command;
+        this.collection = collection;
+        this.documents = documents;
+    }
+
+    public void setFailed(boolean failed) {
+        this.failed = failed;
+    }
+}
@@ -0,0 +1,27 @@
+package jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A BCrypt check of a password, which is most of the time a login takes.
+ *
+ * @author Frederik Braagaard
+ */
+@Name("sem4.PasswordVerification")
+@Label("Password Verification")
+@Category({"Sem4", "Security"})
+@Description("User.verifyPassword")
+@StackTrace(false)
+public final class PasswordVerificationEvent extends jdk.jfr.Event {
+
+    @Label("Verified")
+    private boolean verified;
+
+    public void setVerified(boolean verified) {
+        this.verified = verified;
+    }
+}
@@ -0,0 +1,36 @@
+package jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * The reading of an uploaded profile picture from the request, or the
+ * writing of it to the picture folder.
+ *
+ * @author Frederik Braagaard
+ */
+@Name("sem4.PictureUpload")
+@Label("Picture Upload")
+@Category({"Sem4", "Upload"})
+public final class PictureUploadEvent extends jdk.jfr.Event {
+
+    public static final String READ = "read";
+    public static final String WRITE = "write";
+
+    @Label("Phase")
+    private final String phase;
+
+    @Label("Size")
+    @DataAmount
+    private long bytes;
+
+    public PictureUploadEvent(String phase) {
+        this.phase = phase;
+    }
+
+    public void setBytes(long bytes) {
+        this.bytes = bytes;
+    }
+}
@@ -0,0 +1,35 @@
+package jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * The signing of a new JWT or the check of one sent with a request.
+ *
+ * @author Frederik Braagaard
+ */
+@Name("sem4.Token")
+@Label("Token")
+@Category({"Sem4", "Security"})
+@StackTrace(false)
+public final class TokenEvent extends jdk.jfr.Event {
+
+    public static final String CREATE = "create";
+    public static final String VERIFY = "verify";
+
+    @Label("Operation")
+    private final String operation;
+
+    @Label("Valid")
+    private boolean valid;
+
+    public TokenEvent(String operation) {
+        this.operation = operation;
+    }
+
+    public void setValid(boolean valid) {
+        this.valid = valid;
+    }
+}
@@ -0,0 +1,251 @@
+package json;
+
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import dtos.user.FriendsDTO;
+import dtos.user.UserDTO;
+import dtos.user.UserPostsDTO;
+import errorhandling.ExceptionDTO;
+import java.io.IOException;
+import java.util.Date;
+
+/**
+ * Hand-written type adapters for the DTOs sent in most responses. They write
+ * the same field names, in the same order, as Gson's reflective adapter, and
+ * dates go through Gson's own date adapter so the format is unchanged.
+ *
+ * @author Frederik Braagaard
+ */
+public class DtoTypeAdapterFactory implements TypeAdapterFactory {
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type) {
+        Class<? super T> raw = type.getRawType();
+        if (raw == FriendsDTO.class) {
+            return (TypeAdapter<T>) new FriendsDTOAdapter();
+        }
+        if (raw == UserPostsDTO.class) {
+            return (TypeAdapter<T>) new UserPostsDTOAdapter(gson.getAdapter(Date.class));
+        }
+        if (raw == UserDTO.class) {
+            return (TypeAdapter<T>) new UserDTOAdapter(gson.getAdapter(UserPostsDTO.class));
+        }
+        if (raw == ExceptionDTO.class) {
+            return (TypeAdapter<T>) new ExceptionDTOAdapter();
+        }
+        return null;
+    }
+
+    private static final class FriendsDTOAdapter extends TypeAdapter<FriendsDTO> {
+
+        @Override
+        public void write(JsonWriter out, FriendsDTO dto) throws IOException {
+            if (dto == null) {
+                out.nullValue();
+                return;
+            }
+            out.beginObject();
+            out.name("friendID").value(dto.getFriendID());
+            out.name("fullName").value(dto.getFullName());
+            out.name("picture").value(dto.getPicture());
+            out.endObject();
+        }
+
+        @Override
+        public FriendsDTO read(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+            FriendsDTO dto = new FriendsDTO();
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "friendID":
+                        dto.setFriendID(in.nextInt());
+                        break;
+                    case "fullName":
+                        dto.setFullName(nextString(in));
+                        break;
+                    case "picture":
+                        dto.setPicture(nextString(in));
+                        break;
+                    default:
+                        in.skipValue();
+                }
+            }
+            in.endObject();
+            return dto;
+        }
+    }
+
+    private static final class UserPostsDTOAdapter extends TypeAdapter<UserPostsDTO> {
+
+        private final TypeAdapter<Date> dates;
+
+        UserPostsDTOAdapter(TypeAdapter<Date> dates) {
+            this.dates = dates;
+        }
+
+        @Override
+        public void write(JsonWriter out, UserPostsDTO dto) throws IOException {
+            if (dto == null) {
+                out.nullValue();
+                return;
+            }
+            out.beginObject();
+            out.name("message").value(dto.getMessage());
+            out.name("postDate");
+            dates.write(out, dto.getPostDate());
+            out.endObject();
+        }
+
+        @Override
+        public UserPostsDTO read(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+            UserPostsDTO dto = new UserPostsDTO();
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "message":
+                        dto.setMessage(nextString(in));
+                        break;
+                    case "postDate":
+                        dto.setPostDate(dates.read(in));
+                        break;
+                    default:
+                        in.skipValue();
+                }
+            }
+            in.endObject();
+            return dto;
+        }
+    }
+
+    private static final class UserDTOAdapter extends TypeAdapter<UserDTO> {
+
+        private final TypeAdapter<UserPostsDTO> posts;
+
+        UserDTOAdapter(TypeAdapter<UserPostsDTO> posts) {
+            this.posts = posts;
+        }
+
+        @Override
+        public void write(JsonWriter out, UserDTO dto) throws IOException {
+            if (dto == null) {
+                out.nullValue();
+                return;
+            }
+            out.beginObject();
+            out.name("fullName").value(dto.getFullName());
+            out.name("profilePicture").value(dto.getProfilePicture());
+            out.name("userID").value(dto.getUserID());
+            out.name("posts");
+            if (dto.getPosts() == null) {
+                out.nullValue();
+            } else {
+                out.beginArray();
+                for (UserPostsDTO post : dto.getPosts()) {
+                    posts.write(out, post);
+                }
+                out.endArray();
+            }
+            out.endObject();
+        }
+
+        @Override
+        public UserDTO read(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+            UserDTO dto = new UserDTO();
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "fullName":
+                        dto.setFullName(nextString(in));
+                        break;
+                    case "profilePicture":
+                        dto.setProfilePicture(nextString(in));
+                        break;
+                    case "userID":
+                        dto.setUserID(in.nextInt());
+                        break;
+                    case "posts":
+                        if (in.peek() == JsonToken.NULL) {
+                            in.nextNull();
+                            break;
+                        }
+                        in.beginArray();
+                        while (in.hasNext()) {
+                            dto.addToPostList(posts.read(in));
+                        }
+                        in.endArray();
+                        break;
+                    default:
+                        in.skipValue();
+                }
+            }
+            in.endObject();
+            return dto;
+        }
+    }
+
+    private static final class ExceptionDTOAdapter extends TypeAdapter<ExceptionDTO> {
+
+        @Override
+        public void write(JsonWriter out, ExceptionDTO dto) throws IOException {
+            if (dto == null) {
+                out.nullValue();
+                return;
+            }
+            out.beginObject();
+            out.name("code").value(dto.getCode());
+            out.name("message").value(dto.getMessage());
+            out.endObject();
+        }
+
+        @Override
+        public ExceptionDTO read(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+            int code = 0;
+            String message = null;
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "code":
+                        code = in.nextInt();
+                        break;
+                    case "message":
+                        message = nextString(in);
+                        break;
+                    default:
+                        in.skipValue();
+                }
+            }
+            in.endObject();
+            return new ExceptionDTO(code, message);
+        }
+    }
+
+    private static String nextString(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        return in.nextString();
+    }
+}
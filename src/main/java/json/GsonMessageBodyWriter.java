@@ -0,0 +1,78 @@
+package json;
+
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.core.UriInfo;
+import javax.ws.rs.ext.MessageBodyWriter;
+import javax.ws.rs.ext.Provider;
+
+/**
+ * Writes response entities as JSON straight to the output stream, without
+ * building the whole response as a String first. Output is compact; add
+ * {@code ?pretty=true} to a request to get it indented.
+ * <p>
+ * Strings are left to Jersey's own writer, so resources that already return
+ * JSON text keep working.
+ * </p>
+ *
+ * @author Frederik Braagaard
+ */
+@Provider
+@Produces({MediaType.APPLICATION_JSON, "application/*+json"})
+public class GsonMessageBodyWriter implements MessageBodyWriter<Object> {
+
+    public static final String PRETTY_PARAMETER = "pretty";
+
+    @Context
+    private UriInfo uriInfo;
+
+    @Override
+    public boolean isWriteable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+        return type != String.class && isJson(mediaType);
+    }
+
+    @Override
+    public long getSize(Object value, Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+        return -1;
+    }
+
+    @Override
+    public void writeTo(Object value, Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType,
+            MultivaluedMap<String, Object> httpHeaders, OutputStream entityStream) throws IOException {
+        Gson gson = isPretty() ? JsonSupport.PRETTY : JsonSupport.COMPACT;
+        JsonWriter writer = gson.newJsonWriter(new OutputStreamWriter(entityStream, StandardCharsets.UTF_8));
+        gson.toJson(value, genericType == null ? type : genericType, writer);
+        //Flushed but not closed, the container closes the entity stream.
+        writer.flush();
+    }
+
+    private boolean isPretty() {
+        if (uriInfo == null) {
+            return false;
+        }
+        try {
+            return Boolean.parseBoolean(uriInfo.getQueryParameters().getFirst(PRETTY_PARAMETER));
+        } catch (IllegalStateException ex) {
+            //Outside of a request, e.g. when a filter aborts before matching.
+            return false;
+        }
+    }
+
+    static boolean isJson(MediaType mediaType) {
+        if (mediaType == null) {
+            return false;
+        }
+        String subtype = mediaType.getSubtype();
+        return "json".equalsIgnoreCase(subtype) || subtype.toLowerCase().endsWith("+json");
+    }
+}
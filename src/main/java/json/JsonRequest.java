@@ -0,0 +1,25 @@
+package json;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a class as a JSON request body read by {@link JsonRequestReader}.
+ * The fields of the class are the only names the body may contain, and all
+ * of them must be present.
+ *
+ * @author Frederik Braagaard
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface JsonRequest {
+
+    /**
+     * Largest body accepted, in bytes. Bigger bodies are rejected with 413.
+     */
+    int maxBytes() default 4096;
+}
@@ -0,0 +1,244 @@
+package json;
+
+import com.google.gson.annotations.SerializedName;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.MalformedJsonException;
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.ws.rs.Consumes;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.ext.MessageBodyReader;
+import javax.ws.rs.ext.Provider;
+
+/**
+ * Reads {@link JsonRequest} bodies with a streaming {@link JsonReader}
+ * straight into the request object, without first reading the body into a
+ * String or a JSON tree.
+ * <p>
+ * A body larger than the class allows is rejected with 413, using the
+ * Content-Length header when there is one and otherwise as soon as too many
+ * bytes have been read. Unknown, missing, repeated or wrongly typed fields
+ * and malformed JSON are rejected with 400. A field may also be a List of
+ * another {@link JsonRequest} class, whose objects are checked the same way.
+ * </p>
+ *
+ * @author Frederik Braagaard
+ */
+@Provider
+@Consumes({MediaType.APPLICATION_JSON, MediaType.WILDCARD})
+public class JsonRequestReader implements MessageBodyReader<Object> {
+
+    private static final Map<Class<?>, RequestFields> FIELDS = new ConcurrentHashMap<>();
+
+    @Override
+    public boolean isReadable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+        return type.isAnnotationPresent(JsonRequest.class);
+    }
+
+    @Override
+    public Object readFrom(Class<Object> type, Type genericType, Annotation[] annotations, MediaType mediaType,
+            MultivaluedMap<String, String> httpHeaders, InputStream entityStream) throws IOException {
+        int maxBytes = type.getAnnotation(JsonRequest.class).maxBytes();
+        String length = httpHeaders == null ? null : httpHeaders.getFirst(HttpHeaders.CONTENT_LENGTH);
+        if (length != null && isLongerThan(length, maxBytes)) {
+            throw new WebApplicationException("Request body is too large", 413);
+        }
+        try {
+            JsonReader reader = new JsonReader(new InputStreamReader(new LimitedInputStream(entityStream, maxBytes), charset(mediaType)));
+            Object request = readObject(reader, type);
+            if (reader.peek() != JsonToken.END_DOCUMENT) {
+                throw new WebApplicationException("Malformed JSON request", 400);
+            }
+            return request;
+        } catch (TooLargeException ex) {
+            throw new WebApplicationException("Request body is too large", 413);
+        } catch (MalformedJsonException | IllegalStateException | NumberFormatException | EOFException ex) {
+            throw new WebApplicationException("Malformed JSON request", 400);
+        } catch (InstantiationException | IllegalAccessException ex) {
+            throw new IllegalStateException("Request class " + type.getName() + " needs a public no-arg constructor", ex);
+        }
+    }
+
+    private static Object readObject(JsonReader reader, Class<?> type) throws IOException, InstantiationException, IllegalAccessException {
+        RequestFields fields = fieldsOf(type);
+        Object request = type.newInstance();
+        long seen = 0;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            Integer index = fields.indexes.get(name);
+            if (index == null) {
+                throw new WebApplicationException("Unknown field: " + name, 400);
+            }
+            if ((seen & (1L << index)) != 0) {
+                throw new WebApplicationException("Repeated field: " + name, 400);
+            }
+            seen |= 1L << index;
+            Field field = fields.fields[index];
+            field.set(request, readValue(reader, field, name));
+        }
+        reader.endObject();
+        for (int i = 0; i < fields.names.length; i++) {
+            if ((seen & (1L << i)) == 0) {
+                throw new WebApplicationException("Missing field: " + fields.names[i], 400);
+            }
+        }
+        return request;
+    }
+
+    private static Object readValue(JsonReader reader, Field field, String name) throws IOException, InstantiationException, IllegalAccessException {
+        if (reader.peek() == JsonToken.NULL) {
+            throw new WebApplicationException("Missing field: " + name, 400);
+        }
+        Class<?> type = field.getType();
+        if (type == List.class) {
+            //A list of objects, each read with the whitelist of its own request class.
+            Class<?> element = listElement(field);
+            List<Object> values = new ArrayList<>();
+            reader.beginArray();
+            while (reader.hasNext()) {
+                if (reader.peek() == JsonToken.NULL) {
+                    throw new WebApplicationException("Missing field: " + name, 400);
+                }
+                values.add(readObject(reader, element));
+            }
+            reader.endArray();
+            return values;
+        }
+        if (type == String.class) {
+            return reader.nextString();
+        }
+        if (type == int.class || type == Integer.class) {
+            return reader.nextInt();
+        }
+        if (type == long.class || type == Long.class) {
+            return reader.nextLong();
+        }
+        if (type == boolean.class || type == Boolean.class) {
+            return reader.nextBoolean();
+        }
+        throw new IllegalArgumentException("Unsupported request field type " + type.getName());
+    }
+
+    private static Class<?> listElement(Field field) {
+        Type generic = field.getGenericType();
+        if (generic instanceof ParameterizedType) {
+            Type element = ((ParameterizedType) generic).getActualTypeArguments()[0];
+            if (element instanceof Class && ((Class<?>) element).isAnnotationPresent(JsonRequest.class)) {
+                return (Class<?>) element;
+            }
+        }
+        throw new IllegalArgumentException("Unsupported request field type " + generic.getTypeName());
+    }
+
+    static RequestFields fieldsOf(Class<?> type) {
+        return FIELDS.computeIfAbsent(type, RequestFields::new);
+    }
+
+    private static boolean isLongerThan(String length, int maxBytes) {
+        try {
+            return Long.parseLong(length.trim()) > maxBytes;
+        } catch (NumberFormatException ex) {
+            return false;
+        }
+    }
+
+    private static Charset charset(MediaType mediaType) {
+        String charset = mediaType == null ? null : mediaType.getParameters().get(MediaType.CHARSET_PARAMETER);
+        try {
+            return charset == null ? StandardCharsets.UTF_8 : Charset.forName(charset);
+        } catch (IllegalArgumentException ex) {
+            throw new WebApplicationException("Unsupported charset: " + charset, 415);
+        }
+    }
+
+    /**
+     * The whitelist of a request class. Fields are named by their
+     * {@link SerializedName} or else by the field name.
+     */
+    static final class RequestFields {
+
+        final Map<String, Integer> indexes = new HashMap<>();
+        final Field[] fields;
+        final String[] names;
+
+        RequestFields(Class<?> type) {
+            List<Field> found = new ArrayList<>();
+            for (Field field : type.getDeclaredFields()) {
+                if (!Modifier.isStatic(field.getModifiers()) && !field.isSynthetic()) {
+                    found.add(field);
+                }
+            }
+            if (found.size() > Long.SIZE) {
+                throw new IllegalStateException("Request class " + type.getName() + " has too many fields");
+            }
+            fields = found.toArray(new Field[found.size()]);
+            names = new String[fields.length];
+            for (int i = 0; i < fields.length; i++) {
+                SerializedName serializedName = fields[i].getAnnotation(SerializedName.class);
+                names[i] = serializedName == null ? fields[i].getName() : serializedName.value();
+                fields[i].setAccessible(true);
+                indexes.put(names[i], i);
+            }
+        }
+    }
+
+    private static final class TooLargeException extends IOException {
+
+        private static final long serialVersionUID = 1L;
+    }
+
+    /**
+     * Stops reading as soon as more than {@code limit} bytes have come in.
+     */
+    private static final class LimitedInputStream extends FilterInputStream {
+
+        private long remaining;
+
+        LimitedInputStream(InputStream in, int limit) {
+            super(in);
+            this.remaining = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0 && --remaining < 0) {
+                throw new TooLargeException();
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            //Asking for one byte more than allowed is enough to notice an oversized body.
+            int read = super.read(buffer, offset, (int) Math.min(length, remaining + 1));
+            if (read > 0) {
+                remaining -= read;
+                if (remaining < 0) {
+                    throw new TooLargeException();
+                }
+            }
+            return read;
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package json;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+/**
+ * The Gson instances shared by the whole application. Gson is thread safe
+ * and caches its type adapters, so creating it once avoids rebuilding the
+ * reflection data on every request.
+ *
+ * @author Frederik Braagaard
+ */
+public final class JsonSupport {
+
+    /**
+     * Compact output, used for every response unless pretty printing is asked
+     * for.
+     */
+    public static final Gson COMPACT = new GsonBuilder()
+            .registerTypeAdapterFactory(new DtoTypeAdapterFactory())
+            .create();
+
+    /**
+     * Indented output for debugging, see {@link GsonMessageBodyWriter}.
+     */
+    public static final Gson PRETTY = COMPACT.newBuilder()
+            .setPrettyPrinting()
+            .create();
+
+    private JsonSupport() {
+    }
+
+    public static String toJson(Object value) {
+        return COMPACT.toJson(value);
+    }
+}
@@ -0,0 +1,167 @@
+package metrics;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Wraps JDBC connections so every statement run on them is timed by
+ * {@link SqlMetrics}. The wrappers are dynamic proxies, so they follow the
+ * JDBC interfaces of whatever driver and pool sit underneath, and calls other
+ * than the executes pass straight through.
+ *
+ * @author Frederik Braagaard
+ */
+public final class InstrumentedJdbc {
+
+    private InstrumentedJdbc() {
+    }
+
+    /**
+     * Wraps a connection, or returns it as it is when
+     * db.instrumentation.enabled is off.
+     */
+    public static Connection wrap(Connection connection) {
+        if (!SqlMetrics.isEnabled() || connection == null || (Proxy.isProxyClass(connection.getClass())
+                && Proxy.getInvocationHandler(connection) instanceof ConnectionHandler)) {
+            return connection;
+        }
+        return (Connection) Proxy.newProxyInstance(InstrumentedJdbc.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, new ConnectionHandler(connection));
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException ex) {
+            throw ex.getCause();
+        }
+    }
+
+    private static final class ConnectionHandler implements InvocationHandler {
+
+        private final Connection connection;
+
+        ConnectionHandler(Connection connection) {
+            this.connection = connection;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            Object result = InstrumentedJdbc.invoke(connection, method, args);
+            String name = method.getName();
+            Class<?> type;
+            if (result instanceof CallableStatement) {
+                type = CallableStatement.class;
+            } else if (result instanceof PreparedStatement) {
+                type = PreparedStatement.class;
+            } else if (result instanceof Statement) {
+                type = Statement.class;
+            } else {
+                return result;
+            }
+            String sql = name.startsWith("prepare") && args != null && args[0] instanceof String ? (String) args[0] : null;
+            return Proxy.newProxyInstance(InstrumentedJdbc.class.getClassLoader(), new Class<?>[]{type},
+                    new StatementHandler((Statement) result, (Connection) proxy, sql));
+        }
+    }
+
+    private static final class StatementHandler implements InvocationHandler {
+
+        private final Statement statement;
+        private final Connection connection;
+        private final String preparedSql;
+        //The parameters of a PreparedStatement by index, only read for the slow log.
+        private final Map<Integer, Object> parameters = new TreeMap<>();
+        private int batchSize;
+
+        StatementHandler(Statement statement, Connection connection, String preparedSql) {
+            this.statement = statement;
+            this.connection = connection;
+            this.preparedSql = preparedSql;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (name.startsWith("execute")) {
+                return execute(method, args);
+            }
+            if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer) {
+                parameters.put((Integer) args[0], args[1]);
+            } else if (name.equals("clearParameters")) {
+                parameters.clear();
+            } else if (name.equals("addBatch")) {
+                batchSize++;
+            } else if (name.equals("clearBatch")) {
+                batchSize = 0;
+            } else if (name.equals("getConnection")) {
+                return connection;
+            }
+            return InstrumentedJdbc.invoke(statement, method, args);
+        }
+
+        private Object execute(Method method, Object[] args) throws Throwable {
+            String sql = args != null && args.length > 0 && args[0] instanceof String ? (String) args[0] : preparedSql;
+            boolean batch = method.getName().startsWith("executeBatch") || method.getName().startsWith("executeLargeBatch");
+            int rows = batchSize;
+            long start = System.nanoTime();
+            boolean failed = true;
+            try {
+                Object result = InstrumentedJdbc.invoke(statement, method, args);
+                failed = false;
+                return result;
+            } finally {
+                long nanos = System.nanoTime() - start;
+                if (batch) {
+                    batchSize = 0;
+                }
+                SqlMetrics.record(sql, nanos, failed, () -> describe(batch ? rows : 0));
+            }
+        }
+
+        /**
+         * The parameters with text and binary values redacted, e.g.
+         * [1=42, 2='***'(12)], or the size of a batch.
+         */
+        private String describe(int batchRows) {
+            if (batchRows > 0) {
+                return "[batch of " + batchRows + "]";
+            }
+            if (parameters.isEmpty()) {
+                return "";
+            }
+            StringBuilder out = new StringBuilder("[");
+            for (Map.Entry<Integer, Object> parameter : parameters.entrySet()) {
+                if (out.length() > 1) {
+                    out.append(", ");
+                }
+                out.append(parameter.getKey()).append('=').append(redact(parameter.getValue()));
+            }
+            return out.append(']').toString();
+        }
+    }
+
+    static String redact(Object value) {
+        if (value == null) {
+            return "NULL";
+        }
+        if (value instanceof Number || value instanceof Boolean || value instanceof java.util.Date) {
+            return value.toString();
+        }
+        if (value instanceof CharSequence) {
+            return "'***'(" + ((CharSequence) value).length() + ")";
+        }
+        if (value instanceof byte[]) {
+            return "<" + ((byte[]) value).length + " bytes>";
+        }
+        return "<" + value.getClass().getSimpleName() + ">";
+    }
+}
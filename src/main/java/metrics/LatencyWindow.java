@@ -0,0 +1,90 @@
+package metrics;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+/**
+ * Latencies recorded without locking into an HdrHistogram {@link Recorder},
+ * with their count and sum since the start. The quantiles are taken over
+ * about the last window, kept as a few slices that {@link #roll(long)} moves
+ * forward, the oldest being dropped as a new one starts.
+ *
+ * @author Frederik Braagaard
+ */
+final class LatencyWindow {
+
+    private static final int SLICES = 6;
+
+    private final long sliceNanos;
+    private final Recorder recorder = new Recorder(3);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sumMicros = new LongAdder();
+    //Guarded by this, only touched when rolling.
+    private final Deque<Slice> slices = new ArrayDeque<>();
+
+    LatencyWindow(int windowSeconds) {
+        sliceNanos = Math.max(1, TimeUnit.SECONDS.toNanos(windowSeconds) / SLICES);
+    }
+
+    void record(long nanos) {
+        long micros = Math.max(0, TimeUnit.NANOSECONDS.toMicros(nanos));
+        recorder.recordValue(micros);
+        count.increment();
+        sumMicros.add(micros);
+    }
+
+    /**
+     * Moves the window up to now and returns the latencies in it, in
+     * microseconds.
+     */
+    synchronized Histogram roll(long now) {
+        long sliceStart = now - Math.floorMod(now, sliceNanos);
+        Slice current = slices.peekLast();
+        if (current == null || current.start != sliceStart) {
+            current = new Slice(sliceStart);
+            slices.addLast(current);
+        }
+        current.histogram.add(recorder.getIntervalHistogram());
+        while (slices.peekFirst().start <= sliceStart - SLICES * sliceNanos) {
+            slices.removeFirst();
+        }
+        Histogram window = new Histogram(3);
+        for (Slice slice : slices) {
+            window.add(slice.histogram);
+        }
+        return window;
+    }
+
+    long getCount() {
+        return count.sum();
+    }
+
+    long getSumMicros() {
+        return sumMicros.sum();
+    }
+
+    /**
+     * The latency in seconds at the given quantile (0 to 1) of a window, or
+     * NaN if nothing was recorded in it.
+     */
+    static double quantileSeconds(Histogram window, double quantile) {
+        if (window.getTotalCount() == 0) {
+            return Double.NaN;
+        }
+        return window.getValueAtPercentile(quantile * 100) / 1e6;
+    }
+
+    private static final class Slice {
+
+        private final long start;
+        private final Histogram histogram = new Histogram(3);
+
+        Slice(long start) {
+            this.start = start;
+        }
+    }
+}
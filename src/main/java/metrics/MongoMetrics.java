@@ -0,0 +1,283 @@
+package metrics;
+
+import com.mongodb.event.CommandFailedEvent;
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.CommandStartedEvent;
+import com.mongodb.event.CommandSucceededEvent;
+import com.mongodb.event.ConnectionAddedEvent;
+import com.mongodb.event.ConnectionCheckedInEvent;
+import com.mongodb.event.ConnectionCheckedOutEvent;
+import com.mongodb.event.ConnectionPoolClosedEvent;
+import com.mongodb.event.ConnectionPoolListener;
+import com.mongodb.event.ConnectionPoolOpenedEvent;
+import com.mongodb.event.ConnectionPoolWaitQueueEnteredEvent;
+import com.mongodb.event.ConnectionPoolWaitQueueExitedEvent;
+import com.mongodb.event.ConnectionRemovedEvent;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import jfr.MongoWriteEvent;
+import org.bson.BsonDocument;
+import org.bson.BsonValue;
+import org.HdrHistogram.Histogram;
+import tracing.Tracer;
+import utils.Settings;
+
+/**
+ * Latency and failures of the commands sent to Mongo, per command name, and
+ * the state of the driver's connection pool. It listens on the shared client
+ * of {@link mongodb.SharedMongoClient}, so the failed login tracking that
+ * every login waits for shows up next to the request latencies.
+ * <p>
+ * The wait for a pooled connection is timed from entering the wait queue to
+ * leaving it. The driver reports both on the thread asking for the
+ * connection, which is how the two are paired. Write commands are paired
+ * the same way into a {@link MongoWriteEvent} for Flight Recorder.
+ * </p>
+ *
+ * @author Frederik Braagaard
+ */
+public final class MongoMetrics implements CommandListener, ConnectionPoolListener {
+
+    //Command names come from the driver, this only guards against surprises.
+    private static final int MAX_COMMANDS = 50;
+    private static final String OTHER = "other";
+    //The write commands and the array holding what they write.
+    private static final Set<String> WRITES = new HashSet<>(Arrays.asList("insert", "update", "delete", "findAndModify"));
+    private static final String[] PAYLOADS = {"documents", "updates", "deletes"};
+
+    private static MongoMetrics instance;
+
+    private final int windowSeconds;
+    private final ConcurrentMap<String, Command> commands = new ConcurrentHashMap<>();
+    private final LatencyWindow poolWait;
+    private final ThreadLocal<Long> waitStart = new ThreadLocal<>();
+    private final ThreadLocal<MongoWriteEvent> write = new ThreadLocal<>();
+    private final LongAdder checkouts = new LongAdder();
+    private final AtomicInteger inUse = new AtomicInteger();
+    private final AtomicInteger open = new AtomicInteger();
+
+    MongoMetrics(int windowSeconds) {
+        this.windowSeconds = windowSeconds;
+        this.poolWait = new LatencyWindow(windowSeconds);
+    }
+
+    /**
+     *
+     * @return the Mongo metrics of this server.
+     */
+    public static synchronized MongoMetrics getMongoMetrics() {
+        if (instance == null) {
+            instance = new MongoMetrics(Settings.getIntValue("metrics.window.seconds", 60));
+        }
+        return instance;
+    }
+
+    @Override
+    public void commandStarted(CommandStartedEvent event) {
+        if (WRITES.contains(event.getCommandName())) {
+            BsonDocument command = event.getCommand();
+            BsonValue collection = command.get(event.getCommandName());
+            int documents = 1;
+            for (String payload : PAYLOADS) {
+                if (command.isArray(payload)) {
+                    documents = command.getArray(payload).size();
+                }
+            }
+            MongoWriteEvent writeEvent = new MongoWriteEvent(event.getCommandName(),
+                    collection != null && collection.isString() ? collection.asString().getValue() : "", documents);
+            writeEvent.begin();
+            write.set(writeEvent);
+        }
+    }
+
+    @Override
+    public void commandSucceeded(CommandSucceededEvent event) {
+        long nanos = event.getElapsedTime(TimeUnit.NANOSECONDS);
+        command(event.getCommandName()).record(nanos, false);
+        Tracer.record("mongo", event.getCommandName(), nanos);
+        writeEnded(false);
+    }
+
+    @Override
+    public void commandFailed(CommandFailedEvent event) {
+        long nanos = event.getElapsedTime(TimeUnit.NANOSECONDS);
+        command(event.getCommandName()).record(nanos, true);
+        Tracer.record("mongo", event.getCommandName(), nanos);
+        writeEnded(true);
+    }
+
+    private void writeEnded(boolean failed) {
+        MongoWriteEvent writeEvent = write.get();
+        if (writeEvent != null) {
+            write.remove();
+            writeEvent.setFailed(failed);
+            writeEvent.commit();
+        }
+    }
+
+    @Override
+    public void connectionPoolOpened(ConnectionPoolOpenedEvent event) {
+    }
+
+    @Override
+    public void connectionPoolClosed(ConnectionPoolClosedEvent event) {
+    }
+
+    @Override
+    public void waitQueueEntered(ConnectionPoolWaitQueueEnteredEvent event) {
+        waitStart.set(System.nanoTime());
+    }
+
+    @Override
+    public void waitQueueExited(ConnectionPoolWaitQueueExitedEvent event) {
+        Long start = waitStart.get();
+        if (start != null) {
+            waitStart.remove();
+            poolWait.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public void connectionCheckedOut(ConnectionCheckedOutEvent event) {
+        checkouts.increment();
+        inUse.incrementAndGet();
+    }
+
+    @Override
+    public void connectionCheckedIn(ConnectionCheckedInEvent event) {
+        inUse.decrementAndGet();
+    }
+
+    @Override
+    public void connectionAdded(ConnectionAddedEvent event) {
+        open.incrementAndGet();
+    }
+
+    @Override
+    public void connectionRemoved(ConnectionRemovedEvent event) {
+        open.decrementAndGet();
+    }
+
+    private Command command(String name) {
+        Command command = commands.get(name);
+        if (command == null) {
+            String key = commands.size() < MAX_COMMANDS ? name : OTHER;
+            command = commands.computeIfAbsent(key, k -> new Command(k, windowSeconds));
+        }
+        return command;
+    }
+
+    /**
+     * Takes the figures of every command, sorted by name.
+     */
+    public List<Snapshot> snapshot() {
+        long now = System.nanoTime();
+        List<Snapshot> result = new ArrayList<>();
+        for (Command command : commands.values()) {
+            result.add(new Snapshot(command.name, command.latencies.roll(now), command.latencies.getCount(),
+                    command.latencies.getSumMicros(), command.failures.sum()));
+        }
+        result.sort((a, b) -> a.name.compareTo(b.name));
+        return result;
+    }
+
+    /**
+     * The waits for a pooled connection, with the number of checkouts as
+     * its count.
+     */
+    public Snapshot poolWaitSnapshot() {
+        return new Snapshot("pool wait", poolWait.roll(System.nanoTime()), poolWait.getCount(), poolWait.getSumMicros(), 0);
+    }
+
+    /**
+     * The connections checked out since the start.
+     */
+    public long getCheckouts() {
+        return checkouts.sum();
+    }
+
+    /**
+     * The connections checked out right now.
+     */
+    public int getInUse() {
+        return inUse.get();
+    }
+
+    /**
+     * The connections the pool holds.
+     */
+    public int getOpen() {
+        return open.get();
+    }
+
+    /**
+     * The figures of one command at the time of the snapshot.
+     */
+    public static final class Snapshot {
+
+        private final String name;
+        private final Histogram window;
+        private final long count;
+        private final long sumMicros;
+        private final long failures;
+
+        Snapshot(String name, Histogram window, long count, long sumMicros, long failures) {
+            this.name = name;
+            this.window = window;
+            this.count = count;
+            this.sumMicros = sumMicros;
+            this.failures = failures;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * The latency in seconds at the given quantile (0 to 1) within the
+         * window, or NaN if there were no commands in it.
+         */
+        public double getQuantileSeconds(double quantile) {
+            return LatencyWindow.quantileSeconds(window, quantile);
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public double getSumSeconds() {
+            return sumMicros / 1e6;
+        }
+
+        public long getFailures() {
+            return failures;
+        }
+    }
+
+    private static final class Command {
+
+        private final String name;
+        private final LatencyWindow latencies;
+        private final LongAdder failures = new LongAdder();
+
+        Command(String name, int windowSeconds) {
+            this.name = name;
+            this.latencies = new LatencyWindow(windowSeconds);
+        }
+
+        void record(long nanos, boolean failed) {
+            latencies.record(nanos);
+            if (failed) {
+                failures.increment();
+            }
+        }
+    }
+}
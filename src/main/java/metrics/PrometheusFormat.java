@@ -0,0 +1,177 @@
+package metrics;
+
+import compression.CompressionStats;
+import events.EventBus;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryUsage;
+import java.lang.management.ThreadMXBean;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes the metrics in the Prometheus text format, version 0.0.4: the
+ * request figures of {@link RequestMetrics}, response compression, the event
+ * streams, the Mongo commands and pool of {@link MongoMetrics}, and the heap,
+ * garbage collection and threads of the JVM.
+ * <p>
+ * The latencies are a summary per resource method, with quantiles over the
+ * last metrics.window.seconds, so an alert on the p99 of the login can be
+ * written as
+ * {@code http_server_request_duration_seconds{path="/login",quantile="0.99"} > 0.5}.
+ * </p>
+ *
+ * @author Frederik Braagaard
+ */
+public final class PrometheusFormat {
+
+    public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    private PrometheusFormat() {
+    }
+
+    /**
+     * Takes the metrics of this server and writes them.
+     */
+    public static String write() {
+        StringBuilder out = new StringBuilder(8192);
+        writeRequests(out, RequestMetrics.getRequestMetrics());
+        writeCompression(out);
+        writeEvents(out);
+        writeMongo(out, MongoMetrics.getMongoMetrics());
+        writeJvm(out);
+        return out.toString();
+    }
+
+    static void writeRequests(StringBuilder out, RequestMetrics metrics) {
+        List<RequestMetrics.Snapshot> endpoints = metrics.snapshot();
+        header(out, "http_server_request_duration_seconds", "summary",
+                "Time from receiving a request until its response is ready, the quantiles cover the last metrics.window.seconds.");
+        for (RequestMetrics.Snapshot endpoint : endpoints) {
+            String labels = labels(endpoint);
+            for (double quantile : QUANTILES) {
+                sample(out, "http_server_request_duration_seconds", labels + ",quantile=\"" + quantile + "\"",
+                        endpoint.getQuantileSeconds(quantile));
+            }
+            sample(out, "http_server_request_duration_seconds_sum", labels, endpoint.getSumSeconds());
+            sample(out, "http_server_request_duration_seconds_count", labels, endpoint.getCount());
+        }
+        header(out, "http_server_requests_total", "counter", "Requests answered, by status code.");
+        for (RequestMetrics.Snapshot endpoint : endpoints) {
+            for (Map.Entry<Integer, Long> status : endpoint.getStatuses().entrySet()) {
+                sample(out, "http_server_requests_total", labels(endpoint) + ",status=\"" + status.getKey() + "\"", status.getValue());
+            }
+        }
+        header(out, "http_server_requests_in_flight", "gauge", "Requests being handled.");
+        sample(out, "http_server_requests_in_flight", null, metrics.getInFlight());
+    }
+
+    private static void writeCompression(StringBuilder out) {
+        header(out, "http_server_compressed_responses_total", "counter", "Responses that were compressed.");
+        sample(out, "http_server_compressed_responses_total", null, CompressionStats.getCompressedResponses());
+        header(out, "http_server_uncompressed_responses_total", "counter", "Responses below compression.min.bytes.");
+        sample(out, "http_server_uncompressed_responses_total", null, CompressionStats.getResponsesBelowThreshold());
+        header(out, "http_server_compression_bytes_total", "counter", "Bytes of the compressed responses before and after compression.");
+        sample(out, "http_server_compression_bytes_total", "stage=\"in\"", CompressionStats.getBytesIn());
+        sample(out, "http_server_compression_bytes_total", "stage=\"out\"", CompressionStats.getBytesOut());
+    }
+
+    private static void writeEvents(StringBuilder out) {
+        header(out, "events_subscriptions", "gauge", "Open Server-Sent Event streams.");
+        sample(out, "events_subscriptions", null, EventBus.getEventBus().getSubscriptionCount());
+    }
+
+    static void writeMongo(StringBuilder out, MongoMetrics metrics) {
+        List<MongoMetrics.Snapshot> commands = metrics.snapshot();
+        header(out, "mongodb_command_duration_seconds", "summary",
+                "Time of the Mongo commands by name, the quantiles cover the last metrics.window.seconds.");
+        for (MongoMetrics.Snapshot command : commands) {
+            summary(out, "mongodb_command_duration_seconds", "command=\"" + escape(command.getName()) + "\"", command);
+        }
+        header(out, "mongodb_command_failures_total", "counter", "Mongo commands that failed, by name.");
+        for (MongoMetrics.Snapshot command : commands) {
+            sample(out, "mongodb_command_failures_total", "command=\"" + escape(command.getName()) + "\"", command.getFailures());
+        }
+        header(out, "mongodb_pool_wait_seconds", "summary", "Time spent waiting for a pooled Mongo connection.");
+        summary(out, "mongodb_pool_wait_seconds", null, metrics.poolWaitSnapshot());
+        header(out, "mongodb_pool_checkouts_total", "counter", "Mongo connections checked out of the pool.");
+        sample(out, "mongodb_pool_checkouts_total", null, metrics.getCheckouts());
+        header(out, "mongodb_pool_connections", "gauge", "Mongo connections in the pool, by state.");
+        sample(out, "mongodb_pool_connections", "state=\"open\"", metrics.getOpen());
+        sample(out, "mongodb_pool_connections", "state=\"in_use\"", metrics.getInUse());
+    }
+
+    private static void summary(StringBuilder out, String name, String labels, MongoMetrics.Snapshot snapshot) {
+        for (double quantile : QUANTILES) {
+            String quantileLabel = "quantile=\"" + quantile + "\"";
+            sample(out, name, labels == null ? quantileLabel : labels + "," + quantileLabel, snapshot.getQuantileSeconds(quantile));
+        }
+        sample(out, name + "_sum", labels, snapshot.getSumSeconds());
+        sample(out, name + "_count", labels, snapshot.getCount());
+    }
+
+    private static void writeJvm(StringBuilder out) {
+        MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+        MemoryUsage nonHeap = ManagementFactory.getMemoryMXBean().getNonHeapMemoryUsage();
+        header(out, "jvm_memory_bytes_used", "gauge", "Used memory by area.");
+        sample(out, "jvm_memory_bytes_used", "area=\"heap\"", heap.getUsed());
+        sample(out, "jvm_memory_bytes_used", "area=\"nonheap\"", nonHeap.getUsed());
+        header(out, "jvm_memory_bytes_committed", "gauge", "Committed memory by area.");
+        sample(out, "jvm_memory_bytes_committed", "area=\"heap\"", heap.getCommitted());
+        sample(out, "jvm_memory_bytes_committed", "area=\"nonheap\"", nonHeap.getCommitted());
+        header(out, "jvm_memory_bytes_max", "gauge", "Most memory by area, -1 if there is no limit.");
+        sample(out, "jvm_memory_bytes_max", "area=\"heap\"", heap.getMax());
+        sample(out, "jvm_memory_bytes_max", "area=\"nonheap\"", nonHeap.getMax());
+
+        header(out, "jvm_memory_pool_bytes_used", "gauge", "Used memory by pool.");
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            sample(out, "jvm_memory_pool_bytes_used", "pool=\"" + escape(pool.getName()) + "\"", pool.getUsage().getUsed());
+        }
+
+        header(out, "jvm_gc_collection_seconds", "summary", "Time spent in the garbage collectors.");
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            String labels = "gc=\"" + escape(gc.getName()) + "\"";
+            sample(out, "jvm_gc_collection_seconds_count", labels, gc.getCollectionCount());
+            sample(out, "jvm_gc_collection_seconds_sum", labels, gc.getCollectionTime() / 1000.0);
+        }
+
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        header(out, "jvm_threads_current", "gauge", "Live threads.");
+        sample(out, "jvm_threads_current", null, threads.getThreadCount());
+        header(out, "jvm_threads_daemon", "gauge", "Live daemon threads.");
+        sample(out, "jvm_threads_daemon", null, threads.getDaemonThreadCount());
+        header(out, "jvm_uptime_seconds", "gauge", "Time since the JVM started.");
+        sample(out, "jvm_uptime_seconds", null, ManagementFactory.getRuntimeMXBean().getUptime() / 1000.0);
+    }
+
+    private static String labels(RequestMetrics.Snapshot endpoint) {
+        return "method=\"" + escape(endpoint.getMethod()) + "\",path=\"" + escape(endpoint.getPath()) + "\"";
+    }
+
+    private static void header(StringBuilder out, String name, String type, String help) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void sample(StringBuilder out, String name, String labels, double value) {
+        out.append(name);
+        if (labels != null) {
+            out.append('{').append(labels).append('}');
+        }
+        out.append(' ');
+        if (Double.isNaN(value)) {
+            out.append("NaN");
+        } else if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            out.append((long) value);
+        } else {
+            out.append(value);
+        }
+        out.append('\n');
+    }
+
+    static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+}
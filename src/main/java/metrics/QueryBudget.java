@@ -0,0 +1,148 @@
+package metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import utils.Settings;
+
+/**
+ * Counts the SQL statements run for one piece of work, usually a request,
+ * per normalized statement, to catch N+1 queries: the same statement run
+ * once per row of an earlier result, such as an em.find in a loop or a lazy
+ * collection read for every user of a list.
+ * <p>
+ * {@link SqlMetrics} adds every statement to the budget of the thread that
+ * runs it. {@link facades.UserFacadeAsync} takes the budget of the caller
+ * along to the database executor, so the statements of a suspended request
+ * count as well. {@link QueryBudgetFilter} opens one per request, and a test
+ * can open its own around a facade call and {@link #check(int)} it.
+ * </p>
+ *
+ * @author Frederik Braagaard
+ */
+public final class QueryBudget implements AutoCloseable {
+
+    /**
+     * A statement run more often than this within one budget is reported.
+     */
+    static final int REPEAT_THRESHOLD = Settings.getIntValue("db.query.repeat.threshold", 10);
+    private static final ThreadLocal<QueryBudget> CURRENT = new ThreadLocal<>();
+
+    private final ConcurrentMap<String, AtomicInteger> statements = new ConcurrentHashMap<>();
+    //The code that ran a statement the time it went over the threshold.
+    private final ConcurrentMap<String, String> callers = new ConcurrentHashMap<>();
+    private final AtomicInteger count = new AtomicInteger();
+
+    private QueryBudget() {
+    }
+
+    /**
+     * Starts counting the statements of the current thread, until the budget
+     * is closed.
+     */
+    public static QueryBudget open() {
+        QueryBudget budget = new QueryBudget();
+        CURRENT.set(budget);
+        return budget;
+    }
+
+    /**
+     * The budget of the current thread, or null.
+     */
+    public static QueryBudget current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Makes a budget, which may be null, the one of the current thread.
+     *
+     * @return the budget the thread had before, to attach again afterwards
+     */
+    public static QueryBudget attach(QueryBudget budget) {
+        QueryBudget previous = CURRENT.get();
+        if (budget == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(budget);
+        }
+        return previous;
+    }
+
+    static void record(String normalizedSql) {
+        QueryBudget budget = CURRENT.get();
+        if (budget != null) {
+            budget.count.incrementAndGet();
+            int times = budget.statements.computeIfAbsent(normalizedSql, sql -> new AtomicInteger()).incrementAndGet();
+            if (times == REPEAT_THRESHOLD + 1) {
+                budget.callers.put(normalizedSql, SqlMetrics.caller());
+            }
+        }
+    }
+
+    /**
+     * How many statements have run.
+     */
+    public int getCount() {
+        return count.get();
+    }
+
+    /**
+     * How many times a statement has run, by its normalized SQL.
+     */
+    public int getCount(String normalizedSql) {
+        AtomicInteger times = statements.get(normalizedSql);
+        return times == null ? 0 : times.get();
+    }
+
+    /**
+     * What is wrong with the statements so far: every statement run more than
+     * db.query.repeat.threshold times, with the code that ran it, and the
+     * total when it is above the budget.
+     *
+     * @param maxStatements the most statements allowed, 0 for no limit
+     * @return the findings, empty when all is well
+     */
+    public List<String> findings(int maxStatements) {
+        List<String> findings = new ArrayList<>();
+        if (maxStatements > 0 && getCount() > maxStatements) {
+            findings.add(getCount() + " statements, the budget is " + maxStatements);
+        }
+        List<Map.Entry<String, AtomicInteger>> repeated = new ArrayList<>();
+        for (Map.Entry<String, AtomicInteger> statement : statements.entrySet()) {
+            if (statement.getValue().get() > REPEAT_THRESHOLD) {
+                repeated.add(statement);
+            }
+        }
+        repeated.sort((a, b) -> Integer.compare(b.getValue().get(), a.getValue().get()));
+        for (Map.Entry<String, AtomicInteger> statement : repeated) {
+            findings.add(statement.getValue().get() + " x " + statement.getKey() + " from " + callers.get(statement.getKey()));
+        }
+        return findings;
+    }
+
+    /**
+     * Fails when more than maxStatements statements have run or one of them
+     * has repeated too often, for tests guarding a facade method.
+     *
+     * @throws IllegalStateException listing the findings
+     */
+    public void check(int maxStatements) {
+        List<String> findings = findings(maxStatements);
+        if (!findings.isEmpty()) {
+            throw new IllegalStateException("Query budget exceeded: " + String.join("; ", findings));
+        }
+    }
+
+    /**
+     * Stops counting on the current thread, if this is its budget.
+     */
+    @Override
+    public void close() {
+        if (CURRENT.get() == this) {
+            CURRENT.remove();
+        }
+    }
+}
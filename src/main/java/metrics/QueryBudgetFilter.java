@@ -0,0 +1,75 @@
+package metrics;
+
+import errorhandling.ExceptionDTO;
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.container.ContainerResponseFilter;
+import javax.ws.rs.container.ResourceInfo;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.ext.Provider;
+import utils.Settings;
+
+/**
+ * Opens a {@link QueryBudget} for every request and looks at it once the
+ * response is ready. A request running more than db.query.budget statements,
+ * or one statement more than db.query.repeat.threshold times, is logged with
+ * the statements and the code that ran them.
+ * <p>
+ * With db.query.budget.strict on, such a request is answered with 500
+ * instead, so an N+1 query added to a facade method fails the resource tests
+ * that reach it. That is meant for development and tests, not production.
+ * </p>
+ * <p>
+ * A suspended request has its budget taken off the request thread by
+ * {@link QueryBudgetListener}.
+ * </p>
+ *
+ * @author Frederik Braagaard
+ */
+@Provider
+public class QueryBudgetFilter implements ContainerRequestFilter, ContainerResponseFilter {
+
+    private static final Logger LOG = Logger.getLogger(QueryBudgetFilter.class.getName());
+    private static final String BUDGET = QueryBudgetFilter.class.getName() + ".budget";
+    private static final int MAX_STATEMENTS = Settings.getIntValue("db.query.budget", 0);
+    private static final boolean STRICT = Settings.getBooleanValue("db.query.budget.strict", false);
+
+    @Context
+    private ResourceInfo resourceInfo;
+
+    @Override
+    public void filter(ContainerRequestContext request) {
+        if (SqlMetrics.isEnabled()) {
+            request.setProperty(BUDGET, QueryBudget.open());
+        }
+    }
+
+    @Override
+    public void filter(ContainerRequestContext request, ContainerResponseContext response) {
+        Object property = request.getProperty(BUDGET);
+        if (!(property instanceof QueryBudget)) {
+            return;
+        }
+        request.removeProperty(BUDGET);
+        QueryBudget budget = (QueryBudget) property;
+        budget.close();
+        List<String> findings = budget.findings(MAX_STATEMENTS);
+        if (findings.isEmpty()) {
+            return;
+        }
+        Method method = resourceInfo.getResourceMethod();
+        String path = method == null ? RequestMetrics.UNMATCHED : RequestMetricsFilter.pathOf(resourceInfo.getResourceClass(), method);
+        LOG.log(Level.WARNING, "Query budget exceeded by {0} {1}: {2}", new Object[]{request.getMethod(), path, String.join("; ", findings)});
+        if (STRICT) {
+            response.setStatus(500);
+            response.setEntity(new ExceptionDTO(500, "Query budget exceeded: " + String.join("; ", findings)),
+                    response.getEntityAnnotations(), MediaType.APPLICATION_JSON_TYPE);
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package metrics;
+
+import javax.ws.rs.ext.Provider;
+import org.glassfish.jersey.server.model.ResourceMethod;
+import org.glassfish.jersey.server.monitoring.ApplicationEvent;
+import org.glassfish.jersey.server.monitoring.ApplicationEventListener;
+import org.glassfish.jersey.server.monitoring.RequestEvent;
+import org.glassfish.jersey.server.monitoring.RequestEventListener;
+
+/**
+ * Takes the {@link QueryBudget} of a suspended request off the request
+ * thread once the resource method returns. The response filter of such a
+ * request runs on the thread that resumes it, so {@link QueryBudgetFilter}
+ * can't do it there, and the budget would otherwise stay on the request
+ * thread and count whatever else it runs.
+ *
+ * @author Frederik Braagaard
+ */
+@Provider
+public class QueryBudgetListener implements ApplicationEventListener, RequestEventListener {
+
+    @Override
+    public void onEvent(ApplicationEvent event) {
+    }
+
+    @Override
+    public RequestEventListener onRequest(RequestEvent event) {
+        return this;
+    }
+
+    @Override
+    public void onEvent(RequestEvent event) {
+        if (event.getType() != RequestEvent.Type.RESOURCE_METHOD_FINISHED) {
+            return;
+        }
+        //A synchronous request keeps it, so the statements run while writing the response count too.
+        ResourceMethod method = event.getUriInfo().getMatchedResourceMethod();
+        if (method != null && method.isSuspendDeclared()) {
+            QueryBudget.attach(null);
+        }
+    }
+}
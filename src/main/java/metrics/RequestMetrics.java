@@ -0,0 +1,185 @@
+package metrics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import org.HdrHistogram.Histogram;
+import utils.Settings;
+
+/**
+ * Latency, status and in-flight figures of the requests, kept per resource
+ * method, e.g. "POST /login" or "GET /friend/mutual/{id}".
+ * <p>
+ * Recording never takes a lock: the latencies go into a {@link LatencyWindow}
+ * and the counts into {@link LongAdder}s. The quantiles are taken over about
+ * the last metrics.window.seconds, which a snapshot rolls forward, while the
+ * counts and sums only grow, as Prometheus expects.
+ * </p>
+ *
+ * @author Frederik Braagaard
+ */
+public final class RequestMetrics {
+
+    /**
+     * The path of requests no resource method matched, so unknown URLs do
+     * not each get their own series.
+     */
+    public static final String UNMATCHED = "UNMATCHED";
+
+    private static RequestMetrics instance;
+
+    private final ConcurrentMap<String, Endpoint> endpoints = new ConcurrentHashMap<>();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final int windowSeconds;
+
+    RequestMetrics(int windowSeconds) {
+        this.windowSeconds = windowSeconds;
+    }
+
+    /**
+     *
+     * @return the metrics of this server.
+     */
+    public static synchronized RequestMetrics getRequestMetrics() {
+        if (instance == null) {
+            instance = new RequestMetrics(Settings.getIntValue("metrics.window.seconds", 60));
+        }
+        return instance;
+    }
+
+    /**
+     * Counts a request that has arrived.
+     */
+    void started() {
+        inFlight.incrementAndGet();
+    }
+
+    /**
+     * Records a request that has been answered.
+     *
+     * @param method the HTTP method
+     * @param path the path template of the resource method, or
+     * {@link #UNMATCHED}
+     * @param status the status of the response
+     * @param nanos the time from its arrival to the response
+     */
+    void finished(String method, String path, int status, long nanos) {
+        inFlight.decrementAndGet();
+        endpoints.computeIfAbsent(method + " " + path, key -> new Endpoint(method, path, windowSeconds))
+                .record(status, nanos);
+    }
+
+    /**
+     * The requests being handled right now.
+     */
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * Takes the figures of every endpoint, sorted by path and method.
+     */
+    public List<Snapshot> snapshot() {
+        long now = System.nanoTime();
+        List<Snapshot> result = new ArrayList<>();
+        for (Endpoint endpoint : endpoints.values()) {
+            result.add(endpoint.snapshot(now));
+        }
+        result.sort((a, b) -> a.path.equals(b.path) ? a.method.compareTo(b.method) : a.path.compareTo(b.path));
+        return result;
+    }
+
+    /**
+     * The figures of one endpoint at the time of the snapshot.
+     */
+    public static final class Snapshot {
+
+        private final String method;
+        private final String path;
+        private final Histogram window;
+        private final long count;
+        private final long sumMicros;
+        private final Map<Integer, Long> statuses;
+
+        Snapshot(String method, String path, Histogram window, long count, long sumMicros, Map<Integer, Long> statuses) {
+            this.method = method;
+            this.path = path;
+            this.window = window;
+            this.count = count;
+            this.sumMicros = sumMicros;
+            this.statuses = statuses;
+        }
+
+        public String getMethod() {
+            return method;
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        /**
+         * The latency in seconds at the given quantile (0 to 1) within the
+         * window, or NaN if there were no requests in it.
+         */
+        public double getQuantileSeconds(double quantile) {
+            return LatencyWindow.quantileSeconds(window, quantile);
+        }
+
+        /**
+         * The requests answered since the start.
+         */
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * The time spent on all of them, in seconds.
+         */
+        public double getSumSeconds() {
+            return sumMicros / 1e6;
+        }
+
+        /**
+         * The requests answered since the start by status code.
+         */
+        public Map<Integer, Long> getStatuses() {
+            return statuses;
+        }
+    }
+
+    private static final class Endpoint {
+
+        private final String method;
+        private final String path;
+        private final LatencyWindow latencies;
+        private final ConcurrentMap<Integer, LongAdder> statuses = new ConcurrentHashMap<>();
+
+        Endpoint(String method, String path, int windowSeconds) {
+            this.method = method;
+            this.path = path;
+            this.latencies = new LatencyWindow(windowSeconds);
+        }
+
+        void record(int status, long nanos) {
+            latencies.record(nanos);
+            statuses.computeIfAbsent(status, s -> new LongAdder()).increment();
+        }
+
+        Snapshot snapshot(long now) {
+            Histogram window = latencies.roll(now);
+            Map<Integer, Long> statusCounts = new TreeMap<>();
+            for (Map.Entry<Integer, LongAdder> entry : statuses.entrySet()) {
+                statusCounts.put(entry.getKey(), entry.getValue().sum());
+            }
+            return new Snapshot(method, path, window, latencies.getCount(), latencies.getSumMicros(),
+                    Collections.unmodifiableMap(statusCounts));
+        }
+    }
+}
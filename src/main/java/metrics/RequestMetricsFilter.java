@@ -0,0 +1,77 @@
+package metrics;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import javax.annotation.Priority;
+import javax.ws.rs.Path;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.container.ContainerResponseFilter;
+import javax.ws.rs.container.PreMatching;
+import javax.ws.rs.container.ResourceInfo;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.ext.Provider;
+
+/**
+ * Times every request from before it is matched to a resource until its
+ * response headers are ready, and hands the time and status to
+ * {@link RequestMetrics} under the path template of the resource method. For
+ * a suspended request that includes the wait for the facade.
+ *
+ * @author Frederik Braagaard
+ */
+@Provider
+@PreMatching
+//The lowest priority runs first on the request and last on the response.
+@Priority(0)
+public class RequestMetricsFilter implements ContainerRequestFilter, ContainerResponseFilter {
+
+    private static final String START = RequestMetricsFilter.class.getName() + ".start";
+    private static final ConcurrentMap<Method, String> PATHS = new ConcurrentHashMap<>();
+
+    @Context
+    private ResourceInfo resourceInfo;
+
+    @Override
+    public void filter(ContainerRequestContext request) {
+        request.setProperty(START, System.nanoTime());
+        RequestMetrics.getRequestMetrics().started();
+    }
+
+    @Override
+    public void filter(ContainerRequestContext request, ContainerResponseContext response) {
+        Object start = request.getProperty(START);
+        if (start == null) {
+            //The request was turned down before the request filters ran.
+            return;
+        }
+        request.removeProperty(START);
+        Method method = resourceInfo.getResourceMethod();
+        String path = method == null ? RequestMetrics.UNMATCHED
+                : PATHS.computeIfAbsent(method, m -> pathOf(resourceInfo.getResourceClass(), m));
+        RequestMetrics.getRequestMetrics().finished(request.getMethod(), path, response.getStatus(), System.nanoTime() - (Long) start);
+    }
+
+    /**
+     * Joins the @Path of the resource class and method, e.g. "/friend/add".
+     */
+    public static String pathOf(Class<?> resource, Method method) {
+        StringBuilder path = new StringBuilder();
+        append(path, resource.getAnnotation(Path.class));
+        append(path, method.getAnnotation(Path.class));
+        return path.length() == 0 ? "/" : path.toString();
+    }
+
+    private static void append(StringBuilder path, Path part) {
+        if (part == null) {
+            return;
+        }
+        for (String segment : part.value().split("/")) {
+            if (!segment.isEmpty()) {
+                path.append('/').append(segment);
+            }
+        }
+    }
+}
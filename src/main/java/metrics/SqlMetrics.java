@@ -0,0 +1,276 @@
+package metrics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import tracing.Tracer;
+import utils.ConnectionPool;
+import utils.Settings;
+
+/**
+ * Timings of the SQL statements sent through {@link InstrumentedJdbc}, both
+ * the queries UserFacade runs on the connection pool and the ones EclipseLink
+ * generates, kept per normalized statement (see {@link SqlNormalizer}).
+ * <p>
+ * Every statement is counted with its time in a histogram, without locking.
+ * A statement slower than db.slow.query.millis is logged with its parameters,
+ * where text and binary values are replaced by their length, as they can hold
+ * user names and password hashes. The code that ran a statement is looked up
+ * the first time it is seen and whenever it is slow, so the admin report can
+ * name the facade method behind it.
+ * </p>
+ *
+ * @author Frederik Braagaard
+ */
+public final class SqlMetrics {
+
+    private static final Logger LOG = Logger.getLogger(SqlMetrics.class.getName());
+    private static final boolean ENABLED = Settings.getBooleanValue("db.instrumentation.enabled", true);
+    private static final long SLOW_NANOS = TimeUnit.MILLISECONDS.toNanos(Settings.getIntValue("db.slow.query.millis", 250));
+    private static final int MAX_STATEMENTS = 1000;
+    private static final int MAX_CALLERS = 5;
+    private static final String OTHER = "(other statements)";
+    private static final ConcurrentMap<String, Statement> STATEMENTS = new ConcurrentHashMap<>();
+    //Packages skipped when looking for the code that ran a statement.
+    private static final String[] LIBRARIES = {"java.", "javax.", "sun.", "jdk.", "com.sun.",
+        "org.eclipse.persistence.", "org.apache.commons.", "com.mysql.", "org.h2."};
+
+    private SqlMetrics() {
+    }
+
+    /**
+     * Whether the connections are wrapped at all, set by
+     * db.instrumentation.enabled.
+     */
+    public static boolean isEnabled() {
+        return ENABLED;
+    }
+
+    /**
+     * Records a statement that has run.
+     *
+     * @param sql the SQL as it was sent
+     * @param nanos the time it took
+     * @param failed whether it threw
+     * @param parameters the redacted parameters, only asked for when the
+     * statement is logged
+     */
+    static void record(String sql, long nanos, boolean failed, Supplier<String> parameters) {
+        String normalized = SqlNormalizer.normalize(sql);
+        Statement statement = STATEMENTS.get(normalized);
+        if (statement == null) {
+            //Statements built with literals could otherwise grow the map without end.
+            String key = STATEMENTS.size() < MAX_STATEMENTS ? normalized : OTHER;
+            Statement created = new Statement(key);
+            statement = STATEMENTS.putIfAbsent(key, created);
+            if (statement == null) {
+                statement = created;
+                statement.addCaller();
+            }
+        }
+        statement.record(nanos, failed);
+        QueryBudget.record(normalized);
+        Tracer.record("db", normalized, nanos);
+        if (nanos >= SLOW_NANOS) {
+            String caller = statement.addCaller();
+            LOG.log(Level.WARNING, "Slow statement, {0} ms in {1}: {2} {3}", new Object[]{
+                TimeUnit.NANOSECONDS.toMillis(nanos), caller, normalized, parameters.get()});
+        }
+    }
+
+    /**
+     * The statements that have taken the most time.
+     *
+     * @param limit how many to return
+     * @param order one of total, mean, max, p99, count or errors
+     * @return the statements, the worst first
+     */
+    public static List<Snapshot> top(int limit, String order) {
+        List<Snapshot> all = new ArrayList<>();
+        for (Statement statement : STATEMENTS.values()) {
+            all.add(statement.snapshot());
+        }
+        all.sort(comparator(order).reversed());
+        return all.size() > limit ? new ArrayList<>(all.subList(0, limit)) : all;
+    }
+
+    /**
+     * Forgets every statement, for tests.
+     */
+    static void reset() {
+        STATEMENTS.clear();
+    }
+
+    private static Comparator<Snapshot> comparator(String order) {
+        switch (order) {
+            case "total":
+                return Comparator.comparingDouble(Snapshot::getTotalMillis);
+            case "mean":
+                return Comparator.comparingDouble(Snapshot::getMeanMillis);
+            case "max":
+                return Comparator.comparingDouble(Snapshot::getMaxMillis);
+            case "p99":
+                return Comparator.comparingDouble(Snapshot::getP99Millis);
+            case "count":
+                return Comparator.comparingLong(Snapshot::getCount);
+            case "errors":
+                return Comparator.comparingLong(Snapshot::getErrors);
+            default:
+                throw new IllegalArgumentException("Unknown order " + order + ", use total, mean, max, p99, count or errors");
+        }
+    }
+
+    /**
+     * Finds the first method outside the JDBC layers on the stack, usually a
+     * UserFacade method.
+     */
+    static String caller() {
+        for (StackTraceElement frame : new Throwable().getStackTrace()) {
+            String className = frame.getClassName();
+            if (!isJdbcLayer(className)) {
+                return className.substring(className.lastIndexOf('.') + 1) + "." + frame.getMethodName() + ":" + frame.getLineNumber();
+            }
+        }
+        return "unknown";
+    }
+
+    private static boolean isJdbcLayer(String className) {
+        for (Class<?> own : new Class<?>[]{SqlMetrics.class, QueryBudget.class, InstrumentedJdbc.class, SqlSessionCustomizer.class,
+            ConnectionPool.class}) {
+            if (className.equals(own.getName()) || className.startsWith(own.getName() + "$")) {
+                return true;
+            }
+        }
+        for (String library : LIBRARIES) {
+            if (className.startsWith(library)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static final class Statement {
+
+        private final String sql;
+        private final Recorder recorder = new Recorder(3);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+        //Guarded by this.
+        private final Histogram histogram = new Histogram(3);
+        private final Set<String> callers = Collections.synchronizedSet(new LinkedHashSet<>());
+
+        Statement(String sql) {
+            this.sql = sql;
+        }
+
+        void record(long nanos, boolean failed) {
+            long micros = Math.max(0, TimeUnit.NANOSECONDS.toMicros(nanos));
+            recorder.recordValue(micros);
+            count.increment();
+            totalNanos.add(nanos);
+            maxNanos.accumulate(nanos);
+            if (failed) {
+                errors.increment();
+            }
+        }
+
+        String addCaller() {
+            String caller = caller();
+            if (callers.size() < MAX_CALLERS) {
+                callers.add(caller);
+            }
+            return caller;
+        }
+
+        synchronized Snapshot snapshot() {
+            histogram.add(recorder.getIntervalHistogram());
+            List<String> callerList;
+            synchronized (callers) {
+                callerList = new ArrayList<>(callers);
+            }
+            return new Snapshot(sql, callerList, count.sum(), errors.sum(), totalNanos.sum() / 1e6, maxNanos.get() / 1e6,
+                    histogram.getValueAtPercentile(50) / 1e3, histogram.getValueAtPercentile(99) / 1e3);
+        }
+    }
+
+    /**
+     * The figures of one statement since the start, sent as they are by the
+     * admin report.
+     */
+    public static final class Snapshot {
+
+        private final String sql;
+        private final List<String> callers;
+        private final long count;
+        private final long errors;
+        private final double totalMillis;
+        private final double meanMillis;
+        private final double maxMillis;
+        private final double p50Millis;
+        private final double p99Millis;
+
+        Snapshot(String sql, List<String> callers, long count, long errors, double totalMillis, double maxMillis,
+                double p50Millis, double p99Millis) {
+            this.sql = sql;
+            this.callers = callers;
+            this.count = count;
+            this.errors = errors;
+            this.totalMillis = totalMillis;
+            this.meanMillis = count == 0 ? 0 : totalMillis / count;
+            this.maxMillis = maxMillis;
+            this.p50Millis = p50Millis;
+            this.p99Millis = p99Millis;
+        }
+
+        public String getSql() {
+            return sql;
+        }
+
+        public List<String> getCallers() {
+            return callers;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getErrors() {
+            return errors;
+        }
+
+        public double getTotalMillis() {
+            return totalMillis;
+        }
+
+        public double getMeanMillis() {
+            return meanMillis;
+        }
+
+        public double getMaxMillis() {
+            return maxMillis;
+        }
+
+        public double getP50Millis() {
+            return p50Millis;
+        }
+
+        public double getP99Millis() {
+            return p99Millis;
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package metrics;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.regex.Pattern;
+
+/**
+ * Turns SQL into the form its statistics are kept under: literals become ?,
+ * lists of parameters such as {@code IN (?, ?, ?)} become {@code IN (?)} and
+ * whitespace is collapsed, so the same query with other values or another
+ * number of ids is counted once.
+ *
+ * @author Frederik Braagaard
+ */
+final class SqlNormalizer {
+
+    private static final Pattern STRING = Pattern.compile("'(?:[^']|'')*'");
+    private static final Pattern NUMBER = Pattern.compile("(?<![\\w.])-?\\d+(?:\\.\\d+)?(?![\\w.])");
+    private static final Pattern LIST = Pattern.compile("\\(\\s*\\?(?:\\s*,\\s*\\?)+\\s*\\)");
+    private static final Pattern ROWS = Pattern.compile("(\\(\\?\\))(?:\\s*,\\s*\\(\\?\\))+");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    //The SQL of prepared statements repeats, so most lookups hit the cache.
+    private static final int CACHE_SIZE = 2000;
+    private static final ConcurrentMap<String, String> CACHE = new ConcurrentHashMap<>();
+
+    private SqlNormalizer() {
+    }
+
+    static String normalize(String sql) {
+        if (sql == null) {
+            return "";
+        }
+        String normalized = CACHE.get(sql);
+        if (normalized == null) {
+            normalized = compute(sql);
+            if (CACHE.size() < CACHE_SIZE) {
+                CACHE.putIfAbsent(sql, normalized);
+            }
+        }
+        return normalized;
+    }
+
+    private static String compute(String sql) {
+        String result = WHITESPACE.matcher(sql).replaceAll(" ").trim();
+        result = STRING.matcher(result).replaceAll("?");
+        result = NUMBER.matcher(result).replaceAll("?");
+        result = LIST.matcher(result).replaceAll("(?)");
+        return ROWS.matcher(result).replaceAll("$1");
+    }
+}
@@ -0,0 +1,69 @@
+package metrics;
+
+import java.io.PrintWriter;
+import java.sql.Connection;
+import java.util.Properties;
+import org.eclipse.persistence.config.SessionCustomizer;
+import org.eclipse.persistence.sessions.Connector;
+import org.eclipse.persistence.sessions.DatasourceLogin;
+import org.eclipse.persistence.sessions.Session;
+
+/**
+ * Makes EclipseLink open its connections through {@link InstrumentedJdbc}, so
+ * the SQL it generates is timed like the queries on the connection pool.
+ * Registered as eclipselink.session.customizer in persistence.xml.
+ *
+ * @author Frederik Braagaard
+ */
+public class SqlSessionCustomizer implements SessionCustomizer {
+
+    @Override
+    public void customize(Session session) {
+        if (!SqlMetrics.isEnabled() || !(session.getDatasourceLogin() instanceof DatasourceLogin)) {
+            return;
+        }
+        DatasourceLogin login = (DatasourceLogin) session.getDatasourceLogin();
+        if (!(login.getConnector() instanceof InstrumentedConnector)) {
+            login.setConnector(new InstrumentedConnector(login.getConnector()));
+        }
+    }
+
+    /**
+     * Hands out the connections of the connector it replaces, wrapped.
+     */
+    static final class InstrumentedConnector implements Connector {
+
+        private static final long serialVersionUID = 1L;
+        private Connector connector;
+
+        InstrumentedConnector(Connector connector) {
+            this.connector = connector;
+        }
+
+        @Override
+        public Connection connect(Properties properties, Session session) {
+            return InstrumentedJdbc.wrap(connector.connect(properties, session));
+        }
+
+        @Override
+        public String getConnectionDetails() {
+            return connector.getConnectionDetails();
+        }
+
+        @Override
+        public void toString(PrintWriter writer) {
+            connector.toString(writer);
+        }
+
+        @Override
+        public Object clone() {
+            try {
+                InstrumentedConnector clone = (InstrumentedConnector) super.clone();
+                clone.connector = (Connector) connector.clone();
+                return clone;
+            } catch (CloneNotSupportedException ex) {
+                throw new IllegalStateException(ex);
+            }
+        }
+    }
+}
@@ -5,19 +5,13 @@
  */
 package mongodb;
 
-import com.mongodb.client.MongoClient;
-import com.mongodb.client.MongoClients;
 import com.mongodb.client.MongoCollection;
-import com.mongodb.client.MongoDatabase;
-import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.io.InputStream;
 import org.bson.Document;
 
-import java.util.ArrayList;
 import java.util.Date;
-import java.util.List;
-import java.util.Properties;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
  *
@@ -25,8 +19,7 @@ import java.util.Properties;
  */
 public class MongoConnection {
 
-    private static MongoClient mongoClient;
-    private static MongoDatabase mongoDB;
+    private static final Logger LOG = Logger.getLogger(MongoConnection.class.getName());
     private static MongoCollection<Document> logCollection;
     public static Boolean loggingStatus = true;
 
@@ -41,38 +34,21 @@ public class MongoConnection {
 //    }
 
     public void loggetSetup() throws IOException {
-        InputStream inputStream = null;
         try {
-            Properties prop = new Properties();
-            String propFileName = "mongo.properties";
-
-            inputStream = getClass().getClassLoader().getResourceAsStream(propFileName);
-
-            if (inputStream != null) {
-                prop.load(inputStream);
-            } else {
-                throw new FileNotFoundException("property file '" + propFileName + "' not found in the classpath");
-            }
-            String connectionString = prop.getProperty("mongouri");
-            mongoClient = MongoClients.create(connectionString);
-            
-            String databaseString = prop.getProperty("mongoDB");
-            mongoDB = mongoClient.getDatabase(databaseString);
-            
-            String collectionString = prop.getProperty("mongoLoggerCollection");
-            logCollection = mongoDB.getCollection(collectionString);
+            logCollection = SharedMongoClient.getSharedMongoClient().getCollection("mongoLoggerCollection", Document.class);
         } catch (Exception e) {
-            System.out.println("Exception: " + e);
-        } finally {
-            inputStream.close();
+            LOG.log(Level.WARNING, "Could not set up the Mongo log collection", e);
         }
     }
 
     public void loggetInsertDocument(Document loggerAddToCollection) throws IOException {
-        if(loggingStatus){
-        MongoConnection setup = new MongoConnection();
-        setup.loggetSetup();
-        logCollection.insertOne(loggerAddToCollection);
+        if (loggingStatus) {
+            if (logCollection == null) {
+                loggetSetup();
+            }
+            if (logCollection != null) {
+                logCollection.insertOne(loggerAddToCollection);
+            }
         }
     }
 
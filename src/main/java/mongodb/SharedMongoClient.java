@@ -0,0 +1,95 @@
+package mongodb;
+
+import com.mongodb.ConnectionString;
+import com.mongodb.MongoClientSettings;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+import metrics.MongoMetrics;
+import static org.bson.codecs.configuration.CodecRegistries.fromProviders;
+import static org.bson.codecs.configuration.CodecRegistries.fromRegistries;
+import org.bson.codecs.configuration.CodecRegistry;
+import org.bson.codecs.pojo.PojoCodecProvider;
+
+/**
+ * The one MongoClient of the application, made from mongo.properties the
+ * first time it is needed. The client keeps a pool of connections, so the
+ * loggers no longer open a client, its pool and its server monitor for every
+ * document they read or write. Its commands and pool are measured by
+ * {@link MongoMetrics}.
+ *
+ * @author Frederik Braagaard
+ */
+public final class SharedMongoClient {
+
+    private static final String PROPERTY_FILE = "mongo.properties";
+
+    private static SharedMongoClient instance;
+
+    private final MongoClient client;
+    private final MongoDatabase database;
+    private final Properties properties;
+
+    private SharedMongoClient(Properties properties) {
+        this.properties = properties;
+        //Both the log documents and the mongoClass.Mongo POJOs are stored.
+        CodecRegistry codecRegistry = fromRegistries(MongoClientSettings.getDefaultCodecRegistry(),
+                fromProviders(PojoCodecProvider.builder().automatic(true).build()));
+        MongoMetrics metrics = MongoMetrics.getMongoMetrics();
+        MongoClientSettings settings = MongoClientSettings.builder()
+                .applyConnectionString(new ConnectionString(properties.getProperty("mongouri")))
+                .codecRegistry(codecRegistry)
+                .addCommandListener(metrics)
+                .applyToConnectionPoolSettings(pool -> pool.addConnectionPoolListener(metrics))
+                .build();
+        client = MongoClients.create(settings);
+        database = client.getDatabase(properties.getProperty("mongoDB"));
+    }
+
+    /**
+     *
+     * @return the client, created the first time.
+     * @throws IOException if mongo.properties cannot be read
+     */
+    public static synchronized SharedMongoClient getSharedMongoClient() throws IOException {
+        if (instance == null) {
+            instance = new SharedMongoClient(loadProperties());
+        }
+        return instance;
+    }
+
+    private static Properties loadProperties() throws IOException {
+        try (InputStream inputStream = SharedMongoClient.class.getClassLoader().getResourceAsStream(PROPERTY_FILE)) {
+            if (inputStream == null) {
+                throw new FileNotFoundException("property file '" + PROPERTY_FILE + "' not found in the classpath");
+            }
+            Properties properties = new Properties();
+            properties.load(inputStream);
+            return properties;
+        }
+    }
+
+    public MongoClient getClient() {
+        return client;
+    }
+
+    /**
+     * The database named by mongoDB in mongo.properties.
+     */
+    public MongoDatabase getDatabase() {
+        return database;
+    }
+
+    /**
+     * The collection named by a property of mongo.properties, e.g.
+     * mongoLoggerCollection.
+     */
+    public <T> MongoCollection<T> getCollection(String collectionProperty, Class<T> type) {
+        return database.getCollection(properties.getProperty(collectionProperty), type);
+    }
+}
@@ -1,27 +1,40 @@
 package rest;
 
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
 import com.nimbusds.jose.JOSEException;
+import dtos.user.UserDTO;
+import dtos.user.UserPostsDTO;
 import errorhandling.AuthenticationException;
 import facades.UserFacade;
+import facades.UserFacadeAsync;
 import java.io.IOException;
+import java.lang.reflect.Type;
 import java.sql.SQLException;
 import java.text.ParseException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import javax.annotation.security.RolesAllowed;
 import javax.persistence.EntityManagerFactory;
+import javax.ws.rs.DefaultValue;
 import javax.ws.rs.GET;
 import javax.ws.rs.HeaderParam;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.core.UriInfo;
 import javax.ws.rs.Produces;
 import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.QueryParam;
 import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
+import javax.ws.rs.core.GenericType;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.SecurityContext;
+import metrics.SqlMetrics;
 import mongodb.MongoConnection;
 import security.JWTAuthenticationFilter;
 import security.UserPrincipal;
+import tracing.Trace;
+import tracing.TraceBuffer;
 import utils.EMF_Creator;
 
 /**
@@ -32,9 +45,15 @@ import utils.EMF_Creator;
 public class AdminResource {
 
     private static final EntityManagerFactory EMF = EMF_Creator.createEntityManagerFactory(EMF_Creator.DbSelector.DEV, EMF_Creator.Strategy.CREATE);
-    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
     private static final UserFacade FACADE = UserFacade.getUserFacade(EMF);
+    private static final UserFacadeAsync FACADE_ASYNC = UserFacadeAsync.getUserFacadeAsync(FACADE);
     private static final MongoConnection MONGODB = new MongoConnection();
+    private static final Type USER_LIST = new GenericType<List<UserDTO>>() {
+    }.getType();
+    private static final Type POST_LIST = new GenericType<List<UserPostsDTO>>() {
+    }.getType();
+    private static final int MAX_QUERIES = 100;
+    private static final int MAX_TRACES = 1000;
 
     @Context
     private UriInfo context;
@@ -51,7 +70,7 @@ public class AdminResource {
     @Path("/users")
     @Produces(MediaType.APPLICATION_JSON)
     @RolesAllowed("admin")
-    public String getAllUsers(String jsonString, @HeaderParam("x-access-token") String accessToken, @HeaderParam("ip_address") String ip_address) throws SQLException, ClassNotFoundException, ParseException, JOSEException, AuthenticationException, IOException {
+    public void getAllUsers(String jsonString, @HeaderParam("x-access-token") String accessToken, @HeaderParam("ip_address") String ip_address, @Suspended AsyncResponse asyncResponse) throws ParseException, IOException {
         JWTAuthenticationFilter authenticate = new JWTAuthenticationFilter();
         UserPrincipal userPrin;
         try {
@@ -66,17 +85,27 @@ public class AdminResource {
         } else {
             userIP = ip_address;
         }
-        try {
+        //The audit log and the query don't depend on each other, so they run side by side.
+        CompletableFuture<Void> audit = FACADE_ASYNC.call(() -> {
             MONGODB.loggetInsertDocument(MONGODB.loggerDocument("Successfull", userIP, "getAllUsers()", username));
-            
-            return GSON.toJson(FACADE.adminGetUsers());
-        } catch (NullPointerException ex) {
-            MONGODB.loggetInsertDocument(MONGODB.loggerDocument("Fail", userIP, "getAllUsers()", username));
-            throw new WebApplicationException("No users was found", 404);
-        } catch (SQLException | ClassNotFoundException ex) {
-            MONGODB.loggetInsertDocument(MONGODB.loggerDocument("Fail", userIP, "getAllUsers()", username));
-            throw new WebApplicationException("Something unexpectely went wrong", 500);
-        }
+            return null;
+        });
+        CompletableFuture<List<UserDTO>> users = FACADE_ASYNC.adminGetUsers();
+        users.exceptionally(ex -> {
+            FACADE_ASYNC.call(() -> {
+                MONGODB.loggetInsertDocument(MONGODB.loggerDocument("Fail", userIP, "getAllUsers()", username));
+                return null;
+            });
+            return null;
+        });
+        AsyncResults.resume(asyncResponse, users.thenCombine(audit, (result, logged) -> result), USER_LIST, ex -> {
+            if (ex instanceof NullPointerException) {
+                return new WebApplicationException("No users was found", 404);
+            } else if (ex instanceof SQLException || ex instanceof ClassNotFoundException) {
+                return new WebApplicationException("Something unexpectely went wrong", 500);
+            }
+            return null;
+        });
     }
     
     /**
@@ -87,7 +116,7 @@ public class AdminResource {
     @Path("/posts")
     @Produces(MediaType.APPLICATION_JSON)
     @RolesAllowed("admin")
-    public String getAllPosts(String jsonString, @HeaderParam("x-access-token") String accessToken) throws SQLException, ClassNotFoundException, ParseException, IOException {
+    public void getAllPosts(String jsonString, @HeaderParam("x-access-token") String accessToken, @Suspended AsyncResponse asyncResponse) throws ParseException, IOException {
         JWTAuthenticationFilter authenticate = new JWTAuthenticationFilter();
         UserPrincipal userPrin;
         try {
@@ -96,15 +125,97 @@ public class AdminResource {
             throw new WebApplicationException(ex.getMessage(), 401);
         }
         String username = userPrin.getName();
+        AsyncResults.resume(asyncResponse, FACADE_ASYNC.adminGetPosts(), POST_LIST, ex -> {
+            if (ex instanceof NullPointerException) {
+                return new WebApplicationException("No posts was found", 404);
+            } else if (ex instanceof SQLException || ex instanceof ClassNotFoundException) {
+                FACADE_ASYNC.call(() -> {
+                    MONGODB.loggetInsertDocument(MONGODB.loggerDocument("Fail", "TODO", "getAllPosts()", username));
+                    return null;
+                });
+                return new WebApplicationException("Something unexpectely went wrong", 500);
+            }
+            return null;
+        });
+    }
+
+    /**
+     * The SQL statements that have cost the most, with the code that ran
+     * them, to find the facade methods loading the database.
+     *
+     * @param top how many statements to list, at most 100
+     * @param order total, mean, max, p99, count or errors
+     * @author Frederik Braagaard
+     */
+    @GET
+    @Path("/queries")
+    @Produces(MediaType.APPLICATION_JSON)
+    @RolesAllowed("admin")
+    public List<SqlMetrics.Snapshot> getSlowestQueries(@QueryParam("top") @DefaultValue("10") int top,
+            @QueryParam("order") @DefaultValue("total") String order, @HeaderParam("x-access-token") String accessToken) throws ParseException, IOException {
+        JWTAuthenticationFilter authenticate = new JWTAuthenticationFilter();
+        try {
+            authenticate.getUserPrincipalFromTokenIfValid(accessToken);
+        } catch (JOSEException | AuthenticationException ex) {
+            throw new WebApplicationException(ex.getMessage(), 401);
+        }
+        if (top < 1 || top > MAX_QUERIES) {
+            throw new WebApplicationException("top must be between 1 and " + MAX_QUERIES, 400);
+        }
+        try {
+            return SqlMetrics.top(top, order);
+        } catch (IllegalArgumentException ex) {
+            throw new WebApplicationException(ex.getMessage(), 400);
+        }
+    }
+
+    /**
+     * The sampled and slow requests kept by the tracing, newest first.
+     *
+     * @param limit how many traces to list, at most 1000
+     * @param minMillis leaves out the requests faster than this
+     * @author Frederik Braagaard
+     */
+    @GET
+    @Path("/traces")
+    @Produces(MediaType.APPLICATION_JSON)
+    @RolesAllowed("admin")
+    public List<Trace.Summary> getTraces(@QueryParam("limit") @DefaultValue("50") int limit,
+            @QueryParam("minMillis") @DefaultValue("0") double minMillis, @HeaderParam("x-access-token") String accessToken) throws ParseException, IOException {
+        JWTAuthenticationFilter authenticate = new JWTAuthenticationFilter();
         try {
-            return GSON.toJson(FACADE.adminGetPosts());
-        } catch (NullPointerException ex) {
-            throw new WebApplicationException("No posts was found", 404);
-        } catch (SQLException | ClassNotFoundException ex) {
-            MONGODB.loggetInsertDocument(MONGODB.loggerDocument("Fail", "TODO", "getAllPosts()", username));
-            throw new WebApplicationException("Something unexpectely went wrong", 500);
+            authenticate.getUserPrincipalFromTokenIfValid(accessToken);
+        } catch (JOSEException | AuthenticationException ex) {
+            throw new WebApplicationException(ex.getMessage(), 401);
+        }
+        if (limit < 1 || limit > MAX_TRACES) {
+            throw new WebApplicationException("limit must be between 1 and " + MAX_TRACES, 400);
         }
+        return TraceBuffer.getTraceBuffer().recent(limit, minMillis);
     }
 
+    /**
+     * One kept trace with its spans, found by the X-Request-Id of the
+     * request.
+     *
+     * @author Frederik Braagaard
+     */
+    @GET
+    @Path("/traces/{id}")
+    @Produces(MediaType.APPLICATION_JSON)
+    @RolesAllowed("admin")
+    public Trace getTrace(@PathParam("id") String id, @HeaderParam("x-access-token") String accessToken) throws ParseException, IOException {
+        JWTAuthenticationFilter authenticate = new JWTAuthenticationFilter();
+        try {
+            authenticate.getUserPrincipalFromTokenIfValid(accessToken);
+        } catch (JOSEException | AuthenticationException ex) {
+            throw new WebApplicationException(ex.getMessage(), 401);
+        }
+        Trace trace = TraceBuffer.getTraceBuffer().find(id);
+        if (trace == null) {
+            throw new WebApplicationException("No trace kept with id " + id, 404);
+        }
+        return trace;
+    }
 
 }
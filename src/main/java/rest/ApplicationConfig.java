@@ -1,5 +1,7 @@
 package rest;
 
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Set;
 import javax.ws.rs.core.Application;
 import org.glassfish.jersey.media.multipart.MultiPartFeature;
@@ -15,6 +17,19 @@ public class ApplicationConfig extends Application {
         return resources;
     }
 
+    /**
+     * Keeps the JSON-B provider on the classpath from registering itself.
+     * It would otherwise compete with json.JsonRequestReader and
+     * json.GsonMessageBodyWriter, and which one Jersey picks changes from
+     * start to start.
+     */
+    @Override
+    public Map<String, Object> getProperties() {
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("jersey.config.jsonFeature", "GsonMessageBodyWriter");
+        return properties;
+    }
+
     /**
      * Do not modify addRestResourceClasses() method.
      * It is automatically populated with
@@ -22,18 +37,31 @@ public class ApplicationConfig extends Application {
      * If required, comment out calling this method in getClasses().
      */
     private void addRestResourceClasses(Set<Class<?>> resources) {
+        resources.add(binary.BinaryMessageBodyWriter.class);
+        resources.add(compression.CompressionInterceptor.class);
         resources.add(cors.CorsRequestFilter.class);
         resources.add(cors.CorsResponseFilter.class);
         resources.add(errorhandling.AuthenticationExceptionMapper.class);
         resources.add(errorhandling.GenericExceptionMapper.class);
+        resources.add(json.GsonMessageBodyWriter.class);
+        resources.add(json.JsonRequestReader.class);
+        resources.add(metrics.QueryBudgetFilter.class);
+        resources.add(metrics.QueryBudgetListener.class);
+        resources.add(metrics.RequestMetricsFilter.class);
         resources.add(org.glassfish.jersey.server.wadl.internal.WadlResource.class);
         resources.add(rest.AdminResource.class);
+        resources.add(rest.EventResource.class);
         resources.add(rest.FriendResource.class);
+        resources.add(rest.HealthResource.class);
+        resources.add(rest.HomeResource.class);
+        resources.add(rest.MetricsResource.class);
         resources.add(rest.PostResource.class);
         resources.add(rest.RegistrationResource.class);
         resources.add(security.JWTAuthenticationFilter.class);
         resources.add(security.LoginEndpoint.class);
         resources.add(security.RolesAllowedFilter.class);
+        resources.add(tracing.TraceFilter.class);
+        resources.add(tracing.TraceListener.class);
     }
 
 }
@@ -0,0 +1,69 @@
+package rest;
+
+import java.lang.reflect.Type;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.core.GenericEntity;
+import javax.ws.rs.core.Response;
+
+/**
+ * Resumes a suspended request once a {@link facades.UserFacadeAsync} call
+ * completes.
+ *
+ * @author Frederik Braagaard
+ */
+final class AsyncResults {
+
+    private AsyncResults() {
+    }
+
+    /**
+     * Resumes the request with the result of the future, or with the error
+     * it failed with.
+     *
+     * @param response the suspended request
+     * @param future the facade call
+     * @param type the generic type of the result, such as
+     * {@code List<UserDTO>}, so the writers can see the element type. Null
+     * for a plain class.
+     * @param errors turns the exceptions the endpoint expects into a
+     * response, returning null for anything else. Timeouts and a full queue
+     * are always answered with 503, other exceptions go to the exception
+     * mappers.
+     */
+    static <T> void resume(AsyncResponse response, CompletableFuture<T> future, Type type,
+            Function<Throwable, WebApplicationException> errors) {
+        future.whenComplete((result, error) -> {
+            if (error == null) {
+                response.resume(type == null ? result : Response.ok(new GenericEntity<>(result, type)).build());
+                return;
+            }
+            Throwable cause = unwrap(error);
+            if (cause instanceof TimeoutException) {
+                response.resume(new WebApplicationException("The database did not answer in time", 503));
+            } else if (cause instanceof RejectedExecutionException) {
+                response.resume(new WebApplicationException("The server is busy, please try again later", 503));
+            } else {
+                WebApplicationException mapped = errors.apply(cause);
+                response.resume(mapped != null ? mapped : cause);
+            }
+        });
+    }
+
+    /**
+     * Finds the exception a facade call threw under the wrappers added by
+     * dependent futures.
+     */
+    static Throwable unwrap(Throwable error) {
+        while ((error instanceof CompletionException || error instanceof ExecutionException) && error.getCause() != null) {
+            error = error.getCause();
+        }
+        return error;
+    }
+}
@@ -0,0 +1,100 @@
+package rest;
+
+import com.nimbusds.jose.JOSEException;
+import errorhandling.AuthenticationException;
+import events.Event;
+import events.EventBus;
+import events.EventType;
+import java.io.IOException;
+import java.text.ParseException;
+import java.util.concurrent.CompletionStage;
+import javax.ws.rs.GET;
+import javax.ws.rs.HeaderParam;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.sse.OutboundSseEvent;
+import javax.ws.rs.sse.Sse;
+import javax.ws.rs.sse.SseEventSink;
+import json.JsonSupport;
+import security.JWTAuthenticationFilter;
+import security.UserPrincipal;
+
+/**
+ * A Server-Sent Events stream of what happens to the logged in user: new posts
+ * by friends ("post"), friend requests ("friend-request") and accepted
+ * requests ("friend-accepted"). The data of each event is the same JSON the
+ * matching endpoint returns. Clients keep the stream open instead of polling
+ * /post/friends and /friend/requests.
+ * <p>
+ * A client that reads too slowly is disconnected and should reconnect and
+ * reload what it shows.
+ * </p>
+ *
+ * @author Frederik Braagaard
+ */
+@Path("events")
+public class EventResource {
+
+    /**
+     *
+     * @author Frederik Braagaard
+     */
+    @GET
+    @Produces(MediaType.SERVER_SENT_EVENTS)
+    public void subscribe(@HeaderParam("x-access-token") String accessToken, @Context SseEventSink sink, @Context Sse sse) throws ParseException, IOException {
+        JWTAuthenticationFilter authenticate = new JWTAuthenticationFilter();
+        UserPrincipal userPrin;
+        try {
+            userPrin = authenticate.getUserPrincipalFromTokenIfValid(accessToken);
+        } catch (JOSEException | AuthenticationException ex) {
+            throw new WebApplicationException(ex.getMessage(), 401);
+        }
+
+        //Sends the headers, so the client knows it is subscribed.
+        sink.send(sse.newEventBuilder().comment("connected").build());
+        EventBus.getEventBus().subscribe(userPrin.getNameID(), new SseListener(sink, sse));
+    }
+
+    /**
+     * Writes the events of one subscription to its stream.
+     */
+    static final class SseListener implements EventBus.Listener {
+
+        private final SseEventSink sink;
+        private final Sse sse;
+
+        SseListener(SseEventSink sink, Sse sse) {
+            this.sink = sink;
+            this.sse = sse;
+        }
+
+        @Override
+        public CompletionStage<?> onEvent(Event event) throws Exception {
+            if (sink.isClosed()) {
+                throw new IOException("The client has disconnected");
+            }
+            //The bus waits for the write without holding a thread, and a failed one closes the subscription.
+            return sink.send(toSse(event));
+        }
+
+        @Override
+        public void onClose(boolean evicted) {
+            sink.close();
+        }
+
+        private OutboundSseEvent toSse(Event event) {
+            if (event.getType() == EventType.HEARTBEAT) {
+                return sse.newEventBuilder().comment(EventType.HEARTBEAT.getEventName()).build();
+            }
+            return sse.newEventBuilder()
+                    .id(String.valueOf(event.getId()))
+                    .name(event.getType().getEventName())
+                    .mediaType(MediaType.APPLICATION_JSON_TYPE)
+                    .data(String.class, JsonSupport.toJson(event.getData()))
+                    .build();
+        }
+    }
+}
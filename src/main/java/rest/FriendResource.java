@@ -1,23 +1,29 @@
 package rest;
 
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
+import binary.BinaryFormat;
 import com.google.gson.JsonObject;
-import com.google.gson.JsonParser;
 import com.nimbusds.jose.JOSEException;
+import dtos.request.FriendBatchRequest;
+import dtos.request.FriendRequestRequest;
+import dtos.request.SearchRequest;
+import dtos.request.UserIdRequest;
+import dtos.user.FriendSuggestionDTO;
 import dtos.user.FriendsDTO;
 import dtos.user.UserDTO;
-import entities.User;
 import errorhandling.AuthenticationException;
 import errorhandling.NoFriendRequestsException;
 import errorhandling.NoFriendsException;
 import errorhandling.NotFoundException;
 import facades.UserFacade;
+import facades.UserFacadeAsync;
 import java.io.IOException;
+import java.lang.reflect.Type;
 import java.sql.SQLException;
 import java.text.ParseException;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import javax.persistence.EntityManagerFactory;
+import json.JsonSupport;
 import javax.ws.rs.Consumes;
 import javax.ws.rs.GET;
 import javax.ws.rs.HeaderParam;
@@ -26,12 +32,17 @@ import javax.ws.rs.core.UriInfo;
 import javax.ws.rs.Produces;
 import javax.ws.rs.POST;
 import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
 import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
+import javax.ws.rs.core.GenericType;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.SecurityContext;
 import security.JWTAuthenticationFilter;
 import security.UserPrincipal;
 import utils.EMF_Creator;
+import utils.Settings;
 
 /**
  *
@@ -41,8 +52,15 @@ import utils.EMF_Creator;
 public class FriendResource {
 
     private static EntityManagerFactory EMF = EMF_Creator.createEntityManagerFactory(EMF_Creator.DbSelector.DEV, EMF_Creator.Strategy.CREATE);
-    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
     private static final UserFacade FACADE = UserFacade.getUserFacade(EMF);
+    private static final UserFacadeAsync FACADE_ASYNC = UserFacadeAsync.getUserFacadeAsync(FACADE);
+    private static final Type FRIEND_LIST = new GenericType<List<FriendsDTO>>() {
+    }.getType();
+    private static final Type SUGGESTION_LIST = new GenericType<List<FriendSuggestionDTO>>() {
+    }.getType();
+    private static final Type USER_LIST = new GenericType<List<UserDTO>>() {
+    }.getType();
+    private static final int MAX_BATCH_OPERATIONS = Settings.getIntValue("friend.batch.max.operations", 100);
 
     @Context
     private UriInfo context;
@@ -58,8 +76,7 @@ public class FriendResource {
     @Path("/add")
     @Produces(MediaType.APPLICATION_JSON)
     @Consumes(MediaType.APPLICATION_JSON)
-    public String friendRequest(String jsonString, @HeaderParam("x-access-token") String accessToken) throws NotFoundException, ParseException, IOException {
-        JsonObject json = new JsonParser().parse(jsonString).getAsJsonObject();
+    public void friendRequest(FriendRequestRequest request, @HeaderParam("x-access-token") String accessToken, @Suspended AsyncResponse asyncResponse) throws ParseException, IOException {
         JWTAuthenticationFilter authenticate = new JWTAuthenticationFilter();
         UserPrincipal userPrin;
         try {
@@ -69,15 +86,43 @@ public class FriendResource {
         }
 
         int usernameID = userPrin.getNameID();
-        int requestMadeByUsernameID = json.get("request_username").getAsInt();
-        User user;
+        int requestMadeByUsernameID = request.getRequestUsernameID();
+        CompletableFuture<String> response = FACADE_ASYNC.addFriendRequest(usernameID, requestMadeByUsernameID)
+                .thenApply(user -> JsonSupport.toJson("Friend request has been sent"));
+        AsyncResults.resume(asyncResponse, response, null, ex -> {
+            if (ex instanceof NotFoundException) {
+                return new WebApplicationException("The requested friend could not be found", 404);
+            }
+            return null;
+        });
+    }
+    
+    /**
+     *
+     * @author Frederik Braagaard
+     */
+    @GET
+    @Path("/friends")
+    @Produces({MediaType.APPLICATION_JSON, BinaryFormat.MEDIA_TYPE_QS})
+    @Consumes(MediaType.APPLICATION_JSON)
+    public void getFriends(@HeaderParam("x-access-token") String accessToken, @Suspended AsyncResponse asyncResponse) throws ParseException, IOException {
+        JWTAuthenticationFilter authenticate = new JWTAuthenticationFilter();
+        UserPrincipal userPrin;
         try {
-            user = FACADE.addFriendRequest(usernameID, requestMadeByUsernameID);
-        } catch (NotFoundException ex) {
-            throw new WebApplicationException("The requested friend could not be found", 404);
+            userPrin = authenticate.getUserPrincipalFromTokenIfValid(accessToken);
+        } catch (JOSEException | AuthenticationException ex) {
+            throw new WebApplicationException(ex.getMessage(), 401);
         }
 
-        return GSON.toJson("Friend request has been sent");
+        int usernameID = userPrin.getNameID();
+        AsyncResults.resume(asyncResponse, FACADE_ASYNC.viewFriends(usernameID), FRIEND_LIST, ex -> {
+            if (ex instanceof NotFoundException) {
+                return new WebApplicationException("Something unexpected went wrong", 500);
+            } else if (ex instanceof NoFriendsException) {
+                return new WebApplicationException("The requester currently has no friends", 404);
+            }
+            return null;
+        });
     }
     
     /**
@@ -85,9 +130,9 @@ public class FriendResource {
      * @author Frederik Braagaard
      */
     @GET
-    @Path("/friends")
-    @Consumes(MediaType.APPLICATION_JSON)
-    public String getFriends(@HeaderParam("x-access-token") String accessToken) throws NotFoundException, ParseException, NoFriendsException, IOException {
+    @Path("/suggestions")
+    @Produces(MediaType.APPLICATION_JSON)
+    public void getFriendSuggestions(@HeaderParam("x-access-token") String accessToken, @Suspended AsyncResponse asyncResponse) throws ParseException, IOException {
         JWTAuthenticationFilter authenticate = new JWTAuthenticationFilter();
         UserPrincipal userPrin;
         try {
@@ -97,26 +142,49 @@ public class FriendResource {
         }
 
         int usernameID = userPrin.getNameID();
-        List<FriendsDTO> friends;
+        AsyncResults.resume(asyncResponse, FACADE_ASYNC.suggestFriends(usernameID), SUGGESTION_LIST, ex -> {
+            if (ex instanceof NotFoundException) {
+                return new WebApplicationException("No friend suggestions could be found", 404);
+            } else if (ex instanceof SQLException || ex instanceof ClassNotFoundException) {
+                return new WebApplicationException("Something unexpected went wrong", 500);
+            }
+            return null;
+        });
+    }
+
+    /**
+     *
+     * @author Frederik Braagaard
+     */
+    @GET
+    @Path("/mutual/{id}")
+    @Produces(MediaType.APPLICATION_JSON)
+    public void getMutualFriends(@PathParam("id") int otherUsernameID, @HeaderParam("x-access-token") String accessToken, @Suspended AsyncResponse asyncResponse) throws ParseException, IOException {
+        JWTAuthenticationFilter authenticate = new JWTAuthenticationFilter();
+        UserPrincipal userPrin;
         try {
-            friends = FACADE.viewFriends(usernameID);
-        } catch (NotFoundException ex) {
-            throw new WebApplicationException("Something unexpected went wrong", 500);
-        } catch (NoFriendsException ex) {
-            throw new WebApplicationException("The requester currently has no friends", 404);
+            userPrin = authenticate.getUserPrincipalFromTokenIfValid(accessToken);
+        } catch (JOSEException | AuthenticationException ex) {
+            throw new WebApplicationException(ex.getMessage(), 401);
         }
 
-        return GSON.toJson(friends);
+        int usernameID = userPrin.getNameID();
+        AsyncResults.resume(asyncResponse, FACADE_ASYNC.mutualFriends(usernameID, otherUsernameID), null, ex -> {
+            if (ex instanceof SQLException || ex instanceof ClassNotFoundException) {
+                return new WebApplicationException("Something unexpected went wrong", 500);
+            }
+            return null;
+        });
     }
-    
+
     /**
      *
      * @author Frederik Braagaard
      */
     @GET
-    @Path("/requests")
-    @Consumes(MediaType.APPLICATION_JSON)
-    public String getFriendsRequests(@HeaderParam("x-access-token") String accessToken) throws NotFoundException, ParseException, NoFriendRequestsException, IOException {
+    @Path("/distance/{id}")
+    @Produces(MediaType.APPLICATION_JSON)
+    public void getFriendDistance(@PathParam("id") int otherUsernameID, @HeaderParam("x-access-token") String accessToken, @Suspended AsyncResponse asyncResponse) throws ParseException, IOException {
         JWTAuthenticationFilter authenticate = new JWTAuthenticationFilter();
         UserPrincipal userPrin;
         try {
@@ -126,16 +194,47 @@ public class FriendResource {
         }
 
         int usernameID = userPrin.getNameID();
-        List<FriendsDTO> friends;
+        CompletableFuture<JsonObject> response = FACADE_ASYNC.friendDistance(usernameID, otherUsernameID).thenApply(distance -> {
+            JsonObject responseJson = new JsonObject();
+            responseJson.addProperty("distance", distance);
+            return responseJson;
+        });
+        AsyncResults.resume(asyncResponse, response, null, ex -> {
+            if (ex instanceof NotFoundException) {
+                return new WebApplicationException(ex.getMessage(), 404);
+            } else if (ex instanceof SQLException || ex instanceof ClassNotFoundException) {
+                return new WebApplicationException("Something unexpected went wrong", 500);
+            }
+            return null;
+        });
+    }
+
+    /**
+     *
+     * @author Frederik Braagaard
+     */
+    @GET
+    @Path("/requests")
+    @Produces({MediaType.APPLICATION_JSON, BinaryFormat.MEDIA_TYPE_QS})
+    @Consumes(MediaType.APPLICATION_JSON)
+    public void getFriendsRequests(@HeaderParam("x-access-token") String accessToken, @Suspended AsyncResponse asyncResponse) throws ParseException, IOException {
+        JWTAuthenticationFilter authenticate = new JWTAuthenticationFilter();
+        UserPrincipal userPrin;
         try {
-            friends = FACADE.viewFriendRequests(usernameID);
-        } catch (NotFoundException ex) {
-            throw new WebApplicationException("Something unexpected went wrong", 500);
-        } catch (NoFriendRequestsException ex) {
-            throw new WebApplicationException("You do not have any friend requests", 404);
+            userPrin = authenticate.getUserPrincipalFromTokenIfValid(accessToken);
+        } catch (JOSEException | AuthenticationException ex) {
+            throw new WebApplicationException(ex.getMessage(), 401);
         }
 
-        return GSON.toJson(friends);
+        int usernameID = userPrin.getNameID();
+        AsyncResults.resume(asyncResponse, FACADE_ASYNC.viewFriendRequests(usernameID), FRIEND_LIST, ex -> {
+            if (ex instanceof NotFoundException) {
+                return new WebApplicationException("Something unexpected went wrong", 500);
+            } else if (ex instanceof NoFriendRequestsException) {
+                return new WebApplicationException("You do not have any friend requests", 404);
+            }
+            return null;
+        });
     }
 
     /**
@@ -146,8 +245,7 @@ public class FriendResource {
     @Path("/accept")
     @Produces(MediaType.APPLICATION_JSON)
     @Consumes(MediaType.APPLICATION_JSON)
-    public String acceptFriendRequest(String jsonString, @HeaderParam("x-access-token") String accessToken) throws NotFoundException, ParseException, AuthenticationException, IOException {
-        JsonObject json = new JsonParser().parse(jsonString).getAsJsonObject();
+    public void acceptFriendRequest(UserIdRequest request, @HeaderParam("x-access-token") String accessToken, @Suspended AsyncResponse asyncResponse) throws ParseException, IOException {
         JWTAuthenticationFilter authenticate = new JWTAuthenticationFilter();
         UserPrincipal userPrin;
         try {
@@ -157,17 +255,17 @@ public class FriendResource {
         }
 
         int usernameID = userPrin.getNameID();
-        int request_usernameID = json.get("request_userid").getAsInt();
-        User user;
-        try {
-            user = FACADE.acceptFriendRequest(usernameID, request_usernameID);
-        } catch (NotFoundException ex) {
-            throw new WebApplicationException("The requested friend could not be found", 404);
-        } catch (AuthenticationException ex) {
-            throw new WebApplicationException("Something unexpected went wrong. This request has been logged for further investigation", 400);
-        }
-
-        return GSON.toJson("Friend request has been accepted");
+        int request_usernameID = request.getRequestUserID();
+        CompletableFuture<String> response = FACADE_ASYNC.acceptFriendRequest(usernameID, request_usernameID)
+                .thenApply(user -> JsonSupport.toJson("Friend request has been accepted"));
+        AsyncResults.resume(asyncResponse, response, null, ex -> {
+            if (ex instanceof NotFoundException) {
+                return new WebApplicationException("The requested friend could not be found", 404);
+            } else if (ex instanceof AuthenticationException) {
+                return new WebApplicationException("Something unexpected went wrong. This request has been logged for further investigation", 400);
+            }
+            return null;
+        });
     }
 
     /**
@@ -178,8 +276,7 @@ public class FriendResource {
     @Path("/remove")
     @Produces(MediaType.APPLICATION_JSON)
     @Consumes(MediaType.APPLICATION_JSON)
-    public String removeFriend(String jsonString, @HeaderParam("x-access-token") String accessToken) throws NotFoundException, ParseException, IOException {
-        JsonObject json = new JsonParser().parse(jsonString).getAsJsonObject();
+    public void removeFriend(UserIdRequest request, @HeaderParam("x-access-token") String accessToken, @Suspended AsyncResponse asyncResponse) throws ParseException, IOException {
         JWTAuthenticationFilter authenticate = new JWTAuthenticationFilter();
         UserPrincipal userPrin;
         try {
@@ -189,15 +286,15 @@ public class FriendResource {
         }
 
         int usernameID = userPrin.getNameID();
-        int request_usernameID = json.get("request_userid").getAsInt();
-        User user;
-        try {
-            user = FACADE.removeFriend(usernameID, request_usernameID);
-        } catch (NotFoundException ex) {
-            throw new WebApplicationException("The requested friend could not be found", 404);
-        }
-
-        return GSON.toJson("Friend has been removed");
+        int request_usernameID = request.getRequestUserID();
+        CompletableFuture<String> response = FACADE_ASYNC.removeFriend(usernameID, request_usernameID)
+                .thenApply(user -> JsonSupport.toJson("Friend has been removed"));
+        AsyncResults.resume(asyncResponse, response, null, ex -> {
+            if (ex instanceof NotFoundException) {
+                return new WebApplicationException("The requested friend could not be found", 404);
+            }
+            return null;
+        });
     }
 
     /**
@@ -208,8 +305,7 @@ public class FriendResource {
     @Path("/remove/friendrequest")
     @Produces(MediaType.APPLICATION_JSON)
     @Consumes(MediaType.APPLICATION_JSON)
-    public String removeFriendRequest(String jsonString, @HeaderParam("x-access-token") String accessToken) throws NotFoundException, ParseException, IOException {
-        JsonObject json = new JsonParser().parse(jsonString).getAsJsonObject();
+    public void removeFriendRequest(UserIdRequest request, @HeaderParam("x-access-token") String accessToken, @Suspended AsyncResponse asyncResponse) throws ParseException, IOException {
         JWTAuthenticationFilter authenticate = new JWTAuthenticationFilter();
         UserPrincipal userPrin;
         try {
@@ -219,27 +315,29 @@ public class FriendResource {
         }
 
         int username = userPrin.getNameID();
-        int request_username = json.get("request_userid").getAsInt();
-        User user;
-        try {
-            user = FACADE.removeFriendRequest(username, request_username);
-        } catch (NotFoundException ex) {
-            throw new WebApplicationException("The requested friend request could not be found", 404);
-        }
-
-        return GSON.toJson("Friend Request has been removed");
+        int request_username = request.getRequestUserID();
+        CompletableFuture<String> response = FACADE_ASYNC.removeFriendRequest(username, request_username)
+                .thenApply(user -> JsonSupport.toJson("Friend Request has been removed"));
+        AsyncResults.resume(asyncResponse, response, null, ex -> {
+            if (ex instanceof NotFoundException) {
+                return new WebApplicationException("The requested friend request could not be found", 404);
+            }
+            return null;
+        });
     }
 
     /**
+     * Accepts, declines and removes several friends in one request and one
+     * transaction, e.g. when clearing out pending requests. Answers with a
+     * result for every operation.
      *
      * @author Frederik Braagaard
      */
     @POST
-    @Path("/search")
+    @Path("/batch")
     @Produces(MediaType.APPLICATION_JSON)
     @Consumes(MediaType.APPLICATION_JSON)
-    public String friendSearch(String jsonString, @HeaderParam("x-access-token") String accessToken) throws NotFoundException, ParseException, SQLException, ClassNotFoundException, IOException {
-        JsonObject json = new JsonParser().parse(jsonString).getAsJsonObject();
+    public void friendBatch(FriendBatchRequest request, @HeaderParam("x-access-token") String accessToken, @Suspended AsyncResponse asyncResponse) throws ParseException, IOException {
         JWTAuthenticationFilter authenticate = new JWTAuthenticationFilter();
         UserPrincipal userPrin;
         try {
@@ -248,15 +346,47 @@ public class FriendResource {
             throw new WebApplicationException(ex.getMessage(), 401);
         }
 
-        String searchName = json.get("search_name").getAsString();
-        List<UserDTO> dtoList;
+        List<FriendBatchRequest.Operation> operations = request.getOperations();
+        if (operations.isEmpty()) {
+            throw new WebApplicationException("The batch has no operations", 400);
+        }
+        if (operations.size() > MAX_BATCH_OPERATIONS) {
+            throw new WebApplicationException("A batch can have at most " + MAX_BATCH_OPERATIONS + " operations", 400);
+        }
+
+        int usernameID = userPrin.getNameID();
+        AsyncResults.resume(asyncResponse, FACADE_ASYNC.friendBatch(usernameID, operations), null, ex -> {
+            if (ex instanceof NotFoundException) {
+                return new WebApplicationException("User name could not be found", 404);
+            }
+            return null;
+        });
+    }
+
+    /**
+     *
+     * @author Frederik Braagaard
+     */
+    @POST
+    @Path("/search")
+    @Produces({MediaType.APPLICATION_JSON, BinaryFormat.MEDIA_TYPE_QS})
+    @Consumes(MediaType.APPLICATION_JSON)
+    public void friendSearch(SearchRequest request, @HeaderParam("x-access-token") String accessToken, @Suspended AsyncResponse asyncResponse) throws ParseException, IOException {
+        JWTAuthenticationFilter authenticate = new JWTAuthenticationFilter();
+        UserPrincipal userPrin;
         try {
-            dtoList = FACADE.friendSearch(searchName);
-        } catch (NotFoundException ex) {
-            throw new WebApplicationException("No users could be found by this search", 404);
+            userPrin = authenticate.getUserPrincipalFromTokenIfValid(accessToken);
+        } catch (JOSEException | AuthenticationException ex) {
+            throw new WebApplicationException(ex.getMessage(), 401);
         }
 
-        return GSON.toJson(dtoList);
+        String searchName = request.getSearchName();
+        AsyncResults.resume(asyncResponse, FACADE_ASYNC.friendSearch(searchName), USER_LIST, ex -> {
+            if (ex instanceof NotFoundException) {
+                return new WebApplicationException("No users could be found by this search", 404);
+            }
+            return null;
+        });
     }
 
 }
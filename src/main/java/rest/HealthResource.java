@@ -0,0 +1,48 @@
+package rest;
+
+import health.Health;
+import health.HealthReport;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+/**
+ * Liveness and readiness for a load balancer or orchestrator. Neither needs
+ * a token, and both answer from memory, see {@link Health}.
+ *
+ * @author Frederik Braagaard
+ */
+@Path("health")
+public class HealthResource {
+
+    /**
+     * 200 as long as the server answers.
+     *
+     * @author Frederik Braagaard
+     */
+    @GET
+    @Path("/live")
+    @Produces(MediaType.APPLICATION_JSON)
+    public HealthReport live() {
+        return Health.live();
+    }
+
+    /**
+     * 200 when the server can serve requests, 503 with the failing checks
+     * when it cannot.
+     *
+     * @author Frederik Braagaard
+     */
+    @GET
+    @Path("/ready")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response ready() {
+        HealthReport report = Health.getHealth().ready();
+        return Response.status(report.isUp() ? Response.Status.OK : Response.Status.SERVICE_UNAVAILABLE)
+                .header("Cache-Control", "no-store")
+                .entity(report)
+                .build();
+    }
+}
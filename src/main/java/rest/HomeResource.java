@@ -0,0 +1,87 @@
+package rest;
+
+import com.nimbusds.jose.JOSEException;
+import dtos.user.HomeDTO;
+import errorhandling.AuthenticationException;
+import errorhandling.NotFoundException;
+import facades.UserFacade;
+import facades.UserFacadeAsync;
+import java.io.IOException;
+import java.text.ParseException;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import javax.persistence.EntityManagerFactory;
+import javax.ws.rs.GET;
+import javax.ws.rs.HeaderParam;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
+import javax.ws.rs.core.MediaType;
+import security.JWTAuthenticationFilter;
+import security.UserPrincipal;
+import utils.EMF_Creator;
+
+/**
+ * The home screen in one request, instead of calling /post/friends,
+ * /friend/friends and /friend/requests one after the other.
+ *
+ * @author Frederik Braagaard
+ */
+@Path("home")
+public class HomeResource {
+
+    private static EntityManagerFactory EMF = EMF_Creator.createEntityManagerFactory(EMF_Creator.DbSelector.DEV, EMF_Creator.Strategy.CREATE);
+    private static final UserFacade FACADE = UserFacade.getUserFacade(EMF);
+    private static final UserFacadeAsync FACADE_ASYNC = UserFacadeAsync.getUserFacadeAsync(FACADE);
+
+    /**
+     * The token is checked once and the sections are loaded side by side.
+     *
+     * @param fields comma separated sections to include: profile, feed,
+     * friends and requests. All of them when left out.
+     * @author Frederik Braagaard
+     */
+    @GET
+    @Produces(MediaType.APPLICATION_JSON)
+    public void getHome(@QueryParam("fields") String fields, @HeaderParam("x-access-token") String accessToken, @Suspended AsyncResponse asyncResponse) throws ParseException, IOException {
+        JWTAuthenticationFilter authenticate = new JWTAuthenticationFilter();
+        UserPrincipal userPrin;
+        try {
+            userPrin = authenticate.getUserPrincipalFromTokenIfValid(accessToken);
+        } catch (JOSEException | AuthenticationException ex) {
+            throw new WebApplicationException(ex.getMessage(), 401);
+        }
+
+        int usernameID = userPrin.getNameID();
+        AsyncResults.resume(asyncResponse, FACADE_ASYNC.home(usernameID, parseFields(fields)), null, ex -> {
+            if (ex instanceof NotFoundException) {
+                return new WebApplicationException("User name could not be found", 404);
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Reads the ?fields= parameter.
+     *
+     * @throws WebApplicationException 400 for an unknown section
+     */
+    static Set<String> parseFields(String fields) {
+        if (fields == null || fields.trim().isEmpty()) {
+            return HomeDTO.ALL_FIELDS;
+        }
+        Set<String> selected = new LinkedHashSet<>();
+        for (String field : fields.split(",")) {
+            String name = field.trim();
+            if (!HomeDTO.ALL_FIELDS.contains(name)) {
+                throw new WebApplicationException("Unknown field: " + name + ", use " + String.join(",", HomeDTO.ALL_FIELDS), 400);
+            }
+            selected.add(name);
+        }
+        return selected;
+    }
+
+}
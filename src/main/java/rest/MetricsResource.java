@@ -0,0 +1,49 @@
+package rest;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import javax.ws.rs.GET;
+import javax.ws.rs.HeaderParam;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.HttpHeaders;
+import metrics.PrometheusFormat;
+import utils.Settings;
+
+/**
+ * The metrics of this server for Prometheus to scrape. When metrics.token is
+ * set the scraper has to send it as a bearer token.
+ *
+ * @author Frederik Braagaard
+ */
+@Path("metrics")
+public class MetricsResource {
+
+    private static final String TOKEN = Settings.getPropertyValue("metrics.token");
+
+    /**
+     *
+     * @author Frederik Braagaard
+     */
+    @GET
+    @Produces(PrometheusFormat.CONTENT_TYPE)
+    public String getMetrics(@HeaderParam(HttpHeaders.AUTHORIZATION) String authorization) {
+        if (!isAuthorized(TOKEN, authorization)) {
+            throw new WebApplicationException("Missing or wrong metrics token", 401);
+        }
+        return PrometheusFormat.write();
+    }
+
+    static boolean isAuthorized(String token, String authorization) {
+        if (token == null || token.isEmpty()) {
+            return true;
+        }
+        if (authorization == null || !authorization.startsWith("Bearer ")) {
+            return false;
+        }
+        //Compared in constant time so the token cannot be guessed from the response times.
+        return MessageDigest.isEqual(token.getBytes(StandardCharsets.UTF_8),
+                authorization.substring("Bearer ".length()).getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -1,20 +1,23 @@
 package rest;
 
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
-import com.google.gson.JsonObject;
-import com.google.gson.JsonParser;
+import binary.BinaryFormat;
 import com.nimbusds.jose.JOSEException;
+import dtos.request.PostRequest;
 import dtos.user.UserDTO;
+import dtos.user.UserPostsDTO;
 import entities.UserPosts;
 import errorhandling.AuthenticationException;
 import errorhandling.NoFriendsException;
-import errorhandling.NotFoundException;
 import facades.UserFacade;
+import facades.UserFacadeAsync;
 import java.io.IOException;
+import java.lang.reflect.Type;
 import java.text.ParseException;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import javax.persistence.EntityManagerFactory;
+import json.JsonSupport;
 import javax.ws.rs.Consumes;
 import javax.ws.rs.GET;
 import javax.ws.rs.HeaderParam;
@@ -24,6 +27,9 @@ import javax.ws.rs.Produces;
 import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
+import javax.ws.rs.core.GenericType;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.SecurityContext;
 import security.JWTAuthenticationFilter;
@@ -38,8 +44,12 @@ import utils.EMF_Creator;
 public class PostResource {
 
     private static EntityManagerFactory EMF = EMF_Creator.createEntityManagerFactory(EMF_Creator.DbSelector.DEV, EMF_Creator.Strategy.CREATE);
-    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
     private static final UserFacade FACADE = UserFacade.getUserFacade(EMF);
+    private static final UserFacadeAsync FACADE_ASYNC = UserFacadeAsync.getUserFacadeAsync(FACADE);
+    private static final Type POST_LIST = new GenericType<List<UserPostsDTO>>() {
+    }.getType();
+    private static final Type USER_LIST = new GenericType<List<UserDTO>>() {
+    }.getType();
 
     @Context
     private UriInfo context;
@@ -53,8 +63,8 @@ public class PostResource {
      */
     @GET
     @Path("/own")
-    @Produces(MediaType.APPLICATION_JSON)
-    public String getPosts(@HeaderParam("x-access-token") String accessToken) throws ParseException, JOSEException, AuthenticationException, NotFoundException, IOException {
+    @Produces({MediaType.APPLICATION_JSON, BinaryFormat.MEDIA_TYPE_QS})
+    public void getPosts(@HeaderParam("x-access-token") String accessToken, @Suspended AsyncResponse asyncResponse) throws ParseException, IOException {
         JWTAuthenticationFilter authenticate = new JWTAuthenticationFilter();
         UserPrincipal userPrin;
         try {
@@ -64,13 +74,17 @@ public class PostResource {
         }
 
         int username = userPrin.getNameID();
-        List<UserPosts> response;
-        response = FACADE.getPosts(username);
-        if (response.isEmpty()) {
-            throw new WebApplicationException("This user has no posts", 404);
-        }
-
-        return GSON.toJson(response);
+        CompletableFuture<List<UserPostsDTO>> response = FACADE_ASYNC.getPosts(username).thenApply(posts -> {
+            List<UserPostsDTO> dtos = new ArrayList();
+            for (UserPosts post : posts) {
+                dtos.add(new UserPostsDTO(post));
+            }
+            if (dtos.isEmpty()) {
+                throw new WebApplicationException("This user has no posts", 404);
+            }
+            return dtos;
+        });
+        AsyncResults.resume(asyncResponse, response, POST_LIST, ex -> null);
     }
 
     /**
@@ -79,8 +93,8 @@ public class PostResource {
      */
     @GET
     @Path("/friends")
-    @Produces(MediaType.APPLICATION_JSON)
-    public String getFriendsPosts(@HeaderParam("x-access-token") String accessToken) throws ParseException, JOSEException, AuthenticationException, NotFoundException, NoFriendsException, IOException {
+    @Produces({MediaType.APPLICATION_JSON, BinaryFormat.MEDIA_TYPE_QS})
+    public void getFriendsPosts(@HeaderParam("x-access-token") String accessToken, @Suspended AsyncResponse asyncResponse) throws ParseException, IOException {
         JWTAuthenticationFilter authenticate = new JWTAuthenticationFilter();
         UserPrincipal userPrin;
         try {
@@ -90,14 +104,12 @@ public class PostResource {
         }
 
         int usernameID = userPrin.getNameID();
-        List<UserDTO> response;
-        try {
-            response = FACADE.friendPosts(usernameID);
-        } catch (NoFriendsException ex) {
-            throw new WebApplicationException("This user currently has no friends in their friendlist.", 404);
-        }
-
-        return GSON.toJson(response);
+        AsyncResults.resume(asyncResponse, FACADE_ASYNC.friendPosts(usernameID), USER_LIST, ex -> {
+            if (ex instanceof NoFriendsException) {
+                return new WebApplicationException("This user currently has no friends in their friendlist.", 404);
+            }
+            return null;
+        });
     }
 
     /**
@@ -108,8 +120,7 @@ public class PostResource {
     @Path("/create")
     @Consumes(MediaType.APPLICATION_JSON)
     @Produces(MediaType.APPLICATION_JSON)
-    public String createPost(String jsonString, @HeaderParam("x-access-token") String accessToken) throws ParseException, JOSEException, AuthenticationException, IOException {
-        JsonObject json = new JsonParser().parse(jsonString).getAsJsonObject();
+    public void createPost(PostRequest request, @HeaderParam("x-access-token") String accessToken, @Suspended AsyncResponse asyncResponse) throws ParseException, IOException {
         JWTAuthenticationFilter authenticate = new JWTAuthenticationFilter();
         UserPrincipal userPrin;
         try {
@@ -119,14 +130,15 @@ public class PostResource {
         }
 
         int usernameID = userPrin.getNameID();
-        String newPost = json.get("post").getAsString();
-
-        Boolean response = FACADE.createPost(usernameID, newPost);
-        if (!response) {
-            throw new WebApplicationException("Something unexpected happened. Please try again later", 400);
-        }
-
-        return GSON.toJson("Post has successfully been created");
+        String newPost = request.getPost();
+
+        CompletableFuture<String> response = FACADE_ASYNC.createPost(usernameID, newPost).thenApply(created -> {
+            if (!created) {
+                throw new WebApplicationException("Something unexpected happened. Please try again later", 400);
+            }
+            return JsonSupport.toJson("Post has successfully been created");
+        });
+        AsyncResults.resume(asyncResponse, response, null, ex -> null);
     }
 
 }
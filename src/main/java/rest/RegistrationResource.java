@@ -1,12 +1,12 @@
 package rest;
 
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
 import entities.User;
 import errorhandling.AlreadyExistsException;
 import facades.UserFacade;
+import facades.UserFacadeAsync;
+import facades.UserFacadeAsync.TracedCall;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
@@ -19,6 +19,7 @@ import java.util.Properties;
 import java.util.UUID;
 import javax.annotation.security.RolesAllowed;
 import javax.persistence.EntityManagerFactory;
+import jfr.PictureUploadEvent;
 import javax.ws.rs.Consumes;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.core.UriInfo;
@@ -32,6 +33,7 @@ import javax.ws.rs.core.SecurityContext;
 import static org.apache.commons.io.IOUtils.toByteArray;
 import org.glassfish.jersey.media.multipart.FormDataBodyPart;
 import org.glassfish.jersey.media.multipart.FormDataParam;
+import tracing.NoServerTiming;
 import utils.EMF_Creator;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -42,11 +44,11 @@ import org.apache.commons.io.IOUtils;
  *
  * @author Frederik Braagaard
  */
+@NoServerTiming
 @Path("register")
 public class RegistrationResource {
 
     private static EntityManagerFactory EMF = EMF_Creator.createEntityManagerFactory(EMF_Creator.DbSelector.DEV, EMF_Creator.Strategy.CREATE);
-    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
     private static final UserFacade FACADE = UserFacade.getUserFacade(EMF);
     private static final String PASSWORD_PATTERN
             = "^(?=.*[A-Za-z])(?=.*\\d)[A-Za-z\\d]{8,}$";
@@ -66,7 +68,7 @@ public class RegistrationResource {
     @Path("/user")
     @Consumes(MediaType.MULTIPART_FORM_DATA)
     @Produces(MediaType.APPLICATION_JSON)
-    public String createUser(@FormDataParam("file") InputStream uploadedInputStream, @FormDataParam("file") FormDataBodyPart body, @FormDataParam("fullname") String fullName, @FormDataParam("username") String userName, @FormDataParam("password") String userPass, @FormDataParam("secret") String secretAnswer) throws SQLException, ClassNotFoundException, IOException {
+    public User createUser(@FormDataParam("file") InputStream uploadedInputStream, @FormDataParam("file") FormDataBodyPart body, @FormDataParam("fullname") String fullName, @FormDataParam("username") String userName, @FormDataParam("password") String userPass, @FormDataParam("secret") String secretAnswer) throws SQLException, ClassNotFoundException, IOException {
         Boolean isValid = isValid(userPass);
         InputStream inputStream = null;
         if (!isValid) {
@@ -81,7 +83,11 @@ public class RegistrationResource {
             throw new WebApplicationException("Only .png pictures are allowed to be uploaded.", 415);
         }
 
+        PictureUploadEvent read = new PictureUploadEvent(PictureUploadEvent.READ);
+        read.begin();
         byte[] size = toByteArray(uploadedInputStream);
+        read.setBytes(size.length);
+        read.commit();
         int maxSize = 1048576 * 5; //5 MB
         if (size.length > maxSize) {
             throw new WebApplicationException("Uploaded file is too big.", 413);
@@ -89,7 +95,11 @@ public class RegistrationResource {
 
         try {
             //Created user
-            User user = FACADE.createNormalUser(fullName, userName, userPass, secretAnswer, profilePicture);
+            User user;
+            try (TracedCall traced = UserFacadeAsync.traced("UserFacade.createNormalUser")) {
+                user = FACADE.createNormalUser(fullName, userName, userPass, secretAnswer, profilePicture);
+                traced.succeeded();
+            }
             
             //Reads property file with the path
             Properties prop = new Properties();
@@ -106,7 +116,7 @@ public class RegistrationResource {
             //Uploads the picture
             String uploadedFileLocation = folderPath + profilePicture + ".png";
             writeToFile(size, uploadedFileLocation);
-            return GSON.toJson(user);
+            return user;
         } catch (AlreadyExistsException ex) {
             throw new WebApplicationException(ex.getMessage(), 400);
         }
@@ -136,12 +146,16 @@ public class RegistrationResource {
 
     private void writeToFile(byte[] uploadedInputStream, String uploadedFileLocation) throws FileNotFoundException, IOException {
         //int size = toByteArray(uploadedInputStream).length;
+        PictureUploadEvent event = new PictureUploadEvent(PictureUploadEvent.WRITE);
+        event.begin();
         try (FileOutputStream outputStream = new FileOutputStream(uploadedFileLocation)) {
 
             int read;
             byte[] bytes = new byte[1024];
             FileUtils.writeByteArrayToFile(new File(uploadedFileLocation), uploadedInputStream);
-
+            event.setBytes(uploadedInputStream.length);
+        } finally {
+            event.commit();
         }
     }
 
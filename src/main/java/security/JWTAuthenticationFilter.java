@@ -13,6 +13,7 @@ import java.util.Date;
 import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import jfr.TokenEvent;
 import javax.annotation.Priority;
 import javax.annotation.security.DenyAll;
 import javax.annotation.security.PermitAll;
@@ -23,6 +24,8 @@ import javax.ws.rs.container.ContainerRequestFilter;
 import javax.ws.rs.container.ResourceInfo;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.ext.Provider;
+import tracing.Span;
+import tracing.Tracer;
 
 
 @Provider
@@ -74,22 +77,29 @@ public class JWTAuthenticationFilter implements ContainerRequestFilter {
  */
  public UserPrincipal getUserPrincipalFromTokenIfValid(String token)
          throws ParseException, JOSEException, AuthenticationException, IOException {
-   SignedJWT signedJWT = SignedJWT.parse(token);
-   //Is it a valid token (generated with our shared key)
-   JWSVerifier verifier = new MACVerifier(SharedSecret.getSharedKey());
+   TokenEvent event = new TokenEvent(TokenEvent.VERIFY);
+   event.begin();
+   try (Span span = Tracer.start("auth", "JWTAuthenticationFilter.getUserPrincipalFromTokenIfValid")) {
+     SignedJWT signedJWT = SignedJWT.parse(token);
+     //Is it a valid token (generated with our shared key)
+     JWSVerifier verifier = new MACVerifier(SharedSecret.getSharedKey());
 
-   if (signedJWT.verify(verifier)) {
-     if (new Date().getTime() > signedJWT.getJWTClaimsSet().getExpirationTime().getTime()) {
-       throw new AuthenticationException("Your Token is no longer valid");
-     }
-     String roles = signedJWT.getJWTClaimsSet().getClaim("role").toString();
-     String username = signedJWT.getJWTClaimsSet().getClaim("username").toString();
-     int usernameID = Integer.parseInt(signedJWT.getJWTClaimsSet().getClaim("usernameID").toString());
+     if (signedJWT.verify(verifier)) {
+       if (new Date().getTime() > signedJWT.getJWTClaimsSet().getExpirationTime().getTime()) {
+         throw new AuthenticationException("Your Token is no longer valid");
+       }
+       String roles = signedJWT.getJWTClaimsSet().getClaim("role").toString();
+       String username = signedJWT.getJWTClaimsSet().getClaim("username").toString();
+       int usernameID = Integer.parseInt(signedJWT.getJWTClaimsSet().getClaim("usernameID").toString());
      
      
-     return new UserPrincipal(username, usernameID, roles);
-   } else {
-     throw new JOSEException("User could not be extracted from token");
+       event.setValid(true);
+       return new UserPrincipal(username, usernameID, roles);
+     } else {
+       throw new JOSEException("User could not be extracted from token");
+     }
+   } finally {
+     event.commit();
    }
  }
 }
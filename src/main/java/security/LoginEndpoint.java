@@ -1,19 +1,12 @@
 package security;
 
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
 import com.google.gson.JsonObject;
-import com.google.gson.JsonParser;
 import com.nimbusds.jose.JOSEException;
-import com.nimbusds.jose.JWSAlgorithm;
-import com.nimbusds.jose.JWSHeader;
-import com.nimbusds.jose.JWSSigner;
-import com.nimbusds.jose.crypto.MACSigner;
-import com.nimbusds.jwt.JWTClaimsSet;
-import com.nimbusds.jwt.SignedJWT;
-import entities.Role;
+import dtos.request.LoginRequest;
+import dtos.request.PasswordResetRequest;
 import facades.UserFacade;
-import java.util.Date;
+import facades.UserFacadeAsync;
+import facades.UserFacadeAsync.TracedCall;
 import entities.User;
 import javax.ws.rs.Consumes;
 import javax.ws.rs.POST;
@@ -27,24 +20,26 @@ import java.io.IOException;
 import java.sql.SQLException;
 import java.text.ParseException;
 import javax.persistence.EntityManagerFactory;
+import json.JsonSupport;
 import javax.ws.rs.HeaderParam;
 import javax.ws.rs.PUT;
 import javax.ws.rs.WebApplicationException;
 import mongodb.MongoConnection;
 import mongodb.MongoFailedLogin;
+import tracing.NoServerTiming;
 import utils.EMF_Creator;
 
 /**
  *
  * @author Frederik Braagaard
  */
+@NoServerTiming
 @Path("login")
 public class LoginEndpoint {
 
     public static final int TOKEN_EXPIRE_TIME = 1000 * 60 * 30; //30 min
     private static final EntityManagerFactory EMF = EMF_Creator.createEntityManagerFactory(EMF_Creator.DbSelector.DEV, EMF_Creator.Strategy.CREATE);
     public static final UserFacade USER_FACADE = UserFacade.getUserFacade(EMF);
-    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
     private static final MongoConnection MONGODB = new MongoConnection();
     private static final MongoFailedLogin MONGODBLOGIN = new MongoFailedLogin();
 
@@ -55,10 +50,9 @@ public class LoginEndpoint {
     @POST
     @Consumes(MediaType.APPLICATION_JSON)
     @Produces(MediaType.APPLICATION_JSON)
-    public Response loginUser(String jsonString, @HeaderParam("ip_address") String ip_address) throws AuthenticationException, SQLException, ClassNotFoundException, IOException, LoginMaxTriesException {
-        JsonObject json = new JsonParser().parse(jsonString).getAsJsonObject();
-        String username = json.get("username").getAsString();
-        String password = json.get("password").getAsString();
+    public Response loginUser(LoginRequest request, @HeaderParam("ip_address") String ip_address) throws AuthenticationException, SQLException, ClassNotFoundException, IOException, LoginMaxTriesException {
+        String username = request.getUsername();
+        String password = request.getPassword();
         int usernameID;
         
         String userIP;
@@ -70,12 +64,16 @@ public class LoginEndpoint {
         }
 
         try {
-            User user = USER_FACADE.getVeryfiedUser(username, password);
+            User user;
+            try (TracedCall traced = UserFacadeAsync.traced("UserFacade.getVeryfiedUser")) {
+                user = USER_FACADE.getVeryfiedUser(username, password);
+                traced.succeeded();
+            }
             usernameID = user.getId();
-            String token = createToken(username, usernameID, user.getRole());
+            String token = TokenIssuer.createToken(username, usernameID, user.getRole());
             JsonObject responseJson = new JsonObject();
             responseJson.addProperty("token", token);
-            return Response.ok(new Gson().toJson(responseJson)).build();
+            return Response.ok(responseJson).build();
 
         } catch (Exception ex) {
             try {
@@ -96,45 +94,22 @@ public class LoginEndpoint {
     @Path("/reset/password")
     @Consumes(MediaType.APPLICATION_JSON)
     @Produces(MediaType.APPLICATION_JSON)
-    public String resetPassword(String jsonString) throws AuthenticationException, ParseException, SQLException, ClassNotFoundException {
-        JsonObject json = new JsonParser().parse(jsonString).getAsJsonObject();
+    public String resetPassword(PasswordResetRequest request) throws AuthenticationException, ParseException, SQLException, ClassNotFoundException {
         JWTAuthenticationFilter authenticate = new JWTAuthenticationFilter();
-        String username = json.get("username").getAsString();
-        String secret = json.get("secret").getAsString();
-        String newpassword = json.get("newpassword").getAsString();
+        String username = request.getUsername();
+        String secret = request.getSecret();
+        String newpassword = request.getNewPassword();
         User user;
         try {
-            user = USER_FACADE.userResetPassword(username, secret, newpassword);
+            try (TracedCall traced = UserFacadeAsync.traced("UserFacade.userResetPassword")) {
+                user = USER_FACADE.userResetPassword(username, secret, newpassword);
+                traced.succeeded();
+            }
         } catch (AuthenticationException | SQLException ex) {
             throw new WebApplicationException("Invalid username or secret! Please try again", 401);
             //Logger.getLogger(GenericExceptionMapper.class.getName()).log(Level.SEVERE, null, ex);
         }
-        return GSON.toJson("Password has been resat for user.");
-    }
-
-    /**
-     *
-     * @author Frederik Braagaard
-     */
-    private String createToken(String userName, int userNameID, Role role) throws JOSEException, IOException {
-
-        String issuer = "semesterstartcode-dat3";
-
-        JWSSigner signer = new MACSigner(SharedSecret.getSharedKey());
-        Date date = new Date();
-        JWTClaimsSet claimsSet = new JWTClaimsSet.Builder()
-                .subject(userName)
-                .claim("username", userName)
-                .claim("role", role.getRoleName())
-                .claim("usernameID", userNameID)
-                .claim("issuer", issuer)
-                .issueTime(date)
-                .expirationTime(new Date(date.getTime() + TOKEN_EXPIRE_TIME))
-                .build();
-        // ERROR HERE
-        SignedJWT signedJWT = new SignedJWT(new JWSHeader(JWSAlgorithm.HS256), claimsSet);
-        signedJWT.sign(signer);
-        return signedJWT.serialize();
+        return JsonSupport.toJson("Password has been resat for user.");
     }
 
     /**
@@ -145,10 +120,9 @@ public class LoginEndpoint {
     @Path("/admin")
     @Consumes(MediaType.APPLICATION_JSON)
     @Produces(MediaType.APPLICATION_JSON)
-    public Response loginAdmin(String jsonString, @HeaderParam("ip_address") String ip_address) throws AuthenticationException, SQLException, ClassNotFoundException, IOException {
-        JsonObject json = new JsonParser().parse(jsonString).getAsJsonObject();
-        String username = json.get("username").getAsString();
-        String password = json.get("password").getAsString();
+    public Response loginAdmin(LoginRequest request, @HeaderParam("ip_address") String ip_address) throws AuthenticationException, SQLException, ClassNotFoundException, IOException {
+        String username = request.getUsername();
+        String password = request.getPassword();
 
         //Uncomment and fix tests ones this has been decided.
 //        String ipaddress = json.get("ipaddress").getAsString();
@@ -165,14 +139,18 @@ public class LoginEndpoint {
         }
 
         try {
-            User user = USER_FACADE.getVeryfiedAdmin(username, password);
+            User user;
+            try (TracedCall traced = UserFacadeAsync.traced("UserFacade.getVeryfiedAdmin")) {
+                user = USER_FACADE.getVeryfiedAdmin(username, password);
+                traced.succeeded();
+            }
             usernameID = user.getId();
                         
-            String token = createToken(username, usernameID, user.getRole());
+            String token = TokenIssuer.createToken(username, usernameID, user.getRole());
             JsonObject responseJson = new JsonObject();
             responseJson.addProperty("token", token);
             MONGODB.loggetInsertDocument(MONGODB.loggerDocument("Successfull", userIP, "loginAdmin()", username));
-            return Response.ok(new Gson().toJson(responseJson)).build();
+            return Response.ok(responseJson).build();
 
         } catch (JOSEException| AuthenticationException ex) {
             if (ex instanceof AuthenticationException) {
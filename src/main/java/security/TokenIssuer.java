@@ -0,0 +1,57 @@
+package security;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.JWSSigner;
+import com.nimbusds.jose.crypto.MACSigner;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import entities.Role;
+import java.util.Date;
+import jfr.TokenEvent;
+import tracing.Span;
+import tracing.Tracer;
+
+/**
+ * Issues the tokens handed out by {@link LoginEndpoint}. Kept apart from the
+ * endpoint, which needs the database, so it can be benchmarked on its own.
+ *
+ * @author Frederik Braagaard
+ */
+final class TokenIssuer {
+
+    private static final String ISSUER = "semesterstartcode-dat3";
+
+    private TokenIssuer() {
+    }
+
+    /**
+     *
+     * @author Frederik Braagaard
+     */
+    static String createToken(String userName, int userNameID, Role role) throws JOSEException {
+        TokenEvent event = new TokenEvent(TokenEvent.CREATE);
+        event.begin();
+        try (Span span = Tracer.start("token", "TokenIssuer.createToken")) {
+            JWSSigner signer = new MACSigner(SharedSecret.getSharedKey());
+            Date date = new Date();
+            JWTClaimsSet claimsSet = new JWTClaimsSet.Builder()
+                    .subject(userName)
+                    .claim("username", userName)
+                    .claim("role", role.getRoleName())
+                    .claim("usernameID", userNameID)
+                    .claim("issuer", ISSUER)
+                    .issueTime(date)
+                    .expirationTime(new Date(date.getTime() + LoginEndpoint.TOKEN_EXPIRE_TIME))
+                    .build();
+            SignedJWT signedJWT = new SignedJWT(new JWSHeader(JWSAlgorithm.HS256), claimsSet);
+            signedJWT.sign(signer);
+            String token = signedJWT.serialize();
+            event.setValid(true);
+            return token;
+        } finally {
+            event.commit();
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package server;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.ws.rs.core.UriBuilder;
+import org.glassfish.grizzly.http.KeepAlive;
+import org.glassfish.grizzly.http.server.AddOn;
+import org.glassfish.grizzly.http.server.HttpServer;
+import org.glassfish.grizzly.http.server.NetworkListener;
+import org.glassfish.grizzly.nio.transport.TCPNIOTransport;
+import org.glassfish.grizzly.threadpool.ThreadPoolConfig;
+import org.glassfish.jersey.grizzly2.httpserver.GrizzlyHttpServerFactory;
+import org.glassfish.jersey.server.ResourceConfig;
+import rest.ApplicationConfig;
+import utils.Settings;
+
+/**
+ * Runs the API on an embedded Grizzly server instead of a Tomcat WAR. Build it
+ * with {@code mvn -Pstandalone package} and start it with
+ * {@code java -jar target/sem4-standalone.jar}.
+ * <p>
+ * The transport is tuned from the server.* keys in config.properties: the
+ * number of selector and worker threads, the worker queue, keep-alive limits
+ * and the largest header and body accepted. With server.virtual.threads on a
+ * Java 21 JVM every request runs on its own virtual thread instead, and the
+ * database pools bound the work in flight. HTTP/2 (h2c) is switched on when
+ * grizzly-http2 is on the classpath. On shutdown the server stops accepting
+ * connections and waits up to server.shutdown.grace.seconds for the requests
+ * in flight.
+ * </p>
+ *
+ * @author Frederik Braagaard
+ */
+public class GrizzlyLauncher {
+
+    private static final Logger LOG = Logger.getLogger(GrizzlyLauncher.class.getName());
+    private static final String HTTP2_ADDON = "org.glassfish.grizzly.http2.Http2AddOn";
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        String host = Settings.getPropertyValue("server.host");
+        URI baseUri = UriBuilder.fromUri("http://localhost/api/")
+                .host(host == null || host.isEmpty() ? "0.0.0.0" : host)
+                .port(Settings.getIntValue("server.port", 8080))
+                .build();
+        HttpServer server = createServer(baseUri, ResourceConfig.forApplication(new ApplicationConfig()));
+        int grace = Settings.getIntValue("server.shutdown.grace.seconds", 20);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> shutdown(server, grace), "grizzly-shutdown"));
+        server.start();
+        LOG.log(Level.INFO, "API listening on {0}", baseUri);
+        Thread.currentThread().join();
+    }
+
+    /**
+     * Creates the server for the given resources, configured from
+     * config.properties but not started.
+     */
+    public static HttpServer createServer(URI baseUri, ResourceConfig resources) {
+        int maxBodyBytes = Settings.getIntValue("server.max.body.bytes", 10 * 1024 * 1024);
+        resources.register(new MaxBodySizeFilter(maxBodyBytes));
+        HttpServer server = GrizzlyHttpServerFactory.createHttpServer(baseUri, resources, false);
+        NetworkListener listener = server.getListener("grizzly");
+
+        TCPNIOTransport transport = listener.getTransport();
+        int cores = Runtime.getRuntime().availableProcessors();
+        transport.setSelectorRunnersCount(Settings.getIntValue("server.selector.threads", cores));
+        ExecutorService virtualThreads = Settings.getBooleanValue("server.virtual.threads", false)
+                ? newVirtualThreadExecutor() : null;
+        if (virtualThreads != null) {
+            transport.setWorkerThreadPool(virtualThreads);
+            LOG.info("Requests run on virtual threads");
+        } else {
+            //The workers block on JDBC and Mongo calls, so there are many more of them than cores.
+            int workers = Settings.getIntValue("server.worker.threads", 64);
+            transport.setWorkerThreadPoolConfig(ThreadPoolConfig.defaultConfig()
+                    .setPoolName("api-worker")
+                    .setCorePoolSize(workers)
+                    .setMaxPoolSize(workers)
+                    .setQueueLimit(Settings.getIntValue("server.worker.queue.limit", 1024)));
+        }
+        transport.setServerConnectionBackLog(Settings.getIntValue("server.backlog", 1024));
+        transport.setTcpNoDelay(true);
+
+        KeepAlive keepAlive = listener.getKeepAlive();
+        keepAlive.setMaxRequestsCount(Settings.getIntValue("server.keepalive.max.requests", 1000));
+        keepAlive.setIdleTimeoutInSeconds(Settings.getIntValue("server.keepalive.idle.seconds", 30));
+        listener.setMaxHttpHeaderSize(Settings.getIntValue("server.max.header.bytes", 8192));
+
+        if (Settings.getBooleanValue("server.http2.enabled", true)) {
+            enableHttp2(listener);
+        }
+        return server;
+    }
+
+    /**
+     * Creates an executor that starts a virtual thread for every request. The
+     * API is looked up by reflection so the code still builds for Java 8.
+     *
+     * @return the executor, or null if this JVM has no virtual threads
+     */
+    static ExecutorService newVirtualThreadExecutor() {
+        try {
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, "api-virtual-", 0L);
+            ThreadFactory factory = (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+            return (ExecutorService) Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class)
+                    .invoke(null, factory);
+        } catch (ClassNotFoundException | NoSuchMethodException ex) {
+            LOG.warning("Virtual threads need Java 21 or newer, using the worker pool");
+        } catch (ReflectiveOperationException ex) {
+            //Java 19 and 20 only have them as a preview feature.
+            LOG.log(Level.WARNING, "Virtual threads could not be used, using the worker pool", ex);
+        }
+        return null;
+    }
+
+    /**
+     * Registers Grizzly's HTTP/2 add-on if grizzly-http2 is on the classpath.
+     * It is looked up by name so the WAR build does not need the jar.
+     */
+    private static void enableHttp2(NetworkListener listener) {
+        try {
+            listener.registerAddOn((AddOn) Class.forName(HTTP2_ADDON).newInstance());
+            LOG.info("HTTP/2 enabled");
+        } catch (ClassNotFoundException ex) {
+            LOG.info("grizzly-http2 is not on the classpath, serving HTTP/1.1 only");
+        } catch (ReflectiveOperationException | LinkageError ex) {
+            LOG.log(Level.WARNING, "HTTP/2 could not be enabled, serving HTTP/1.1 only", ex);
+        }
+    }
+
+    /**
+     * Stops accepting connections and waits for the requests in flight,
+     * forcing the server down once the grace period is over.
+     */
+    static void shutdown(HttpServer server, int graceSeconds) {
+        //java.util.logging is reset by its own shutdown hook, so this writes to stdout.
+        System.out.println("Shutting down, waiting for requests in flight");
+        try {
+            server.shutdown(graceSeconds, TimeUnit.SECONDS).get(graceSeconds + 5, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException ex) {
+            System.out.println("Graceful shutdown did not finish in time: " + ex);
+        } finally {
+            server.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package server;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.container.PreMatching;
+
+/**
+ * Rejects request bodies larger than the server allows with 413. A body with
+ * a Content-Length is refused before it is read, a chunked body as soon as
+ * it goes past the limit.
+ * <p>
+ * Grizzly only limits form posts, so the standalone server registers this
+ * filter itself. Under Tomcat the connector settings are used instead.
+ * </p>
+ *
+ * @author Frederik Braagaard
+ */
+@PreMatching
+public class MaxBodySizeFilter implements ContainerRequestFilter {
+
+    private final long maxBytes;
+
+    public MaxBodySizeFilter(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    @Override
+    public void filter(ContainerRequestContext request) throws IOException {
+        if (request.getLength() > maxBytes) {
+            throw new WebApplicationException("Request body is too large", 413);
+        }
+        if (request.hasEntity()) {
+            request.setEntityStream(new LimitedInputStream(request.getEntityStream(), maxBytes));
+        }
+    }
+
+    private static final class LimitedInputStream extends FilterInputStream {
+
+        private long remaining;
+
+        LimitedInputStream(InputStream in, long maxBytes) {
+            super(in);
+            this.remaining = maxBytes;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0 && --remaining < 0) {
+                throw new WebApplicationException("Request body is too large", 413);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = super.read(b, off, len);
+            if (read > 0 && (remaining -= read) < 0) {
+                throw new WebApplicationException("Request body is too large", 413);
+            }
+            return read;
+        }
+    }
+}
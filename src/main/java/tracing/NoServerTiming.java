@@ -0,0 +1,18 @@
+package tracing;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Leaves the Server-Timing header off the responses of a resource, for the
+ * endpoints taking credentials. Which spans they have, e.g. whether a bcrypt
+ * check ran, tells whether a user name exists.
+ *
+ * @author Frederik Braagaard
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.TYPE, ElementType.METHOD})
+public @interface NoServerTiming {
+}
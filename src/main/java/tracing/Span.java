@@ -0,0 +1,82 @@
+package tracing;
+
+/**
+ * One timed step of a {@link Trace}, such as a facade call, a SQL statement
+ * or a Mongo command. A span opened with {@link Tracer#start} is closed with
+ * try-with-resources, and the spans opened inside it on the same thread, or
+ * on the database executor on its behalf, are its children.
+ *
+ * @author Frederik Braagaard
+ */
+public final class Span implements AutoCloseable {
+
+    /**
+     * Handed out when no request is being traced, closing it does nothing.
+     */
+    static final Span NOOP = new Span(null, null, "", "", 0, 0);
+
+    private final transient Trace trace;
+    private final transient Span parent;
+    private final transient long startNanos;
+    private final String kind;
+    private final String name;
+    private final String thread;
+    private final int depth;
+    private final double startMillis;
+    private volatile double durationMillis = -1;
+
+    Span(Trace trace, Span parent, String kind, String name, long startNanos, long traceStartNanos) {
+        this.trace = trace;
+        this.parent = parent;
+        this.kind = kind;
+        this.name = name;
+        this.startNanos = startNanos;
+        this.thread = trace == null ? "" : Thread.currentThread().getName();
+        this.depth = parent == null ? 0 : parent.depth + 1;
+        this.startMillis = (startNanos - traceStartNanos) / 1e6;
+    }
+
+    Trace getTrace() {
+        return trace;
+    }
+
+    Span getParent() {
+        return parent;
+    }
+
+    public String getKind() {
+        return kind;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * The time from the start of the trace to the start of this span.
+     */
+    public double getStartMillis() {
+        return startMillis;
+    }
+
+    /**
+     * How long the span took, or -1 while it is still open.
+     */
+    public double getDurationMillis() {
+        return durationMillis;
+    }
+
+    void end(long endNanos) {
+        if (durationMillis < 0) {
+            durationMillis = (endNanos - startNanos) / 1e6;
+        }
+    }
+
+    @Override
+    public void close() {
+        if (this != NOOP) {
+            end(System.nanoTime());
+            Tracer.closed(this);
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package tracing;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * The spans of one request, from the moment {@link TraceFilter} saw it until
+ * its response was ready. Spans still running when the response goes out,
+ * such as a database call that timed out, are left open, and none are added
+ * after that.
+ *
+ * @author Frederik Braagaard
+ */
+public final class Trace {
+
+    //Bounds the memory of a request that loops over the database.
+    private static final int MAX_SPANS = 256;
+
+    private final String id;
+    private final long startedAt;
+    private final transient long startNanos;
+    private final transient Span root;
+    private String name = "";
+    private int status;
+    private double durationMillis;
+    private int droppedSpans;
+    //Guarded by this.
+    private final List<Span> spans = new ArrayList<>();
+    private transient boolean finished;
+
+    Trace(String id) {
+        this.id = id;
+        this.startedAt = System.currentTimeMillis();
+        this.startNanos = System.nanoTime();
+        this.root = new Span(this, null, "request", "", startNanos, startNanos);
+    }
+
+    Span getRoot() {
+        return root;
+    }
+
+    /**
+     * Adds a span under the given parent, or returns null when the trace is
+     * finished or full.
+     */
+    synchronized Span add(Span parent, String kind, String name, long startNanos) {
+        if (finished) {
+            return null;
+        }
+        if (spans.size() >= MAX_SPANS) {
+            droppedSpans++;
+            return null;
+        }
+        Span span = new Span(this, parent, kind, name, startNanos, this.startNanos);
+        spans.add(span);
+        return span;
+    }
+
+    synchronized void finish(String name, int status) {
+        long now = System.nanoTime();
+        root.end(now);
+        this.name = name;
+        this.status = status;
+        this.durationMillis = (now - startNanos) / 1e6;
+        finished = true;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    public double getDurationMillis() {
+        return durationMillis;
+    }
+
+    public synchronized List<Span> getSpans() {
+        return new ArrayList<>(spans);
+    }
+
+    /**
+     * The time spent per kind of span for the Server-Timing header, e.g.
+     * {@code db;dur=12.5, mongo;dur=3.1, total;dur=40.2}. Spans of one kind
+     * that ran side by side are added up.
+     */
+    synchronized String serverTiming() {
+        Map<String, Double> totals = new LinkedHashMap<>();
+        for (Span span : spans) {
+            if (span.getDurationMillis() >= 0) {
+                totals.merge(span.getKind(), span.getDurationMillis(), Double::sum);
+            }
+        }
+        StringBuilder header = new StringBuilder();
+        for (Map.Entry<String, Double> total : totals.entrySet()) {
+            header.append(total.getKey()).append(";dur=").append(String.format(Locale.ROOT, "%.2f", total.getValue())).append(", ");
+        }
+        return header.append("total;dur=").append(String.format(Locale.ROOT, "%.2f", durationMillis)).toString();
+    }
+
+    /**
+     * The trace without its spans, for the list of traces.
+     */
+    Summary summary() {
+        return new Summary(this);
+    }
+
+    /**
+     * A line of the list of traces.
+     */
+    public static final class Summary {
+
+        private final String id;
+        private final long startedAt;
+        private final String name;
+        private final int status;
+        private final double durationMillis;
+        private final int spanCount;
+
+        Summary(Trace trace) {
+            this.id = trace.id;
+            this.startedAt = trace.startedAt;
+            this.name = trace.name;
+            this.status = trace.status;
+            this.durationMillis = trace.durationMillis;
+            synchronized (trace) {
+                this.spanCount = trace.spans.size();
+            }
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public long getStartedAt() {
+            return startedAt;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getStatus() {
+            return status;
+        }
+
+        public double getDurationMillis() {
+            return durationMillis;
+        }
+
+        public int getSpanCount() {
+            return spanCount;
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package tracing;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import utils.Settings;
+
+/**
+ * The last sampled traces, kept in a ring so the oldest is overwritten once
+ * it is full and a busy server never holds more than its size.
+ *
+ * @author Frederik Braagaard
+ */
+public final class TraceBuffer {
+
+    private static TraceBuffer instance;
+
+    private final AtomicReferenceArray<Trace> traces;
+    private final AtomicLong next = new AtomicLong();
+
+    TraceBuffer(int size) {
+        this.traces = new AtomicReferenceArray<>(Math.max(1, size));
+    }
+
+    /**
+     *
+     * @return the trace buffer of this server.
+     */
+    public static synchronized TraceBuffer getTraceBuffer() {
+        if (instance == null) {
+            instance = new TraceBuffer(Settings.getIntValue("tracing.buffer.size", 200));
+        }
+        return instance;
+    }
+
+    void offer(Trace trace) {
+        long slot = next.getAndIncrement();
+        traces.set((int) (slot % traces.length()), trace);
+    }
+
+    /**
+     * The kept traces, newest first.
+     *
+     * @param limit the most to return
+     * @param minMillis leaves out the traces that took less than this
+     */
+    public List<Trace.Summary> recent(int limit, double minMillis) {
+        List<Trace.Summary> result = new ArrayList<>();
+        long newest = next.get() - 1;
+        for (long slot = newest; slot >= 0 && slot > newest - traces.length() && result.size() < limit; slot--) {
+            Trace trace = traces.get((int) (slot % traces.length()));
+            if (trace != null && trace.getDurationMillis() >= minMillis) {
+                result.add(trace.summary());
+            }
+        }
+        return result;
+    }
+
+    /**
+     *
+     * @return the kept trace with the given id, or null.
+     */
+    public Trace find(String id) {
+        for (int i = 0; i < traces.length(); i++) {
+            Trace trace = traces.get(i);
+            if (trace != null && trace.getId().equals(id)) {
+                return trace;
+            }
+        }
+        return null;
+    }
+}
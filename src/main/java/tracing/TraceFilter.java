@@ -0,0 +1,89 @@
+package tracing;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.regex.Pattern;
+import javax.annotation.Priority;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.container.ContainerResponseFilter;
+import javax.ws.rs.container.PreMatching;
+import javax.ws.rs.container.ResourceInfo;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.ext.Provider;
+import metrics.RequestMetrics;
+import metrics.RequestMetricsFilter;
+import utils.Settings;
+
+/**
+ * Starts a {@link Trace} for every request and ends it once the response
+ * headers are ready. The request id comes from an X-Request-Id header when
+ * the client or a proxy sent a sensible one, and is always sent back, so a
+ * log line, a trace and a client error can be matched up.
+ * <p>
+ * With tracing.server.timing on, the response gets a Server-Timing header
+ * with the time spent per kind of span, which the browser's developer tools
+ * show with the request. It is off by default and never sent by the
+ * resources marked {@link NoServerTiming}. Sampled and slow traces go to the
+ * {@link TraceBuffer}.
+ * </p>
+ * <p>
+ * A suspended request has its trace taken off the request thread by
+ * {@link TraceListener}.
+ * </p>
+ *
+ * @author Frederik Braagaard
+ */
+@Provider
+@PreMatching
+//Right after RequestMetricsFilter, so the trace covers the same time.
+@Priority(1)
+public class TraceFilter implements ContainerRequestFilter, ContainerResponseFilter {
+
+    static final String REQUEST_ID = "X-Request-Id";
+    private static final String TRACE = TraceFilter.class.getName() + ".trace";
+    private static final Pattern VALID_ID = Pattern.compile("[A-Za-z0-9-]{1,64}");
+    private static final boolean ENABLED = Settings.getBooleanValue("tracing.enabled", true);
+    private static final boolean SERVER_TIMING = Settings.getBooleanValue("tracing.server.timing", false);
+    private static final int SAMPLE_ONE_IN = Settings.getIntValue("tracing.sample.one.in", 100);
+    private static final int SLOW_MILLIS = Settings.getIntValue("tracing.slow.millis", 500);
+
+    @Context
+    private ResourceInfo resourceInfo;
+
+    @Override
+    public void filter(ContainerRequestContext request) {
+        if (!ENABLED) {
+            return;
+        }
+        String id = request.getHeaderString(REQUEST_ID);
+        if (id == null || !VALID_ID.matcher(id).matches()) {
+            id = Long.toHexString(ThreadLocalRandom.current().nextLong() | Long.MIN_VALUE);
+        }
+        request.setProperty(TRACE, Tracer.begin(id));
+    }
+
+    @Override
+    public void filter(ContainerRequestContext request, ContainerResponseContext response) {
+        Object property = request.getProperty(TRACE);
+        if (!(property instanceof Trace)) {
+            return;
+        }
+        request.removeProperty(TRACE);
+        Trace trace = (Trace) property;
+        Method method = resourceInfo.getResourceMethod();
+        String path = method == null ? RequestMetrics.UNMATCHED : RequestMetricsFilter.pathOf(resourceInfo.getResourceClass(), method);
+        trace.finish(request.getMethod() + " " + path, response.getStatus());
+        response.getHeaders().putSingle(REQUEST_ID, trace.getId());
+        if (SERVER_TIMING && method != null && !method.isAnnotationPresent(NoServerTiming.class)
+                && !resourceInfo.getResourceClass().isAnnotationPresent(NoServerTiming.class)) {
+            response.getHeaders().putSingle("Server-Timing", trace.serverTiming());
+        }
+        if (trace.getDurationMillis() >= SLOW_MILLIS
+                || (SAMPLE_ONE_IN > 0 && ThreadLocalRandom.current().nextInt(SAMPLE_ONE_IN) == 0)) {
+            TraceBuffer.getTraceBuffer().offer(trace);
+        }
+        Tracer.closed(trace.getRoot());
+    }
+}
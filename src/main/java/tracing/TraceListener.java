@@ -0,0 +1,42 @@
+package tracing;
+
+import javax.ws.rs.ext.Provider;
+import org.glassfish.jersey.server.model.ResourceMethod;
+import org.glassfish.jersey.server.monitoring.ApplicationEvent;
+import org.glassfish.jersey.server.monitoring.ApplicationEventListener;
+import org.glassfish.jersey.server.monitoring.RequestEvent;
+import org.glassfish.jersey.server.monitoring.RequestEventListener;
+
+/**
+ * Takes the trace of a suspended request off the request thread once the
+ * resource method returns. The response filter of such a request runs on
+ * the thread that resumes it, where {@link TraceFilter} can't detach it, and
+ * the spans the request thread opened next would otherwise land in the
+ * finished trace.
+ *
+ * @author Frederik Braagaard
+ */
+@Provider
+public class TraceListener implements ApplicationEventListener, RequestEventListener {
+
+    @Override
+    public void onEvent(ApplicationEvent event) {
+    }
+
+    @Override
+    public RequestEventListener onRequest(RequestEvent event) {
+        return this;
+    }
+
+    @Override
+    public void onEvent(RequestEvent event) {
+        if (event.getType() != RequestEvent.Type.RESOURCE_METHOD_FINISHED) {
+            return;
+        }
+        //A synchronous request is ended on this thread by the response filter.
+        ResourceMethod method = event.getUriInfo().getMatchedResourceMethod();
+        if (method != null && method.isSuspendDeclared()) {
+            Tracer.attach(null);
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package tracing;
+
+/**
+ * Opens and records the spans of the request being traced on the current
+ * thread. When no request is traced, as in tests, the load test seeding or
+ * the background jobs, the calls do nothing and cost a thread-local lookup.
+ * <p>
+ * Work handed to another thread carries on in the trace when that thread
+ * attaches the span that was current when the work was handed over, as
+ * {@link facades.UserFacadeAsync} does for its database executor.
+ * </p>
+ *
+ * @author Frederik Braagaard
+ */
+public final class Tracer {
+
+    private static final ThreadLocal<Span> CURRENT = new ThreadLocal<>();
+
+    private Tracer() {
+    }
+
+    /**
+     * Starts tracing a request on the current thread.
+     */
+    static Trace begin(String id) {
+        Trace trace = new Trace(id);
+        CURRENT.set(trace.getRoot());
+        return trace;
+    }
+
+    /**
+     * Opens a span under the current one, to be closed with
+     * try-with-resources.
+     *
+     * @param kind what the span measures, e.g. facade, db or bcrypt, which
+     * the Server-Timing header adds up by
+     * @param name the method or statement
+     */
+    public static Span start(String kind, String name) {
+        Span parent = CURRENT.get();
+        if (parent == null) {
+            return Span.NOOP;
+        }
+        Span span = parent.getTrace().add(parent, kind, name, System.nanoTime());
+        if (span == null) {
+            return Span.NOOP;
+        }
+        CURRENT.set(span);
+        return span;
+    }
+
+    /**
+     * Adds a span that has just ended, for code that learns its time
+     * afterwards, such as the JDBC and Mongo listeners.
+     */
+    public static void record(String kind, String name, long nanos) {
+        Span parent = CURRENT.get();
+        if (parent != null) {
+            long end = System.nanoTime();
+            Span span = parent.getTrace().add(parent, kind, name, end - nanos);
+            if (span != null) {
+                span.end(end);
+            }
+        }
+    }
+
+    /**
+     * The span open on the current thread, or null.
+     */
+    public static Span current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Makes a span, which may be null, the current one of this thread.
+     *
+     * @return the span the thread had before, to attach again afterwards
+     */
+    public static Span attach(Span span) {
+        Span previous = CURRENT.get();
+        if (span == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(span);
+        }
+        return previous;
+    }
+
+    static void closed(Span span) {
+        if (CURRENT.get() == span) {
+            attach(span.getParent());
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package utils;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+import metrics.InstrumentedJdbc;
+import org.apache.commons.dbcp2.BasicDataSource;
+
+/**
+ * Pooled JDBC connections for the queries UserFacade runs without JPA, one
+ * pool per database. Closing a borrowed connection hands it back.
+ * <p>
+ * The pool size, set by db.pool.max, is also the limit on concurrent queries.
+ * Requests beyond it wait up to db.pool.max.wait.millis for a connection,
+ * which keeps the database safe when requests run on virtual threads and
+ * thousands of them can be in flight.
+ * </p>
+ * Like {@link EMF_Creator}, a deployed server takes the connection string and
+ * credentials from the CONNECTION_STR, USER and PW environment variables, and
+ * a local run can use another database by setting the DB_URL, DB_DRIVER, USER
+ * and PW system properties.
+ *
+ * @author Frederik Braagaard
+ */
+public class ConnectionPool {
+
+    private static final Map<EMF_Creator.DbSelector, BasicDataSource> POOLS = new EnumMap<>(EMF_Creator.DbSelector.class);
+    private static final ReentrantLock LOCK = new ReentrantLock();
+
+    private ConnectionPool() {
+    }
+
+    /**
+     * Borrows a connection from the pool of the given database, creating the
+     * pool the first time it is needed. Its statements are timed by
+     * {@link metrics.SqlMetrics}.
+     */
+    public static Connection getConnection(EMF_Creator.DbSelector db) throws SQLException {
+        return InstrumentedJdbc.wrap(pool(db).getConnection());
+    }
+
+    /**
+     * Whether every connection of the pool of the given database is
+     * borrowed, so the next query has to wait. A pool not created yet is
+     * not exhausted.
+     */
+    public static boolean isExhausted(EMF_Creator.DbSelector db) {
+        BasicDataSource pool;
+        LOCK.lock();
+        try {
+            pool = POOLS.get(db);
+        } finally {
+            LOCK.unlock();
+        }
+        return pool != null && pool.getNumActive() >= pool.getMaxTotal();
+    }
+
+    /**
+     * Points a database at another JDBC source, closing the pool it had. Used
+     * by the benchmarks to run the facade against an in-memory database.
+     */
+    public static void configure(EMF_Creator.DbSelector db, String driver, String url, String user, String pw) throws SQLException {
+        LOCK.lock();
+        try {
+            BasicDataSource old = POOLS.put(db, newPool(driver, url, user, pw));
+            if (old != null) {
+                old.close();
+            }
+        } finally {
+            LOCK.unlock();
+        }
+    }
+
+    /**
+     * Closes every pool. Connections still borrowed are closed when they are
+     * handed back.
+     */
+    public static void close() throws SQLException {
+        LOCK.lock();
+        try {
+            for (BasicDataSource pool : POOLS.values()) {
+                pool.close();
+            }
+            POOLS.clear();
+        } finally {
+            LOCK.unlock();
+        }
+    }
+
+    private static BasicDataSource pool(EMF_Creator.DbSelector db) {
+        LOCK.lock();
+        try {
+            return POOLS.computeIfAbsent(db, ConnectionPool::createPool);
+        } finally {
+            LOCK.unlock();
+        }
+    }
+
+    private static BasicDataSource createPool(EMF_Creator.DbSelector db) {
+        String url;
+        String user;
+        String pw;
+        if (db == EMF_Creator.DbSelector.DEV) {
+            url = Settings.getDEV_DBConnection();
+            user = Settings.getPropertyValue("db.user");
+            pw = Settings.getPropertyValue("db.password");
+        } else {
+            url = Settings.getTEST_DBConnection();
+            user = Settings.getPropertyValue("dbtest.user") != null ? Settings.getPropertyValue("dbtest.user") : Settings.getPropertyValue("db.user");
+            pw = Settings.getPropertyValue("dbtest.password") != null ? Settings.getPropertyValue("dbtest.password") : Settings.getPropertyValue("db.password");
+        }
+        if (db == EMF_Creator.DbSelector.DEV && System.getenv("DEPLOYED") != null) {
+            url = System.getenv("CONNECTION_STR");
+            user = System.getenv("USER");
+            pw = System.getenv("PW");
+        }
+
+        if (System.getProperty("DB_URL") != null) {
+            return newPool(System.getProperty("DB_DRIVER", "com.mysql.cj.jdbc.Driver"), System.getProperty("DB_URL"),
+                    System.getProperty("USER", user), System.getProperty("PW", pw));
+        }
+
+        return newPool("com.mysql.cj.jdbc.Driver", url + (url.contains("?") ? "&" : "?") + "serverTimezone=UTC", user, pw);
+    }
+
+    private static BasicDataSource newPool(String driver, String url, String user, String pw) {
+        BasicDataSource pool = new BasicDataSource();
+        pool.setDriverClassName(driver);
+        pool.setUrl(url);
+        pool.setUsername(user);
+        pool.setPassword(pw);
+        int max = Settings.getIntValue("db.pool.max", 32);
+        pool.setMaxTotal(max);
+        pool.setMaxIdle(max);
+        pool.setMinIdle(Settings.getIntValue("db.pool.min.idle", 2));
+        pool.setMaxWaitMillis(Settings.getIntValue("db.pool.max.wait.millis", 5000));
+        //The same few queries run all the time, so their statements are kept per connection.
+        pool.setPoolPreparedStatements(true);
+        pool.setMaxOpenPreparedStatements(64);
+        pool.setTestWhileIdle(true);
+        pool.setTimeBetweenEvictionRunsMillis(30000);
+        pool.setMaxConnLifetimeMillis(30 * 60 * 1000);
+        return pool;
+    }
+}
@@ -9,7 +9,6 @@ import javax.persistence.EntityManagerFactory;
 import javax.persistence.Persistence;
 
 public class EMF_Creator {
-    private static Connection conn = null;
 
     public enum Strategy {
         NONE {
@@ -121,6 +120,7 @@ public class EMF_Creator {
             user = Settings.getPropertyValue("dbtest.user")!= null ? Settings.getPropertyValue("dbtest.user") : Settings.getPropertyValue("db.user") ;
             pw = Settings.getPropertyValue("dbtest.password")!= null ? Settings.getPropertyValue("dbtest.password") : Settings.getPropertyValue("db.password") ;
         }
+        Connection conn = null;
         try{
         conn = DriverManager.getConnection(connection_str + "?serverTimezone=UTC", user, pw);
         } catch (SQLException e) {
@@ -172,6 +172,16 @@ public class EMF_Creator {
         
         Then save the file, and restart tomcat: sudo systemctl restart tomcat
         */
+
+        //A local run, such as the load test, can point every factory at another database via these properties
+        if (System.getProperty("DB_URL") != null) {
+            connection_str = System.getProperty("DB_URL");
+            user = System.getProperty("USER") != null ? System.getProperty("USER") : user;
+            pw = System.getProperty("PW") != null ? System.getProperty("PW") : pw;
+            if (System.getProperty("DB_DRIVER") != null) {
+                props.setProperty("javax.persistence.jdbc.driver", System.getProperty("DB_DRIVER"));
+            }
+        }
         
         System.out.println("USER ------------> "+user);
         System.out.println("PW --------------> "+pw);
@@ -180,6 +190,10 @@ public class EMF_Creator {
         
         props.setProperty("javax.persistence.jdbc.user", user);
         props.setProperty("javax.persistence.jdbc.password", pw);
+        //Lets MySQL run a JDBC batch as one statement, see eclipselink.jdbc.batch-writing in persistence.xml.
+        if (connection_str.startsWith("jdbc:mysql:")) {
+            connection_str += (connection_str.contains("?") ? "&" : "?") + "rewriteBatchedStatements=true";
+        }
         props.setProperty("javax.persistence.jdbc.url", connection_str);
         if (strategy != Strategy.NONE) {
             props.setProperty("javax.persistence.schema-generation.database.action", strategy.toString());
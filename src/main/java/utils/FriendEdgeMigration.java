@@ -0,0 +1,142 @@
+package utils;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Copies the friendships from the old friends and users_friends tables into
+ * the user_friends edge table.
+ * <p>
+ * Stop every server before running it. The copy runs in ranges of
+ * {@code batchSize} friends rows, committing after each range, which keeps
+ * each transaction small but doesn't make it safe to run next to a server:
+ * an old server's writes to friends after their range was copied would be
+ * lost at the rename, and a friendship a new server removed from
+ * user_friends during the copy would be put back.
+ * </p>
+ * <p>
+ * Once every range is copied the old tables are renamed to friends_migrated
+ * and users_friends_migrated. Running it again then finds nothing to copy,
+ * instead of bringing back the friendships removed from user_friends since.
+ * The renamed tables can be dropped by hand once the migration has been
+ * checked.
+ * </p>
+ * Usage: {@code FriendEdgeMigration [dev|test] [batchSize]}
+ *
+ * @author Frederik Braagaard
+ */
+public class FriendEdgeMigration {
+
+    private static final int DEFAULT_BATCH_SIZE = 5000;
+
+    private final Connection connection;
+    private final int batchSize;
+
+    public FriendEdgeMigration(Connection connection, int batchSize) {
+        this.connection = connection;
+        this.batchSize = batchSize;
+    }
+
+    public static void main(String[] args) throws SQLException, ClassNotFoundException {
+        EMF_Creator.DbSelector db = args.length > 0 && args[0].equalsIgnoreCase("test")
+                ? EMF_Creator.DbSelector.TEST : EMF_Creator.DbSelector.DEV;
+        int batchSize = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_BATCH_SIZE;
+        Connection connection = EMF_Creator.getConnection(db, EMF_Creator.Strategy.NONE);
+        if (connection == null) {
+            throw new SQLException("Could not connect to the " + db + " database");
+        }
+        try {
+            FriendEdgeMigration migration = new FriendEdgeMigration(connection, batchSize);
+            System.out.println("Friend edges copied: " + migration.migrate());
+            System.out.println("Friend edges without a reverse edge: " + migration.countOneWayEdges());
+        } finally {
+            connection.close();
+        }
+    }
+
+    /**
+     * Runs the migration, with every server stopped.
+     *
+     * @return the number of edges added to user_friends
+     */
+    public long migrate() throws SQLException {
+        execute("CREATE TABLE IF NOT EXISTS user_friends (\n"
+                + "  user_id INT NOT NULL,\n"
+                + "  friend_id INT NOT NULL,\n"
+                + "  PRIMARY KEY (user_id, friend_id),\n"
+                + "  INDEX user_friends_reverse (friend_id, user_id),\n"
+                + "  CONSTRAINT fk_user_friends_owner FOREIGN KEY (user_id) REFERENCES users (user_id)\n"
+                + ")");
+        //Already migrated, or a database made after the old tables were gone.
+        if (!hasTable("users_friends") || !hasTable("friends")) {
+            return 0;
+        }
+        long first, last;
+        try (Statement st = connection.createStatement();
+                ResultSet rs = st.executeQuery("SELECT MIN(ID), MAX(ID) FROM friends")) {
+            rs.next();
+            first = rs.getLong(1);
+            last = rs.getLong(2);
+            if (rs.wasNull()) {
+                return 0;
+            }
+        }
+        //Friends of deleted users are left out by the join on users.
+        String copy = "INSERT IGNORE INTO user_friends (user_id, friend_id)\n"
+                + "SELECT users_friends.User_user_id, friends.user_friend FROM friends\n"
+                + "JOIN users_friends\n"
+                + "  ON users_friends.friendList_ID = friends.ID\n"
+                + "JOIN users\n"
+                + "  ON users.user_id = friends.user_friend\n"
+                + "WHERE friends.ID >= ? AND friends.ID < ?";
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        long copied = 0;
+        try (PreparedStatement ps = connection.prepareStatement(copy)) {
+            for (long from = first; from <= last; from += batchSize) {
+                ps.setLong(1, from);
+                ps.setLong(2, from + batchSize);
+                copied += ps.executeUpdate();
+                connection.commit();
+            }
+        } catch (SQLException ex) {
+            connection.rollback();
+            throw ex;
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+        execute("RENAME TABLE friends TO friends_migrated, users_friends TO users_friends_migrated");
+        return copied;
+    }
+
+    /**
+     * Counts the edges whose friend does not have the user as a friend in
+     * return. Each friendship is expected to be stored in both directions.
+     */
+    public long countOneWayEdges() throws SQLException {
+        String query = "SELECT COUNT(*) FROM user_friends a\n"
+                + "LEFT JOIN user_friends b\n"
+                + "  ON b.user_id = a.friend_id AND b.friend_id = a.user_id\n"
+                + "WHERE b.user_id IS NULL";
+        try (Statement st = connection.createStatement();
+                ResultSet rs = st.executeQuery(query)) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+
+    private void execute(String sql) throws SQLException {
+        try (Statement st = connection.createStatement()) {
+            st.execute(sql);
+        }
+    }
+
+    private boolean hasTable(String table) throws SQLException {
+        try (ResultSet rs = connection.getMetaData().getTables(connection.getCatalog(), null, table, null)) {
+            return rs.next();
+        }
+    }
+}
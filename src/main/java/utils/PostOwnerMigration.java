@@ -0,0 +1,154 @@
+package utils;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Moves the owner of every post from the old users_posts join table onto the
+ * posts table itself.
+ * <p>
+ * The user_id column, the posts_owner_date index and the foreign key are
+ * added if they are missing, and the owners are copied over in ID ranges of
+ * {@code batchSize} posts, committing after each range so the posts table is
+ * never locked for long. Running it again only fills in the posts that still
+ * have no owner. The users_posts table is left in place and can be dropped by
+ * hand once the migration has been checked.
+ * </p>
+ * Usage: {@code PostOwnerMigration [dev|test] [batchSize]}
+ *
+ * @author Frederik Braagaard
+ */
+public class PostOwnerMigration {
+
+    private static final int DEFAULT_BATCH_SIZE = 5000;
+
+    private final Connection connection;
+    private final int batchSize;
+
+    public PostOwnerMigration(Connection connection, int batchSize) {
+        this.connection = connection;
+        this.batchSize = batchSize;
+    }
+
+    public static void main(String[] args) throws SQLException, ClassNotFoundException {
+        EMF_Creator.DbSelector db = args.length > 0 && args[0].equalsIgnoreCase("test")
+                ? EMF_Creator.DbSelector.TEST : EMF_Creator.DbSelector.DEV;
+        int batchSize = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_BATCH_SIZE;
+        Connection connection = EMF_Creator.getConnection(db, EMF_Creator.Strategy.NONE);
+        if (connection == null) {
+            throw new SQLException("Could not connect to the " + db + " database");
+        }
+        try {
+            long migrated = new PostOwnerMigration(connection, batchSize).migrate();
+            System.out.println("Posts given an owner: " + migrated);
+        } finally {
+            connection.close();
+        }
+    }
+
+    /**
+     * Runs the migration.
+     *
+     * @return the number of posts that were given an owner
+     */
+    public long migrate() throws SQLException {
+        if (!hasColumn("posts", "user_id")) {
+            execute("ALTER TABLE posts ADD COLUMN user_id INT NULL");
+        }
+        long migrated = 0;
+        if (hasTable("users_posts")) {
+            migrated = backfill();
+        }
+        if (!hasIndex("posts", "posts_owner_date")) {
+            execute("CREATE INDEX posts_owner_date ON posts (user_id, post_date, ID)");
+        }
+        if (!hasForeignKey("posts", "user_id")) {
+            execute("ALTER TABLE posts ADD CONSTRAINT fk_posts_owner FOREIGN KEY (user_id) REFERENCES users (user_id)");
+        }
+        return migrated;
+    }
+
+    private long backfill() throws SQLException {
+        long first, last;
+        try (Statement st = connection.createStatement();
+                ResultSet rs = st.executeQuery("SELECT MIN(ID), MAX(ID) FROM posts WHERE user_id IS NULL")) {
+            rs.next();
+            first = rs.getLong(1);
+            last = rs.getLong(2);
+            if (rs.wasNull()) {
+                return 0;
+            }
+        }
+        String update = "UPDATE posts\n"
+                + "JOIN users_posts\n"
+                + "  ON users_posts.userPosts_ID = posts.ID\n"
+                + "SET posts.user_id = users_posts.User_user_id\n"
+                + "WHERE posts.ID >= ? AND posts.ID < ? AND posts.user_id IS NULL";
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        long migrated = 0;
+        try (PreparedStatement ps = connection.prepareStatement(update)) {
+            for (long from = first; from <= last; from += batchSize) {
+                ps.setLong(1, from);
+                ps.setLong(2, from + batchSize);
+                migrated += ps.executeUpdate();
+                connection.commit();
+            }
+        } catch (SQLException ex) {
+            connection.rollback();
+            throw ex;
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+        return migrated;
+    }
+
+    private void execute(String sql) throws SQLException {
+        try (Statement st = connection.createStatement()) {
+            st.execute(sql);
+        }
+    }
+
+    private boolean hasTable(String table) throws SQLException {
+        try (ResultSet rs = connection.getMetaData().getTables(connection.getCatalog(), null, table, null)) {
+            return rs.next();
+        }
+    }
+
+    private boolean hasColumn(String table, String column) throws SQLException {
+        try (ResultSet rs = connection.getMetaData().getColumns(connection.getCatalog(), null, table, column)) {
+            return rs.next();
+        }
+    }
+
+    private boolean hasIndex(String table, String index) throws SQLException {
+        try (ResultSet rs = connection.getMetaData().getIndexInfo(connection.getCatalog(), null, table, false, false)) {
+            while (rs.next()) {
+                if (index.equalsIgnoreCase(rs.getString("INDEX_NAME"))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Looks for a foreign key on the column by column rather than by name, as
+     * the schema generated by EclipseLink names its keys differently.
+     */
+    private boolean hasForeignKey(String table, String column) throws SQLException {
+        DatabaseMetaData meta = connection.getMetaData();
+        try (ResultSet rs = meta.getImportedKeys(connection.getCatalog(), null, table)) {
+            while (rs.next()) {
+                if (column.equalsIgnoreCase(rs.getString("FKCOLUMN_NAME"))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+}
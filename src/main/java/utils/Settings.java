@@ -32,6 +32,30 @@ public class Settings {
         return props.getProperty(key);
     }
    
+    /**
+     * Returns the property value for the given key as an int, or the default
+     * if the key does not exist or is empty
+     * @param key
+     * @param defaultValue
+     * @return Property value for the given key
+     */
+    public static int getIntValue(String key, int defaultValue){
+        String value = getPropertyValue(key);
+        return value == null || value.isEmpty() ? defaultValue : Integer.parseInt(value);
+    }
+
+    /**
+     * Returns the property value for the given key as a boolean, or the
+     * default if the key does not exist or is empty
+     * @param key
+     * @param defaultValue
+     * @return Property value for the given key
+     */
+    public static boolean getBooleanValue(String key, boolean defaultValue){
+        String value = getPropertyValue(key);
+        return value == null || value.isEmpty() ? defaultValue : Boolean.parseBoolean(value);
+    }
+
     /**
      * Utility method that builds the DEV-connection string using the property values: db.server , db.port and db.testdatabase
      * @return 
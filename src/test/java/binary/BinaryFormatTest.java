@@ -0,0 +1,154 @@
+package binary;
+
+import compression.CompressionInterceptor;
+import dtos.user.FriendsDTO;
+import dtos.user.UserDTO;
+import dtos.user.UserPostsDTO;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import json.GsonMessageBodyWriter;
+import org.glassfish.grizzly.http.server.HttpServer;
+import org.glassfish.jersey.grizzly2.httpserver.GrizzlyHttpServerFactory;
+import org.glassfish.jersey.server.ResourceConfig;
+import org.junit.jupiter.api.AfterAll;
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+/**
+ *
+ * @author Frederik Braagaard
+ */
+public class BinaryFormatTest {
+
+    private static final URI BASE_URI = URI.create("http://localhost:7778/api/");
+    private static HttpServer httpServer;
+
+    @Path("feed")
+    public static class FeedResource {
+
+        @GET
+        @Produces({MediaType.APPLICATION_JSON, BinaryFormat.MEDIA_TYPE_QS})
+        public List<UserDTO> feed() {
+            return users(50);
+        }
+    }
+
+    private static List<UserDTO> users(int count) {
+        List<UserDTO> users = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            UserDTO user = new UserDTO();
+            user.setUserID(i * 1000);
+            user.setFullName("User " + i);
+            user.setProfilePicture(i % 2 == 0 ? null : "picture-" + i);
+            UserPostsDTO post = new UserPostsDTO();
+            post.setMessage("Post number " + i + " æøå");
+            post.setPostDate(new Date(1577836800000L + i * 60000L));
+            user.addToPostList(post);
+            user.addToPostList(new UserPostsDTO());
+            users.add(user);
+        }
+        return users;
+    }
+
+    @BeforeAll
+    public static void setUpClass() {
+        ResourceConfig config = new ResourceConfig(FeedResource.class, GsonMessageBodyWriter.class,
+                BinaryMessageBodyWriter.class, CompressionInterceptor.class);
+        httpServer = GrizzlyHttpServerFactory.createHttpServer(BASE_URI, config);
+    }
+
+    @AfterAll
+    public static void closeTestServer() {
+        httpServer.shutdownNow();
+    }
+
+    private static HttpURLConnection get(String accept, String acceptEncoding) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(BASE_URI + "feed").openConnection();
+        if (accept != null) {
+            connection.setRequestProperty("Accept", accept);
+        }
+        if (acceptEncoding != null) {
+            connection.setRequestProperty("Accept-Encoding", acceptEncoding);
+        }
+        assertEquals(200, connection.getResponseCode());
+        return connection;
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] chunk = new byte[4096];
+        int read;
+        while ((read = in.read(chunk)) > 0) {
+            out.write(chunk, 0, read);
+        }
+        in.close();
+        return out.toByteArray();
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BinaryFormat.writeUsers(users(3), out);
+        List<UserDTO> read = BinaryFormat.readUsers(new ByteArrayInputStream(out.toByteArray()));
+        assertEquals(users(3).toString(), read.toString());
+        assertEquals(users(3).get(1).getPosts().get(0).getPostDate(), read.get(1).getPosts().get(0).getPostDate());
+        assertNull(read.get(0).getProfilePicture());
+        assertNull(read.get(0).getPosts().get(1).getPostDate());
+
+        FriendsDTO friend = new FriendsDTO();
+        friend.setFriendID(300);
+        friend.setFullName("Friend");
+        out.reset();
+        BinaryFormat.writeFriends(Arrays.asList(friend), out);
+        assertEquals("Friend", BinaryFormat.readFriends(new ByteArrayInputStream(out.toByteArray())).get(0).getFullName());
+    }
+
+    @Test
+    public void testVarints() throws IOException {
+        for (long value : new long[]{0, 1, 127, 128, 300, Integer.MAX_VALUE, 0xFFFFFFFFL, Long.MAX_VALUE, -1}) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            BinaryFormat.writeVarLong(out, value);
+            assertEquals(value, BinaryFormat.readVarLong(new ByteArrayInputStream(out.toByteArray())));
+        }
+    }
+
+    @Test
+    public void testJsonIsTheDefault() throws IOException {
+        HttpURLConnection connection = get("*/*", null);
+        assertTrue(connection.getContentType().startsWith(MediaType.APPLICATION_JSON));
+        assertTrue(new String(readAll(connection.getInputStream()), StandardCharsets.UTF_8).startsWith("[{\"fullName\""));
+    }
+
+    @Test
+    public void testBinaryByAccept() throws IOException {
+        HttpURLConnection connection = get(BinaryFormat.MEDIA_TYPE, null);
+        assertTrue(connection.getContentType().startsWith(BinaryFormat.MEDIA_TYPE));
+        byte[] body = readAll(connection.getInputStream());
+        assertEquals(users(50).toString(), BinaryFormat.readUsers(new ByteArrayInputStream(body)).toString());
+    }
+
+    @Test
+    public void testGzipByAcceptEncoding() throws IOException {
+        HttpURLConnection connection = get(MediaType.APPLICATION_JSON, "gzip");
+        assertEquals("gzip", connection.getHeaderField("Content-Encoding"));
+        String json = new String(readAll(new GZIPInputStream(connection.getInputStream())), StandardCharsets.UTF_8);
+        assertTrue(json.startsWith("[{\"fullName\""));
+    }
+
+}
@@ -0,0 +1,104 @@
+package compression;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+import javax.ws.rs.core.MediaType;
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+/**
+ *
+ * @author Frederik Braagaard
+ */
+public class CompressionInterceptorTest {
+
+    private static byte[] json(int entries) {
+        StringBuilder builder = new StringBuilder("[");
+        for (int i = 0; i < entries; i++) {
+            builder.append(i == 0 ? "" : ",").append("{\"friendID\":").append(i).append(",\"fullName\":\"User ").append(i).append("\"}");
+        }
+        return builder.append(']').toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] chunk = new byte[4096];
+        int read;
+        while ((read = in.read(chunk)) > 0) {
+            out.write(chunk, 0, read);
+        }
+        return out.toByteArray();
+    }
+
+    @Test
+    public void testNegotiate() {
+        assertEquals("gzip", CompressionInterceptor.negotiate("gzip, deflate, br"));
+        assertEquals("deflate", CompressionInterceptor.negotiate("deflate"));
+        assertEquals("deflate", CompressionInterceptor.negotiate("gzip;q=0.5, deflate;q=0.8"));
+        assertEquals("gzip", CompressionInterceptor.negotiate("*"));
+        assertNull(CompressionInterceptor.negotiate("gzip;q=0, identity"));
+        assertNull(CompressionInterceptor.negotiate("br"));
+        assertNull(CompressionInterceptor.negotiate(null));
+    }
+
+    @Test
+    public void testCompressibleTypes() {
+        assertTrue(CompressionInterceptor.isCompressible(MediaType.APPLICATION_JSON_TYPE));
+        assertTrue(CompressionInterceptor.isCompressible(MediaType.TEXT_PLAIN_TYPE));
+        assertFalse(CompressionInterceptor.isCompressible(MediaType.valueOf("image/png")));
+        assertFalse(CompressionInterceptor.isCompressible(MediaType.SERVER_SENT_EVENTS_TYPE));
+    }
+
+    @Test
+    public void testSmallResponseIsNotCompressed() throws IOException {
+        byte[] body = json(2);
+        ByteArrayOutputStream target = new ByteArrayOutputStream();
+        AtomicBoolean headerSet = new AtomicBoolean();
+        CompressingOutputStream out = new CompressingOutputStream(target, "gzip",
+                new DeflaterPool(6, true, 2), 1024, () -> headerSet.set(true));
+        out.write(body);
+        out.flush();
+        out.finish();
+        assertFalse(headerSet.get());
+        assertArrayEquals(body, target.toByteArray());
+    }
+
+    @Test
+    public void testGzipRoundTrip() throws IOException {
+        byte[] body = json(500);
+        DeflaterPool pool = new DeflaterPool(6, true, 2);
+        for (int i = 0; i < 2; i++) {
+            ByteArrayOutputStream target = new ByteArrayOutputStream();
+            AtomicBoolean headerSet = new AtomicBoolean();
+            CompressingOutputStream out = new CompressingOutputStream(target, "gzip", pool, 1024, () -> headerSet.set(true));
+            //Written in pieces, as a message body writer would.
+            for (int offset = 0; offset < body.length; offset += 100) {
+                out.write(body, offset, Math.min(100, body.length - offset));
+            }
+            out.finish();
+            assertTrue(headerSet.get());
+            assertTrue(target.size() < body.length / 4);
+            assertArrayEquals(body, readAll(new GZIPInputStream(new ByteArrayInputStream(target.toByteArray()))));
+            assertEquals(1, pool.idle());
+        }
+    }
+
+    @Test
+    public void testDeflateRoundTrip() throws IOException {
+        byte[] body = json(500);
+        ByteArrayOutputStream target = new ByteArrayOutputStream();
+        CompressingOutputStream out = new CompressingOutputStream(target, "deflate",
+                new DeflaterPool(6, false, 2), 1024, () -> {
+                });
+        out.write(body);
+        out.finish();
+        assertArrayEquals(body, readAll(new InflaterInputStream(new ByteArrayInputStream(target.toByteArray()))));
+    }
+
+}
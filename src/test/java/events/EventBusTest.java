@@ -0,0 +1,165 @@
+package events;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+/**
+ *
+ * @author Frederik Braagaard
+ */
+public class EventBusTest {
+
+    private static class RecordingListener implements EventBus.Listener {
+
+        final List<Event> events = Collections.synchronizedList(new ArrayList<>());
+        final CountDownLatch received;
+        final CountDownLatch closed = new CountDownLatch(1);
+        //The send of every event, done at once when null.
+        final CompletableFuture<Void> send;
+        volatile boolean evicted;
+
+        RecordingListener(int expected, CompletableFuture<Void> send) {
+            this.received = new CountDownLatch(expected);
+            this.send = send;
+        }
+
+        @Override
+        public CompletionStage<?> onEvent(Event event) {
+            events.add(event);
+            received.countDown();
+            return send == null ? CompletableFuture.completedFuture(null) : send;
+        }
+
+        @Override
+        public void onClose(boolean evicted) {
+            this.evicted = evicted;
+            closed.countDown();
+        }
+    }
+
+    /**
+     *
+     * @author Frederik Braagaard
+     */
+    @Test
+    public void testEventsReachOnlyTheirUsersInOrder() throws Exception {
+        EventBus bus = new EventBus(2, 100, 5, 0, 5000);
+        RecordingListener first = new RecordingListener(50, null);
+        RecordingListener second = new RecordingListener(1, null);
+        bus.subscribe(1, first);
+        bus.subscribe(2, second);
+        for (int i = 0; i < 50; i++) {
+            bus.publish(1, EventType.POST, i);
+        }
+        bus.publish(Arrays.asList(2, 3), EventType.FRIEND_REQUEST, "request");
+
+        assertTrue(first.received.await(5, TimeUnit.SECONDS));
+        assertTrue(second.received.await(5, TimeUnit.SECONDS));
+        for (int i = 0; i < 50; i++) {
+            assertEquals(i, first.events.get(i).getData());
+        }
+        assertEquals(50, first.events.size());
+        assertEquals(EventType.FRIEND_REQUEST, second.events.get(0).getType());
+    }
+
+    /**
+     *
+     * @author Frederik Braagaard
+     */
+    @Test
+    public void testSlowSubscriberIsEvicted() throws Exception {
+        EventBus bus = new EventBus(2, 4, 5, 0, 5000);
+        CompletableFuture<Void> stalled = new CompletableFuture<>();
+        RecordingListener slow = new RecordingListener(1, stalled);
+        RecordingListener fast = new RecordingListener(10, null);
+        EventBus.Subscription slowSubscription = bus.subscribe(1, slow);
+        bus.subscribe(1, fast);
+        for (int i = 0; i < 10; i++) {
+            bus.publish(1, EventType.POST, i);
+            //Keeps the fast one from falling behind as well.
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (fast.events.size() <= i && System.nanoTime() < deadline) {
+                Thread.sleep(1);
+            }
+        }
+        assertTrue(slow.closed.await(5, TimeUnit.SECONDS));
+        assertTrue(slow.evicted);
+        assertTrue(slowSubscription.isClosed());
+        assertTrue(fast.received.await(5, TimeUnit.SECONDS));
+        assertEquals(1, bus.getSubscriptionCount());
+        stalled.complete(null);
+    }
+
+    /**
+     *
+     * @author Frederik Braagaard
+     */
+    @Test
+    public void testStalledSendDoesNotHoldUpTheOthers() throws Exception {
+        //A single dispatch thread, which a send waited for would keep to itself.
+        EventBus bus = new EventBus(1, 100, 5, 0, 200);
+        RecordingListener stalled = new RecordingListener(1, new CompletableFuture<>());
+        RecordingListener sameUser = new RecordingListener(10, null);
+        RecordingListener otherUser = new RecordingListener(10, null);
+        bus.subscribe(1, stalled);
+        bus.subscribe(1, sameUser);
+        bus.subscribe(2, otherUser);
+        for (int i = 0; i < 10; i++) {
+            bus.publish(Arrays.asList(1, 2), EventType.POST, i);
+        }
+        assertTrue(sameUser.received.await(5, TimeUnit.SECONDS));
+        assertTrue(otherUser.received.await(5, TimeUnit.SECONDS));
+        assertEquals(1, stalled.events.size());
+
+        assertTrue(stalled.closed.await(5, TimeUnit.SECONDS));
+        assertTrue(stalled.evicted);
+        assertEquals(2, bus.getSubscriptionCount());
+    }
+
+    /**
+     *
+     * @author Frederik Braagaard
+     */
+    @Test
+    public void testFailingListenerIsUnsubscribed() throws Exception {
+        EventBus bus = new EventBus(1, 10, 5, 0, 5000);
+        CountDownLatch closed = new CountDownLatch(1);
+        bus.subscribe(1, new EventBus.Listener() {
+            @Override
+            public CompletionStage<?> onEvent(Event event) throws Exception {
+                throw new java.io.IOException("Broken pipe");
+            }
+
+            @Override
+            public void onClose(boolean evicted) {
+                closed.countDown();
+            }
+        });
+        bus.publish(1, EventType.POST, "post");
+        assertTrue(closed.await(5, TimeUnit.SECONDS));
+        assertFalse(bus.hasSubscribers());
+    }
+
+    /**
+     *
+     * @author Frederik Braagaard
+     */
+    @Test
+    public void testOldestSubscriptionIsClosedOverTheLimit() throws Exception {
+        EventBus bus = new EventBus(1, 10, 2, 0, 5000);
+        RecordingListener oldest = new RecordingListener(0, null);
+        bus.subscribe(1, oldest);
+        bus.subscribe(1, new RecordingListener(0, null));
+        bus.subscribe(1, new RecordingListener(0, null));
+        assertTrue(oldest.closed.await(5, TimeUnit.SECONDS));
+        assertEquals(2, bus.getSubscriptionCount());
+    }
+}
@@ -0,0 +1,130 @@
+package facades;
+
+import errorhandling.NotFoundException;
+import graph.FriendGraph;
+import graph.FriendGraphStore;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Stream;
+import metrics.QueryBudget;
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+/**
+ *
+ * @author Frederik Braagaard
+ */
+public class UserFacadeAsyncTest {
+
+    private static UserFacadeAsync facade;
+
+    @BeforeAll
+    public static void setUpClass() {
+        facade = new UserFacadeAsync(null);
+    }
+
+    private static Throwable failure(CompletableFuture<?> future) throws Exception {
+        try {
+            future.get(5, TimeUnit.SECONDS);
+        } catch (ExecutionException ex) {
+            return ex.getCause();
+        }
+        throw new AssertionError("The call should have failed");
+    }
+
+    /**
+     *
+     * @author Frederik Braagaard
+     */
+    @Test
+    public void testCallRunsOnTheDatabaseExecutor() throws Exception {
+        String thread = facade.call(() -> Thread.currentThread().getName()).get(5, TimeUnit.SECONDS);
+        assertTrue(thread.startsWith("db-async-"));
+    }
+
+    /**
+     *
+     * @author Frederik Braagaard
+     */
+    @Test
+    public void testCallCarriesTheQueryBudgetOfTheCaller() throws Exception {
+        try (QueryBudget budget = QueryBudget.open()) {
+            assertSame(budget, facade.call(QueryBudget::current).get(5, TimeUnit.SECONDS));
+        }
+        assertNull(facade.call(QueryBudget::current).get(5, TimeUnit.SECONDS));
+    }
+
+    /**
+     *
+     * @author Frederik Braagaard
+     */
+    @Test
+    public void testCheckedExceptionIsPassedOn() throws Exception {
+        Throwable failure = failure(facade.call(() -> {
+            throw new NotFoundException("User name could not be found");
+        }));
+        assertTrue(failure instanceof NotFoundException);
+        assertEquals("User name could not be found", failure.getMessage());
+    }
+
+    /**
+     *
+     * @author Frederik Braagaard
+     */
+    @Test
+    public void testTimedOutWriteStillUpdatesTheGraphAndItsLog() throws Exception {
+        Path directory = Files.createTempDirectory("friend-graph");
+        try {
+            CountDownLatch release = new CountDownLatch(1);
+            CountDownLatch written = new CountDownLatch(1);
+            try (FriendGraphStore store = FriendGraphStore.open(directory, 0, () -> FriendGraph.build(new int[0], new int[0], 0))) {
+                CompletableFuture<Boolean> write = facade.call(() -> {
+                    //Still waiting when the call times out, an interrupt would end it here.
+                    release.await();
+                    store.getGraph().addFriendship(1, 2);
+                    written.countDown();
+                    return true;
+                }, 100);
+                assertTrue(failure(write) instanceof TimeoutException);
+                release.countDown();
+                assertTrue(written.await(5, TimeUnit.SECONDS));
+                assertTrue(store.getGraph().areFriends(1, 2));
+            }
+            try (FriendGraphStore store = FriendGraphStore.open(directory, 0, () -> {
+                throw new AssertionError("The graph should have been read from the snapshot and log");
+            })) {
+                assertTrue(store.getGraph().areFriends(2, 1));
+            }
+        } finally {
+            try (Stream<Path> files = Files.walk(directory)) {
+                files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+            }
+        }
+    }
+
+    /**
+     *
+     * @author Frederik Braagaard
+     */
+    @Test
+    public void testIndependentCallsRunSideBySide() throws Exception {
+        CountDownLatch both = new CountDownLatch(2);
+        CompletableFuture<Boolean> first = facade.call(() -> {
+            both.countDown();
+            return both.await(5, TimeUnit.SECONDS);
+        });
+        CompletableFuture<Boolean> second = facade.call(() -> {
+            both.countDown();
+            return both.await(5, TimeUnit.SECONDS);
+        });
+        assertTrue(first.thenCombine(second, (a, b) -> a && b).get(5, TimeUnit.SECONDS));
+    }
+
+}
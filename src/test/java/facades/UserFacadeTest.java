@@ -1,6 +1,9 @@
 package facades;
 
+import dtos.request.FriendBatchRequest;
+import dtos.user.BatchResultDTO;
 import dtos.user.FriendsDTO;
+import dtos.user.HomeDTO;
 import dtos.user.UserDTO;
 import dtos.user.UserPostsDTO;
 import entities.FriendRequest;
@@ -14,11 +17,16 @@ import errorhandling.NoFriendsException;
 import errorhandling.NotFoundException;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 import javax.persistence.EntityManager;
 import javax.persistence.EntityManagerFactory;
 import jdk.nashorn.internal.ir.annotations.Ignore;
+import metrics.QueryBudget;
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.BeforeAll;
@@ -35,6 +43,9 @@ import static org.hamcrest.Matchers.*;
  */
 public class UserFacadeTest {
 
+    //The most statements a friend list may take, however long it is.
+    private static final int QUERY_BUDGET = 5;
+    private static final int QUERY_BUDGET_USERS = 15;
     private static EntityManagerFactory emf;
     private static UserFacade facade;
     private EntityManager em;
@@ -73,9 +84,9 @@ public class UserFacadeTest {
         try {
             em.getTransaction().begin();
 
-            em.createNamedQuery("User.deleteAllRows").executeUpdate();
             em.createNamedQuery("UserPosts.deleteAllRows").executeUpdate();
             em.createNamedQuery("Friends.deleteAllRows").executeUpdate();
+            em.createNamedQuery("User.deleteAllRows").executeUpdate();
             em.createNamedQuery("FriendRequest.deleteAllRows").executeUpdate();
             em.createNamedQuery("Role.deleteAllRows").executeUpdate();
 
@@ -562,6 +573,211 @@ public class UserFacadeTest {
         }
     }
     
+    /**
+     * Test of viewProfile method, of class UserFacade success.
+     *
+     * @author Frederik Braagaard
+     */
+    @Test
+    public void viewProfilePass() throws NotFoundException {
+        FriendsDTO response = facade.viewProfile(u1.getId());
+        assertEquals(u1.getId(), response.getFriendID());
+        assertEquals(u1.getFullName(), response.getFullName());
+    }
+
+    /**
+     * Test of viewProfile method, of class UserFacade fail.
+     *
+     * @author Frederik Braagaard
+     */
+    @Test
+    public void viewProfileFail() {
+        try {
+            facade.viewProfile(404);
+            fail("This will fail as the username doesn't exist");
+        } catch (NotFoundException ex) {
+            assertEquals("User name could not be found", ex.getMessage());
+        }
+    }
+
+    /**
+     * Test of friendBatch method, of class UserFacade.
+     *
+     * @author Frederik Braagaard
+     */
+    @Test
+    public void friendBatchPass() throws NotFoundException {
+        BatchResultDTO response = facade.friendBatch(u1.getId(), Arrays.asList(
+                new FriendBatchRequest.Operation(FriendBatchRequest.ACCEPT, u2.getId()),
+                new FriendBatchRequest.Operation(FriendBatchRequest.REMOVE, u4.getId()),
+                new FriendBatchRequest.Operation(FriendBatchRequest.DECLINE, u3.getId()),
+                new FriendBatchRequest.Operation(FriendBatchRequest.ACCEPT, 404)));
+        assertEquals(2, response.getSucceeded());
+        assertEquals(2, response.getFailed());
+        assertTrue(response.getResults().get(0).isSuccess());
+        assertTrue(response.getResults().get(1).isSuccess());
+        assertFalse(response.getResults().get(2).isSuccess());
+
+        EntityManager em = emf.createEntityManager();
+        try {
+            User findu1 = em.find(User.class, u1.getId());
+            assertEquals(0, findu1.getFriendRequests().size());
+            assertEquals(1, findu1.getFriendList().size());
+            assertEquals(u2.getId(), findu1.getFriendList().get(0).getFriendUsernameID());
+        } finally {
+            em.close();
+        }
+    }
+
+    /**
+     * Test of friendDistance method, of class UserFacade fail.
+     *
+     * @author Frederik Braagaard
+     */
+    @Test
+    public void friendDistanceFail() throws SQLException, ClassNotFoundException {
+        for (int otherID : new int[]{-1, 404}) {
+            try {
+                facade.friendDistance(u1.getId(), otherID);
+                fail("This will fail as the user doesn't exist");
+            } catch (NotFoundException ex) {
+                assertEquals("User name could not be found", ex.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Makes users who are all friends of friendsOf, each with a post, and
+     * have all sent a friend request to requestedOf. More of them than
+     * db.query.repeat.threshold, so a query per friend fails the budget.
+     *
+     * @author Frederik Braagaard
+     */
+    private void addFriendsAndRequests(User friendsOf, User requestedOf) {
+        EntityManager em = emf.createEntityManager();
+        try {
+            em.getTransaction().begin();
+            Role role = em.find(Role.class, r1.getRoleName());
+            List<User> others = new ArrayList();
+            for (int i = 0; i < QUERY_BUDGET_USERS; i++) {
+                User other = new User("Friend " + i, "friend" + i, "password", "where I was born", UUID.randomUUID().toString());
+                other.addRole(role);
+                other.addUserPost(new UserPosts("This is a post made by friend " + i));
+                em.persist(other);
+                others.add(other);
+            }
+            em.getTransaction().commit();
+
+            em.getTransaction().begin();
+            User owner = em.find(User.class, friendsOf.getId());
+            User requested = em.find(User.class, requestedOf.getId());
+            for (User other : others) {
+                owner.addToFriendList(new Friends(other.getId()));
+                requested.addFriendRequest(new FriendRequest(other.getId(), other.getFullName(), other.getProfilePicture()));
+            }
+            em.getTransaction().commit();
+        } finally {
+            em.close();
+        }
+        //Read from the database, not from what the shared cache kept of the setup.
+        emf.getCache().evictAll();
+    }
+
+    /**
+     * Test of viewFriends method, of class UserFacade, within its query
+     * budget.
+     *
+     * @author Frederik Braagaard
+     */
+    @Test
+    public void viewFriendsQueryBudget() throws NotFoundException, NoFriendsException {
+        addFriendsAndRequests(u2, u3);
+        try (QueryBudget budget = QueryBudget.open()) {
+            assertEquals(QUERY_BUDGET_USERS, facade.viewFriends(u2.getId()).size());
+            budget.check(QUERY_BUDGET);
+        }
+    }
+
+    /**
+     * Test of friendPosts method, of class UserFacade, within its query
+     * budget.
+     *
+     * @author Frederik Braagaard
+     */
+    @Test
+    public void friendPostsQueryBudget() throws NotFoundException, NoFriendsException {
+        addFriendsAndRequests(u2, u3);
+        try (QueryBudget budget = QueryBudget.open()) {
+            List<UserDTO> response = facade.friendPosts(u2.getId());
+            assertEquals(QUERY_BUDGET_USERS, response.size());
+            assertEquals(1, response.get(0).getPosts().size());
+            budget.check(QUERY_BUDGET);
+        }
+    }
+
+    /**
+     * Test of viewFriendRequests method, of class UserFacade, within its
+     * query budget.
+     *
+     * @author Frederik Braagaard
+     */
+    @Test
+    public void viewFriendRequestsQueryBudget() throws NotFoundException, NoFriendRequestsException {
+        addFriendsAndRequests(u2, u3);
+        try (QueryBudget budget = QueryBudget.open()) {
+            //u3 also has the request from u1 made in setUp.
+            assertEquals(QUERY_BUDGET_USERS + 1, facade.viewFriendRequests(u3.getId()).size());
+            budget.check(QUERY_BUDGET);
+        }
+    }
+
+    /**
+     * Runs the home screen of the user with the given sections and counts
+     * its statements, with nothing kept in the shared cache.
+     */
+    private int homeStatements(User user, String... fields) throws Exception {
+        emf.getCache().evictAll();
+        try (QueryBudget budget = QueryBudget.open()) {
+            UserFacadeAsync.getUserFacadeAsync(facade)
+                    .home(user.getId(), new HashSet<>(Arrays.asList(fields)))
+                    .get(5, TimeUnit.SECONDS);
+            return budget.getCount();
+        }
+    }
+
+    /**
+     * Test of home method, of class UserFacadeAsync: the user is looked up
+     * once, and the friends come from the feed without more queries.
+     *
+     * @author Frederik Braagaard
+     */
+    @Test
+    public void homeLooksUpTheUserOnce() throws Exception {
+        addFriendsAndRequests(u2, u2);
+        int profile = homeStatements(u2, HomeDTO.PROFILE);
+        int feed = homeStatements(u2, HomeDTO.FEED);
+        int requests = homeStatements(u2, HomeDTO.REQUESTS);
+
+        assertEquals(feed, homeStatements(u2, HomeDTO.FEED, HomeDTO.FRIENDS));
+        assertEquals(feed + requests - profile, homeStatements(u2, HomeDTO.PROFILE, HomeDTO.FEED, HomeDTO.FRIENDS, HomeDTO.REQUESTS));
+    }
+
+    /**
+     * Test of home method, of class UserFacadeAsync, for a user who doesn't
+     * exist.
+     *
+     * @author Frederik Braagaard
+     */
+    @Test
+    public void homeUnknownUser() throws Exception {
+        try {
+            UserFacadeAsync.getUserFacadeAsync(facade).home(404, HomeDTO.ALL_FIELDS).get(5, TimeUnit.SECONDS);
+            fail("The user should not have been found");
+        } catch (ExecutionException ex) {
+            assertTrue(ex.getCause() instanceof NotFoundException);
+        }
+    }
+
     /**
      * Test of adminGetPosts method, of class UserFacade success.
      *
@@ -0,0 +1,96 @@
+package graph;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.AfterEach;
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ *
+ * @author Frederik Braagaard
+ */
+public class FriendGraphStoreTest {
+
+    private Path directory;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("friend-graph");
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+        }
+    }
+
+    private static FriendGraph database() {
+        int[] users = {1, 2, 1, 3};
+        int[] friends = {2, 1, 3, 1};
+        return FriendGraph.build(users, friends, users.length);
+    }
+
+    private static FriendGraph noDatabase() {
+        throw new AssertionError("The graph should have been read from the snapshot");
+    }
+
+    @Test
+    public void testSnapshotRoundTrip() throws IOException {
+        CsrGraph csr = database().compact();
+        Path file = directory.resolve("graph.snapshot");
+        FriendGraphSnapshot.write(csr, 4, 7, file);
+        FriendGraphSnapshot snapshot = FriendGraphSnapshot.map(file);
+        assertEquals(4, snapshot.logEpoch);
+        assertEquals(7, snapshot.logRecords);
+        FriendGraph graph = new FriendGraph(snapshot.graph);
+        assertArrayEquals(new int[]{2, 3}, graph.friendsOf(1));
+        assertArrayEquals(new int[]{1}, graph.friendsOf(3));
+        assertEquals(FriendGraphSnapshot.HEADER_SIZE + 4 * (3 + 4 + 4), Files.size(file));
+    }
+
+    @Test
+    public void testRestartReplaysChangeLog() throws Exception {
+        try (FriendGraphStore store = FriendGraphStore.open(directory, 0, FriendGraphStoreTest::database)) {
+            store.getGraph().addFriendship(2, 3);
+            store.getGraph().removeFriendship(1, 3);
+        }
+        try (FriendGraphStore store = FriendGraphStore.open(directory, 0, FriendGraphStoreTest::noDatabase)) {
+            FriendGraph graph = store.getGraph();
+            assertArrayEquals(new int[]{2}, graph.friendsOf(1));
+            assertArrayEquals(new int[]{1, 3}, graph.friendsOf(2));
+            assertArrayEquals(new int[]{2}, graph.friendsOf(3));
+        }
+    }
+
+    @Test
+    public void testRestartAfterSnapshotAndRotation() throws Exception {
+        try (FriendGraphStore store = FriendGraphStore.open(directory, 0, FriendGraphStoreTest::database)) {
+            store.getGraph().addFriendship(2, 3);
+            store.snapshot();
+            store.getGraph().addFriendship(3, 4);
+            assertArrayEquals(new int[]{1, 2, 4}, store.getGraph().friendsOf(3));
+        }
+        try (FriendGraphStore store = FriendGraphStore.open(directory, 0, FriendGraphStoreTest::noDatabase)) {
+            assertArrayEquals(new int[]{1, 2, 4}, store.getGraph().friendsOf(3));
+            assertArrayEquals(new int[]{3}, store.getGraph().friendsOf(4));
+        }
+    }
+
+    @Test
+    public void testUnreadableSnapshotIsRebuilt() throws Exception {
+        Files.write(directory.resolve(FriendGraphStore.SNAPSHOT_FILE), new byte[]{1, 2, 3});
+        try (FriendGraphStore store = FriendGraphStore.open(directory, 0, FriendGraphStoreTest::database)) {
+            assertArrayEquals(new int[]{2, 3}, store.getGraph().friendsOf(1));
+        }
+        try (FriendGraphStore store = FriendGraphStore.open(directory, 0, FriendGraphStoreTest::noDatabase)) {
+            assertArrayEquals(new int[]{2, 3}, store.getGraph().friendsOf(1));
+        }
+    }
+
+}
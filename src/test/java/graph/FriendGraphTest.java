@@ -0,0 +1,155 @@
+package graph;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ *
+ * @author Frederik Braagaard
+ */
+public class FriendGraphTest {
+
+    private FriendGraph graph;
+
+    /**
+     * 1 is friends with 2 and 3. 2 and 3 are both friends with 4, only 3 is
+     * friends with 5.
+     *
+     * @author Frederik Braagaard
+     */
+    @BeforeEach
+    public void setUp() {
+        int[] users = {1, 2, 1, 3, 2, 4, 3, 4, 3, 5};
+        int[] friends = {2, 1, 3, 1, 4, 2, 4, 3, 5, 3};
+        graph = FriendGraph.build(users, friends, users.length);
+    }
+
+    @Test
+    public void testBuildSortsFriendLists() {
+        assertArrayEquals(new int[]{2, 3}, graph.friendsOf(1));
+        assertArrayEquals(new int[]{1, 4, 5}, graph.friendsOf(3));
+        assertArrayEquals(new int[0], graph.friendsOf(404));
+    }
+
+    @Test
+    public void testSuggestionsRankedByMutualFriends() {
+        List<FriendGraph.Suggestion> suggestions = graph.suggestions(1);
+        assertEquals(2, suggestions.size());
+        assertEquals(4, suggestions.get(0).getUserID());
+        assertEquals(2, suggestions.get(0).getMutualFriends());
+        assertEquals(5, suggestions.get(1).getUserID());
+        assertEquals(1, suggestions.get(1).getMutualFriends());
+    }
+
+    @Test
+    public void testSuggestionsInvalidatedOnNewFriendship() {
+        assertEquals(2, graph.suggestions(1).size());
+        graph.addFriendship(1, 4);
+        List<FriendGraph.Suggestion> suggestions = graph.suggestions(1);
+        assertEquals(1, suggestions.size());
+        assertEquals(5, suggestions.get(0).getUserID());
+    }
+
+    @Test
+    public void testSuggestionsInvalidatedOnRemovedFriendship() {
+        assertEquals(2, graph.suggestions(1).size());
+        graph.removeFriendship(3, 5);
+        List<FriendGraph.Suggestion> suggestions = graph.suggestions(1);
+        assertEquals(1, suggestions.size());
+        assertEquals(4, suggestions.get(0).getUserID());
+        assertFalse(graph.areFriends(5, 3));
+    }
+
+    @Test
+    public void testParallelScoringMatchesSequential() {
+        int candidates = FriendGraph.PARALLEL_THRESHOLD * 3;
+        int[] users = new int[candidates * 40 + 40];
+        int[] friends = new int[users.length];
+        int row = 0;
+        //User 1 has 20 friends (2 to 21), each friends with a random third of the candidates.
+        Random random = new Random(42);
+        for (int friend = 2; friend <= 21; friend++) {
+            users[row] = 1;
+            friends[row++] = friend;
+            users[row] = friend;
+            friends[row++] = 1;
+            for (int candidate = 100; candidate < 100 + candidates; candidate++) {
+                if (random.nextInt(3) == 0) {
+                    users[row] = friend;
+                    friends[row++] = candidate;
+                    users[row] = candidate;
+                    friends[row++] = friend;
+                }
+            }
+        }
+        FriendGraph large = FriendGraph.build(users, friends, row);
+
+        //Scored one candidate at a time by intersecting the friend lists.
+        List<FriendGraph.Suggestion> expected = new ArrayList<>();
+        for (int candidate = 100; candidate < 100 + candidates; candidate++) {
+            int mutual = large.mutualFriends(1, candidate).length;
+            if (mutual > 0) {
+                expected.add(new FriendGraph.Suggestion(candidate, mutual));
+            }
+        }
+        assertTrue(expected.size() > FriendGraph.PARALLEL_THRESHOLD);
+        expected.sort((a, b) -> a.getMutualFriends() != b.getMutualFriends()
+                ? Integer.compare(b.getMutualFriends(), a.getMutualFriends())
+                : Integer.compare(a.getUserID(), b.getUserID()));
+        expected = expected.subList(0, FriendGraph.SUGGESTION_LIMIT);
+
+        List<FriendGraph.Suggestion> suggestions = large.suggestions(1);
+        assertEquals(expected.size(), suggestions.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getUserID(), suggestions.get(i).getUserID(), "rank " + i);
+            assertEquals(expected.get(i).getMutualFriends(), suggestions.get(i).getMutualFriends(), "rank " + i);
+        }
+    }
+
+    @Test
+    public void testMutualFriends() {
+        assertArrayEquals(new int[]{2, 3}, graph.mutualFriends(1, 4));
+        assertArrayEquals(new int[]{3}, graph.mutualFriends(1, 5));
+        assertArrayEquals(new int[0], graph.mutualFriends(1, 404));
+    }
+
+    @Test
+    public void testDistance() {
+        assertEquals(0, graph.distance(1, 1, 3));
+        assertEquals(1, graph.distance(1, 2, 3));
+        assertEquals(2, graph.distance(1, 4, 3));
+        assertEquals(3, graph.distance(2, 5, 3));
+        assertEquals(-1, graph.distance(2, 5, 2));
+        assertEquals(-1, graph.distance(1, 404, 3));
+        assertEquals(-1, graph.distance(1, -1, 3));
+        assertEquals(-1, graph.distance(-1, -1, 3));
+    }
+
+    @Test
+    public void testDistanceFollowsChanges() {
+        graph.addFriendship(2, 5);
+        assertEquals(1, graph.distance(2, 5, 3));
+        graph.removeFriendship(1, 2);
+        graph.removeFriendship(2, 4);
+        graph.removeFriendship(2, 5);
+        assertEquals(-1, graph.distance(1, 2, 3));
+    }
+
+    @Test
+    public void testChangedRowsMergedIntoCsr() {
+        for (int user = 100; user < 100 + FriendGraph.MERGE_THRESHOLD; user++) {
+            graph.addFriendship(1, user);
+        }
+        graph.removeFriendship(3, 5);
+        assertEquals(2 + FriendGraph.MERGE_THRESHOLD, graph.degree(1));
+        assertTrue(graph.areFriends(100, 1));
+        assertFalse(graph.areFriends(5, 3));
+        assertEquals(0, graph.degree(5));
+        assertArrayEquals(new int[]{1, 4}, graph.friendsOf(3));
+    }
+
+}
@@ -0,0 +1,94 @@
+package health;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+/**
+ *
+ * @author Frederik Braagaard
+ */
+public class HealthTest {
+
+    /**
+     *
+     * @author Frederik Braagaard
+     */
+    @Test
+    public void testNotReadyUntilEveryProbeHasPassed() {
+        Probe jdbc = new Probe("jdbc", () -> "ok");
+        Probe mongo = new Probe("mongo", () -> "ok");
+        Health health = new Health(Arrays.asList(jdbc, mongo), 60_000);
+
+        HealthReport report = health.ready();
+        assertEquals(HealthReport.DOWN, report.getStatus());
+        assertEquals("not checked yet", report.getChecks().get(0).getDetail());
+
+        jdbc.run();
+        assertFalse(health.ready().isUp());
+        mongo.run();
+        report = health.ready();
+        assertTrue(report.isUp());
+        assertEquals(2, report.getChecks().size());
+        assertTrue(report.getChecks().get(1).getLatencyMillis() >= 0);
+    }
+
+    /**
+     *
+     * @author Frederik Braagaard
+     */
+    @Test
+    public void testFailingProbeTakesTheServerOut() {
+        boolean[] exhausted = {true};
+        Probe jdbc = new Probe("jdbc", () -> {
+            if (exhausted[0]) {
+                throw new IllegalStateException("every pooled connection is in use");
+            }
+            return "ok";
+        });
+        Probe mongo = new Probe("mongo", () -> {
+            throw new IOException("mongo.example:27017 refused");
+        });
+        Health health = new Health(Arrays.asList(jdbc, mongo), 60_000);
+        jdbc.run();
+        mongo.run();
+
+        List<Probe.Result> checks = health.ready().getChecks();
+        assertFalse(checks.get(0).isUp());
+        assertEquals("every pooled connection is in use", checks.get(0).getDetail());
+        //Only the kind of failure is shown, not what it says about the setup.
+        assertEquals("IOException", checks.get(1).getDetail());
+
+        exhausted[0] = false;
+        jdbc.run();
+        assertTrue(health.ready().getChecks().get(0).isUp());
+        assertFalse(health.ready().isUp());
+    }
+
+    /**
+     *
+     * @author Frederik Braagaard
+     */
+    @Test
+    public void testOldResultCountsAsFailed() throws Exception {
+        Probe jpa = new Probe("jpa", () -> "ok");
+        Health health = new Health(Arrays.asList(jpa), 20);
+        jpa.run();
+        Thread.sleep(50);
+        HealthReport report = health.ready();
+        assertFalse(report.isUp());
+        assertTrue(report.getChecks().get(0).getDetail().startsWith("no result for"));
+    }
+
+    /**
+     *
+     * @author Frederik Braagaard
+     */
+    @Test
+    public void testLiveIsAlwaysUp() {
+        assertTrue(Health.live().isUp());
+        assertTrue(Health.live().getChecks().isEmpty());
+    }
+}
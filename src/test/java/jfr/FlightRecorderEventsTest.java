@@ -0,0 +1,133 @@
+package jfr;
+
+import com.mongodb.ServerAddress;
+import com.mongodb.connection.ClusterId;
+import com.mongodb.connection.ConnectionDescription;
+import com.mongodb.connection.ServerId;
+import com.mongodb.event.CommandStartedEvent;
+import com.mongodb.event.CommandSucceededEvent;
+import entities.User;
+import facades.UserFacadeAsync;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import metrics.MongoMetrics;
+import org.bson.BsonArray;
+import org.bson.BsonDocument;
+import org.bson.BsonString;
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+/**
+ *
+ * @author Frederik Braagaard
+ */
+public class FlightRecorderEventsTest {
+
+    private static final ConnectionDescription DESCRIPTION = new ConnectionDescription(new ServerId(new ClusterId(), new ServerAddress()));
+
+    /**
+     * Records what the given work emits, with every sem4 event enabled.
+     */
+    private static List<RecordedEvent> record(Runnable work) throws Exception {
+        Path file = Files.createTempFile("sem4-", ".jfr");
+        try (Recording recording = new Recording()) {
+            for (String name : new String[]{"sem4.PasswordVerification", "sem4.FacadeCall", "sem4.MongoWrite"}) {
+                recording.enable(name).withoutThreshold();
+            }
+            recording.start();
+            work.run();
+            recording.stop();
+            recording.dump(file);
+            return RecordingFile.readAllEvents(file).stream()
+                    .filter(event -> event.getEventType().getName().startsWith("sem4."))
+                    .collect(Collectors.toList());
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /**
+     *
+     * @author Frederik Braagaard
+     */
+    @Test
+    public void testPasswordVerificationIsRecorded() throws Exception {
+        User user = new User("Test Person", "test", "password1", "secret");
+        List<RecordedEvent> events = record(() -> {
+            user.verifyPassword("password1");
+            user.verifyPassword("wrong");
+        });
+        assertEquals(2, events.size());
+        assertTrue(events.get(0).getBoolean("verified"));
+        assertFalse(events.get(1).getBoolean("verified"));
+        assertTrue(events.get(0).getDuration().toNanos() > 0);
+    }
+
+    /**
+     *
+     * @author Frederik Braagaard
+     */
+    @Test
+    public void testFacadeCallIsRecorded() throws Exception {
+        UserFacadeAsync facade = new UserFacadeAsync(null);
+        List<RecordedEvent> events = record(() -> {
+            try {
+                facade.call(() -> "done").get(5, TimeUnit.SECONDS);
+            } catch (Exception ex) {
+                throw new IllegalStateException(ex);
+            }
+        });
+        assertEquals(1, events.size());
+        assertEquals("UserFacadeAsync.call", events.get(0).getString("method"));
+        assertTrue(events.get(0).getBoolean("succeeded"));
+        assertTrue(events.get(0).getThread().getJavaName().startsWith("db-async-"));
+    }
+
+    /**
+     *
+     * @author Frederik Braagaard
+     */
+    @Test
+    public void testFailedFacadeCallOnTheRequestThreadIsRecorded() throws Exception {
+        List<RecordedEvent> events = record(() -> {
+            try (UserFacadeAsync.TracedCall traced = UserFacadeAsync.traced("UserFacade.getVeryfiedUser")) {
+                throw new IllegalStateException("Invalid user name or password");
+            } catch (IllegalStateException ex) {
+                assertEquals("Invalid user name or password", ex.getMessage());
+            }
+        });
+        assertEquals(1, events.size());
+        assertEquals("UserFacade.getVeryfiedUser", events.get(0).getString("method"));
+        assertFalse(events.get(0).getBoolean("succeeded"));
+        assertEquals(Thread.currentThread().getName(), events.get(0).getThread().getJavaName());
+    }
+
+    /**
+     *
+     * @author Frederik Braagaard
+     */
+    @Test
+    public void testMongoWriteIsRecorded() throws Exception {
+        MongoMetrics metrics = MongoMetrics.getMongoMetrics();
+        BsonDocument insert = new BsonDocument("insert", new BsonString("logs"))
+                .append("documents", new BsonArray(Arrays.asList(new BsonDocument(), new BsonDocument())));
+        List<RecordedEvent> events = record(() -> {
+            metrics.commandStarted(new CommandStartedEvent(1, DESCRIPTION, "test", "insert", insert));
+            metrics.commandSucceeded(new CommandSucceededEvent(1, DESCRIPTION, "insert", new BsonDocument(), 1000));
+            metrics.commandStarted(new CommandStartedEvent(2, DESCRIPTION, "test", "find", new BsonDocument("find", new BsonString("logs"))));
+            metrics.commandSucceeded(new CommandSucceededEvent(2, DESCRIPTION, "find", new BsonDocument(), 1000));
+        });
+        assertEquals(1, events.size());
+        assertEquals("insert", events.get(0).getString("command"));
+        assertEquals("logs", events.get(0).getString("collection"));
+        assertEquals(2, events.get(0).getInt("documents"));
+        assertFalse(events.get(0).getBoolean("failed"));
+    }
+}
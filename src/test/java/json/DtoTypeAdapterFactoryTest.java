@@ -0,0 +1,64 @@
+package json;
+
+import com.google.gson.Gson;
+import dtos.user.FriendsDTO;
+import dtos.user.UserDTO;
+import dtos.user.UserPostsDTO;
+import errorhandling.ExceptionDTO;
+import java.util.Arrays;
+import java.util.Date;
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+/**
+ *
+ * @author Frederik Braagaard
+ */
+public class DtoTypeAdapterFactoryTest {
+
+    private static final Gson REFLECTIVE = new Gson();
+
+    private static UserDTO user() {
+        UserDTO user = new UserDTO();
+        user.setFullName("User \"quoted\" user");
+        user.setProfilePicture("0b6e6a0e");
+        user.setUserID(7);
+        UserPostsDTO first = new UserPostsDTO();
+        first.setMessage("First post");
+        first.setPostDate(new Date(1577836800000L));
+        UserPostsDTO second = new UserPostsDTO();
+        second.setMessage("æøå");
+        second.setPostDate(new Date(1577923200000L));
+        user.addToPostList(first);
+        user.addToPostList(second);
+        return user;
+    }
+
+    @Test
+    public void testSameOutputAsReflection() {
+        FriendsDTO friend = new FriendsDTO();
+        friend.setFriendID(3);
+        friend.setFullName("Friend");
+        ExceptionDTO error = new ExceptionDTO(404, "Not found");
+
+        assertEquals(REFLECTIVE.toJson(user()), JsonSupport.COMPACT.toJson(user()));
+        assertEquals(REFLECTIVE.toJson(friend), JsonSupport.COMPACT.toJson(friend));
+        assertEquals(REFLECTIVE.toJson(error), JsonSupport.COMPACT.toJson(error));
+        assertEquals(REFLECTIVE.toJson(Arrays.asList(friend, friend)), JsonSupport.COMPACT.toJson(Arrays.asList(friend, friend)));
+    }
+
+    @Test
+    public void testReadBack() {
+        String json = JsonSupport.COMPACT.toJson(user());
+        UserDTO read = JsonSupport.COMPACT.fromJson(json, UserDTO.class);
+        assertEquals(json, JsonSupport.COMPACT.toJson(read));
+        assertEquals(2, read.getPosts().size());
+    }
+
+    @Test
+    public void testPrettyIsOptIn() {
+        assertFalse(JsonSupport.COMPACT.toJson(user()).contains("\n"));
+        assertTrue(JsonSupport.PRETTY.toJson(user()).contains("\n"));
+    }
+
+}
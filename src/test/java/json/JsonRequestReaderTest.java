@@ -0,0 +1,108 @@
+package json;
+
+import dtos.request.FriendBatchRequest;
+import dtos.request.LoginRequest;
+import dtos.request.UserIdRequest;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedHashMap;
+import javax.ws.rs.core.MultivaluedMap;
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+/**
+ *
+ * @author Frederik Braagaard
+ */
+public class JsonRequestReaderTest {
+
+    private final JsonRequestReader reader = new JsonRequestReader();
+
+    @SuppressWarnings("unchecked")
+    private <T> T read(Class<T> type, String body, MultivaluedMap<String, String> headers) throws IOException {
+        return (T) reader.readFrom((Class<Object>) (Class<?>) type, type, new Annotation[0],
+                MediaType.APPLICATION_JSON_TYPE, headers, new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private <T> T read(Class<T> type, String body) throws IOException {
+        return read(type, body, new MultivaluedHashMap<>());
+    }
+
+    private int status(Class<?> type, String body) throws IOException {
+        try {
+            read(type, body);
+            fail("The request should have been rejected: " + body);
+            return 0;
+        } catch (WebApplicationException ex) {
+            return ex.getResponse().getStatus();
+        }
+    }
+
+    @Test
+    public void testReadsTypedRequest() throws IOException {
+        LoginRequest login = read(LoginRequest.class, "{\"username\":\"user\",\"password\":\"test\"}");
+        assertEquals("user", login.getUsername());
+        assertEquals("test", login.getPassword());
+        UserIdRequest id = read(UserIdRequest.class, "{\"request_userid\": 42}");
+        assertEquals(42, id.getRequestUserID());
+        //A quoted number was accepted by JsonParser before, and still is.
+        assertEquals(7, read(UserIdRequest.class, "{\"request_userid\":\"7\"}").getRequestUserID());
+    }
+
+    @Test
+    public void testOnlyAnnotatedClassesAreReadable() {
+        assertTrue(reader.isReadable(LoginRequest.class, LoginRequest.class, null, MediaType.APPLICATION_JSON_TYPE));
+        assertFalse(reader.isReadable(String.class, String.class, null, MediaType.APPLICATION_JSON_TYPE));
+    }
+
+    @Test
+    public void testRejectsBadRequests() throws IOException {
+        assertEquals(400, status(LoginRequest.class, "{\"username\":\"user\",\"password\":\"test\",\"role\":\"admin\"}"));
+        assertEquals(400, status(LoginRequest.class, "{\"username\":\"user\"}"));
+        assertEquals(400, status(LoginRequest.class, "{\"username\":\"a\",\"username\":\"b\",\"password\":\"c\"}"));
+        assertEquals(400, status(LoginRequest.class, "{\"username\":\"user\",\"password\":null}"));
+        assertEquals(400, status(LoginRequest.class, "{\"username\":\"user\",\"password\":"));
+        assertEquals(400, status(LoginRequest.class, "{\"username\":\"user\",\"password\":\"x\"} {}"));
+        assertEquals(400, status(UserIdRequest.class, "{\"request_userid\":\"abc\"}"));
+        assertEquals(400, status(UserIdRequest.class, "{\"request_userid\":{}}"));
+    }
+
+    @Test
+    public void testReadsListOfNestedRequests() throws IOException {
+        FriendBatchRequest batch = read(FriendBatchRequest.class, "{\"operations\":["
+                + "{\"op\":\"accept\",\"request_userid\":4},{\"request_userid\":5,\"op\":\"remove\"}]}");
+        assertEquals(2, batch.getOperations().size());
+        assertEquals("accept", batch.getOperations().get(0).getOp());
+        assertEquals(5, batch.getOperations().get(1).getRequestUserID());
+        assertTrue(read(FriendBatchRequest.class, "{\"operations\":[]}").getOperations().isEmpty());
+
+        assertEquals(400, status(FriendBatchRequest.class, "{\"operations\":[{\"op\":\"accept\"}]}"));
+        assertEquals(400, status(FriendBatchRequest.class, "{\"operations\":[{\"op\":\"accept\",\"request_userid\":4,\"admin\":true}]}"));
+        assertEquals(400, status(FriendBatchRequest.class, "{\"operations\":[null]}"));
+        assertEquals(400, status(FriendBatchRequest.class, "{\"operations\":{}}"));
+    }
+
+    @Test
+    public void testRejectsOversizedBodies() throws IOException {
+        char[] padding = new char[2048];
+        Arrays.fill(padding, 'a');
+        String body = "{\"username\":\"" + new String(padding) + "\",\"password\":\"x\"}";
+        assertEquals(413, status(LoginRequest.class, body));
+
+        MultivaluedMap<String, String> headers = new MultivaluedHashMap<>();
+        headers.putSingle(HttpHeaders.CONTENT_LENGTH, "1000000");
+        try {
+            read(LoginRequest.class, "{}", headers);
+            fail("The Content-Length header should have been enough to reject the request");
+        } catch (WebApplicationException ex) {
+            assertEquals(413, ex.getResponse().getStatus());
+        }
+    }
+
+}
@@ -0,0 +1,79 @@
+package metrics;
+
+import com.mongodb.ServerAddress;
+import com.mongodb.connection.ClusterId;
+import com.mongodb.connection.ConnectionDescription;
+import com.mongodb.connection.ConnectionId;
+import com.mongodb.connection.ServerId;
+import com.mongodb.event.CommandFailedEvent;
+import com.mongodb.event.CommandSucceededEvent;
+import com.mongodb.event.ConnectionAddedEvent;
+import com.mongodb.event.ConnectionCheckedInEvent;
+import com.mongodb.event.ConnectionCheckedOutEvent;
+import com.mongodb.event.ConnectionPoolWaitQueueEnteredEvent;
+import com.mongodb.event.ConnectionPoolWaitQueueExitedEvent;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.bson.BsonDocument;
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+/**
+ *
+ * @author Frederik Braagaard
+ */
+public class MongoMetricsTest {
+
+    private static final ServerId SERVER = new ServerId(new ClusterId(), new ServerAddress());
+    private static final ConnectionId CONNECTION = new ConnectionId(SERVER);
+    private static final ConnectionDescription DESCRIPTION = new ConnectionDescription(SERVER);
+
+    /**
+     *
+     * @author Frederik Braagaard
+     */
+    @Test
+    public void testCommandsAreTimedPerName() {
+        MongoMetrics metrics = new MongoMetrics(60);
+        for (int i = 1; i <= 10; i++) {
+            metrics.commandSucceeded(new CommandSucceededEvent(i, DESCRIPTION, "find", new BsonDocument(), TimeUnit.MILLISECONDS.toNanos(i)));
+        }
+        metrics.commandFailed(new CommandFailedEvent(11, DESCRIPTION, "insert", TimeUnit.MILLISECONDS.toNanos(3), new IllegalStateException()));
+
+        List<MongoMetrics.Snapshot> snapshot = metrics.snapshot();
+        assertEquals(2, snapshot.size());
+        MongoMetrics.Snapshot find = snapshot.get(0);
+        assertEquals("find", find.getName());
+        assertEquals(10, find.getCount());
+        assertEquals(0, find.getFailures());
+        assertEquals(0.055, find.getSumSeconds(), 1e-9);
+        assertEquals(0.010, find.getQuantileSeconds(1.0), 0.0001);
+        assertEquals(1, snapshot.get(1).getFailures());
+    }
+
+    /**
+     *
+     * @author Frederik Braagaard
+     */
+    @Test
+    public void testPoolWaitAndConnectionsAreKept() {
+        MongoMetrics metrics = new MongoMetrics(60);
+        metrics.connectionAdded(new ConnectionAddedEvent(CONNECTION));
+        metrics.connectionAdded(new ConnectionAddedEvent(CONNECTION));
+        metrics.waitQueueEntered(new ConnectionPoolWaitQueueEnteredEvent(SERVER));
+        metrics.waitQueueExited(new ConnectionPoolWaitQueueExitedEvent(SERVER));
+        metrics.connectionCheckedOut(new ConnectionCheckedOutEvent(CONNECTION));
+        metrics.connectionCheckedOut(new ConnectionCheckedOutEvent(CONNECTION));
+        metrics.connectionCheckedIn(new ConnectionCheckedInEvent(CONNECTION));
+
+        assertEquals(1, metrics.poolWaitSnapshot().getCount());
+        assertEquals(2, metrics.getCheckouts());
+        assertEquals(1, metrics.getInUse());
+        assertEquals(2, metrics.getOpen());
+
+        StringBuilder out = new StringBuilder();
+        PrometheusFormat.writeMongo(out, metrics);
+        assertTrue(out.toString().contains("mongodb_pool_connections{state=\"in_use\"} 1\n"), out.toString());
+        assertTrue(out.toString().contains("mongodb_pool_wait_seconds_count 1\n"), out.toString());
+    }
+}
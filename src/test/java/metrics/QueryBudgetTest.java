@@ -0,0 +1,86 @@
+package metrics;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ *
+ * @author Frederik Braagaard
+ */
+public class QueryBudgetTest {
+
+    private static final String FIND_USER = "SELECT full_name FROM users WHERE user_id = ?";
+
+    @BeforeEach
+    public void setUp() {
+        SqlMetrics.reset();
+    }
+
+    /**
+     * Runs the statement once per id, the way an em.find in a loop does.
+     */
+    private static void findEach(Connection connection, int ids) throws SQLException {
+        for (int id = 1; id <= ids; id++) {
+            try (PreparedStatement ps = connection.prepareStatement(FIND_USER)) {
+                ps.setInt(1, id);
+                ps.executeUpdate();
+            }
+        }
+    }
+
+    /**
+     *
+     * @author Frederik Braagaard
+     */
+    @Test
+    public void testRepeatedStatementIsFound() throws SQLException {
+        Connection connection = InstrumentedJdbc.wrap(SqlMetricsTest.fakeConnection(0));
+        try (QueryBudget budget = QueryBudget.open()) {
+            findEach(connection, QueryBudget.REPEAT_THRESHOLD + 1);
+            assertEquals(QueryBudget.REPEAT_THRESHOLD + 1, budget.getCount());
+            assertEquals(QueryBudget.REPEAT_THRESHOLD + 1, budget.getCount(FIND_USER));
+
+            List<String> findings = budget.findings(0);
+            assertEquals(1, findings.size());
+            assertTrue(findings.get(0).startsWith((QueryBudget.REPEAT_THRESHOLD + 1) + " x " + FIND_USER), findings.get(0));
+            assertTrue(findings.get(0).contains("QueryBudgetTest.findEach"), findings.get(0));
+            IllegalStateException ex = assertThrows(IllegalStateException.class, () -> budget.check(100));
+            assertTrue(ex.getMessage().contains(FIND_USER));
+        }
+    }
+
+    /**
+     *
+     * @author Frederik Braagaard
+     */
+    @Test
+    public void testBudgetLimitsTheTotal() throws SQLException {
+        Connection connection = InstrumentedJdbc.wrap(SqlMetricsTest.fakeConnection(0));
+        try (QueryBudget budget = QueryBudget.open()) {
+            findEach(connection, 3);
+            budget.check(3);
+            assertEquals("3 statements, the budget is 2", budget.findings(2).get(0));
+            assertThrows(IllegalStateException.class, () -> budget.check(2));
+        }
+    }
+
+    /**
+     *
+     * @author Frederik Braagaard
+     */
+    @Test
+    public void testOnlyStatementsOfTheOpenBudgetCount() throws SQLException {
+        Connection connection = InstrumentedJdbc.wrap(SqlMetricsTest.fakeConnection(0));
+        QueryBudget budget = QueryBudget.open();
+        findEach(connection, 2);
+        budget.close();
+        findEach(connection, 2);
+        assertNull(QueryBudget.current());
+        assertEquals(2, budget.getCount());
+    }
+}
@@ -0,0 +1,86 @@
+package metrics;
+
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+/**
+ *
+ * @author Frederik Braagaard
+ */
+public class RequestMetricsTest {
+
+    @Path("/friend/")
+    public static class FriendLike {
+
+        @GET
+        @Path("mutual/{id}")
+        public void mutual() {
+        }
+
+        @GET
+        public void list() {
+        }
+    }
+
+    /**
+     *
+     * @author Frederik Braagaard
+     */
+    @Test
+    public void testPathOfJoinsClassAndMethodPaths() throws Exception {
+        Method mutual = FriendLike.class.getMethod("mutual");
+        Method list = FriendLike.class.getMethod("list");
+        assertEquals("/friend/mutual/{id}", RequestMetricsFilter.pathOf(FriendLike.class, mutual));
+        assertEquals("/friend", RequestMetricsFilter.pathOf(FriendLike.class, list));
+    }
+
+    /**
+     *
+     * @author Frederik Braagaard
+     */
+    @Test
+    public void testSnapshotCountsPerEndpointAndStatus() {
+        RequestMetrics metrics = new RequestMetrics(60);
+        for (int i = 1; i <= 100; i++) {
+            metrics.started();
+            metrics.finished("POST", "/login", i <= 90 ? 200 : 401, TimeUnit.MILLISECONDS.toNanos(i));
+        }
+        metrics.started();
+        metrics.finished("GET", "/post/friends", 200, TimeUnit.MILLISECONDS.toNanos(5));
+        metrics.started();
+
+        List<RequestMetrics.Snapshot> snapshot = metrics.snapshot();
+        assertEquals(2, snapshot.size());
+        RequestMetrics.Snapshot login = snapshot.get(0);
+        assertEquals("/login", login.getPath());
+        assertEquals(100, login.getCount());
+        assertEquals(90L, (long) login.getStatuses().get(200));
+        assertEquals(10L, (long) login.getStatuses().get(401));
+        assertEquals(5.05, login.getSumSeconds(), 0.001);
+        assertEquals(0.099, login.getQuantileSeconds(0.99), 0.001);
+        assertEquals(0.050, login.getQuantileSeconds(0.5), 0.001);
+        assertEquals(1, metrics.getInFlight());
+    }
+
+    /**
+     *
+     * @author Frederik Braagaard
+     */
+    @Test
+    public void testQuantilesOnlyCoverTheWindow() throws InterruptedException {
+        RequestMetrics metrics = new RequestMetrics(1);
+        metrics.started();
+        metrics.finished("POST", "/login", 200, TimeUnit.SECONDS.toNanos(2));
+        assertEquals(2.0, metrics.snapshot().get(0).getQuantileSeconds(0.99), 0.01);
+
+        Thread.sleep(1500);
+        RequestMetrics.Snapshot login = metrics.snapshot().get(0);
+        assertTrue(Double.isNaN(login.getQuantileSeconds(0.99)));
+        assertEquals(1, login.getCount());
+    }
+}
@@ -0,0 +1,112 @@
+package metrics;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ *
+ * @author Frederik Braagaard
+ */
+public class SqlMetricsTest {
+
+    @BeforeEach
+    public void setUp() {
+        SqlMetrics.reset();
+    }
+
+    /**
+     * A connection whose statements take the given time, and fail on
+     * "broken".
+     */
+    static Connection fakeConnection(long sleepMillis) {
+        return (Connection) Proxy.newProxyInstance(SqlMetricsTest.class.getClassLoader(), new Class<?>[]{Connection.class},
+                (connection, method, args) -> {
+                    if (!method.getName().equals("prepareStatement")) {
+                        return null;
+                    }
+                    String sql = (String) args[0];
+                    return Proxy.newProxyInstance(SqlMetricsTest.class.getClassLoader(), new Class<?>[]{PreparedStatement.class},
+                            (statement, call, callArgs) -> {
+                                if (call.getName().startsWith("execute")) {
+                                    Thread.sleep(sleepMillis);
+                                    if (sql.contains("broken")) {
+                                        throw new SQLException("broken");
+                                    }
+                                    return call.getName().equals("executeBatch") ? new int[0] : 1;
+                                }
+                                return null;
+                            });
+                });
+    }
+
+    /**
+     *
+     * @author Frederik Braagaard
+     */
+    @Test
+    public void testNormalizeReplacesLiteralsAndLists() {
+        assertEquals("SELECT * FROM users WHERE user_name = ? AND user_id = ?",
+                SqlNormalizer.normalize("SELECT *  FROM users\n WHERE user_name = 'it''s' AND user_id = 42"));
+        assertEquals("SELECT * FROM user_friends WHERE user_id IN (?) AND friend_id IN (?)",
+                SqlNormalizer.normalize("SELECT * FROM user_friends WHERE user_id IN (?, ?, ?) AND friend_id IN (1,2)"));
+        assertEquals("INSERT INTO t (a) VALUES (?)", SqlNormalizer.normalize("INSERT INTO t (a) VALUES (?), (?), (?)"));
+        assertEquals("SELECT t1.user_id FROM users t1", SqlNormalizer.normalize("SELECT t1.user_id FROM users t1"));
+    }
+
+    /**
+     *
+     * @author Frederik Braagaard
+     */
+    @Test
+    public void testRedactHidesText() {
+        assertEquals("42", InstrumentedJdbc.redact(42));
+        assertEquals("'***'(6)", InstrumentedJdbc.redact("secret"));
+        assertEquals("<3 bytes>", InstrumentedJdbc.redact(new byte[3]));
+        assertEquals("NULL", InstrumentedJdbc.redact(null));
+    }
+
+    /**
+     *
+     * @author Frederik Braagaard
+     */
+    @Test
+    public void testStatementsAreTimedPerNormalizedSql() throws SQLException {
+        Connection connection = InstrumentedJdbc.wrap(fakeConnection(2));
+        for (int id = 1; id <= 3; id++) {
+            try (PreparedStatement ps = connection.prepareStatement("SELECT full_name FROM users WHERE user_id = " + id)) {
+                ps.executeUpdate();
+            }
+        }
+        try (PreparedStatement ps = connection.prepareStatement("SELECT broken")) {
+            assertThrows(SQLException.class, ps::executeUpdate);
+        }
+
+        List<SqlMetrics.Snapshot> top = SqlMetrics.top(10, "count");
+        assertEquals(2, top.size());
+        SqlMetrics.Snapshot users = top.get(0);
+        assertEquals("SELECT full_name FROM users WHERE user_id = ?", users.getSql());
+        assertEquals(3, users.getCount());
+        assertEquals(0, users.getErrors());
+        assertTrue(users.getTotalMillis() >= 6, "total " + users.getTotalMillis());
+        assertTrue(users.getCallers().get(0).startsWith("SqlMetricsTest.testStatementsAreTimedPerNormalizedSql"),
+                users.getCallers().toString());
+        assertEquals(1, top.get(1).getErrors());
+        assertEquals(1, SqlMetrics.top(1, "errors").size());
+        assertEquals("SELECT broken", SqlMetrics.top(1, "errors").get(0).getSql());
+    }
+
+    /**
+     *
+     * @author Frederik Braagaard
+     */
+    @Test
+    public void testUnknownOrderIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> SqlMetrics.top(10, "fastest"));
+    }
+}
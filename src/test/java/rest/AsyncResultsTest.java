@@ -0,0 +1,133 @@
+package rest;
+
+import binary.BinaryFormat;
+import binary.BinaryMessageBodyWriter;
+import dtos.user.FriendsDTO;
+import errorhandling.GenericExceptionMapper;
+import errorhandling.NoFriendsException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Type;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Scanner;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeoutException;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
+import javax.ws.rs.core.GenericType;
+import javax.ws.rs.core.MediaType;
+import json.GsonMessageBodyWriter;
+import org.glassfish.grizzly.http.server.HttpServer;
+import org.glassfish.jersey.grizzly2.httpserver.GrizzlyHttpServerFactory;
+import org.glassfish.jersey.server.ResourceConfig;
+import org.junit.jupiter.api.AfterAll;
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+/**
+ *
+ * @author Frederik Braagaard
+ */
+public class AsyncResultsTest {
+
+    private static final URI BASE_URI = URI.create("http://localhost:7780/api/");
+    private static final Type FRIEND_LIST = new GenericType<List<FriendsDTO>>() {
+    }.getType();
+    private static HttpServer httpServer;
+
+    @Path("async")
+    public static class AsyncResource {
+
+        @GET
+        @Path("{outcome}")
+        @Produces({MediaType.APPLICATION_JSON, BinaryFormat.MEDIA_TYPE_QS})
+        public void friends(@PathParam("outcome") String outcome, @Suspended AsyncResponse asyncResponse) {
+            CompletableFuture<List<FriendsDTO>> future = new CompletableFuture<>();
+            AsyncResults.resume(asyncResponse, future.thenApply(friends -> friends), FRIEND_LIST, ex -> {
+                if (ex instanceof NoFriendsException) {
+                    return new WebApplicationException("The requester currently has no friends", 404);
+                }
+                return null;
+            });
+            switch (outcome) {
+                case "friends":
+                    FriendsDTO friend = new FriendsDTO();
+                    friend.setFriendID(7);
+                    friend.setFullName("Async Friend");
+                    future.complete(Arrays.asList(friend));
+                    break;
+                case "nofriends":
+                    future.completeExceptionally(new NoFriendsException("No friends"));
+                    break;
+                case "timeout":
+                    future.completeExceptionally(new TimeoutException());
+                    break;
+                default:
+                    future.completeExceptionally(new IllegalStateException());
+            }
+        }
+    }
+
+    @BeforeAll
+    public static void setUpClass() {
+        httpServer = GrizzlyHttpServerFactory.createHttpServer(BASE_URI, new ResourceConfig(AsyncResource.class,
+                GsonMessageBodyWriter.class, BinaryMessageBodyWriter.class, GenericExceptionMapper.class));
+    }
+
+    @AfterAll
+    public static void closeTestServer() {
+        httpServer.shutdownNow();
+    }
+
+    private static HttpURLConnection get(String outcome, String accept) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(BASE_URI + "async/" + outcome).openConnection();
+        connection.setRequestProperty("Accept", accept);
+        return connection;
+    }
+
+    private static String body(HttpURLConnection connection) throws IOException {
+        InputStream in = connection.getResponseCode() < 400 ? connection.getInputStream() : connection.getErrorStream();
+        try (Scanner scanner = new Scanner(in, "UTF-8")) {
+            return scanner.useDelimiter("\\A").next();
+        }
+    }
+
+    /**
+     *
+     * @author Frederik Braagaard
+     */
+    @Test
+    public void testResultKeepsItsGenericType() throws IOException {
+        HttpURLConnection json = get("friends", MediaType.APPLICATION_JSON);
+        assertEquals(200, json.getResponseCode());
+        assertTrue(body(json).contains("\"fullName\":\"Async Friend\""));
+
+        HttpURLConnection binary = get("friends", BinaryFormat.MEDIA_TYPE);
+        assertEquals(200, binary.getResponseCode());
+        assertEquals("Async Friend", BinaryFormat.readFriends(binary.getInputStream()).get(0).getFullName());
+    }
+
+    /**
+     *
+     * @author Frederik Braagaard
+     */
+    @Test
+    public void testErrors() throws IOException {
+        HttpURLConnection noFriends = get("nofriends", MediaType.APPLICATION_JSON);
+        assertEquals(404, noFriends.getResponseCode());
+        assertTrue(body(noFriends).contains("The requester currently has no friends"));
+        assertEquals(503, get("timeout", MediaType.APPLICATION_JSON).getResponseCode());
+        assertEquals(500, get("unexpected", MediaType.APPLICATION_JSON).getResponseCode());
+    }
+
+}
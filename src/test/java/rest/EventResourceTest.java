@@ -0,0 +1,105 @@
+package rest;
+
+import compression.CompressionInterceptor;
+import dtos.user.FriendsDTO;
+import events.EventBus;
+import events.EventType;
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.sse.Sse;
+import javax.ws.rs.sse.SseEventSink;
+import json.GsonMessageBodyWriter;
+import org.glassfish.grizzly.http.server.HttpServer;
+import org.glassfish.jersey.grizzly2.httpserver.GrizzlyHttpServerFactory;
+import org.glassfish.jersey.server.ResourceConfig;
+import org.junit.jupiter.api.AfterAll;
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+/**
+ *
+ * @author Frederik Braagaard
+ */
+public class EventResourceTest {
+
+    private static final URI BASE_URI = URI.create("http://localhost:7781/api/");
+    private static final int USER_ID = 4711;
+    private static HttpServer httpServer;
+
+    /**
+     * Subscribes like {@link EventResource}, without the token.
+     */
+    @Path("stream")
+    public static class StreamResource {
+
+        @GET
+        @Produces(MediaType.SERVER_SENT_EVENTS)
+        public void subscribe(@Context SseEventSink sink, @Context Sse sse) {
+            sink.send(sse.newEventBuilder().comment("connected").build());
+            EventBus.getEventBus().subscribe(USER_ID, new EventResource.SseListener(sink, sse));
+        }
+    }
+
+    @BeforeAll
+    public static void setUpClass() {
+        httpServer = GrizzlyHttpServerFactory.createHttpServer(BASE_URI, new ResourceConfig(StreamResource.class,
+                GsonMessageBodyWriter.class, CompressionInterceptor.class));
+    }
+
+    @AfterAll
+    public static void closeTestServer() {
+        httpServer.shutdownNow();
+    }
+
+    /**
+     *
+     * @author Frederik Braagaard
+     */
+    @Test
+    public void testPublishedEventIsStreamed() throws Exception {
+        HttpURLConnection connection = (HttpURLConnection) new URL(BASE_URI + "stream").openConnection();
+        connection.setRequestProperty("Accept", MediaType.SERVER_SENT_EVENTS);
+        connection.setRequestProperty("Accept-Encoding", "gzip");
+        connection.setReadTimeout(5000);
+        assertEquals(200, connection.getResponseCode());
+        assertTrue(connection.getContentType().startsWith(MediaType.SERVER_SENT_EVENTS));
+        assertNull(connection.getHeaderField("Content-Encoding"));
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8))) {
+            assertEquals(": connected", reader.readLine());
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (EventBus.getEventBus().getSubscriptionCount() == 0 && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            FriendsDTO requester = new FriendsDTO();
+            requester.setFriendID(7);
+            requester.setFullName("Event Friend");
+            EventBus.getEventBus().publish(USER_ID, EventType.FRIEND_REQUEST, requester);
+
+            StringBuilder event = new StringBuilder();
+            String line;
+            while ((line = reader.readLine()) != null && !(line.isEmpty() && event.length() > 0)) {
+                if (!line.isEmpty()) {
+                    event.append(line).append('\n');
+                }
+            }
+            String text = event.toString();
+            assertTrue(text.contains("event: friend-request\n"), text);
+            assertTrue(text.contains("id: "), text);
+            assertTrue(text.contains("data: {\"friendID\":7,\"fullName\":\"Event Friend\"}"), text);
+        } finally {
+            connection.disconnect();
+        }
+    }
+}
@@ -99,9 +99,9 @@ public class FriendResourceTest {
         try {
             em.getTransaction().begin();
 
-            em.createNamedQuery("User.deleteAllRows").executeUpdate();
             em.createNamedQuery("UserPosts.deleteAllRows").executeUpdate();
             em.createNamedQuery("Friends.deleteAllRows").executeUpdate();
+            em.createNamedQuery("User.deleteAllRows").executeUpdate();
             em.createNamedQuery("FriendRequest.deleteAllRows").executeUpdate();
             em.createNamedQuery("Role.deleteAllRows").executeUpdate();
 
@@ -0,0 +1,193 @@
+package rest;
+
+import entities.FriendRequest;
+import entities.Friends;
+import entities.Role;
+import entities.User;
+import entities.UserPosts;
+import facades.UserFacade;
+import io.restassured.RestAssured;
+import static io.restassured.RestAssured.given;
+import io.restassured.parsing.Parser;
+import java.net.URI;
+import java.util.List;
+import java.util.UUID;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.ws.rs.core.UriBuilder;
+import mongodb.MongoConnection;
+import mongodb.MongoFailedLogin;
+import org.glassfish.grizzly.http.server.HttpServer;
+import org.glassfish.grizzly.http.util.HttpStatus;
+import org.glassfish.jersey.grizzly2.httpserver.GrizzlyHttpServerFactory;
+import org.glassfish.jersey.server.ResourceConfig;
+import static org.hamcrest.Matchers.*;
+import org.junit.jupiter.api.AfterAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static rest.LoginEndpointTest.loginUser;
+import static rest.LoginEndpointTest.securityToken;
+import utils.EMF_Creator;
+
+/**
+ *
+ * @author Frederik Braagaard
+ */
+public class HomeResourceTest {
+
+    private static final int SERVER_PORT = 7777;
+    private static final String SERVER_URL = "http://localhost/api/";
+
+    static final URI BASE_URI = UriBuilder.fromUri(SERVER_URL).port(SERVER_PORT).build();
+    private static HttpServer httpServer;
+    private static EntityManagerFactory emf;
+    private static UserFacade facade;
+    private static MongoConnection mongo;
+    private static MongoFailedLogin mongoLogin;
+
+    private User u1, u2, u3;
+    private Role r1;
+
+    static HttpServer startServer() {
+        ResourceConfig rc = ResourceConfig.forApplication(new ApplicationConfig());
+        return GrizzlyHttpServerFactory.createHttpServer(BASE_URI, rc);
+    }
+
+    /**
+     *
+     * @author Frederik Braagaard
+     */
+    @BeforeAll
+    public static void setUpClass() {
+        //This method must be called before you request the EntityManagerFactory
+        EMF_Creator.startREST_TestWithDB();
+        emf = EMF_Creator.createEntityManagerFactory(EMF_Creator.DbSelector.TEST, EMF_Creator.Strategy.CREATE);
+        facade = UserFacade.getUserFacade(emf);
+        facade.serverStatus = false;
+        mongo.loggingStatus = false;
+        mongoLogin.loggingStatus = false;
+        httpServer = startServer();
+        //Setup RestAssured
+        RestAssured.baseURI = SERVER_URL;
+        RestAssured.port = SERVER_PORT;
+        RestAssured.defaultParser = Parser.JSON;
+    }
+
+    /**
+     * u1 is friends with u2, who has a post, and has a friend request from
+     * u3.
+     *
+     * @author Frederik Braagaard
+     */
+    @BeforeEach
+    public void setUp() {
+        EntityManager em = emf.createEntityManager();
+        try {
+            em.getTransaction().begin();
+
+            em.createNamedQuery("UserPosts.deleteAllRows").executeUpdate();
+            em.createNamedQuery("Friends.deleteAllRows").executeUpdate();
+            em.createNamedQuery("User.deleteAllRows").executeUpdate();
+            em.createNamedQuery("FriendRequest.deleteAllRows").executeUpdate();
+            em.createNamedQuery("Role.deleteAllRows").executeUpdate();
+
+            r1 = new Role("user");
+            em.persist(r1);
+            em.getTransaction().commit();
+
+            em.getTransaction().begin();
+            u1 = new User("User user", "user", "test", "where I was born", UUID.randomUUID().toString());
+            u1.addRole(r1);
+            u2 = new User("User2 user", "user2", "test", "where I went to school", UUID.randomUUID().toString());
+            u2.addRole(r1);
+            u3 = new User("User3 user", "user3", "test", "where I first traveled to", UUID.randomUUID().toString());
+            u3.addRole(r1);
+            em.persist(u1);
+            em.persist(u2);
+            em.persist(u3);
+            em.getTransaction().commit();
+
+            em.getTransaction().begin();
+            u2.addUserPost(new UserPosts("This is a post made by a friend"));
+            u1.addToFriendList(new Friends(u2.getId()));
+            u2.addToFriendList(new Friends(u1.getId()));
+            u1.addFriendRequest(new FriendRequest(u3.getId(), u3.getFullName(), u3.getProfilePicture()));
+            em.persist(u1);
+            em.persist(u2);
+            em.getTransaction().commit();
+        } finally {
+            em.close();
+        }
+    }
+
+    @AfterAll
+    public static void closeTestServer() {
+        //Don't forget this, if you called its counterpart in @BeforeAll
+        EMF_Creator.endREST_TestWithDB();
+        httpServer.shutdownNow();
+    }
+
+    /**
+     *
+     * @author Frederik Braagaard
+     */
+    @Test
+    public void onlyTheSelectedFields() {
+        loginUser(u1.getUserName(), "test");
+
+        given()
+                .header("x-access-token", securityToken)
+                .queryParam("fields", "profile,requests")
+                .when().get("/home").then()
+                .assertThat()
+                .statusCode(HttpStatus.OK_200.getStatusCode())
+                .body("profile.friendID", equalTo(u1.getId()))
+                .body("friendRequests.friendID", contains(u3.getId()))
+                .body("$", not(hasKey("feed")))
+                .body("$", not(hasKey("friends")));
+    }
+
+    /**
+     *
+     * @author Frederik Braagaard
+     */
+    @Test
+    public void unknownFieldIsBadRequest() {
+        loginUser(u1.getUserName(), "test");
+
+        given()
+                .header("x-access-token", securityToken)
+                .queryParam("fields", "profile,posts")
+                .when().get("/home").then()
+                .assertThat()
+                .statusCode(HttpStatus.BAD_REQUEST_400.getStatusCode());
+    }
+
+    /**
+     *
+     * @author Frederik Braagaard
+     */
+    @Test
+    public void friendsAreTheUsersOfTheFeed() {
+        loginUser(u1.getUserName(), "test");
+
+        List<Integer> feed = given()
+                .header("x-access-token", securityToken)
+                .queryParam("fields", "feed,friends")
+                .when().get("/home").then()
+                .assertThat()
+                .statusCode(HttpStatus.OK_200.getStatusCode())
+                .body("feed[0].posts", hasSize(1))
+                .body("friends.friendID", contains(u2.getId()))
+                .body("friends.fullName", contains(u2.getFullName()))
+                .extract().path("feed.userID");
+
+        assertEquals(feed, given()
+                .header("x-access-token", securityToken)
+                .when().get("/home").then()
+                .extract().path("friends.friendID"));
+    }
+
+}
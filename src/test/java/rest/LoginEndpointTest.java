@@ -97,9 +97,9 @@ public class LoginEndpointTest {
         try {
             em.getTransaction().begin();
 
-            em.createNamedQuery("User.deleteAllRows").executeUpdate();
             em.createNamedQuery("UserPosts.deleteAllRows").executeUpdate();
             em.createNamedQuery("Friends.deleteAllRows").executeUpdate();
+            em.createNamedQuery("User.deleteAllRows").executeUpdate();
             em.createNamedQuery("FriendRequest.deleteAllRows").executeUpdate();
             em.createNamedQuery("Role.deleteAllRows").executeUpdate();
 
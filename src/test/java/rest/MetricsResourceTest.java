@@ -0,0 +1,102 @@
+package rest;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import metrics.RequestMetricsFilter;
+import org.glassfish.grizzly.http.server.HttpServer;
+import org.glassfish.jersey.grizzly2.httpserver.GrizzlyHttpServerFactory;
+import org.glassfish.jersey.server.ResourceConfig;
+import org.junit.jupiter.api.AfterAll;
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+/**
+ *
+ * @author Frederik Braagaard
+ */
+public class MetricsResourceTest {
+
+    private static final URI BASE_URI = URI.create("http://localhost:7782/api/");
+    private static HttpServer httpServer;
+
+    @Path("ping")
+    public static class PingResource {
+
+        @GET
+        public String ping() {
+            return "pong";
+        }
+    }
+
+    @BeforeAll
+    public static void setUpClass() {
+        httpServer = GrizzlyHttpServerFactory.createHttpServer(BASE_URI, new ResourceConfig(PingResource.class,
+                MetricsResource.class, RequestMetricsFilter.class));
+    }
+
+    @AfterAll
+    public static void closeTestServer() {
+        httpServer.shutdownNow();
+    }
+
+    /**
+     *
+     * @author Frederik Braagaard
+     */
+    @Test
+    public void testMetricsListRequestsAndJvm() throws Exception {
+        assertEquals(200, get("ping").getResponseCode());
+        assertEquals(404, get("nothing/here").getResponseCode());
+
+        HttpURLConnection connection = get("metrics");
+        assertEquals(200, connection.getResponseCode());
+        assertTrue(connection.getContentType().startsWith("text/plain"), connection.getContentType());
+        assertTrue(connection.getContentType().contains("version=0.0.4"), connection.getContentType());
+        String body = read(connection.getInputStream());
+        assertTrue(body.contains("http_server_requests_total{method=\"GET\",path=\"/ping\",status=\"200\"} 1\n"), body);
+        assertTrue(body.contains("http_server_requests_total{method=\"GET\",path=\"UNMATCHED\",status=\"404\"} 1\n"), body);
+        assertTrue(body.contains("http_server_request_duration_seconds{method=\"GET\",path=\"/ping\",quantile=\"0.99\"} "), body);
+        assertTrue(body.contains("# TYPE jvm_gc_collection_seconds summary\n"), body);
+        assertTrue(body.contains("jvm_memory_bytes_used{area=\"heap\"} "), body);
+        //The scrape itself is still in flight while the metrics are written.
+        assertTrue(body.contains("http_server_requests_in_flight 1\n"), body);
+    }
+
+    /**
+     *
+     * @author Frederik Braagaard
+     */
+    @Test
+    public void testIsAuthorized() {
+        assertTrue(MetricsResource.isAuthorized("", null));
+        assertTrue(MetricsResource.isAuthorized("secret", "Bearer secret"));
+        assertFalse(MetricsResource.isAuthorized("secret", "Bearer wrong"));
+        assertFalse(MetricsResource.isAuthorized("secret", null));
+        assertFalse(MetricsResource.isAuthorized("secret", "secret"));
+    }
+
+    private static HttpURLConnection get(String path) throws Exception {
+        HttpURLConnection connection = (HttpURLConnection) new URL(BASE_URI + path).openConnection();
+        connection.setReadTimeout(5000);
+        return connection;
+    }
+
+    private static String read(InputStream in) throws Exception {
+        try (InputStream stream = in) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = stream.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return new String(out.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+}
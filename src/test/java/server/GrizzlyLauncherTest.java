@@ -0,0 +1,145 @@
+package server;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.Scanner;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import javax.ws.rs.GET;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import org.glassfish.grizzly.http.server.HttpServer;
+import org.glassfish.jersey.server.ResourceConfig;
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+/**
+ *
+ * @author Frederik Braagaard
+ */
+public class GrizzlyLauncherTest {
+
+    private static final URI BASE_URI = URI.create("http://localhost:7779/api/");
+
+    @Path("probe")
+    public static class ProbeResource {
+
+        @GET
+        @Path("thread")
+        public String thread() {
+            return Thread.currentThread().getName();
+        }
+
+        @GET
+        @Path("slow")
+        public String slow() throws InterruptedException {
+            Thread.sleep(1000);
+            return "done";
+        }
+
+        @POST
+        @Path("echo")
+        public String echo(byte[] body) {
+            return String.valueOf(body.length);
+        }
+    }
+
+    private static HttpServer start() throws IOException {
+        HttpServer server = GrizzlyLauncher.createServer(BASE_URI, new ResourceConfig(ProbeResource.class));
+        server.start();
+        return server;
+    }
+
+    private static String get(String path) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(BASE_URI + path).openConnection();
+        try (Scanner scanner = new Scanner(connection.getInputStream(), "UTF-8")) {
+            return scanner.useDelimiter("\\A").next();
+        }
+    }
+
+    private static int post(byte[] body, boolean chunked) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(BASE_URI + "probe/echo").openConnection();
+        connection.setDoOutput(true);
+        connection.setRequestMethod("POST");
+        connection.setRequestProperty("Content-Type", "application/octet-stream");
+        if (chunked) {
+            connection.setChunkedStreamingMode(8192);
+        } else {
+            connection.setFixedLengthStreamingMode(body.length);
+        }
+        try (OutputStream out = connection.getOutputStream()) {
+            out.write(body);
+        } catch (IOException ex) {
+            //The server may answer and close before the whole body is sent.
+        }
+        return connection.getResponseCode();
+    }
+
+    /**
+     *
+     * @author Frederik Braagaard
+     */
+    @Test
+    public void testWorkerPoolAndLimits() throws IOException {
+        HttpServer server = start();
+        try {
+            assertTrue(get("probe/thread").startsWith("api-worker"));
+            assertEquals(200, post(new byte[1024], false));
+            assertEquals(413, post(new byte[10 * 1024 * 1024 + 1], false));
+            assertEquals(413, post(new byte[10 * 1024 * 1024 + 1], true));
+
+            HttpURLConnection connection = (HttpURLConnection) new URL(BASE_URI + "probe/thread").openConnection();
+            char[] header = new char[9000];
+            Arrays.fill(header, 'a');
+            connection.setRequestProperty("X-Large", new String(header));
+            assertEquals(400, connection.getResponseCode());
+        } finally {
+            server.shutdownNow();
+        }
+    }
+
+    /**
+     *
+     * @author Frederik Braagaard
+     */
+    @Test
+    public void testVirtualThreadExecutor() throws Exception {
+        ExecutorService executor = GrizzlyLauncher.newVirtualThreadExecutor();
+        boolean hasVirtualThreads = Arrays.stream(Thread.class.getMethods())
+                .anyMatch(method -> method.getName().equals("ofVirtual"));
+        if (!hasVirtualThreads) {
+            assertNull(executor);
+            return;
+        }
+        try {
+            assertTrue(executor.submit(() -> Thread.currentThread().getName()).get().startsWith("api-virtual-"));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     *
+     * @author Frederik Braagaard
+     */
+    @Test
+    public void testShutdownWaitsForRequestsInFlight() throws Exception {
+        HttpServer server = start();
+        CompletableFuture<String> slow = CompletableFuture.supplyAsync(() -> {
+            try {
+                return get("probe/slow");
+            } catch (IOException ex) {
+                return ex.toString();
+            }
+        });
+        Thread.sleep(300);
+        GrizzlyLauncher.shutdown(server, 5);
+        assertEquals("done", slow.get());
+        assertFalse(server.isStarted());
+    }
+
+}
@@ -0,0 +1,90 @@
+package tracing;
+
+import java.net.URI;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
+import org.glassfish.jersey.internal.MapPropertiesDelegate;
+import org.glassfish.jersey.server.ApplicationHandler;
+import org.glassfish.jersey.server.ContainerRequest;
+import org.glassfish.jersey.server.ContainerResponse;
+import org.glassfish.jersey.server.ResourceConfig;
+import org.junit.jupiter.api.AfterEach;
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+/**
+ *
+ * @author Frederik Braagaard
+ */
+public class TraceListenerTest {
+
+    private static final CountDownLatch RESUME = new CountDownLatch(1);
+    private static volatile Span seen;
+
+    @Path("trace")
+    public static class TracedResource {
+
+        @GET
+        @Path("suspended")
+        public void suspended(@Suspended AsyncResponse response) {
+            seen = Tracer.current();
+            new Thread(() -> {
+                try {
+                    RESUME.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+                response.resume("done");
+            }).start();
+        }
+
+        @GET
+        @Path("sync")
+        public String sync() {
+            seen = Tracer.current();
+            return "done";
+        }
+    }
+
+    @AfterEach
+    public void tearDown() {
+        Tracer.attach(null);
+    }
+
+    private static Future<ContainerResponse> get(String path) {
+        ApplicationHandler handler = new ApplicationHandler(new ResourceConfig(TracedResource.class,
+                TraceFilter.class, TraceListener.class));
+        return handler.apply(new ContainerRequest(URI.create("http://localhost/"), URI.create("http://localhost/trace/" + path),
+                "GET", null, new MapPropertiesDelegate()));
+    }
+
+    /**
+     *
+     * @author Frederik Braagaard
+     */
+    @Test
+    public void testSuspendedRequestLeavesNoTraceOnTheRequestThread() throws Exception {
+        Future<ContainerResponse> response = get("suspended");
+        //The handler ran the resource method on this thread, which has returned without a response yet.
+        assertNotNull(seen);
+        assertNull(Tracer.current());
+        RESUME.countDown();
+        assertEquals(200, response.get(5, TimeUnit.SECONDS).getStatus());
+    }
+
+    /**
+     *
+     * @author Frederik Braagaard
+     */
+    @Test
+    public void testSynchronousRequestKeepsItsTraceUntilTheResponse() throws Exception {
+        assertEquals(200, get("sync").get(5, TimeUnit.SECONDS).getStatus());
+        assertNotNull(seen);
+        assertNull(Tracer.current());
+    }
+}
@@ -0,0 +1,130 @@
+package tracing;
+
+import facades.UserFacadeAsync;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ *
+ * @author Frederik Braagaard
+ */
+public class TracerTest {
+
+    @AfterEach
+    public void tearDown() {
+        Tracer.attach(null);
+    }
+
+    /**
+     *
+     * @author Frederik Braagaard
+     */
+    @Test
+    public void testNothingIsTracedOutsideARequest() {
+        try (Span span = Tracer.start("facade", "UserFacade.getPosts")) {
+            assertSame(Span.NOOP, span);
+            assertNull(Tracer.current());
+            Tracer.record("db", "SELECT 1", 1000);
+        }
+        assertNull(Tracer.current());
+    }
+
+    /**
+     *
+     * @author Frederik Braagaard
+     */
+    @Test
+    public void testSpansNestAndEnd() {
+        Trace trace = Tracer.begin("abc");
+        try (Span facade = Tracer.start("facade", "UserFacade.getPosts")) {
+            assertSame(facade, Tracer.current());
+            Tracer.record("db", "SELECT * FROM posts WHERE user_id = ?", 2_000_000);
+            try (Span bcrypt = Tracer.start("bcrypt", "User.verifyPassword")) {
+                assertSame(bcrypt, Tracer.current());
+            }
+            assertSame(facade, Tracer.current());
+        }
+        assertSame(trace.getRoot(), Tracer.current());
+        trace.finish("GET /post", 200);
+
+        List<Span> spans = trace.getSpans();
+        assertEquals(3, spans.size());
+        assertEquals("facade", spans.get(0).getKind());
+        assertEquals("db", spans.get(1).getKind());
+        assertEquals(2.0, spans.get(1).getDurationMillis(), 0.001);
+        assertSame(spans.get(0), spans.get(1).getParent());
+        assertSame(spans.get(0), spans.get(2).getParent());
+        for (Span span : spans) {
+            assertTrue(span.getDurationMillis() >= 0);
+        }
+        assertEquals("GET /post", trace.getName());
+        assertEquals(200, trace.getStatus());
+    }
+
+    /**
+     *
+     * @author Frederik Braagaard
+     */
+    @Test
+    public void testServerTimingAddsUpEachKind() {
+        Trace trace = Tracer.begin("abc");
+        Tracer.record("db", "SELECT 1", 1_000_000);
+        Tracer.record("mongo", "insert", 3_000_000);
+        Tracer.record("db", "SELECT 2", 1_500_000);
+        trace.finish("GET /post", 200);
+
+        String header = trace.serverTiming();
+        assertTrue(header.startsWith("db;dur=2.50, mongo;dur=3.00, total;dur="), header);
+        //No spans are added once the response is on its way.
+        Tracer.record("db", "SELECT 3", 1_000_000);
+        assertEquals(3, trace.getSpans().size());
+    }
+
+    /**
+     *
+     * @author Frederik Braagaard
+     */
+    @Test
+    public void testBufferKeepsTheNewestTraces() {
+        TraceBuffer buffer = new TraceBuffer(3);
+        for (int i = 1; i <= 5; i++) {
+            Trace trace = new Trace("t" + i);
+            trace.finish("GET /post", 200);
+            buffer.offer(trace);
+        }
+        List<Trace.Summary> recent = buffer.recent(10, 0);
+        assertEquals(3, recent.size());
+        assertEquals("t5", recent.get(0).getId());
+        assertEquals("t3", recent.get(2).getId());
+        assertEquals(2, buffer.recent(2, 0).size());
+        assertTrue(buffer.recent(10, 60_000).isEmpty());
+        assertNotNull(buffer.find("t4"));
+        assertNull(buffer.find("t1"));
+    }
+
+    /**
+     *
+     * @author Frederik Braagaard
+     */
+    @Test
+    public void testDatabaseExecutorCarriesOnTheTrace() throws Exception {
+        UserFacadeAsync facade = new UserFacadeAsync(null);
+        Trace trace = Tracer.begin("abc");
+        Span span = facade.call(() -> {
+            Tracer.record("db", "SELECT 1", 1000);
+            return Tracer.current();
+        }).get(5, TimeUnit.SECONDS);
+
+        assertEquals("facade", span.getKind());
+        assertEquals("UserFacadeAsync.call", span.getName());
+        assertSame(trace.getRoot(), span.getParent());
+        List<Span> spans = trace.getSpans();
+        assertEquals(2, spans.size());
+        assertSame(span, spans.get(1).getParent());
+        assertTrue(span.getDurationMillis() >= 0);
+        assertSame(trace.getRoot(), Tracer.current());
+    }
+}
@@ -0,0 +1,112 @@
+package utils;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import org.mindrot.jbcrypt.BCrypt;
+import utils.EMF_Creator.DbSelector;
+
+/**
+ * Generated users, friendships and posts for the benchmarks and the load
+ * test, which run against an in-memory H2 database in MySQL mode.
+ * <p>
+ * User i (1 to users) is called "user{i}" with the full name
+ * "Benchmark User {i}", and all of them have the password {@link #PASSWORD}.
+ * Each user is friends with the friends / 2 users on either side of it, so
+ * two users more than friends / 2 apart are never friends.
+ * </p>
+ *
+ * @author Frederik Braagaard
+ */
+public final class SeedData {
+
+    public static final String PASSWORD = "benchmark";
+    private static final int BATCH_SIZE = 1000;
+
+    private SeedData() {
+    }
+
+    /**
+     * Fills the empty tables of the given database in one transaction.
+     *
+     * @param db the database, whose pool must point at H2
+     * @param users the number of users
+     * @param friends the number of friends of each user, fewer than users
+     * @param posts the number of posts of each user
+     */
+    public static void seed(DbSelector db, int users, int friends, int posts) throws SQLException {
+        if (friends >= users) {
+            throw new IllegalArgumentException("Each user needs fewer friends than there are users");
+        }
+        //One hash for everyone, hashing a password per user would take minutes.
+        String password = BCrypt.hashpw(PASSWORD, BCrypt.gensalt());
+        String secret = BCrypt.hashpw("secret", BCrypt.gensalt());
+        long now = System.currentTimeMillis();
+        try (Connection connection = ConnectionPool.getConnection(db)) {
+            connection.setAutoCommit(false);
+            try (PreparedStatement ps = connection.prepareStatement("INSERT INTO role (role_name) VALUES ('user')")) {
+                ps.executeUpdate();
+            }
+            try (PreparedStatement user = connection.prepareStatement("INSERT INTO users "
+                    + "(user_id, user_name, user_pass, full_name, profile_picture, secret_password) VALUES (?, ?, ?, ?, ?, ?)");
+                    PreparedStatement role = connection.prepareStatement("INSERT INTO user_roles (user_id, role_name) VALUES (?, 'user')")) {
+                for (int id = 1; id <= users; id++) {
+                    user.setInt(1, id);
+                    user.setString(2, "user" + id);
+                    user.setString(3, password);
+                    user.setString(4, "Benchmark User " + id);
+                    user.setString(5, "picture-" + id);
+                    user.setString(6, secret);
+                    user.addBatch();
+                    role.setInt(1, id);
+                    role.addBatch();
+                    if (id % BATCH_SIZE == 0) {
+                        user.executeBatch();
+                        role.executeBatch();
+                    }
+                }
+                user.executeBatch();
+                role.executeBatch();
+            }
+            try (PreparedStatement edge = connection.prepareStatement("INSERT INTO user_friends (user_id, friend_id) VALUES (?, ?)")) {
+                int rows = 0;
+                for (int id = 1; id <= users; id++) {
+                    for (int step = 1; step <= friends / 2; step++) {
+                        int friend = (id - 1 + step) % users + 1;
+                        edge.setInt(1, id);
+                        edge.setInt(2, friend);
+                        edge.addBatch();
+                        edge.setInt(1, friend);
+                        edge.setInt(2, id);
+                        edge.addBatch();
+                        if (++rows % BATCH_SIZE == 0) {
+                            edge.executeBatch();
+                        }
+                    }
+                }
+                edge.executeBatch();
+            }
+            try (PreparedStatement post = connection.prepareStatement("INSERT INTO posts (user_post, post_date, user_id) VALUES (?, ?, ?)")) {
+                int rows = 0;
+                for (int id = 1; id <= users; id++) {
+                    for (int i = 0; i < posts; i++) {
+                        post.setString(1, "Post " + i + " by user " + id);
+                        post.setTimestamp(2, new Timestamp(now - (long) i * 60000 - id));
+                        post.setInt(3, id);
+                        post.addBatch();
+                        if (++rows % BATCH_SIZE == 0) {
+                            post.executeBatch();
+                        }
+                    }
+                }
+                post.executeBatch();
+            }
+            //The ids were given explicitly, so H2 has to be told where to carry on.
+            try (PreparedStatement ps = connection.prepareStatement("ALTER TABLE users ALTER COLUMN user_id RESTART WITH " + (users + 1))) {
+                ps.executeUpdate();
+            }
+            connection.commit();
+        }
+    }
+}